@@ -0,0 +1,209 @@
+package com.logicaldoc.cmis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsed form of a CMIS-QL statement, as produced by
+ * {@link CmisQueryParser}. Qualifiers(like <code>d.cmis:name</code>) are
+ * already stripped from the property identifiers.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class CmisQuery {
+
+	/**
+	 * The selected property identifiers, empty means <code>*</code>
+	 */
+	private List<String> select = new ArrayList<String>();
+
+	/**
+	 * The queried type, for example <code>cmis:document</code>
+	 */
+	private String typeId;
+
+	/**
+	 * The where condition, null if not specified
+	 */
+	private Predicate where;
+
+	private List<OrderBy> orderBy = new ArrayList<OrderBy>();
+
+	public List<String> getSelect() {
+		return select;
+	}
+
+	public String getTypeId() {
+		return typeId;
+	}
+
+	public void setTypeId(String typeId) {
+		this.typeId = typeId;
+	}
+
+	public Predicate getWhere() {
+		return where;
+	}
+
+	public void setWhere(Predicate where) {
+		this.where = where;
+	}
+
+	public List<OrderBy> getOrderBy() {
+		return orderBy;
+	}
+
+	/**
+	 * Base class of all the nodes of a where condition
+	 */
+	public static abstract class Predicate {
+	}
+
+	/**
+	 * Conjunction or disjunction of other predicates
+	 */
+	public static class Junction extends Predicate {
+		private boolean and;
+
+		private List<Predicate> terms = new ArrayList<Predicate>();
+
+		public Junction(boolean and) {
+			this.and = and;
+		}
+
+		public boolean isAnd() {
+			return and;
+		}
+
+		public List<Predicate> getTerms() {
+			return terms;
+		}
+	}
+
+	/**
+	 * Negation of another predicate
+	 */
+	public static class Not extends Predicate {
+		private Predicate term;
+
+		public Not(Predicate term) {
+			this.term = term;
+		}
+
+		public Predicate getTerm() {
+			return term;
+		}
+	}
+
+	/**
+	 * Comparison between a property and one or more literals. The operator is
+	 * one of <code>=, &lt;&gt;, &lt;, &gt;, &lt;=, &gt;=, LIKE, IN, IS NULL</code>,
+	 * eventually negated. When <code>any</code> is true the property is
+	 * multi-valued and the comparison succeeds if at least one value matches.
+	 */
+	public static class Comparison extends Predicate {
+		private String property;
+
+		private String operator;
+
+		private boolean negated = false;
+
+		private boolean any = false;
+
+		private List<Object> values = new ArrayList<Object>();
+
+		public Comparison(String property, String operator) {
+			this.property = property;
+			this.operator = operator;
+		}
+
+		public String getProperty() {
+			return property;
+		}
+
+		public String getOperator() {
+			return operator;
+		}
+
+		public boolean isNegated() {
+			return negated;
+		}
+
+		public void setNegated(boolean negated) {
+			this.negated = negated;
+		}
+
+		public boolean isAny() {
+			return any;
+		}
+
+		public void setAny(boolean any) {
+			this.any = any;
+		}
+
+		public List<Object> getValues() {
+			return values;
+		}
+	}
+
+	/**
+	 * The full-text predicate <code>CONTAINS('expression')</code>
+	 */
+	public static class Contains extends Predicate {
+		private String expression;
+
+		public Contains(String expression) {
+			this.expression = expression;
+		}
+
+		public String getExpression() {
+			return expression;
+		}
+	}
+
+	/**
+	 * The predicates <code>IN_FOLDER('id')</code> and
+	 * <code>IN_TREE('id')</code>
+	 */
+	public static class InFolder extends Predicate {
+		private String folderId;
+
+		private boolean tree;
+
+		public InFolder(String folderId, boolean tree) {
+			this.folderId = folderId;
+			this.tree = tree;
+		}
+
+		public String getFolderId() {
+			return folderId;
+		}
+
+		public boolean isTree() {
+			return tree;
+		}
+	}
+
+	/**
+	 * An item of the ORDER BY clause
+	 */
+	public static class OrderBy {
+		private String property;
+
+		private boolean ascending = true;
+
+		public OrderBy(String property, boolean ascending) {
+			this.property = property;
+			this.ascending = ascending;
+		}
+
+		public String getProperty() {
+			return property;
+		}
+
+		public boolean isAscending() {
+			return ascending;
+		}
+	}
+}
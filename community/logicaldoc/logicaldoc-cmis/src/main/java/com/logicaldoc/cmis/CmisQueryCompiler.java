@@ -0,0 +1,472 @@
+package com.logicaldoc.cmis;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.apache.chemistry.opencmis.commons.impl.MimeTypes;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.cmis.CmisQuery.Comparison;
+import com.logicaldoc.cmis.CmisQuery.Contains;
+import com.logicaldoc.cmis.CmisQuery.InFolder;
+import com.logicaldoc.cmis.CmisQuery.Junction;
+import com.logicaldoc.cmis.CmisQuery.Not;
+import com.logicaldoc.cmis.CmisQuery.OrderBy;
+import com.logicaldoc.cmis.CmisQuery.Predicate;
+import com.logicaldoc.core.folder.FolderDAO;
+import com.logicaldoc.core.searchengine.FulltextSearchOptions;
+import com.logicaldoc.core.searchengine.Hit;
+import com.logicaldoc.core.searchengine.Search;
+import com.logicaldoc.core.security.User;
+import com.logicaldoc.util.sql.SqlUtil;
+
+/**
+ * Compiles a {@link CmisQuery} on <code>cmis:document</code> into a single
+ * parameterized SQL statement that selects the IDs of the matching documents.
+ * The properties are mapped on the columns of <code>ld_document</code>, the
+ * extended attributes and the tags are matched with subqueries on
+ * <code>ld_document_ext</code> and <code>ld_tag</code>. The
+ * <code>CONTAINS()</code> predicates are executed in the full-text index and
+ * joined by ID: the best {@link #MAX_CONTAINS_HITS} hits are taken, but a
+ * negated <code>CONTAINS()</code> takes all the hits so every matching
+ * document is excluded.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class CmisQueryCompiler {
+
+	private static final Logger log = LoggerFactory.getLogger(CmisQueryCompiler.class);
+
+	/**
+	 * Maximum number of hits taken from the full-text index for each
+	 * CONTAINS() that is not negated
+	 */
+	public static final int MAX_CONTAINS_HITS = 1000;
+
+	/**
+	 * Maximum number of elements in a SQL IN list, some databases do not
+	 * accept more
+	 */
+	private static final int MAX_IN_SIZE = 1000;
+
+	private static final Map<String, String> COLUMNS = new HashMap<String, String>();
+
+	static {
+		COLUMNS.put(PropertyIds.OBJECT_ID, "D.ld_id");
+		COLUMNS.put(PropertyIds.VERSION_SERIES_ID, "D.ld_id");
+		COLUMNS.put(PropertyIds.NAME, "D.ld_filename");
+		COLUMNS.put(PropertyIds.CONTENT_STREAM_FILE_NAME, "D.ld_filename");
+		COLUMNS.put(PropertyIds.CONTENT_STREAM_LENGTH, "D.ld_filesize");
+		COLUMNS.put(PropertyIds.CREATED_BY, "D.ld_creator");
+		COLUMNS.put(PropertyIds.CREATION_DATE, "D.ld_creation");
+		COLUMNS.put(PropertyIds.LAST_MODIFIED_BY, "D.ld_publisher");
+		COLUMNS.put(PropertyIds.LAST_MODIFICATION_DATE, "D.ld_date");
+		COLUMNS.put(PropertyIds.VERSION_LABEL, "D.ld_version");
+		COLUMNS.put(PropertyIds.CHECKIN_COMMENT, "D.ld_comment");
+		// The description of a document is its comment
+		COLUMNS.put(TypeManager.PROP_DESCRIPTION, "D.ld_comment");
+		COLUMNS.put(TypeManager.PROP_LANGUAGE, "D.ld_language");
+		COLUMNS.put(TypeManager.PROP_RATING, "D.ld_rating");
+		COLUMNS.put(TypeManager.PROP_WORKFLOW_STATUS, "D.ld_workflowstatus");
+		COLUMNS.put(TypeManager.PROP_CUSTOMID, "D.ld_customid");
+		COLUMNS.put(TypeManager.PROP_FILEVERSION, "D.ld_fileversion");
+		COLUMNS.put(TypeManager.PROP_VERSION, "D.ld_version");
+		COLUMNS.put(TypeManager.PROP_TYPE, "D.ld_type");
+		COLUMNS.put(TypeManager.PROP_TEMPLATE,
+				"(select T.ld_name from ld_template T where T.ld_deleted=0 and T.ld_id=D.ld_templateid)");
+	}
+
+	private CmisQuery query;
+
+	private User user;
+
+	private FolderDAO folderDao;
+
+	private List<Object> parameters = new ArrayList<Object>();
+
+	/**
+	 * Rank of each document found in the full-text index, ordered by score
+	 */
+	private Map<Long, Integer> ranking = null;
+
+	private String mimeTypeColumn = null;
+
+	public CmisQueryCompiler(CmisQuery query, User user, FolderDAO folderDao) {
+		this.query = query;
+		this.user = user;
+		this.folderDao = folderDao;
+	}
+
+	/**
+	 * Compiles the query
+	 *
+	 * @return The SQL statement that selects the IDs of the documents, use
+	 *         {@link #getParameters()} to get the values of the placeholders
+	 */
+	public String compile() {
+		if (!TypeManager.DOCUMENT_TYPE_ID.equals(query.getTypeId()))
+			throw new CmisInvalidArgumentException("Only " + TypeManager.DOCUMENT_TYPE_ID + " can be queried");
+
+		parameters.clear();
+		ranking = null;
+
+		StringBuffer sql = new StringBuffer("select D.ld_id from ld_document D where D.ld_deleted=0 and D.ld_tenantid=");
+		sql.append(Long.toString(user.getTenantId()));
+
+		if (!user.isMemberOf("admin")) {
+			Collection<Long> folderIds = folderDao.findFolderIdByUserId(user.getId(), null, true);
+			sql.append(" and ");
+			appendIn(sql, "D.ld_folderid", folderIds);
+
+			if (!user.isMemberOf("publisher")) {
+				Date now = new Date();
+				sql.append(" and D.ld_published=1 and (D.ld_startpublishing is null or D.ld_startpublishing <= ?)");
+				sql.append(" and (D.ld_stoppublishing is null or D.ld_stoppublishing > ?)");
+				parameters.add(now);
+				parameters.add(now);
+			}
+		}
+
+		if (query.getWhere() != null) {
+			sql.append(" and (");
+			appendPredicate(sql, query.getWhere(), false);
+			sql.append(")");
+		}
+
+		sql.append(" order by ");
+		for (OrderBy order : query.getOrderBy()) {
+			sql.append(column(order.getProperty()));
+			sql.append(order.isAscending() ? " asc, " : " desc, ");
+		}
+		sql.append("D.ld_id");
+
+		log.debug("Compiled CMIS query {}", sql);
+		return sql.toString();
+	}
+
+	/**
+	 * The values of the placeholders in the compiled statement
+	 */
+	public Object[] getParameters() {
+		return parameters.toArray(new Object[0]);
+	}
+
+	/**
+	 * The full-text rank of the documents matched by CONTAINS(), null if the
+	 * query does not contain a full-text predicate
+	 */
+	public Map<Long, Integer> getRanking() {
+		return ranking;
+	}
+
+	/**
+	 * Appends a predicate
+	 * 
+	 * @param sql The statement being compiled
+	 * @param predicate The predicate to append
+	 * @param negated True if the predicate is inside an odd number of NOT
+	 */
+	private void appendPredicate(StringBuffer sql, Predicate predicate, boolean negated) {
+		if (predicate instanceof Junction) {
+			Junction junction = (Junction) predicate;
+			Iterator<Predicate> iter = junction.getTerms().iterator();
+			while (iter.hasNext()) {
+				sql.append("(");
+				appendPredicate(sql, iter.next(), negated);
+				sql.append(")");
+				if (iter.hasNext())
+					sql.append(junction.isAnd() ? " and " : " or ");
+			}
+		} else if (predicate instanceof Not) {
+			sql.append("not (");
+			appendPredicate(sql, ((Not) predicate).getTerm(), !negated);
+			sql.append(")");
+		} else if (predicate instanceof Contains) {
+			appendIn(sql, "D.ld_id", fulltext(((Contains) predicate).getExpression(), negated));
+		} else if (predicate instanceof InFolder) {
+			InFolder inFolder = (InFolder) predicate;
+			long folderId = parseId(inFolder.getFolderId(), "fld.");
+			if (inFolder.isTree())
+				appendIn(sql, "D.ld_folderid", folderDao.findFolderIdInTree(folderId, false));
+			else
+				sql.append("D.ld_folderid=" + folderId);
+		} else {
+			appendComparison(sql, (Comparison) predicate);
+		}
+	}
+
+	private void appendComparison(StringBuffer sql, Comparison comparison) {
+		String property = comparison.getProperty();
+		if (TypeManager.PROP_TAGS.equals(property)) {
+			appendTags(sql, comparison);
+			return;
+		} else if (property.startsWith(TypeManager.PROP_EXT)) {
+			appendExtendedAttribute(sql, comparison);
+			return;
+		}
+
+		String column = column(property);
+		List<Object> values = comparison.getValues();
+		if (PropertyIds.OBJECT_ID.equals(property) || PropertyIds.VERSION_SERIES_ID.equals(property)) {
+			List<Object> ids = new ArrayList<Object>();
+			for (Object value : values)
+				ids.add(parseId(value.toString(), "doc."));
+			values = ids;
+		}
+
+		if (comparison.isNegated())
+			sql.append("not (");
+		appendCondition(sql, column, comparison.getOperator(), values);
+		if (comparison.isNegated())
+			sql.append(")");
+	}
+
+	/**
+	 * Appends the condition on a column, the eventual negation is handled by
+	 * the caller
+	 */
+	private void appendCondition(StringBuffer sql, String column, String operator, List<Object> values) {
+		if ("IS NULL".equals(operator)) {
+			sql.append(column + " is null");
+		} else if ("IN".equals(operator)) {
+			sql.append(column + " in (");
+			for (int i = 0; i < values.size(); i++) {
+				if (i > 0)
+					sql.append(",");
+				sql.append("?");
+				parameters.add(convert(values.get(i)));
+			}
+			sql.append(")");
+		} else if ("LIKE".equals(operator)) {
+			String pattern = values.get(0).toString();
+			sql.append(column + " like ?");
+			if (pattern.contains("\\") || pattern.contains("!")) {
+				// The backslash would need to be quoted differently in each
+				// database, so the escape char is changed
+				pattern = toLikeEscape(pattern);
+				sql.append(" escape '!'");
+			}
+			parameters.add(pattern);
+		} else {
+			sql.append(column + " " + operator + " ?");
+			parameters.add(convert(values.get(0)));
+		}
+	}
+
+	/**
+	 * Translates the escapes of the LIKE wildcards from the backslash to the
+	 * exclamation mark, escaping also the exclamation marks in the pattern
+	 */
+	static String toLikeEscape(String pattern) {
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < pattern.length(); i++) {
+			char ch = pattern.charAt(i);
+			if (ch == '\\' && i + 1 < pattern.length()
+					&& (pattern.charAt(i + 1) == '%' || pattern.charAt(i + 1) == '_')) {
+				sb.append('!');
+				sb.append(pattern.charAt(++i));
+			} else if (ch == '!') {
+				sb.append("!!");
+			} else
+				sb.append(ch);
+		}
+		return sb.toString();
+	}
+
+	private void appendTags(StringBuffer sql, Comparison comparison) {
+		// Here IS NULL means no tags at all
+		boolean isNull = "IS NULL".equals(comparison.getOperator());
+
+		if (comparison.isNegated() != isNull)
+			sql.append("not ");
+		sql.append("exists (select G.ld_docid from ld_tag G where G.ld_docid=D.ld_id");
+		if (!isNull) {
+			sql.append(" and ");
+			appendCondition(sql, "G.ld_tag", comparison.getOperator(), comparison.getValues());
+		}
+		sql.append(")");
+	}
+
+	private void appendExtendedAttribute(StringBuffer sql, Comparison comparison) {
+		String name = comparison.getProperty().substring(TypeManager.PROP_EXT.length());
+		boolean isNull = "IS NULL".equals(comparison.getOperator());
+
+		if (comparison.isNegated() != isNull)
+			sql.append("not ");
+		sql.append("exists (select E.ld_docid from ld_document_ext E where E.ld_docid=D.ld_id and E.ld_name=?");
+		parameters.add(name);
+		if (!isNull) {
+			sql.append(" and ");
+			appendCondition(sql, valueColumn(comparison.getValues().get(0)), comparison.getOperator(),
+					comparison.getValues());
+		}
+		sql.append(")");
+	}
+
+	/**
+	 * Chooses the value column of ld_document_ext depending on the literal
+	 */
+	private static String valueColumn(Object value) {
+		if (value instanceof Calendar)
+			return "E.ld_datevalue";
+		if (value instanceof BigDecimal)
+			return ((BigDecimal) value).scale() <= 0 ? "E.ld_intvalue" : "E.ld_doublevalue";
+		if (value instanceof Boolean)
+			return "E.ld_intvalue";
+		return "E.ld_stringvalue";
+	}
+
+	private String column(String property) {
+		if (PropertyIds.CONTENT_STREAM_MIME_TYPE.equals(property)) {
+			return mimeTypeColumn();
+		} else if (property.startsWith(TypeManager.PROP_EXT)) {
+			String name = property.substring(TypeManager.PROP_EXT.length()).replace("'", "''");
+			return "(select E.ld_stringvalue from ld_document_ext E where E.ld_docid=D.ld_id and E.ld_name='" + name
+					+ "')";
+		}
+
+		String column = COLUMNS.get(property);
+		if (column == null)
+			throw new CmisInvalidArgumentException("Property " + property + " cannot be queried");
+		return column;
+	}
+
+	/**
+	 * The MIME type is not stored, it is derived from the extension of the
+	 * file name that is saved in ld_type. So the MIME type is computed by a
+	 * CASE that maps each extension in use to its MIME type.
+	 */
+	@SuppressWarnings("unchecked")
+	private String mimeTypeColumn() {
+		if (mimeTypeColumn != null)
+			return mimeTypeColumn;
+
+		List<String> extensions = (List<String>) folderDao.queryForList(
+				"select distinct lower(ld_type) from ld_document where ld_deleted=0 and ld_tenantid="
+						+ user.getTenantId(), null, String.class, null);
+
+		// Group the extensions by MIME type
+		String defaultType = MimeTypes.getMIMEType("");
+		Map<String, List<String>> types = new TreeMap<String, List<String>>();
+		for (String extension : extensions) {
+			String type = MimeTypes.getMIMEType(extension);
+			if (StringUtils.isEmpty(extension) || type.equals(defaultType))
+				continue;
+			if (!types.containsKey(type))
+				types.put(type, new ArrayList<String>());
+			types.get(type).add(extension);
+		}
+
+		StringBuffer sb = new StringBuffer("(case when D.ld_filename is null then null");
+		for (Map.Entry<String, List<String>> entry : types.entrySet()) {
+			sb.append(" when lower(D.ld_type) in (");
+			Iterator<String> iter = entry.getValue().iterator();
+			while (iter.hasNext()) {
+				sb.append("'" + SqlUtil.doubleQuotes(iter.next()) + "'");
+				if (iter.hasNext())
+					sb.append(",");
+			}
+			sb.append(") then '" + SqlUtil.doubleQuotes(entry.getKey()) + "'");
+		}
+		sb.append(" else '" + SqlUtil.doubleQuotes(defaultType) + "' end)");
+
+		mimeTypeColumn = sb.toString();
+		return mimeTypeColumn;
+	}
+
+	private static Object convert(Object value) {
+		if (value instanceof Calendar)
+			return ((Calendar) value).getTime();
+		if (value instanceof Boolean)
+			return ((Boolean) value).booleanValue() ? 1 : 0;
+		if (value instanceof BigDecimal) {
+			BigDecimal number = (BigDecimal) value;
+			if (number.scale() <= 0)
+				return number.longValue();
+			return number.doubleValue();
+		}
+		return value;
+	}
+
+	private static long parseId(String id, String prefix) {
+		try {
+			if (id.startsWith(prefix))
+				id = id.substring(prefix.length());
+			return Long.parseLong(id);
+		} catch (NumberFormatException e) {
+			throw new CmisInvalidArgumentException("Invalid object id " + id);
+		}
+	}
+
+	/**
+	 * Executes a full-text search and collects the IDs of the hits
+	 * 
+	 * @param expression The full-text expression
+	 * @param negated True if the documents found will be excluded, in this
+	 *        case all the hits are needed and they do not give the ranking
+	 */
+	private Collection<Long> fulltext(String expression, boolean negated) {
+		FulltextSearchOptions opt = new FulltextSearchOptions();
+		opt.setMaxHits(negated ? 0 : MAX_CONTAINS_HITS);
+		opt.setUserId(user.getId());
+		opt.setExpressionLanguage(user.getLanguage());
+		opt.setExpression(expression);
+
+		List<Hit> hits = search(opt);
+
+		Map<Long, Integer> rank = new LinkedHashMap<Long, Integer>();
+		for (Hit hit : hits)
+			if (!rank.containsKey(hit.getId()))
+				rank.put(hit.getId(), rank.size());
+
+		if (ranking == null && !negated)
+			ranking = rank;
+		return rank.keySet();
+	}
+
+	/**
+	 * Executes a search in the full-text index
+	 */
+	protected List<Hit> search(FulltextSearchOptions opt) {
+		return Search.get(opt).search();
+	}
+
+	/**
+	 * Appends a <code>column in (...)</code> splitting the list when too long
+	 */
+	private static void appendIn(StringBuffer sql, String column, Collection<Long> ids) {
+		if (ids == null || ids.isEmpty()) {
+			sql.append("1=0");
+			return;
+		}
+
+		sql.append("(");
+		int i = 0;
+		for (Long id : ids) {
+			if (i % MAX_IN_SIZE == 0) {
+				if (i > 0)
+					sql.append(") or ");
+				sql.append(column + " in (");
+			} else {
+				sql.append(",");
+			}
+			sql.append(Long.toString(id));
+			i++;
+		}
+		sql.append("))");
+	}
+}
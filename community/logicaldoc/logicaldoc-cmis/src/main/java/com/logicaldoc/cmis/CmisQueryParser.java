@@ -0,0 +1,416 @@
+package com.logicaldoc.cmis;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+
+import com.logicaldoc.cmis.CmisQuery.Comparison;
+import com.logicaldoc.cmis.CmisQuery.Contains;
+import com.logicaldoc.cmis.CmisQuery.InFolder;
+import com.logicaldoc.cmis.CmisQuery.Junction;
+import com.logicaldoc.cmis.CmisQuery.Not;
+import com.logicaldoc.cmis.CmisQuery.OrderBy;
+import com.logicaldoc.cmis.CmisQuery.Predicate;
+
+/**
+ * Recursive descent parser of the CMIS-QL grammar subset used by the
+ * repository: a single type in the FROM clause (no joins), WHERE conditions
+ * made of comparisons, LIKE, IN, IS NULL, ANY, CONTAINS, IN_FOLDER and
+ * IN_TREE combined with AND, OR, NOT and parenthesis, and an ORDER BY clause.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class CmisQueryParser {
+
+	private static final int IDENTIFIER = 0;
+
+	private static final int STRING = 1;
+
+	private static final int NUMBER = 2;
+
+	private static final int SYMBOL = 3;
+
+	private static final int END = 4;
+
+	private static final List<String> COMPARISON_OPERATORS = Arrays.asList("=", "<>", "<", ">", "<=", ">=");
+
+	private List<Token> tokens = new ArrayList<Token>();
+
+	private int position = 0;
+
+	private String statement;
+
+	public CmisQueryParser(String statement) {
+		this.statement = statement;
+	}
+
+	/**
+	 * Parses the statement
+	 *
+	 * @return The parsed query
+	 *
+	 * @throws CmisInvalidArgumentException if the statement is not valid
+	 */
+	public CmisQuery parse() {
+		tokenize();
+		position = 0;
+
+		CmisQuery query = new CmisQuery();
+		expectKeyword("SELECT");
+		if (peekSymbol("*")) {
+			next();
+		} else {
+			do {
+				query.getSelect().add(property(next()));
+				if (isKeyword(peek(), "AS")) {
+					next();
+					next();
+				}
+			} while (acceptSymbol(","));
+		}
+
+		expectKeyword("FROM");
+		Token type = next();
+		if (type.type != IDENTIFIER)
+			throw error("type expected", type);
+		query.setTypeId(type.text);
+		if (peek().type == IDENTIFIER && !isKeyword(peek(), "WHERE") && !isKeyword(peek(), "ORDER")) {
+			// Alias
+			if (isKeyword(peek(), "AS"))
+				next();
+			next();
+		}
+		if (isKeyword(peek(), "JOIN") || isKeyword(peek(), "INNER") || isKeyword(peek(), "LEFT"))
+			throw new CmisInvalidArgumentException("Joins are not supported");
+
+		if (acceptKeyword("WHERE"))
+			query.setWhere(or());
+
+		if (acceptKeyword("ORDER")) {
+			expectKeyword("BY");
+			do {
+				String property = property(next());
+				boolean ascending = true;
+				if (acceptKeyword("DESC"))
+					ascending = false;
+				else
+					acceptKeyword("ASC");
+				query.getOrderBy().add(new OrderBy(property, ascending));
+			} while (acceptSymbol(","));
+		}
+
+		if (peek().type != END)
+			throw error("unexpected token", peek());
+		return query;
+	}
+
+	private Predicate or() {
+		Predicate first = and();
+		if (!isKeyword(peek(), "OR"))
+			return first;
+		Junction junction = new Junction(false);
+		junction.getTerms().add(first);
+		while (acceptKeyword("OR"))
+			junction.getTerms().add(and());
+		return junction;
+	}
+
+	private Predicate and() {
+		Predicate first = not();
+		if (!isKeyword(peek(), "AND"))
+			return first;
+		Junction junction = new Junction(true);
+		junction.getTerms().add(first);
+		while (acceptKeyword("AND"))
+			junction.getTerms().add(not());
+		return junction;
+	}
+
+	private Predicate not() {
+		if (acceptKeyword("NOT"))
+			return new Not(not());
+		return primary();
+	}
+
+	private Predicate primary() {
+		if (acceptSymbol("(")) {
+			Predicate predicate = or();
+			expectSymbol(")");
+			return predicate;
+		}
+
+		Token token = next();
+		if (isKeyword(token, "CONTAINS")) {
+			List<Token> args = arguments();
+			Token expression = args.get(args.size() - 1);
+			if (expression.type != STRING)
+				throw error("string expected", expression);
+			return new Contains(expression.text);
+		} else if (isKeyword(token, "IN_FOLDER") || isKeyword(token, "IN_TREE")) {
+			List<Token> args = arguments();
+			Token folderId = args.get(args.size() - 1);
+			if (folderId.type != STRING)
+				throw error("string expected", folderId);
+			return new InFolder(folderId.text, isKeyword(token, "IN_TREE"));
+		} else if (isKeyword(token, "ANY")) {
+			// ANY <property> [NOT] IN (<list>)
+			Comparison comparison = new Comparison(property(next()), "IN");
+			comparison.setAny(true);
+			comparison.setNegated(acceptKeyword("NOT"));
+			expectKeyword("IN");
+			comparison.getValues().addAll(list());
+			return comparison;
+		} else if (isLiteral(token)) {
+			// <literal> = ANY <property>
+			Object value = literal(token);
+			expectSymbol("=");
+			expectKeyword("ANY");
+			Comparison comparison = new Comparison(property(next()), "=");
+			comparison.setAny(true);
+			comparison.getValues().add(value);
+			return comparison;
+		}
+
+		String property = property(token);
+		Token operator = next();
+		if (operator.type == SYMBOL && COMPARISON_OPERATORS.contains(operator.text)) {
+			Comparison comparison = new Comparison(property, operator.text);
+			comparison.getValues().add(literal(next()));
+			return comparison;
+		}
+
+		boolean negated = false;
+		if (isKeyword(operator, "NOT")) {
+			negated = true;
+			operator = next();
+		}
+
+		Comparison comparison;
+		if (isKeyword(operator, "LIKE")) {
+			comparison = new Comparison(property, "LIKE");
+			Token pattern = next();
+			if (pattern.type != STRING)
+				throw error("string expected", pattern);
+			comparison.getValues().add(pattern.text);
+		} else if (isKeyword(operator, "IN")) {
+			comparison = new Comparison(property, "IN");
+			comparison.getValues().addAll(list());
+		} else if (isKeyword(operator, "IS") && !negated) {
+			comparison = new Comparison(property, "IS NULL");
+			negated = acceptKeyword("NOT");
+			expectKeyword("NULL");
+		} else {
+			throw error("operator expected", operator);
+		}
+		comparison.setNegated(negated);
+		return comparison;
+	}
+
+	/**
+	 * Parses the arguments of a function like <code>IN_TREE(d, 'id')</code>
+	 */
+	private List<Token> arguments() {
+		List<Token> args = new ArrayList<Token>();
+		expectSymbol("(");
+		do {
+			args.add(next());
+		} while (acceptSymbol(","));
+		expectSymbol(")");
+		return args;
+	}
+
+	private List<Object> list() {
+		List<Object> values = new ArrayList<Object>();
+		expectSymbol("(");
+		do {
+			values.add(literal(next()));
+		} while (acceptSymbol(","));
+		expectSymbol(")");
+		return values;
+	}
+
+	/**
+	 * Checks if a token is the beginning of a literal, also the keywords
+	 * <code>TRUE</code>, <code>FALSE</code> and <code>TIMESTAMP</code> are
+	 * literals
+	 */
+	private boolean isLiteral(Token token) {
+		return token.type != IDENTIFIER || isKeyword(token, "TRUE") || isKeyword(token, "FALSE")
+				|| isKeyword(token, "TIMESTAMP");
+	}
+
+	/**
+	 * Converts a literal token in a String, BigDecimal, Boolean or Calendar
+	 */
+	private Object literal(Token token) {
+		if (token.type == STRING)
+			return token.text;
+		if (token.type == NUMBER)
+			return new BigDecimal(token.text);
+		if (isKeyword(token, "TRUE"))
+			return Boolean.TRUE;
+		if (isKeyword(token, "FALSE"))
+			return Boolean.FALSE;
+		if (isKeyword(token, "TIMESTAMP")) {
+			Token value = next();
+			if (value.type != STRING)
+				throw error("string expected", value);
+			try {
+				return DatatypeConverter.parseDateTime(value.text);
+			} catch (IllegalArgumentException e) {
+				throw error("invalid timestamp", value);
+			}
+		}
+		throw error("literal expected", token);
+	}
+
+	/**
+	 * Gets the property identifier removing the eventual qualifier
+	 */
+	private String property(Token token) {
+		if (token.type != IDENTIFIER)
+			throw error("property expected", token);
+		String property = token.text;
+		int dot = property.lastIndexOf('.');
+		if (dot >= 0)
+			property = property.substring(dot + 1);
+		return property;
+	}
+
+	private Token peek() {
+		return tokens.get(position);
+	}
+
+	private Token next() {
+		Token token = tokens.get(position);
+		if (token.type != END)
+			position++;
+		return token;
+	}
+
+	private boolean isKeyword(Token token, String keyword) {
+		return token.type == IDENTIFIER && token.text.equalsIgnoreCase(keyword);
+	}
+
+	private boolean acceptKeyword(String keyword) {
+		if (isKeyword(peek(), keyword)) {
+			next();
+			return true;
+		}
+		return false;
+	}
+
+	private void expectKeyword(String keyword) {
+		if (!acceptKeyword(keyword))
+			throw error(keyword + " expected", peek());
+	}
+
+	private boolean peekSymbol(String symbol) {
+		return peek().type == SYMBOL && peek().text.equals(symbol);
+	}
+
+	private boolean acceptSymbol(String symbol) {
+		if (peekSymbol(symbol)) {
+			next();
+			return true;
+		}
+		return false;
+	}
+
+	private void expectSymbol(String symbol) {
+		if (!acceptSymbol(symbol))
+			throw error("'" + symbol + "' expected", peek());
+	}
+
+	private CmisInvalidArgumentException error(String message, Token token) {
+		return new CmisInvalidArgumentException("Invalid query, " + message + " at position " + token.offset + ": "
+				+ statement);
+	}
+
+	private void tokenize() {
+		tokens.clear();
+		int i = 0;
+		int len = statement.length();
+		while (i < len) {
+			char c = statement.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '\'') {
+				// String literal, the quote is escaped doubling it or with a
+				// backslash
+				StringBuilder sb = new StringBuilder();
+				int start = i++;
+				boolean closed = false;
+				while (i < len) {
+					char ch = statement.charAt(i++);
+					if (ch == '\\' && i < len) {
+						char escaped = statement.charAt(i++);
+						// Keep the escapes of the LIKE wildcards
+						if (escaped == '%' || escaped == '_')
+							sb.append('\\');
+						sb.append(escaped);
+					} else if (ch == '\'') {
+						if (i < len && statement.charAt(i) == '\'') {
+							sb.append('\'');
+							i++;
+						} else {
+							closed = true;
+							break;
+						}
+					} else {
+						sb.append(ch);
+					}
+				}
+				if (!closed)
+					throw new CmisInvalidArgumentException("Invalid query, unterminated string at position " + start
+							+ ": " + statement);
+				tokens.add(new Token(STRING, sb.toString(), start));
+			} else if (Character.isDigit(c)
+					|| ((c == '-' || c == '+' || c == '.') && i + 1 < len && Character.isDigit(statement.charAt(i + 1)))) {
+				int start = i++;
+				while (i < len
+						&& (Character.isDigit(statement.charAt(i)) || "eE.".indexOf(statement.charAt(i)) >= 0 || ((statement
+								.charAt(i) == '-' || statement.charAt(i) == '+') && "eE".indexOf(statement.charAt(i - 1)) >= 0)))
+					i++;
+				tokens.add(new Token(NUMBER, statement.substring(start, i), start));
+			} else if (Character.isLetter(c) || c == '_') {
+				int start = i++;
+				while (i < len
+						&& (Character.isLetterOrDigit(statement.charAt(i)) || "_:.-".indexOf(statement.charAt(i)) >= 0))
+					i++;
+				tokens.add(new Token(IDENTIFIER, statement.substring(start, i), start));
+			} else if (c == '<' || c == '>') {
+				int start = i++;
+				if (i < len && (statement.charAt(i) == '=' || (c == '<' && statement.charAt(i) == '>')))
+					i++;
+				tokens.add(new Token(SYMBOL, statement.substring(start, i), start));
+			} else if ("=(),*".indexOf(c) >= 0) {
+				tokens.add(new Token(SYMBOL, Character.toString(c), i++));
+			} else {
+				throw new CmisInvalidArgumentException("Invalid query, unexpected character '" + c + "' at position "
+						+ i + ": " + statement);
+			}
+		}
+		tokens.add(new Token(END, "", len));
+	}
+
+	private static class Token {
+		private int type;
+
+		private String text;
+
+		private int offset;
+
+		private Token(int type, String text, int offset) {
+			this.type = type;
+			this.text = text;
+			this.offset = offset;
+		}
+	}
+}
@@ -15,6 +15,7 @@ import org.apache.chemistry.opencmis.commons.data.ContentStream;
 import org.apache.chemistry.opencmis.commons.data.ExtensionsData;
 import org.apache.chemistry.opencmis.commons.data.FailedToDeleteData;
 import org.apache.chemistry.opencmis.commons.data.ObjectData;
+import org.apache.chemistry.opencmis.commons.data.ObjectInFolderContainer;
 import org.apache.chemistry.opencmis.commons.data.ObjectInFolderList;
 import org.apache.chemistry.opencmis.commons.data.ObjectList;
 import org.apache.chemistry.opencmis.commons.data.ObjectParentData;
@@ -205,6 +206,24 @@ public class LDCmisService extends AbstractCmisService {
 				includePathSegment, maxItems, skipCount, this);
 	}
 
+	@Override
+	public List<ObjectInFolderContainer> getDescendants(String repositoryId, String folderId, BigInteger depth,
+			String filter, Boolean includeAllowableActions, IncludeRelationships includeRelationships,
+			String renditionFilter, Boolean includePathSegment, ExtensionsData extension) {
+		validateSession();
+		return getRepository().getDescendants(getCallContext(), folderId, depth, filter, includeAllowableActions,
+				includePathSegment, this, false);
+	}
+
+	@Override
+	public List<ObjectInFolderContainer> getFolderTree(String repositoryId, String folderId, BigInteger depth,
+			String filter, Boolean includeAllowableActions, IncludeRelationships includeRelationships,
+			String renditionFilter, Boolean includePathSegment, ExtensionsData extension) {
+		validateSession();
+		return getRepository().getDescendants(getCallContext(), folderId, depth, filter, includeAllowableActions,
+				includePathSegment, this, true);
+	}
+
 	@Override
 	public List<ObjectParentData> getObjectParents(String repositoryId, String objectId, String filter,
 			Boolean includeAllowableActions, IncludeRelationships includeRelationships, String renditionFilter,
@@ -345,7 +364,8 @@ public class LDCmisService extends AbstractCmisService {
 			Boolean includeAllowableActions, IncludeRelationships includeRelationships, String renditionFilter,
 			BigInteger maxItems, BigInteger skipCount, ExtensionsData extension) {
 		validateSession();
-		return getRepository().query(statement, maxItems != null ? maxItems.intValue() : null);
+		return getRepository().query(statement, maxItems != null ? maxItems.intValue() : null,
+				skipCount != null ? skipCount.intValue() : null);
 	}
 
 	@Override
@@ -10,6 +10,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -20,8 +21,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeSet;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
 
 import org.apache.chemistry.opencmis.client.api.ObjectType;
 import org.apache.chemistry.opencmis.commons.PropertyIds;
@@ -33,15 +37,22 @@ import org.apache.chemistry.opencmis.commons.data.ContentStream;
 import org.apache.chemistry.opencmis.commons.data.ExtensionsData;
 import org.apache.chemistry.opencmis.commons.data.FailedToDeleteData;
 import org.apache.chemistry.opencmis.commons.data.ObjectData;
+import org.apache.chemistry.opencmis.commons.data.ObjectInFolderContainer;
 import org.apache.chemistry.opencmis.commons.data.ObjectInFolderData;
 import org.apache.chemistry.opencmis.commons.data.ObjectInFolderList;
 import org.apache.chemistry.opencmis.commons.data.ObjectList;
 import org.apache.chemistry.opencmis.commons.data.ObjectParentData;
 import org.apache.chemistry.opencmis.commons.data.PermissionMapping;
 import org.apache.chemistry.opencmis.commons.data.Properties;
+import org.apache.chemistry.opencmis.commons.data.PropertyBoolean;
 import org.apache.chemistry.opencmis.commons.data.PropertyData;
+import org.apache.chemistry.opencmis.commons.data.PropertyDateTime;
+import org.apache.chemistry.opencmis.commons.data.PropertyDecimal;
+import org.apache.chemistry.opencmis.commons.data.PropertyHtml;
 import org.apache.chemistry.opencmis.commons.data.PropertyId;
+import org.apache.chemistry.opencmis.commons.data.PropertyInteger;
 import org.apache.chemistry.opencmis.commons.data.PropertyString;
+import org.apache.chemistry.opencmis.commons.data.PropertyUri;
 import org.apache.chemistry.opencmis.commons.data.RepositoryInfo;
 import org.apache.chemistry.opencmis.commons.definitions.PermissionDefinition;
 import org.apache.chemistry.opencmis.commons.definitions.PropertyDefinition;
@@ -72,6 +83,7 @@ import org.apache.chemistry.opencmis.commons.exceptions.CmisPermissionDeniedExce
 import org.apache.chemistry.opencmis.commons.exceptions.CmisRuntimeException;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisStorageException;
 import org.apache.chemistry.opencmis.commons.impl.MimeTypes;
+import org.apache.chemistry.opencmis.commons.impl.dataobjects.AbstractPropertyData;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.AccessControlEntryImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.AccessControlListImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.AccessControlPrincipalDataImpl;
@@ -82,11 +94,13 @@ import org.apache.chemistry.opencmis.commons.impl.dataobjects.CmisExtensionEleme
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.ContentStreamImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.FailedToDeleteDataImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.ObjectDataImpl;
+import org.apache.chemistry.opencmis.commons.impl.dataobjects.ObjectInFolderContainerImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.ObjectInFolderDataImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.ObjectInFolderListImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.ObjectListImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.ObjectParentDataImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.PermissionDefinitionDataImpl;
+import org.apache.chemistry.opencmis.commons.impl.dataobjects.PartialContentStreamImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.PermissionMappingDataImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.PropertiesImpl;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.PropertyBooleanImpl;
@@ -128,9 +142,7 @@ import com.logicaldoc.core.i18n.LanguageManager;
 import com.logicaldoc.core.metadata.Attribute;
 import com.logicaldoc.core.metadata.Template;
 import com.logicaldoc.core.metadata.TemplateDAO;
-import com.logicaldoc.core.searchengine.FulltextSearchOptions;
 import com.logicaldoc.core.searchengine.Hit;
-import com.logicaldoc.core.searchengine.Search;
 import com.logicaldoc.core.security.Permission;
 import com.logicaldoc.core.security.Session;
 import com.logicaldoc.core.security.SessionManager;
@@ -169,6 +181,8 @@ public class LDRepository {
 
 	private static final int DEFAULT_QUERY_SIZE = 40;
 
+	private static final int DESCENDANTS_PAGE_SIZE = 500;
+
 	/** Repository id */
 	private final String id;
 
@@ -1044,47 +1058,49 @@ public class LDRepository {
 		validatePermission(objectId, context, Permission.DOWNLOAD);
 
 		try {
-			if ((offset != null) || (length != null))
-				throw new CmisInvalidArgumentException("Offset and Length are not supported!");
-
 			AbstractDocument doc = getDocument(objectId);
 
-			InputStream stream = null;
+			long start = (offset == null ? 0L : offset.longValue());
+			if (start < 0)
+				throw new CmisInvalidArgumentException("Invalid offset " + offset);
+			long len = (length == null ? -1L : length.longValue());
+			if (len < 0)
+				len = -1L;
+			boolean partial = start > 0 || len >= 0;
+
 			Storer storer = (Storer) Context.get().getBean(Storer.class);
-			InputStream is = null;
+			long docId;
+			String resource;
 			if (doc instanceof Document) {
-				is = storer.getStream(doc.getId(), storer.getResourceName((Document) doc, null, null));
+				docId = doc.getId();
+				resource = storer.getResourceName((Document) doc, null, null);
 			} else {
 				Version v = (Version) doc;
-				is = storer.getStream(v.getDocId(), storer.getResourceName(v.getDocId(), v.getFileVersion(), null));
+				docId = v.getDocId();
+				resource = storer.getResourceName(v.getDocId(), v.getFileVersion(), null);
 			}
-			stream = new BufferedInputStream(is, BUFFER_SIZE);
 
-			// Create the document history event
-			History transaction = new History();
-			transaction.setSessionId(sid);
-			transaction.setEvent(DocumentEvent.DOWNLOADED.toString());
-			transaction.setComment("");
-			transaction.setUser(getSessionUser());
-			transaction.setDocId(doc.getId());
-			transaction.setVersion(doc.getVersion());
-			transaction.setFilename(doc.getFileName());
-			transaction.setNotified(0);
+			InputStream is = partial ? storer.getStream(docId, resource, start, len) : storer.getStream(docId,
+					resource);
+			InputStream stream = new BufferedInputStream(is, BUFFER_SIZE);
 
-			if (doc instanceof Document) {
-				transaction.setFolderId(doc.getFolder().getId());
-				transaction.setPath(folderDao.computePathExtended(doc.getFolder().getId()));
-			} else {
-				transaction.setFolderId(((Version) doc).getFolderId());
-				transaction.setPath(folderDao.computePathExtended(((Version) doc).getFolderId()));
+			if (partial) {
+				/*
+				 * Trace only the download of the first fragment, the client is
+				 * just resuming or seeking inside the file
+				 */
+				PartialContentStreamImpl result = new PartialContentStreamImpl();
+				result.setFileName(doc.getFileName());
+				result.setMimeType(MimeTypes.getMIMEType(doc.getFileName()));
+				long available = Math.max(0, doc.getFileSize() - start);
+				result.setLength(BigInteger.valueOf(len < 0 ? available : Math.min(len, available)));
+				result.setStream(stream);
+				if (start == 0)
+					saveDownloadHistory(doc);
+				return result;
 			}
 
-			try {
-				HistoryDAO historyDAO = (HistoryDAO) Context.get().getBean(HistoryDAO.class);
-				historyDAO.store(transaction);
-			} catch (Throwable t) {
-				log.warn(t.getMessage(), t);
-			}
+			saveDownloadHistory(doc);
 
 			// compile data
 			ContentStreamImpl result = new ContentStreamImpl();
@@ -1099,6 +1115,37 @@ public class LDRepository {
 		}
 	}
 
+	/**
+	 * Saves the history of a document's download
+	 */
+	private void saveDownloadHistory(AbstractDocument doc) {
+		// Create the document history event
+		History transaction = new History();
+		transaction.setSessionId(sid);
+		transaction.setEvent(DocumentEvent.DOWNLOADED.toString());
+		transaction.setComment("");
+		transaction.setUser(getSessionUser());
+		transaction.setDocId(doc.getId());
+		transaction.setVersion(doc.getVersion());
+		transaction.setFilename(doc.getFileName());
+		transaction.setNotified(0);
+
+		if (doc instanceof Document) {
+			transaction.setFolderId(doc.getFolder().getId());
+			transaction.setPath(folderDao.computePathExtended(doc.getFolder().getId()));
+		} else {
+			transaction.setFolderId(((Version) doc).getFolderId());
+			transaction.setPath(folderDao.computePathExtended(((Version) doc).getFolderId()));
+		}
+
+		try {
+			HistoryDAO historyDAO = (HistoryDAO) Context.get().getBean(HistoryDAO.class);
+			historyDAO.store(transaction);
+		} catch (Throwable t) {
+			log.warn(t.getMessage(), t);
+		}
+	}
+
 	// private byte[] getBytes(InputStream is) throws IOException {
 	//
 	// int len;
@@ -1157,6 +1204,8 @@ public class LDRepository {
 				skip = 0;
 			}
 
+			int offset = skip;
+
 			int max = (maxItems == null ? Integer.MAX_VALUE : maxItems.intValue());
 			if (max < 0) {
 				max = Integer.MAX_VALUE;
@@ -1174,7 +1223,7 @@ public class LDRepository {
 			ObjectInFolderListImpl result = new ObjectInFolderListImpl();
 			result.setObjects(new ArrayList<ObjectInFolderData>());
 			result.setHasMoreItems(false);
-			int count = 0;
+			long count = 0;
 
 			User user = userDao.findByUsername(context.getUsername());
 			long userId = user.getId();
@@ -1206,38 +1255,138 @@ public class LDRepository {
 				result.getObjects().add(objectInFolder);
 			}
 
-			// iterate through children documents
-			for (Document child : documentDao.findByFolder(folder.getId(), null)) {
-				count++;
+			/*
+			 * The documents may be a lot, so we let the database skip and
+			 * limit them
+			 */
+			long docsCount = documentDao.countByFolder(folder.getId());
+			count += docsCount;
+
+			int docsMax = max - result.getObjects().size();
+			if (docsMax > 0 && skip < docsCount) {
+				List<Document> docs = documentDao.findByFolder(folder.getId(), skip,
+						docsMax == Integer.MAX_VALUE ? null : docsMax);
+				for (Document child : docs) {
+					// build and add child object
+					ObjectInFolderDataImpl objectInFolder = new ObjectInFolderDataImpl();
+					objectInFolder.setObject(compileObjectType(context, child, filterCollection, iaa, false,
+							objectInfos));
+					if (ips) {
+						objectInFolder.setPathSegment(child.getFileName());
+					}
 
-				if (skip > 0) {
-					skip--;
-					continue;
+					result.getObjects().add(objectInFolder);
 				}
+			}
 
-				if (result.getObjects().size() >= max) {
-					result.setHasMoreItems(true);
-					continue;
-				}
+			if (count > offset + result.getObjects().size())
+				result.setHasMoreItems(true);
 
-				// build and add child object
-				ObjectInFolderDataImpl objectInFolder = new ObjectInFolderDataImpl();
-				objectInFolder.setObject(compileObjectType(context, child, filterCollection, iaa, false, objectInfos));
-				if (ips) {
-					objectInFolder.setPathSegment(child.getFileName());
-				}
+			result.setNumItems(BigInteger.valueOf(count));
 
-				result.getObjects().add(objectInFolder);
+			return result;
+		} catch (Throwable t) {
+			return (ObjectInFolderList) catchError(t);
+		}
+	}
+
+	/**
+	 * CMIS getDescendants and getFolderTree.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ObjectInFolderContainer> getDescendants(CallContext context, String folderId, BigInteger depth,
+			String filter, Boolean includeAllowableActions, Boolean includePathSegment, ObjectInfoHandler objectInfos,
+			boolean foldersOnly) {
+		debug("getDescendants " + folderId + " depth:" + depth);
+
+		validatePermission(folderId, context, null);
+
+		try {
+			// check depth
+			int d = (depth == null ? 2 : depth.intValue());
+			if (d == 0) {
+				throw new CmisInvalidArgumentException("Depth must not be 0!");
+			}
+			if (d < -1) {
+				d = -1;
 			}
 
-			result.setNumItems(BigInteger.valueOf(count));
+			// split filter
+			Set<String> filterCollection = splitFilter(filter);
+
+			// set defaults if values not set
+			boolean iaa = (includeAllowableActions == null ? false : includeAllowableActions.booleanValue());
+			boolean ips = (includePathSegment == null ? false : includePathSegment.booleanValue());
+
+			Folder folder = getFolder(folderId);
 
+			// set object info of the the folder
+			if (context.isObjectInfoRequired()) {
+				compileObjectType(context, folder, null, false, false, objectInfos);
+			}
+
+			User user = userDao.findByUsername(context.getUsername());
+
+			List<ObjectInFolderContainer> result = new ArrayList<ObjectInFolderContainer>();
+			gatherDescendants(context, folder, user.getId(), result, foldersOnly, d, filterCollection, iaa, ips,
+					objectInfos);
 			return result;
 		} catch (Throwable t) {
-			return (ObjectInFolderList) catchError(t);
+			return (List<ObjectInFolderContainer>) catchError(t);
 		}
 	}
 
+	/**
+	 * Gathers the descendants of a folder up to the given depth, documents are
+	 * read in pages to keep the memory bounded.
+	 */
+	private void gatherDescendants(CallContext context, Folder folder, long userId,
+			List<ObjectInFolderContainer> list, boolean foldersOnly, int depth, Set<String> filter, boolean iaa,
+			boolean ips, ObjectInfoHandler objectInfos) {
+		for (Folder child : folderDao.findChildren(folder.getId(), userId)) {
+			if (child.getHidden() == 1)
+				continue;
+
+			ObjectInFolderDataImpl objectInFolder = new ObjectInFolderDataImpl();
+			objectInFolder.setObject(compileObjectType(context, child, filter, iaa, false, objectInfos));
+			if (ips) {
+				objectInFolder.setPathSegment(child.getName());
+			}
+
+			ObjectInFolderContainerImpl container = new ObjectInFolderContainerImpl();
+			container.setObject(objectInFolder);
+
+			if (depth != 1) {
+				container.setChildren(new ArrayList<ObjectInFolderContainer>());
+				gatherDescendants(context, child, userId, container.getChildren(), foldersOnly, depth - 1, filter,
+						iaa, ips, objectInfos);
+			}
+
+			list.add(container);
+		}
+
+		if (foldersOnly)
+			return;
+
+		int first = 0;
+		List<Document> page = null;
+		do {
+			page = documentDao.findByFolder(folder.getId(), first, DESCENDANTS_PAGE_SIZE);
+			for (Document child : page) {
+				ObjectInFolderDataImpl objectInFolder = new ObjectInFolderDataImpl();
+				objectInFolder.setObject(compileObjectType(context, child, filter, iaa, false, objectInfos));
+				if (ips) {
+					objectInFolder.setPathSegment(child.getFileName());
+				}
+
+				ObjectInFolderContainerImpl container = new ObjectInFolderContainerImpl();
+				container.setObject(objectInFolder);
+				list.add(container);
+			}
+			first += page.size();
+		} while (page.size() == DESCENDANTS_PAGE_SIZE);
+	}
+
 	private Folder getFolder(String folderId) {
 		PersistentObject object = getObject(folderId);
 		if (!(object instanceof Folder)) {
@@ -1322,167 +1471,83 @@ public class LDRepository {
 		}
 	}
 
-	public ObjectList query(String statement, Integer maxItems) {
-
+	/**
+	 * Executes a CMIS-QL query. The statement is parsed and compiled into a
+	 * single SQL query on the documents, that is paged by the database, while
+	 * the CONTAINS() predicates are resolved in the full-text index.
+	 * 
+	 * @param statement The CMIS-QL statement
+	 * @param maxItems Maximum number of items to return
+	 * @param skipCount Number of items to skip
+	 * 
+	 * @return The page of results
+	 */
+	public ObjectList query(String statement, Integer maxItems, Integer skipCount) {
 		int max = DEFAULT_QUERY_SIZE;
 		if (maxItems != null)
 			max = maxItems;
+		int skip = skipCount != null ? Math.max(0, skipCount) : 0;
 
-		// As expression we will use the WHERE clause as is
-		String expr = StringUtils.removeStartIgnoreCase(statement, "where");
-		String where = expr;
-		if (where.toLowerCase().contains("where"))
-			where = where.substring(where.toLowerCase().indexOf("where") + 6).trim();
-
-		/**
-		 * Try to detect if the request comes from LogicalDOC Mobile
-		 */
-		// Pattern 1) [search by filename]
-		// statement.toString() ->
-		// SELECT
-		// cmis:objectId,cmis:name,cmis:lastModifiedBy,cmis:lastModificationDate,cmis:baseTypeId,cmis:contentStreamLength,cmis:versionSeriesId,cmis:contentStreamMimeType
-		// FROM cmis:document WHERE cmis:name LIKE '%flexspaces%'
-		//
-		// Pattern 2) [full-text search standard]
-		// statement.toString() ->
-		// SELECT
-		// cmis:objectId,cmis:name,cmis:lastModifiedBy,cmis:lastModificationDate,cmis:baseTypeId,cmis:contentStreamLength,cmis:versionSeriesId,cmis:contentStreamMimeType
-		// FROM cmis:document WHERE CONTAINS('flexspaces')
-		//
-		// Pattern 3) [full-text search on a specific attribute]
-		// statement.toString() ->
-		// SELECT
-		// cmis:objectId,cmis:name,cmis:lastModifiedBy,cmis:lastModificationDate,cmis:baseTypeId,cmis:contentStreamLength,cmis:versionSeriesId,cmis:contentStreamMimeType
-		// FROM cmis:document WHERE ldoc:sourceId = '12345'
-
-		boolean fileNameSearch = where.toLowerCase().contains("cmis:name");
-
-		Long parentFolderID = null;
-
-		// Search in Tree
-		if (statement.toLowerCase().contains("in_tree")) {
-			String folderId = StringUtils.substringBetween(statement, "('fld.", "')");
-			parentFolderID = Long.parseLong(folderId);
-		}
-
-		// Empty list of ObjectData
-		List<ObjectData> list = new ArrayList<ObjectData>();
-		boolean hasMoreItems = false;
+		CmisQuery cmisQuery = new CmisQueryParser(statement).parse();
+		CmisQueryCompiler compiler = new CmisQueryCompiler(cmisQuery, getSessionUser(), folderDao);
+		String sql = compiler.compile();
 
-		// Create the filter
+		// The select list is used as filter of the properties
 		Set<String> filter = null;
-		try {
-			// Parse the select list and compile a filter
-			String query = statement.toString();
-			if (query.toLowerCase().startsWith("select")) {
-				query = query.substring(6).trim();
-				int fromIndex = query.toLowerCase().indexOf("from", 0);
-				if (fromIndex > 0) {
-					query = query.substring(0, fromIndex).trim();
-				}
-				if (!StringUtils.isEmpty(query) && !"*".equals(query)) {
-					filter = new HashSet<String>();
-					StringTokenizer st = new StringTokenizer(query, ",", false);
-					while (st.hasMoreTokens())
-						filter.add(st.nextToken().trim());
-				}
-			}
-		} catch (Throwable e1) {
-			log.error("CMIS Exception creating filter", e1);
-		}
-
-		// Performs Full-text search
-		if (!fileNameSearch) {
-			expr = StringUtils.substringBetween(statement, "'%", "%'");
-			if (StringUtils.isEmpty(expr))
-				expr = StringUtils.substringBetween(statement, "('", "')");
-			if (StringUtils.isEmpty(expr))
-				expr = StringUtils.substringBetween(statement, "'", "'");
-
-			// Prepare the search options
-			FulltextSearchOptions opt = new FulltextSearchOptions();
-			opt.setMaxHits(max);
-
-			User user = getSessionUser();
-			opt.setUserId(user.getId());
-			opt.setExpressionLanguage(user.getLanguage());
-
-			// Check to search in Tree
-			if (parentFolderID != null) {
-				opt.setFolderId(parentFolderID);
-				opt.setSearchInSubPath(true);
-			}
-
-			opt.setExpression(expr);
-
-			// Now detect if the search must be applied to specific fields
-			if (where.contains("cmis:") || where.contains("ldoc:")) {
-				List<String> fields = new ArrayList<String>();
-				Pattern p = Pattern.compile("[(cmis),(ldoc)]+:\\w+");
-				Matcher m = p.matcher(where);
-				while (m.find()) {
-					String field = m.group();
-					if (field.startsWith("ldoc:"))
-						field = field.substring("ldoc:".length());
-					fields.add(field);
+		if (!cmisQuery.getSelect().isEmpty())
+			filter = new HashSet<String>(cmisQuery.getSelect());
+
+		/*
+		 * Without an explicit ORDER BY, a full-text query returns the documents
+		 * in order of relevance, so all the hits must be read before paging.
+		 * Otherwise the database sorts and we just read one more row to know if
+		 * there are more items.
+		 */
+		final Map<Long, Integer> ranking = compiler.getRanking();
+		boolean rankOrder = ranking != null && cmisQuery.getOrderBy().isEmpty();
+		int rows = skip + max + 1;
+		if (rankOrder)
+			rows = Math.max(rows, CmisQueryCompiler.MAX_CONTAINS_HITS);
+
+		@SuppressWarnings("unchecked")
+		List<Long> ids = (List<Long>) documentDao.queryForList(sql, compiler.getParameters(), Long.class, rows);
+		if (rankOrder)
+			Collections.sort(ids, new Comparator<Long>() {
+				@Override
+				public int compare(Long id1, Long id2) {
+					Integer rank1 = ranking.containsKey(id1) ? ranking.get(id1) : Integer.MAX_VALUE;
+					Integer rank2 = ranking.containsKey(id2) ? ranking.get(id2) : Integer.MAX_VALUE;
+					return rank1.compareTo(rank2);
 				}
+			});
 
-				opt.setFields(fields.toArray(new String[0]));
-			}
-
-			// Execute the search
-			Search search = Search.get(opt);
-			List<Hit> hits = search.search();
+		// Load all the documents of the page with a single query
+		List<Long> pageIds = new ArrayList<Long>();
+		for (int i = skip; i < ids.size() && i < skip + max; i++)
+			pageIds.add(ids.get(i));
+		Map<Long, Document> docs = new HashMap<Long, Document>();
+		if (!pageIds.isEmpty())
+			for (Document doc : documentDao.findByIds(pageIds.toArray(new Long[0]), null))
+				docs.put(doc.getId(), doc);
 
-			// Populate CMIS data structure
+		List<ObjectData> list = new ArrayList<ObjectData>();
+		for (Long id : pageIds) {
+			Document doc = docs.get(id);
+			if (doc == null)
+				continue;
 			try {
-				// Iterate through the list of results
-				for (Hit hit : hits) {
-					// filtro i risultati (lasciando solo le colonne richieste)
-					ObjectData result = compileObjectType(null, hit, filter, false, false, null);
-					list.add(result);
-				}
+				list.add(compileObjectType(null, doc, filter, false, false, null));
 			} catch (Throwable e) {
 				log.error("CMIS Exception populating data structure", e);
 			}
-			// hasMoreItems = search.getEstimatedHitsNumber() > list.size();
-			hasMoreItems = search.getEstimatedHitsNumber() > max; // THIS Seems
-																	// more
-																	// correct
-		} else {
-			User user = getSessionUser();
-
-			expr = StringUtils.substringBetween(statement, "'%", "%'");
-			// Remove all the '*' from start and end
-			expr = StringUtils.strip(expr, "*");
-
-			String filename = "%" + expr + "%";
-
-			DocumentDAO docDao = (DocumentDAO) Context.get().getBean(DocumentDAO.class);
-			List<Document> docs = docDao.findByFileNameAndParentFolderId(null, filename, null,
-					getSessionUser().getId(), max);
-
-			for (int i = 0; i < docs.size(); i++) {
-				// Check permissions on the documents found
-				try {
-					checkReadEnable(user, docs.get(i).getFolder().getId());
-					checkPublished(user, docs.get(i));
-				} catch (Exception e) {
-					continue;
-				}
-				docDao.initialize(docs.get(i));
-
-				// filtro i risultati (lasciando solo le colonne richieste)
-				ObjectData result = compileObjectType(null, docs.get(i), filter, false, false, null);
-
-				list.add(result);
-			}
 		}
 
 		ObjectListImpl objList = new ObjectListImpl();
 		objList.setObjects(list);
-		objList.setNumItems(BigInteger.valueOf(list.size()));
+		boolean hasMoreItems = ids.size() > skip + max;
 		objList.setHasMoreItems(hasMoreItems);
+		if (!hasMoreItems)
+			objList.setNumItems(BigInteger.valueOf(Math.max(ids.size(), skip)));
 
 		return objList;
 	}
@@ -1559,10 +1624,22 @@ public class LDRepository {
 	private ObjectData compileObjectType(CallContext context, PersistentObject object, Set<String> filter,
 			boolean includeAllowableActions, boolean includeAcl, ObjectInfoHandler objectInfos) {
 
-		ObjectDataImpl result = new ObjectDataImpl();
-		ObjectInfoImpl objectInfo = new ObjectInfoImpl();
+		String cacheKey = getCacheKey(object, filter);
+		CompiledObject compiled = getFromCache(cacheKey);
 
-		result.setProperties(compileProperties(object, filter, objectInfo));
+		if (compiled == null) {
+			ObjectInfoImpl objectInfo = new ObjectInfoImpl();
+			compiled = new CompiledObject(compileProperties(object, filter, objectInfo), objectInfo);
+			putInCache(cacheKey, compiled);
+		}
+
+		/*
+		 * The cached object is shared by all the requests so each caller
+		 * receives its own copies. The allowable actions and the ACL depend on
+		 * the permissions that may change at any time, so they are never cached.
+		 */
+		ObjectDataImpl result = new ObjectDataImpl();
+		result.setProperties(copyProperties(compiled.properties));
 
 		if (includeAllowableActions) {
 			result.setAllowableActions(compileAllowableActions(object));
@@ -1574,6 +1651,7 @@ public class LDRepository {
 		}
 
 		if ((context != null) && context.isObjectInfoRequired() && (objectInfos != null)) {
+			ObjectInfoImpl objectInfo = copyObjectInfo(compiled.objectInfo);
 			objectInfo.setObject(result);
 			// objectInfo.setVersionSeriesId(getId(object));
 			objectInfos.addObjectInfo(objectInfo);
@@ -1582,6 +1660,153 @@ public class LDRepository {
 		return result;
 	}
 
+	/**
+	 * Creates a deep copy of the given properties
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Properties copyProperties(Properties properties) {
+		PropertiesImpl copy = new PropertiesImpl();
+		if (properties == null || properties.getPropertyList() == null)
+			return copy;
+
+		for (PropertyData<?> property : properties.getPropertyList()) {
+			AbstractPropertyData p;
+			if (property instanceof PropertyId)
+				p = new PropertyIdImpl();
+			else if (property instanceof PropertyString)
+				p = new PropertyStringImpl();
+			else if (property instanceof PropertyBoolean)
+				p = new PropertyBooleanImpl();
+			else if (property instanceof PropertyInteger)
+				p = new PropertyIntegerImpl();
+			else if (property instanceof PropertyDecimal)
+				p = new PropertyDecimalImpl();
+			else if (property instanceof PropertyDateTime)
+				p = new PropertyDateTimeImpl();
+			else if (property instanceof PropertyHtml)
+				p = new PropertyHtmlImpl();
+			else if (property instanceof PropertyUri)
+				p = new PropertyUriImpl();
+			else
+				throw new IllegalArgumentException("Unsupported property " + property.getId());
+
+			p.setId(property.getId());
+			p.setDisplayName(property.getDisplayName());
+			p.setLocalName(property.getLocalName());
+			p.setQueryName(property.getQueryName());
+
+			List values = new ArrayList();
+			if (property.getValues() != null)
+				for (Object value : property.getValues())
+					values.add(value instanceof Calendar ? ((Calendar) value).clone() : value);
+			p.setValues(values);
+
+			copy.addProperty(p);
+		}
+		return copy;
+	}
+
+	/**
+	 * Creates a copy of the given object info without the object data
+	 */
+	private static ObjectInfoImpl copyObjectInfo(ObjectInfo info) {
+		ObjectInfoImpl copy = new ObjectInfoImpl();
+		copy.setId(info.getId());
+		copy.setName(info.getName());
+		copy.setCreatedBy(info.getCreatedBy());
+		copy.setCreationDate(info.getCreationDate());
+		copy.setLastModificationDate(info.getLastModificationDate());
+		copy.setTypeId(info.getTypeId());
+		copy.setBaseType(info.getBaseType());
+		copy.setIsCurrentVersion(info.isCurrentVersion());
+		copy.setVersionSeriesId(info.getVersionSeriesId());
+		copy.setWorkingCopyId(info.getWorkingCopyId());
+		copy.setWorkingCopyOriginalId(info.getWorkingCopyOriginalId());
+		copy.setHasContent(info.hasContent());
+		copy.setContentType(info.getContentType());
+		copy.setFileName(info.getFileName());
+		copy.setRenditionInfos(info.getRenditionInfos());
+		copy.setSupportsRelationships(info.supportsRelationships());
+		copy.setSupportsPolicies(info.supportsPolicies());
+		copy.setHasAcl(info.hasAcl());
+		copy.setHasParent(info.hasParent());
+		copy.setSupportsDescendants(info.supportsDescendants());
+		copy.setSupportsFolderTree(info.supportsFolderTree());
+		copy.setRelationshipSourceIds(info.getRelationshipSourceIds());
+		copy.setRelationshipTargetIds(info.getRelationshipTargetIds());
+		return copy;
+	}
+
+	/**
+	 * Computes the key of the object in the cache of compiled objects. The key
+	 * contains the record version and last modification date so an updated
+	 * object is never served from the cache.
+	 * 
+	 * @return The key as <userid>;<objectid>;<recordversion>;<lastmodified>;<filter>
+	 *         or null if the object must not be cached
+	 */
+	private String getCacheKey(PersistentObject object, Set<String> filter) {
+		// Search hits carry informations specific to the search
+		if (object == null || object instanceof Hit || sid == null)
+			return null;
+
+		Session session = SessionManager.get().get(sid);
+		if (session == null)
+			return null;
+
+		StringBuilder key = new StringBuilder(Long.toString(session.getUserId()));
+		key.append(";").append(getId(object));
+		key.append(";").append(object.getRecordVersion());
+		key.append(";").append(object.getLastModified() != null ? object.getLastModified().getTime() : 0L);
+		key.append(";");
+		if (filter != null)
+			key.append(new TreeSet<String>(filter).toString());
+		return key.toString();
+	}
+
+	/**
+	 * Retrieves a compiled object from the cache
+	 */
+	private CompiledObject getFromCache(String key) {
+		if (key == null || !Context.get().getProperties().getBoolean("cmis.usecache", true))
+			return null;
+		try {
+			Cache cache = ((CacheManager) Context.get().getBean("CmisCacheManager")).getCache("cmis-objects");
+			Element element = cache.get(key);
+			return element != null ? (CompiledObject) element.getObjectValue() : null;
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * Puts a compiled object in the cache
+	 */
+	private void putInCache(String key, CompiledObject compiled) {
+		if (key == null || !Context.get().getProperties().getBoolean("cmis.usecache", true))
+			return;
+		try {
+			Cache cache = ((CacheManager) Context.get().getBean("CmisCacheManager")).getCache("cmis-objects");
+			cache.put(new Element(key, compiled));
+		} catch (Throwable t) {
+
+		}
+	}
+
+	/**
+	 * The result of the compilation of a document or folder
+	 */
+	private static class CompiledObject {
+		private final Properties properties;
+
+		private final ObjectInfoImpl objectInfo;
+
+		CompiledObject(Properties properties, ObjectInfoImpl objectInfo) {
+			this.properties = properties;
+			this.objectInfo = objectInfo;
+		}
+	}
+
 	/**
 	 * Gathers all base properties of a document or folder.
 	 */
@@ -0,0 +1,224 @@
+package com.logicaldoc.cmis;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.logicaldoc.core.folder.FolderDAO;
+import com.logicaldoc.core.searchengine.FulltextSearchOptions;
+import com.logicaldoc.core.searchengine.Hit;
+import com.logicaldoc.core.security.Group;
+import com.logicaldoc.core.security.User;
+
+/**
+ * Test case for {@link CmisQueryCompiler}, the folders and the full-text index
+ * are simulated
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class CmisQueryCompilerTest {
+
+	private FolderDAO folderDao;
+
+	private User admin;
+
+	private User user;
+
+	// The options of the full-text searches executed by the compiler
+	private List<FulltextSearchOptions> searches = new ArrayList<FulltextSearchOptions>();
+
+	@Before
+	public void setUp() throws Exception {
+		folderDao = (FolderDAO) Proxy.newProxyInstance(FolderDAO.class.getClassLoader(),
+				new Class[] { FolderDAO.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("findFolderIdByUserId"))
+							return Arrays.asList(4L, 5L);
+						else if (method.getName().equals("findFolderIdInTree"))
+							return Arrays.asList(6L, 7L);
+						else if (method.getName().equals("queryForList"))
+							return Arrays.asList("pdf", "jpg", "jpeg", "xyz");
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+
+		Group group = new Group();
+		group.setId(1);
+		group.setName("admin");
+		admin = new User();
+		admin.setId(1);
+		admin.setTenantId(1);
+		admin.addGroup(group);
+
+		user = new User();
+		user.setId(5);
+		user.setTenantId(1);
+	}
+
+	private CmisQueryCompiler compiler(String statement, User user) {
+		return new CmisQueryCompiler(new CmisQueryParser(statement).parse(), user, folderDao) {
+			@Override
+			protected List<Hit> search(FulltextSearchOptions opt) {
+				searches.add(opt);
+				List<Hit> hits = new ArrayList<Hit>();
+				for (long id = 1; id <= 3; id++) {
+					Hit hit = new Hit();
+					hit.setId(id);
+					hits.add(hit);
+				}
+				return hits;
+			}
+		};
+	}
+
+	@Test
+	public void testComparisons() {
+		CmisQueryCompiler compiler = compiler(
+				"select * from cmis:document where cmis:name = 'a.pdf' and ldoc:description like 'x%' "
+						+ "and cmis:objectId in ('doc.3', '4') order by cmis:name desc", admin);
+		String sql = compiler.compile();
+		Assert.assertTrue(sql, sql.startsWith("select D.ld_id from ld_document D where D.ld_deleted=0"));
+		Assert.assertTrue(sql, sql.contains("D.ld_filename = ?"));
+		Assert.assertTrue(sql, sql.contains("D.ld_comment like ?"));
+		Assert.assertTrue(sql, sql.contains("D.ld_id in (?,?)"));
+		Assert.assertTrue(sql, sql.endsWith("order by D.ld_filename desc, D.ld_id"));
+
+		// Admins see everything
+		Assert.assertFalse(sql, sql.contains("ld_folderid"));
+		Assert.assertFalse(sql, sql.contains("ld_published"));
+
+		Object[] parameters = compiler.getParameters();
+		Assert.assertEquals(4, parameters.length);
+		Assert.assertEquals("a.pdf", parameters[0]);
+		Assert.assertEquals("x%", parameters[1]);
+		Assert.assertEquals(3L, parameters[2]);
+		Assert.assertEquals(4L, parameters[3]);
+	}
+
+	@Test
+	public void testLike() {
+		// The escape char needs no quoting in any database
+		CmisQueryCompiler compiler = compiler(
+				"select * from cmis:document where cmis:name like '100\\%!\\_a%'", admin);
+		String sql = compiler.compile();
+		Assert.assertTrue(sql, sql.contains("D.ld_filename like ? escape '!'"));
+		Assert.assertFalse(sql, sql.contains("\\"));
+		Assert.assertEquals("100!%!!!_a%", compiler.getParameters()[0]);
+
+		// A literal backslash is not an escape
+		compiler = compiler("select * from cmis:document where cmis:name like 'a\\\\b%'", admin);
+		sql = compiler.compile();
+		Assert.assertTrue(sql, sql.contains("D.ld_filename like ? escape '!'"));
+		Assert.assertEquals("a\\b%", compiler.getParameters()[0]);
+
+		// No escape at all
+		compiler = compiler("select * from cmis:document where cmis:name like 'a%'", admin);
+		sql = compiler.compile();
+		Assert.assertFalse(sql, sql.contains("escape"));
+	}
+
+	@Test
+	public void testPermissions() {
+		CmisQueryCompiler compiler = compiler("select * from cmis:document", user);
+		String sql = compiler.compile();
+		Assert.assertTrue(sql, sql.contains("(D.ld_folderid in (4,5))"));
+		Assert.assertTrue(sql, sql.contains("D.ld_published=1"));
+		Assert.assertEquals(2, compiler.getParameters().length);
+	}
+
+	@Test
+	public void testMimeType() {
+		CmisQueryCompiler compiler = compiler(
+				"select * from cmis:document where cmis:contentStreamMimeType = 'image/jpeg' "
+						+ "order by cmis:contentStreamMimeType", admin);
+		String sql = compiler.compile();
+		Assert.assertTrue(sql, sql.contains("when lower(D.ld_type) in ('jpg','jpeg') then 'image/jpeg'"));
+		Assert.assertTrue(sql, sql.contains("when lower(D.ld_type) in ('pdf') then 'application/pdf'"));
+		Assert.assertTrue(sql, sql.contains("else 'application/octet-stream' end) = ?"));
+		Assert.assertTrue(sql, sql.contains("order by (case when D.ld_filename is null then null"));
+		Assert.assertEquals("image/jpeg", compiler.getParameters()[0]);
+	}
+
+	@Test
+	public void testAny() {
+		CmisQueryCompiler compiler = compiler("select * from cmis:document where 'abc' = ANY ldoc:tags", admin);
+		String sql = compiler.compile();
+		Assert.assertTrue(sql,
+				sql.contains("exists (select G.ld_docid from ld_tag G where G.ld_docid=D.ld_id and G.ld_tag = ?)"));
+		Assert.assertEquals("abc", compiler.getParameters()[0]);
+
+		compiler = compiler("select * from cmis:document where TRUE = ANY ldoc:ext_flag", admin);
+		sql = compiler.compile();
+		Assert.assertTrue(sql, sql.contains("E.ld_name=? and E.ld_intvalue = ?"));
+		Assert.assertEquals("flag", compiler.getParameters()[0]);
+		Assert.assertEquals(1, compiler.getParameters()[1]);
+
+		compiler = compiler("select * from cmis:document where ANY ldoc:tags not in ('a', 'b')", admin);
+		sql = compiler.compile();
+		Assert.assertTrue(sql, sql.contains("not exists (select G.ld_docid from ld_tag G where G.ld_docid=D.ld_id "
+				+ "and G.ld_tag in (?,?))"));
+	}
+
+	@Test
+	public void testContains() {
+		CmisQueryCompiler compiler = compiler("select * from cmis:document where contains('invoice')", admin);
+		String sql = compiler.compile();
+		Assert.assertTrue(sql, sql.contains("(D.ld_id in (1,2,3))"));
+		Assert.assertEquals(CmisQueryCompiler.MAX_CONTAINS_HITS, searches.get(0).getMaxHits());
+		Assert.assertEquals(3, compiler.getRanking().size());
+		Assert.assertEquals(Integer.valueOf(0), compiler.getRanking().get(1L));
+	}
+
+	@Test
+	public void testNotContains() {
+		// All the matching documents must be excluded, not just the best ones
+		CmisQueryCompiler compiler = compiler("select * from cmis:document where not contains('invoice')", admin);
+		String sql = compiler.compile();
+		Assert.assertTrue(sql, sql.contains("not ((D.ld_id in (1,2,3)))"));
+		Assert.assertEquals(0, searches.get(0).getMaxHits());
+		Assert.assertNull(compiler.getRanking());
+
+		// Double negation
+		searches.clear();
+		compiler = compiler("select * from cmis:document where not (cmis:name='a' or not contains('invoice'))",
+				admin);
+		compiler.compile();
+		Assert.assertEquals(CmisQueryCompiler.MAX_CONTAINS_HITS, searches.get(0).getMaxHits());
+		Assert.assertNotNull(compiler.getRanking());
+	}
+
+	@Test
+	public void testInTree() {
+		String sql = compiler("select * from cmis:document d where in_tree(d, 'fld.4')", admin).compile();
+		Assert.assertTrue(sql, sql.contains("(D.ld_folderid in (6,7))"));
+
+		sql = compiler("select * from cmis:document where in_folder('fld.4')", admin).compile();
+		Assert.assertTrue(sql, sql.contains("D.ld_folderid=4"));
+	}
+
+	@Test
+	public void testInvalid() {
+		String[] statements = new String[] { "select * from cmis:folder",
+				"select * from cmis:document where cmis:isLatestVersion = true",
+				"select * from cmis:document where cmis:objectId = 'doc.abc'" };
+		for (String statement : statements) {
+			try {
+				compiler(statement, admin).compile();
+				Assert.fail("Compiled an invalid statement: " + statement);
+			} catch (CmisInvalidArgumentException e) {
+				// All right
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.logicaldoc.cmis;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+
+import junit.framework.Assert;
+
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.junit.Test;
+
+import com.logicaldoc.cmis.CmisQuery.Comparison;
+import com.logicaldoc.cmis.CmisQuery.Contains;
+import com.logicaldoc.cmis.CmisQuery.InFolder;
+import com.logicaldoc.cmis.CmisQuery.Junction;
+import com.logicaldoc.cmis.CmisQuery.Not;
+
+/**
+ * Test case for {@link CmisQueryParser}
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class CmisQueryParserTest {
+
+	private static CmisQuery parse(String statement) {
+		return new CmisQueryParser(statement).parse();
+	}
+
+	@Test
+	public void testSelect() {
+		CmisQuery query = parse("SELECT * FROM cmis:document");
+		Assert.assertTrue(query.getSelect().isEmpty());
+		Assert.assertEquals("cmis:document", query.getTypeId());
+		Assert.assertNull(query.getWhere());
+		Assert.assertTrue(query.getOrderBy().isEmpty());
+
+		query = parse("select d.cmis:objectId, d.cmis:name as name from cmis:document d "
+				+ "order by d.cmis:name desc, cmis:creationDate");
+		Assert.assertEquals(2, query.getSelect().size());
+		Assert.assertEquals("cmis:objectId", query.getSelect().get(0));
+		Assert.assertEquals("cmis:name", query.getSelect().get(1));
+		Assert.assertEquals(2, query.getOrderBy().size());
+		Assert.assertEquals("cmis:name", query.getOrderBy().get(0).getProperty());
+		Assert.assertFalse(query.getOrderBy().get(0).isAscending());
+		Assert.assertEquals("cmis:creationDate", query.getOrderBy().get(1).getProperty());
+		Assert.assertTrue(query.getOrderBy().get(1).isAscending());
+	}
+
+	@Test
+	public void testComparisons() {
+		Comparison comparison = (Comparison) parse("select * from cmis:document where cmis:name = 'it''s.pdf'")
+				.getWhere();
+		Assert.assertEquals("cmis:name", comparison.getProperty());
+		Assert.assertEquals("=", comparison.getOperator());
+		Assert.assertEquals("it's.pdf", comparison.getValues().get(0));
+
+		comparison = (Comparison) parse("select * from cmis:document where cmis:contentStreamLength >= 1024")
+				.getWhere();
+		Assert.assertEquals(">=", comparison.getOperator());
+		Assert.assertEquals(new BigDecimal(1024), comparison.getValues().get(0));
+
+		comparison = (Comparison) parse("select * from cmis:document where cmis:name not like 'a\\%%'").getWhere();
+		Assert.assertEquals("LIKE", comparison.getOperator());
+		Assert.assertTrue(comparison.isNegated());
+		Assert.assertEquals("a\\%%", comparison.getValues().get(0));
+
+		comparison = (Comparison) parse("select * from cmis:document where ldoc:language in ('en', 'it')").getWhere();
+		Assert.assertEquals("IN", comparison.getOperator());
+		Assert.assertFalse(comparison.isNegated());
+		Assert.assertEquals(2, comparison.getValues().size());
+
+		comparison = (Comparison) parse("select * from cmis:document where ldoc:customId is not null").getWhere();
+		Assert.assertEquals("IS NULL", comparison.getOperator());
+		Assert.assertTrue(comparison.isNegated());
+
+		comparison = (Comparison) parse(
+				"select * from cmis:document where cmis:creationDate > TIMESTAMP '2016-01-01T00:00:00.000Z'")
+				.getWhere();
+		Assert.assertTrue(comparison.getValues().get(0) instanceof Calendar);
+	}
+
+	@Test
+	public void testAny() {
+		Comparison comparison = (Comparison) parse(
+				"select * from cmis:document d where ANY d.ldoc:tags not in ('abc', 'xyz')").getWhere();
+		Assert.assertEquals("ldoc:tags", comparison.getProperty());
+		Assert.assertEquals("IN", comparison.getOperator());
+		Assert.assertTrue(comparison.isAny());
+		Assert.assertTrue(comparison.isNegated());
+		Assert.assertEquals(2, comparison.getValues().size());
+
+		comparison = (Comparison) parse("select * from cmis:document where 'abc' = ANY ldoc:tags").getWhere();
+		Assert.assertEquals("ldoc:tags", comparison.getProperty());
+		Assert.assertEquals("=", comparison.getOperator());
+		Assert.assertTrue(comparison.isAny());
+		Assert.assertEquals("abc", comparison.getValues().get(0));
+
+		comparison = (Comparison) parse("select * from cmis:document where TRUE = ANY ldoc:ext_flag").getWhere();
+		Assert.assertEquals("ldoc:ext_flag", comparison.getProperty());
+		Assert.assertEquals(Boolean.TRUE, comparison.getValues().get(0));
+
+		comparison = (Comparison) parse(
+				"select * from cmis:document where TIMESTAMP '2016-01-01T00:00:00.000Z' = ANY ldoc:ext_dates")
+				.getWhere();
+		Assert.assertEquals("ldoc:ext_dates", comparison.getProperty());
+		Assert.assertTrue(comparison.getValues().get(0) instanceof Calendar);
+	}
+
+	@Test
+	public void testPrecedence() {
+		// AND binds stronger than OR
+		Junction or = (Junction) parse(
+				"select * from cmis:document where cmis:name='a' or cmis:name='b' and not ldoc:rating=3").getWhere();
+		Assert.assertFalse(or.isAnd());
+		Assert.assertEquals(2, or.getTerms().size());
+		Assert.assertTrue(or.getTerms().get(0) instanceof Comparison);
+		Junction and = (Junction) or.getTerms().get(1);
+		Assert.assertTrue(and.isAnd());
+		Assert.assertTrue(and.getTerms().get(1) instanceof Not);
+
+		// Parenthesis
+		and = (Junction) parse("select * from cmis:document where (cmis:name='a' or cmis:name='b') and ldoc:rating=3")
+				.getWhere();
+		Assert.assertTrue(and.isAnd());
+		Assert.assertFalse(((Junction) and.getTerms().get(0)).isAnd());
+	}
+
+	@Test
+	public void testFunctions() {
+		Not not = (Not) parse("select * from cmis:document where not contains('invoice')").getWhere();
+		Assert.assertEquals("invoice", ((Contains) not.getTerm()).getExpression());
+
+		InFolder inFolder = (InFolder) parse("select * from cmis:document d where IN_TREE(d, 'fld.4')").getWhere();
+		Assert.assertEquals("fld.4", inFolder.getFolderId());
+		Assert.assertTrue(inFolder.isTree());
+
+		inFolder = (InFolder) parse("select * from cmis:document where in_folder('fld.5')").getWhere();
+		Assert.assertEquals("fld.5", inFolder.getFolderId());
+		Assert.assertFalse(inFolder.isTree());
+	}
+
+	@Test
+	public void testInvalid() {
+		String[] statements = new String[] { "select * from", "select * cmis:document",
+				"select * from cmis:document where cmis:name = 'abc",
+				"select * from cmis:document d join cmis:folder f on d.cmis:parentId = f.cmis:objectId",
+				"select * from cmis:document where cmis:name = ", "select * from cmis:document where cmis:name ! 'a'",
+				"select * from cmis:document where contains(invoice)",
+				"select * from cmis:document where 'abc' = ldoc:tags",
+				"select * from cmis:document order by cmis:name extra" };
+		for (String statement : statements) {
+			try {
+				parse(statement);
+				Assert.fail("Parsed an invalid statement: " + statement);
+			} catch (CmisInvalidArgumentException e) {
+				// All right
+			}
+		}
+	}
+}
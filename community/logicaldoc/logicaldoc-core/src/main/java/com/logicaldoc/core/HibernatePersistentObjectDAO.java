@@ -21,6 +21,8 @@ import org.springframework.jdbc.support.rowset.SqlRowSet;
 
 import com.logicaldoc.util.Context;
 import com.logicaldoc.util.config.ContextProperties;
+import com.logicaldoc.util.metrics.Metrics;
+import com.logicaldoc.util.metrics.Timer;
 
 /**
  * Hibernate implementation of <code>PersistentObjectDAO</code>
@@ -109,18 +111,29 @@ public abstract class HibernatePersistentObjectDAO<T extends PersistentObject> i
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	public List<T> findByWhere(String where, Object[] values, String order, Integer max) {
+		return findByWhere(where, values, order, null, max);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<T> findByWhere(String where, Object[] values, String order, Integer first, Integer max) {
 		List<T> coll = new ArrayList<T>();
+		Timer.Context timer = Metrics.get().timer("dao.query").start();
 		try {
 			String query = "from " + entityClass.getCanonicalName() + " _entity where _entity.deleted=0 "
 					+ (StringUtils.isNotEmpty(where) ? " and (" + where + ") " : " ")
 					+ (StringUtils.isNotEmpty(order) ? order : " ");
 			log.debug("Execute query: " + query);
 			Query queryObject = prepareQuery(query, values, max);
+			if (first != null && first > 0)
+				queryObject.setFirstResult(first);
 			coll = (List<T>) queryObject.list();
 		} catch (Exception e) {
+			timer.error();
 			log.error(e.getMessage(), e);
+		} finally {
+			timer.stop();
 		}
 		return coll;
 	}
@@ -128,13 +141,17 @@ public abstract class HibernatePersistentObjectDAO<T extends PersistentObject> i
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public List findByQuery(String query, Object[] values, Integer max) {
 		List<Object> coll = new ArrayList<Object>();
+		Timer.Context timer = Metrics.get().timer("dao.query").start();
 		try {
 			log.debug("Execute query: " + query);
 			Query queryObject = prepareQuery(query, values, max);
 			coll = (List<Object>) queryObject.list();
 		} catch (Exception e) {
+			timer.error();
 			if (log.isErrorEnabled())
 				log.error(e.getMessage(), e);
+		} finally {
+			timer.stop();
 		}
 		return coll;
 	}
@@ -148,6 +165,7 @@ public abstract class HibernatePersistentObjectDAO<T extends PersistentObject> i
 	@SuppressWarnings("unchecked")
 	public List<Long> findIdsByWhere(String where, Object[] values, String order, Integer max) {
 		List<Long> coll = new ArrayList<Long>();
+		Timer.Context timer = Metrics.get().timer("dao.query").start();
 		try {
 			String query = "select _entity.id from " + entityClass.getCanonicalName()
 					+ " _entity where _entity.deleted=0 "
@@ -157,22 +175,29 @@ public abstract class HibernatePersistentObjectDAO<T extends PersistentObject> i
 			Query queryObject = prepareQuery(query, values, max);
 			coll = (List<Long>) queryObject.list();
 		} catch (Exception e) {
+			timer.error();
 			if (log.isErrorEnabled())
 				log.error(e.getMessage(), e);
+		} finally {
+			timer.stop();
 		}
 		return coll;
 	}
 
 	public boolean store(T entity) {
 		boolean result = true;
+		Timer.Context timer = Metrics.get().timer("dao.store").start();
 		try {
 			// Save the entity
 			entity.setLastModified(new java.util.Date());
 			sessionFactory.getCurrentSession().saveOrUpdate(entity);
 		} catch (Exception e) {
+			timer.error();
 			if (log.isErrorEnabled())
 				log.error(e.getMessage(), e);
 			result = false;
+		} finally {
+			timer.stop();
 		}
 		return result;
 	}
@@ -298,6 +323,7 @@ public abstract class HibernatePersistentObjectDAO<T extends PersistentObject> i
 	@Override
 	public List query(String sql, Object[] args, RowMapper rowMapper, Integer maxRows) {
 		List list = new ArrayList();
+		Timer.Context timer = Metrics.get().timer("dao.jdbc").start();
 		try {
 			DataSource dataSource = (DataSource) Context.get().getBean("DataSource");
 
@@ -309,7 +335,10 @@ public abstract class HibernatePersistentObjectDAO<T extends PersistentObject> i
 			else
 				list = jdbcTemplate.query(insertTopClause(sql, maxRows), rowMapper);
 		} catch (Throwable e) {
+			timer.error();
 			log.error(e.getMessage(), e);
+		} finally {
+			timer.stop();
 		}
 		return list;
 	}
@@ -319,6 +348,7 @@ public abstract class HibernatePersistentObjectDAO<T extends PersistentObject> i
 	public List queryForList(String sql, Object[] args, Class elementType, Integer maxRows) {
 
 		List list = new ArrayList();
+		Timer.Context timer = Metrics.get().timer("dao.jdbc").start();
 		try {
 			DataSource dataSource = (DataSource) Context.get().getBean("DataSource");
 			JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
@@ -329,7 +359,10 @@ public abstract class HibernatePersistentObjectDAO<T extends PersistentObject> i
 			else
 				list = jdbcTemplate.queryForList(insertTopClause(sql, maxRows), elementType);
 		} catch (Throwable e) {
+			timer.error();
 			log.error(e.getMessage(), e);
+		} finally {
+			timer.stop();
 		}
 		return list;
 	}
@@ -337,6 +370,7 @@ public abstract class HibernatePersistentObjectDAO<T extends PersistentObject> i
 	@Override
 	public SqlRowSet queryForRowSet(String sql, Object[] args, Integer maxRows) {
 		SqlRowSet rs = null;
+		Timer.Context timer = Metrics.get().timer("dao.jdbc").start();
 		try {
 			DataSource dataSource = (DataSource) Context.get().getBean("DataSource");
 			JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
@@ -347,7 +381,10 @@ public abstract class HibernatePersistentObjectDAO<T extends PersistentObject> i
 			else
 				rs = jdbcTemplate.queryForRowSet(insertTopClause(sql, maxRows));
 		} catch (Throwable e) {
+			timer.error();
 			log.error(e.getMessage(), e);
+		} finally {
+			timer.stop();
 		}
 		return rs;
 	}
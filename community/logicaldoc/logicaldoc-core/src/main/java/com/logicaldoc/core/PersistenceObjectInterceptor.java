@@ -3,12 +3,16 @@ package com.logicaldoc.core;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import org.hibernate.EmptyInterceptor;
 import org.hibernate.type.Type;
 
+import com.logicaldoc.core.document.Document;
+
 /**
  * Takes care about updating the last modified date of a persistence object
+ * and remembers the state of the loaded documents for the statistics
  * 
  * @author Marco Meschieri - LogicalDOC
  * @since 6.9 
@@ -28,6 +32,20 @@ public class PersistenceObjectInterceptor extends EmptyInterceptor {
 		return onSave(entity, id, currentState, propertyNames, types);
 	}
 
+	@Override
+	public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		if (entity instanceof Document) {
+			List<String> names = Arrays.asList(propertyNames);
+			((Document) entity).setStatsState(new int[] { getInt(state, names.indexOf("indexed")),
+					getInt(state, names.indexOf("deleted")), getInt(state, names.indexOf("status")) });
+		}
+		return false;
+	}
+
+	private static int getInt(Object[] state, int index) {
+		return index >= 0 && state[index] != null ? ((Number) state[index]).intValue() : 0;
+	}
+
 	@Override
 	public boolean onSave(Object entity, Serializable id, Object[] currentState, String[] propertyNames, Type[] types) {
 		if (entity instanceof PersistentObject) {
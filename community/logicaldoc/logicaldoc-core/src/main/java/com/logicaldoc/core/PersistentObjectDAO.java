@@ -112,6 +112,20 @@ public interface PersistentObjectDAO<T extends PersistentObject> {
 	 */
 	public List<T> findByWhere(String where, Object[] values, String order, Integer max);
 
+	/**
+	 * Finds a page of entities by the given expression. Use _entity alias to
+	 * reference attributes in the where expression.
+	 * 
+	 * @param where The where clause expression (for positional parameters,
+	 *        please use JPA-style: ?1, ?2 ...)
+	 * @param values Parameters used in the where expression
+	 * @param order The order clause expression
+	 * @param first Index of the first result to retrieve (optional)
+	 * @param max Maximum results number (optional)
+	 * @return The list of marching entities
+	 */
+	public List<T> findByWhere(String where, Object[] values, String order, Integer first, Integer max);
+
 	/**
 	 * Find everything you want from the DB using the ORM query language
 	 * 
@@ -1,16 +1,21 @@
 package com.logicaldoc.core.automation;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
 import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
 import org.apache.velocity.runtime.log.Log4JLogChute;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,7 +27,13 @@ import com.logicaldoc.util.Context;
 import com.logicaldoc.util.config.ContextProperties;
 
 /**
- * Represents a Facade on Velocity
+ * Represents a Facade on Velocity.<br>
+ * All the evaluations share a single Velocity engine and the parsed
+ * expressions are cached, so the same expression is parsed just once. The
+ * cache holds at most <b>automation.cache.size</b> expressions, the least
+ * recently used are evicted first. Also the tools without state are shared,
+ * while the localized messages are loaded once for each locale and cannot be
+ * modified.
  * 
  * @author Marco Meschieri - LogicalDOC since <product_release>
  */
@@ -56,6 +67,30 @@ public class Automation {
 
 	private static Logger log = LoggerFactory.getLogger(Automation.class);
 
+	private static RuntimeInstance engine;
+
+	// Key is the template name and the expression
+	private static Map<String, Template> templates;
+
+	// Key is the locale
+	private static final Map<Locale, I18NTool> i18nTools = new ConcurrentHashMap<Locale, I18NTool>();
+
+	private static final AtomicLong hits = new AtomicLong(0);
+
+	private static final AtomicLong misses = new AtomicLong(0);
+
+	private static final DocTool docTool = new DocTool();
+
+	private static final FolderTool folderTool = new FolderTool();
+
+	private static final ClassTool classTool = new ClassTool();
+
+	private static final SystemTool systemTool = new SystemTool();
+
+	private static final MailTool mailTool = new MailTool();
+
+	private static final LogTool logTool = new LogTool();
+
 	private String logTag = "ScriptEngine";
 
 	private Locale locale = Locale.ENGLISH;
@@ -102,34 +137,34 @@ public class Automation {
 		if (!dictionary.containsKey(LOCALE))
 			dictionary.put(LOCALE, locale);
 
-		// This is needed to format dates
-		DateTool dateTool = new DateTool(I18N.getMessages((Locale) dictionary.get(LOCALE)).get("format_date"), I18N
-				.getMessages((Locale) dictionary.get(LOCALE)).get("format_dateshort"));
+		// Localized messages map
+		I18NTool i18n = getI18NTool((Locale) dictionary.get(LOCALE));
+		extendedDictionary.put(DIC_I18N, i18n);
+
+		// This is needed to format dates(it has setters, so it is not shared)
+		DateTool dateTool = new DateTool(i18n.get("format_date"), i18n.get("format_dateshort"));
 		extendedDictionary.put(DATE_TOOL, dateTool);
 
 		// Put the current date
 		extendedDictionary.put(CURRENT_DATE, new Date());
 
-		// Localized messages map
-		extendedDictionary.put(DIC_I18N, new I18NTool(I18N.getMessages((Locale) dictionary.get(LOCALE))));
-
 		// This is needed to print document's URL
-		extendedDictionary.put(DOC_TOOL, new DocTool());
+		extendedDictionary.put(DOC_TOOL, docTool);
 
 		// This is needed to print folder's URL
-		extendedDictionary.put(FOLDER_TOOL, new FolderTool());
+		extendedDictionary.put(FOLDER_TOOL, folderTool);
 
 		// Utility functions for manipulating classes and resources
-		extendedDictionary.put(CLASS_TOOL, new ClassTool());
+		extendedDictionary.put(CLASS_TOOL, classTool);
 
 		// System Utility functions
-		extendedDictionary.put(SYSTEM_TOOL, new SystemTool());
+		extendedDictionary.put(SYSTEM_TOOL, systemTool);
 
 		// Mail utilities
-		extendedDictionary.put(MAIL_TOOL, new MailTool());
+		extendedDictionary.put(MAIL_TOOL, mailTool);
 
 		// Access to the system log
-		extendedDictionary.put(LOG, new LogTool());
+		extendedDictionary.put(LOG, logTool);
 
 		if (Context.get() != null)
 			dictionary.put(SERVER_URL, Context.get().getProperties().get("server.url"));
@@ -147,10 +182,9 @@ public class Automation {
 		try {
 			if (StringUtils.isNotEmpty(expression)) {
 				VelocityContext context = new VelocityContext(extendedDictionary);
-				Velocity.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS, Log4JLogChute.class.getName());
-				Velocity.setProperty("runtime.log.logsystem.log4j.logger", Automation.class.getName());
-				Velocity.evaluate(context, writer, StringUtils.isNotEmpty(logTag) ? logTag : "ScriptEngine",
-						expression.replace("\n", "${nl}"));
+				Template template = getTemplate(expression.replace("\n", "${nl}"),
+						StringUtils.isNotEmpty(logTag) ? logTag : "ScriptEngine");
+				template.merge(context, writer);
 			}
 			return writer.toString();
 		} catch (Throwable e) {
@@ -158,4 +192,94 @@ public class Automation {
 			return expression;
 		}
 	}
+
+	/**
+	 * Gets the parsed version of an expression, parsing it only if it is not
+	 * already cached. The same expression is cached separately for each name,
+	 * so the errors are always logged with the name given by the caller.
+	 */
+	static Template getTemplate(String expression, String name) throws Exception {
+		RuntimeInstance runtime = getEngine();
+
+		String key = name + '\u0000' + expression;
+		Template template = null;
+		synchronized (templates) {
+			template = templates.get(key);
+		}
+		if (template != null) {
+			hits.incrementAndGet();
+			return template;
+		}
+
+		misses.incrementAndGet();
+		template = new Template();
+		template.setRuntimeServices(runtime);
+		template.setName(name);
+		template.setData(runtime.parse(new StringReader(expression), name));
+		template.initDocument();
+
+		synchronized (templates) {
+			templates.put(key, template);
+		}
+		return template;
+	}
+
+	/**
+	 * Gets the shared Velocity engine, initializing it at the first invocation
+	 */
+	private static synchronized RuntimeInstance getEngine() throws Exception {
+		if (engine == null) {
+			int size = 500;
+			try {
+				size = Context.get().getProperties().getInt("automation.cache.size", size);
+			} catch (Throwable t) {
+				log.warn(t.getMessage());
+			}
+			final int maxSize = Math.max(1, size);
+			templates = new LinkedHashMap<String, Template>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+					return size() > maxSize;
+				}
+			};
+
+			RuntimeInstance runtime = new RuntimeInstance();
+			runtime.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS, Log4JLogChute.class.getName());
+			runtime.setProperty("runtime.log.logsystem.log4j.logger", Automation.class.getName());
+			runtime.init();
+			engine = runtime;
+		}
+		return engine;
+	}
+
+	/**
+	 * Gets the localized messages, they are loaded once for each locale
+	 */
+	private static I18NTool getI18NTool(Locale locale) {
+		if (locale == null)
+			return new I18NTool(I18N.getMessages(locale));
+
+		I18NTool tool = i18nTools.get(locale);
+		if (tool == null) {
+			tool = new I18NTool(I18N.getMessages(locale));
+			i18nTools.put(locale, tool);
+		}
+		return tool;
+	}
+
+	/**
+	 * Number of evaluations that found the expression already parsed
+	 */
+	public static long getCacheHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of evaluations that had to parse the expression
+	 */
+	public static long getCacheMisses() {
+		return misses.get();
+	}
 }
\ No newline at end of file
@@ -1,21 +1,26 @@
 package com.logicaldoc.core.automation;
 
 import java.text.MessageFormat;
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * Utility class to handle dates from inside Velocity macros
+ * Utility class to access the localized messages from inside Velocity macros.
+ * The messages cannot be modified, so the same instance can be shared by
+ * concurrent evaluations.
  * 
  * @author Marco Meschieri - LogicalDOC
  * @since 7.3
  */
-public class I18NTool extends HashMap<String, String> {
+public class I18NTool extends AbstractMap<String, String> {
 
-	private static final long serialVersionUID = 1L;
+	private final Map<String, String> messages;
 
 	public I18NTool(Map<? extends String, ? extends String> m) {
-		super(m);
+		messages = Collections.unmodifiableMap(new HashMap<String, String>(m));
 	}
 
 	public String format(String key, String value) {
@@ -44,6 +49,22 @@ public class I18NTool extends HashMap<String, String> {
 
 	@Override
 	public String get(Object key) {
-		return super.getOrDefault(key, key.toString());
+		String message = messages.get(key);
+		return message != null ? message : key.toString();
 	}
-}
\ No newline at end of file
+
+	@Override
+	public boolean containsKey(Object key) {
+		return messages.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return messages.size();
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		return messages.entrySet();
+	}
+}
@@ -72,6 +72,10 @@ public class MailTool {
 		sendDocuments(Arrays.asList(new Document[] { document }), from, to, subject, message);
 	}
 
+	/**
+	 * Sends a message, the ones sent to the same recipient in a short time
+	 * may be merged in a digest
+	 */
 	public void sendMessage(long tenantId, String from, Collection<String> to, String subject, String message)
 			throws Exception {
 		EMail email = new EMail();
@@ -98,7 +102,7 @@ public class MailTool {
 		EMailSender sender = new EMailSender(tenantId);
 		if (StringUtils.isNotEmpty(from))
 			sender.setSender(from);
-		sender.send(email);
+		sender.sendBatched(email);
 	}
 
 	public void sendMessage(long tenantId, String from, String to, String subject, String message) throws Exception {
@@ -114,6 +114,14 @@ public class EMail extends Message {
 		attachments.put(max.intValue() + 1, attachment);
 	}
 
+	/**
+	 * Deletes the contents of the attachments spooled on disk
+	 */
+	public void dispose() {
+		for (EMailAttachment attachment : attachments.values())
+			attachment.dispose();
+	}
+
 	public InternetAddress[] getAddresses() throws Exception {
 		return getAddresses(recipients);
 	}
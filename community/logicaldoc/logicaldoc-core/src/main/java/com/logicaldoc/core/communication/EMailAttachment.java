@@ -1,5 +1,13 @@
 package com.logicaldoc.core.communication;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+
 /**
  * @author Michael Scholz
  * @author Alessandro Gasparini - LogicalDOC
@@ -10,6 +18,9 @@ public class EMailAttachment {
 
 	private byte[] data;
 
+	// The content spooled on disk when too big to be kept in memory
+	private File file;
+
 	private long size;
 
 	private String mimeType = "";
@@ -43,7 +54,17 @@ public class EMailAttachment {
 		this.fileName = fileName;
 	}
 
+	/**
+	 * Gets the content, if it was spooled on disk it is loaded in memory at
+	 * each invocation so {@link #getInputStream()} should be preferred
+	 */
 	public byte[] getData() {
+		if (data == null && file != null)
+			try {
+				return FileUtils.readFileToByteArray(file);
+			} catch (IOException e) {
+				return null;
+			}
 		return data;
 	}
 
@@ -58,4 +79,36 @@ public class EMailAttachment {
 	public void setSize(long size) {
 		this.size = size;
 	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public void setFile(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Opens a stream on the content, wherever it is stored
+	 *
+	 * @return the stream or null if the content is not available
+	 */
+	public InputStream getInputStream() throws IOException {
+		if (data != null)
+			return new ByteArrayInputStream(data);
+		else if (file != null)
+			return new FileInputStream(file);
+		else
+			return null;
+	}
+
+	/**
+	 * Deletes the content spooled on disk, if any
+	 */
+	public void dispose() {
+		if (file != null) {
+			FileUtils.deleteQuietly(file);
+			file = null;
+		}
+	}
 }
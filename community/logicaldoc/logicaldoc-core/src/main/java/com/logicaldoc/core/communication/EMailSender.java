@@ -12,7 +12,6 @@ import javax.mail.Authenticator;
 import javax.mail.Multipart;
 import javax.mail.PasswordAuthentication;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
@@ -128,16 +127,16 @@ public class EMailSender {
 	}
 
 	/**
-	 * Same as send(EMail, String, Map) but executes in another thread
+	 * Same as sendBatched(EMail, String, Map) but executes in another thread
 	 */
 	public void sendAsync(EMail email, String templateName, Map<String, Object> dictionary) {
-		new Thread(() -> {
+		SmtpTransportPool.get().execute(() -> {
 			try {
-				send(email, templateName, dictionary);
+				sendBatched(email, templateName, dictionary);
 			} catch (Exception e) {
 				log.error(e.getMessage(), e);
 			}
-		}).start();
+		});
 	}
 
 	/**
@@ -165,27 +164,59 @@ public class EMailSender {
 	}
 
 	/**
-	 * Same as send(EMail) but executes in another thread
+	 * Same as send(EMail, String, Map) but the message is delivered through
+	 * the {@link NotificationBatcher}
+	 */
+	public void sendBatched(EMail email, String templateName, Map<String, Object> dictionary) throws Exception {
+		MessageTemplateDAO templateDao = (MessageTemplateDAO) Context.get().getBean(MessageTemplateDAO.class);
+		MessageTemplate template = templateDao.findByNameAndLanguage(templateName, email.getLocale().toString(),
+				email.getTenantId());
+		if (template == null) {
+			log.error("Template " + templateName + " was not found");
+			return;
+		}
+
+		dictionary.put(Automation.LOCALE, email.getLocale());
+		email.setSubject(template.getFormattedSubject(dictionary));
+		email.setMessageText(template.getFormattedBody(dictionary));
+
+		sendBatched(email);
+	}
+
+	/**
+	 * Sends a notification that can be merged with the others sent to the
+	 * same recipient in a short time, see {@link NotificationBatcher}
+	 */
+	public void sendBatched(EMail email) throws Exception {
+		NotificationBatcher.get().add(this, email);
+	}
+
+	/**
+	 * Same as sendBatched(EMail) but executes in another thread
 	 */
 	public void sendAsync(EMail email) {
-		new Thread(() -> {
+		SmtpTransportPool.get().execute(() -> {
 			try {
-				send(email);
+				sendBatched(email);
 			} catch (Exception e) {
 				log.error(e.getMessage(), e);
 			}
-		}).start();
+		});
 	}
 
 	/**
-	 * This method sends an email using the smtp-protocol. The email can be a
-	 * simple mail or a multipart mail containing up to 5 attachments.
-	 * 
-	 * @param account E-Mail account of the sender.
-	 * @param email E-Mail which should be sent.
-	 * @throws Exception
+	 * Identifies the SMTP configuration, two senders with the same key can
+	 * share the connections
 	 */
-	public void send(EMail email) throws Exception {
+	String getConfigurationKey() {
+		return StringUtils.join(new Object[] { authEncripted ? "smtps" : "smtp", host, port, username, password,
+				connectionSecurity }, '|');
+	}
+
+	/**
+	 * Creates a new mail session for the current configuration
+	 */
+	Session newSession() {
 		Properties props = new Properties();
 		if (!StringUtils.isEmpty(username))
 			props.put("mail.smtp.auth", "true");
@@ -223,29 +254,34 @@ public class EMailSender {
 		props.put("mail.smtp.ssl.trust", "*");
 		// props.put("mail.debug", "true");
 
-		Session sess = null;
-
-		try {
-			if (!StringUtils.isEmpty(username))
-				sess = Session.getDefaultInstance(props, new Authenticator() {
-					protected PasswordAuthentication getPasswordAuthentication() {
-						return new PasswordAuthentication(username, password);
-					}
-				});
-			else
-				sess = Session.getDefaultInstance(props);
-		} catch (SecurityException e) {
-			if (!StringUtils.isEmpty(username))
-				sess = Session.getInstance(props, new Authenticator() {
-					protected PasswordAuthentication getPasswordAuthentication() {
-						return new PasswordAuthentication(username, password);
-					}
-				});
-			else
-				sess = Session.getInstance(props);
-		}
+		/*
+		 * Each configuration has its own session, the default one would keep
+		 * the properties of the first configuration ever used.
+		 */
+		if (!StringUtils.isEmpty(username)) {
+			final String user = username;
+			final String pswd = password;
+			return Session.getInstance(props, new Authenticator() {
+				protected PasswordAuthentication getPasswordAuthentication() {
+					return new PasswordAuthentication(user, pswd);
+				}
+			});
+		} else
+			return Session.getInstance(props);
+	}
 
-		MimeMessage message = new MimeMessage(sess);
+	/**
+	 * This method sends an email using the smtp-protocol. The email can be a
+	 * simple mail or a multipart mail containing up to 5 attachments. The
+	 * connection to the server is taken from the {@link SmtpTransportPool}.
+	 * 
+	 * @param account E-Mail account of the sender.
+	 * @param email E-Mail which should be sent.
+	 * @throws Exception
+	 */
+	public void send(EMail email) throws Exception {
+		SmtpTransportPool.Pool pool = SmtpTransportPool.get().getPool(this);
+		MimeMessage message = new MimeMessage(pool.getSession());
 
 		// The FROM field must to be the one configured for the SMTP connection.
 		// because of errors will be returned in the case the sender is not in
@@ -313,21 +349,8 @@ public class EMailSender {
 
 		message.setContent(mpMessage);
 
-		Transport trans = null;
-		if (authEncripted)
-			trans = sess.getTransport("smtps");
-		else
-			trans = sess.getTransport("smtp");
-
-		if (StringUtils.isEmpty(username)) {
-			trans.connect(host, port, null, null);
-		} else {
-			trans.connect(host, port, username, password);
-		}
-
 		Address[] adr = message.getAllRecipients();
-		trans.sendMessage(message, adr);
-		trans.close();
+		pool.send(message, adr);
 	}
 
 	public boolean isAuthEncripted() {
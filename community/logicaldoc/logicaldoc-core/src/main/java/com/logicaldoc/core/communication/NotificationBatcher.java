@@ -0,0 +1,272 @@
+package com.logicaldoc.core.communication;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.util.Context;
+import com.logicaldoc.util.concurrency.NamedThreadFactory;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Merges the notifications sent to the same recipient in a short time in a
+ * single digest message. The first notification for a recipient opens a
+ * window of <b>smtp.digest.window</b> seconds, all the notifications for the
+ * same recipient arrived in the meanwhile are delivered together when the
+ * window closes or as soon as they reach <b>smtp.digest.max</b>.<br>
+ * Only the messages with just one recipient and without attachments are
+ * merged, the others are sent immediately as well as all the messages when
+ * the window is not positive(the default).<br>
+ * The shared instance is the one declared in the Spring context, that sends
+ * the waiting notifications at shutdown. Outside a Spring context a
+ * standalone instance is created at the first use.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class NotificationBatcher {
+
+	protected static Logger log = LoggerFactory.getLogger(NotificationBatcher.class);
+
+	private static NotificationBatcher instance;
+
+	private ContextProperties config;
+
+	private long window = 0;
+
+	private int max = 50;
+
+	private ScheduledExecutorService scheduler;
+
+	// Key is the sender and recipient
+	private final Map<String, Digest> digests = new HashMap<String, Digest>();
+
+	/**
+	 * The notifications waiting for the same recipient
+	 */
+	private static class Digest {
+		private final EMailSender sender;
+
+		private final List<EMail> emails = new ArrayList<EMail>();
+
+		Digest(EMailSender sender) {
+			this.sender = sender;
+		}
+	}
+
+	public NotificationBatcher() {
+	}
+
+	/**
+	 * Constructor of a standalone batcher
+	 *
+	 * @param window The window in milliseconds
+	 * @param max Maximum number of notifications merged in a digest
+	 */
+	NotificationBatcher(long window, int max) {
+		this.window = window;
+		this.max = max;
+		if (window > 0)
+			scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("NotificationBatcher"));
+	}
+
+	/**
+	 * Initializes the shared instance reading the configuration
+	 */
+	public void start() {
+		if (scheduler != null)
+			stop();
+
+		if (config != null) {
+			window = config.getLong("smtp.digest.window", 0) * 1000L;
+			max = Math.max(1, config.getInt("smtp.digest.max", 50));
+		}
+		if (window > 0)
+			scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("NotificationBatcher"));
+
+		synchronized (NotificationBatcher.class) {
+			instance = this;
+		}
+	}
+
+	/**
+	 * Sends all the waiting notifications and stops the scheduler
+	 */
+	public void stop() {
+		synchronized (NotificationBatcher.class) {
+			if (instance == this)
+				instance = null;
+		}
+
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		flushAll();
+	}
+
+	/**
+	 * Gets the shared instance, outside a Spring context it is created at the
+	 * first invocation
+	 */
+	public static synchronized NotificationBatcher get() {
+		if (instance == null) {
+			NotificationBatcher batcher = new NotificationBatcher();
+			try {
+				batcher.setConfig(Context.get().getProperties());
+			} catch (Throwable t) {
+				log.warn(t.getMessage());
+			}
+			batcher.start();
+		}
+		return instance;
+	}
+
+	/**
+	 * Sends all the waiting notifications and shuts down the shared instance,
+	 * it will be recreated at the next use
+	 */
+	public static void shutdown() {
+		NotificationBatcher batcher;
+		synchronized (NotificationBatcher.class) {
+			batcher = instance;
+		}
+		if (batcher != null)
+			batcher.stop();
+	}
+
+	public void setConfig(ContextProperties config) {
+		this.config = config;
+	}
+
+	/**
+	 * Queues a notification
+	 *
+	 * @param sender The sender to use for the delivery
+	 * @param email The notification
+	 */
+	public void add(EMailSender sender, EMail email) throws Exception {
+		ScheduledExecutorService scheduler = this.scheduler;
+		if (window <= 0 || scheduler == null || !isMergeable(email)) {
+			sender.send(email);
+			return;
+		}
+
+		String key = sender.getConfigurationKey() + "|" + sender.getSender() + "|" + email.getAuthorAddress() + "|"
+				+ email.getTenantId() + "|" + email.getHtml() + "|"
+				+ email.getRecipients().iterator().next().getAddress().toLowerCase();
+		Digest full = null;
+		synchronized (digests) {
+			Digest digest = digests.get(key);
+			if (digest == null) {
+				digest = new Digest(sender);
+				digests.put(key, digest);
+				final Digest scheduled = digest;
+				scheduler.schedule(() -> flush(key, scheduled), window, TimeUnit.MILLISECONDS);
+			}
+			digest.emails.add(email);
+			if (digest.emails.size() >= max) {
+				digests.remove(key);
+				full = digest;
+			}
+		}
+
+		if (full != null)
+			deliver(full);
+	}
+
+	private boolean isMergeable(EMail email) {
+		return email.getRecipients().size() == 1 && email.getRecipientsCC().isEmpty()
+				&& email.getRecipientsBCC().isEmpty() && email.getAttachments().isEmpty()
+				&& email.getImages().isEmpty();
+	}
+
+	/**
+	 * Invoked when the window of a digest closes, the digest may have been
+	 * already delivered because it got full.
+	 */
+	private void flush(String key, Digest digest) {
+		synchronized (digests) {
+			if (digests.get(key) != digest)
+				return;
+			digests.remove(key);
+		}
+
+		try {
+			SmtpTransportPool.get().execute(() -> deliver(digest));
+		} catch (RejectedExecutionException e) {
+			// The pool is being stopped, the digest is not held anymore
+			deliver(digest);
+		}
+	}
+
+	/**
+	 * Immediately sends all the waiting notifications
+	 */
+	public void flushAll() {
+		List<Digest> waiting = null;
+		synchronized (digests) {
+			waiting = new ArrayList<Digest>(digests.values());
+			digests.clear();
+		}
+		for (Digest digest : waiting)
+			deliver(digest);
+	}
+
+	private void deliver(Digest digest) {
+		try {
+			digest.sender.send(merge(digest.emails));
+		} catch (Throwable t) {
+			log.error(t.getMessage(), t);
+		}
+	}
+
+	/**
+	 * Merges some notifications for the same recipient in one message
+	 */
+	static EMail merge(List<EMail> emails) {
+		EMail first = emails.get(0);
+		if (emails.size() == 1)
+			return first;
+
+		EMail digest = new EMail();
+		digest.setTenantId(first.getTenantId());
+		digest.setLocale(first.getLocale());
+		digest.setHtml(first.getHtml());
+		digest.setAccountId(first.getAccountId());
+		digest.setAuthor(first.getAuthor());
+		digest.setAuthorAddress(first.getAuthorAddress());
+		digest.setFrom(first.getFrom());
+		digest.setReplyTo(first.getReplyTo());
+		digest.setRecipients(new HashSet<Recipient>(first.getRecipients()));
+		digest.setSubject(first.getSubject() + " (+" + (emails.size() - 1) + ")");
+
+		StringBuilder sb = new StringBuilder();
+		for (EMail email : emails) {
+			if (first.isHtml()) {
+				if (sb.length() > 0)
+					sb.append("<hr/>");
+				sb.append("<h3>").append(StringEscapeUtils.escapeHtml(email.getSubject())).append("</h3>");
+				sb.append(email.getMessageText());
+			} else {
+				if (sb.length() > 0)
+					sb.append("\n\n");
+				sb.append(email.getSubject()).append("\n\n");
+				sb.append(email.getMessageText());
+			}
+		}
+		digest.setMessageText(sb.toString());
+
+		return digest;
+	}
+}
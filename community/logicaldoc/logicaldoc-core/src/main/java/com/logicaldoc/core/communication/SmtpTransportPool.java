@@ -0,0 +1,385 @@
+package com.logicaldoc.core.communication;
+
+import java.io.EOFException;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.util.Context;
+import com.logicaldoc.util.concurrency.NamedThreadFactory;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Keeps the connections to the SMTP servers open so that consecutive messages
+ * do not pay a new TCP and TLS handshake each. There is a pool for each
+ * distinct SMTP configuration, every pool opens at most
+ * <b>smtp.pool.size</b> connections at the same time(other senders wait up
+ * to <b>smtp.pool.wait</b> seconds for a free one). A connection is closed
+ * when it stays idle for more than <b>smtp.pool.idle</b> seconds or after
+ * <b>smtp.pool.maxmessages</b> messages, because many servers limit the
+ * messages per connection.<br>
+ * The asynchronous sendings are executed by a shared set of
+ * <b>smtp.pool.size</b> threads.<br>
+ * The shared instance is the one declared in the Spring context, that closes
+ * the connections at shutdown. Outside a Spring context a standalone instance
+ * is created at the first use.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class SmtpTransportPool {
+
+	protected static Logger log = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+	private static SmtpTransportPool instance;
+
+	// Key is the configuration
+	private final Map<String, Pool> pools = new ConcurrentHashMap<String, Pool>();
+
+	private ContextProperties config;
+
+	private ThreadPoolExecutor executor;
+
+	private int size = 5;
+
+	private long wait = 60000L;
+
+	private long idleTimeout = 60000L;
+
+	private int maxMessages = 100;
+
+	// Statistics
+	private final AtomicLong connections = new AtomicLong(0);
+
+	private final AtomicLong messages = new AtomicLong(0);
+
+	public SmtpTransportPool() {
+	}
+
+	/**
+	 * Initializes the shared instance reading the configuration
+	 */
+	public void start() {
+		if (executor != null)
+			stop();
+
+		if (config != null) {
+			size = Math.max(1, config.getInt("smtp.pool.size", 5));
+			wait = config.getLong("smtp.pool.wait", 60) * 1000L;
+			idleTimeout = config.getLong("smtp.pool.idle", 60) * 1000L;
+			maxMessages = config.getInt("smtp.pool.maxmessages", 100);
+		}
+
+		executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new NamedThreadFactory("EMailSender"));
+		executor.allowCoreThreadTimeOut(true);
+
+		synchronized (SmtpTransportPool.class) {
+			instance = this;
+		}
+		log.info("Installed SMTP transport pool with {} connections per server", size);
+	}
+
+	/**
+	 * Waits for the queued sendings and closes all the connections
+	 */
+	public void stop() {
+		synchronized (SmtpTransportPool.class) {
+			if (instance == this)
+				instance = null;
+		}
+
+		if (executor != null) {
+			executor.shutdown();
+			try {
+				if (!executor.awaitTermination(wait, TimeUnit.MILLISECONDS))
+					log.warn("Some e-mails have not been sent before the shutdown");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			executor = null;
+		}
+
+		for (Pool pool : pools.values())
+			pool.close();
+		pools.clear();
+	}
+
+	/**
+	 * Gets the shared instance, outside a Spring context it is created at the
+	 * first invocation
+	 */
+	public static synchronized SmtpTransportPool get() {
+		if (instance == null) {
+			SmtpTransportPool pool = new SmtpTransportPool();
+			try {
+				pool.setConfig(Context.get().getProperties());
+			} catch (Throwable t) {
+				log.warn(t.getMessage());
+			}
+			pool.start();
+		}
+		return instance;
+	}
+
+	/**
+	 * Closes all the connections and shuts down the shared instance, it will
+	 * be recreated at the next use
+	 */
+	public static void shutdown() {
+		SmtpTransportPool pool;
+		synchronized (SmtpTransportPool.class) {
+			pool = instance;
+		}
+		if (pool != null)
+			pool.stop();
+	}
+
+	/**
+	 * Executes a sending in one of the shared threads
+	 */
+	public void execute(Runnable sending) {
+		ThreadPoolExecutor executor = this.executor;
+		if (executor == null)
+			throw new RejectedExecutionException("The SMTP transport pool has been stopped");
+		executor.execute(sending);
+	}
+
+	/**
+	 * Gets the pool of connections for the configuration of the given sender
+	 */
+	public Pool getPool(EMailSender sender) {
+		String key = sender.getConfigurationKey();
+		Pool pool = pools.get(key);
+		if (pool == null) {
+			// Release the connections of the configurations no more in use
+			for (Pool p : pools.values())
+				p.closeExpired();
+
+			synchronized (pools) {
+				pool = pools.get(key);
+				if (pool == null) {
+					pool = new Pool(sender);
+					pools.put(key, pool);
+				}
+			}
+		}
+		return pool;
+	}
+
+	public long getConnections() {
+		return connections.get();
+	}
+
+	public long getMessages() {
+		return messages.get();
+	}
+
+	public void setConfig(ContextProperties config) {
+		this.config = config;
+	}
+
+	/**
+	 * Tells if an error is due to a connection closed by the server, in this
+	 * case the message has not been accepted and it can be sent again
+	 */
+	static boolean isConnectionFailure(Throwable error) {
+		// MessagingException.getCause() returns the next exception
+		Throwable t = error;
+		for (int i = 0; t != null && i < 10; i++, t = t.getCause()) {
+			if (t instanceof SocketException || t instanceof EOFException)
+				return true;
+			String message = t.getMessage();
+			if (message != null && (message.toLowerCase().contains("not connected") || message.contains("[EOF]")))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * An open connection
+	 */
+	private static class Connection {
+		private final Transport transport;
+
+		private long lastUsed = System.currentTimeMillis();
+
+		private int sent = 0;
+
+		Connection(Transport transport) {
+			this.transport = transport;
+		}
+
+		void close() {
+			try {
+				transport.close();
+			} catch (Throwable t) {
+				// Nothing to do
+			}
+		}
+	}
+
+	/**
+	 * The connections to a single SMTP configuration
+	 */
+	public class Pool {
+
+		private final Session session;
+
+		private final String protocol;
+
+		private final String host;
+
+		private final int port;
+
+		private final String username;
+
+		private final String password;
+
+		private final Semaphore permits = new Semaphore(size, true);
+
+		private final Deque<Connection> idle = new ArrayDeque<Connection>();
+
+		private Pool(EMailSender sender) {
+			this.session = sender.newSession();
+			this.protocol = sender.isAuthEncripted() ? "smtps" : "smtp";
+			this.host = sender.getHost();
+			this.port = sender.getPort();
+			this.username = StringUtils.isEmpty(sender.getUsername()) ? null : sender.getUsername();
+			this.password = StringUtils.isEmpty(sender.getUsername()) ? null : sender.getPassword();
+		}
+
+		/**
+		 * The session to use to create the messages
+		 */
+		public Session getSession() {
+			return session;
+		}
+
+		/**
+		 * Sends a message, if a reused connection turns out to be closed by
+		 * the server the message is sent again through a new one. Any other
+		 * failure is thrown because the server may have already accepted the
+		 * message.
+		 */
+		public void send(MimeMessage message, Address[] recipients) throws MessagingException {
+			try {
+				if (!permits.tryAcquire(wait, TimeUnit.MILLISECONDS))
+					throw new MessagingException("Timeout waiting for a connection to " + host);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MessagingException("Interrupted waiting for a connection to " + host, e);
+			}
+
+			try {
+				Connection connection = takeIdle();
+				if (connection != null) {
+					try {
+						send(connection, message, recipients);
+						return;
+					} catch (SendFailedException e) {
+						// The server refused some recipients, sending again would not help
+						connection.close();
+						throw e;
+					} catch (MessagingException | IllegalStateException e) {
+						connection.close();
+						if (!isConnectionFailure(e))
+							throw e;
+						log.debug("Reused connection to {} was closed, sending again: {}", host, e.getMessage());
+					}
+				}
+
+				connection = open();
+				try {
+					send(connection, message, recipients);
+				} catch (MessagingException e) {
+					connection.close();
+					throw e;
+				}
+			} finally {
+				permits.release();
+			}
+		}
+
+		private void send(Connection connection, MimeMessage message, Address[] recipients)
+				throws MessagingException {
+			connection.transport.sendMessage(message, recipients);
+			connection.sent++;
+			connection.lastUsed = System.currentTimeMillis();
+			messages.incrementAndGet();
+
+			if (maxMessages > 0 && connection.sent >= maxMessages) {
+				connection.close();
+			} else {
+				synchronized (idle) {
+					idle.push(connection);
+				}
+			}
+		}
+
+		private Connection takeIdle() {
+			closeExpired();
+			synchronized (idle) {
+				while (!idle.isEmpty()) {
+					Connection connection = idle.pop();
+					if (connection.transport.isConnected())
+						return connection;
+					connection.close();
+				}
+			}
+			return null;
+		}
+
+		private Connection open() throws MessagingException {
+			Transport transport = session.getTransport(protocol);
+			transport.connect(host, port, username, password);
+			connections.incrementAndGet();
+			log.debug("Opened connection to {}:{}", host, port);
+			return new Connection(transport);
+		}
+
+		/**
+		 * Closes the connections idle for too long
+		 */
+		void closeExpired() {
+			long limit = System.currentTimeMillis() - idleTimeout;
+			synchronized (idle) {
+				for (Iterator<Connection> iter = idle.iterator(); iter.hasNext();) {
+					Connection connection = iter.next();
+					if (connection.lastUsed < limit) {
+						iter.remove();
+						connection.close();
+					}
+				}
+			}
+		}
+
+		void close() {
+			synchronized (idle) {
+				for (Connection connection : idle)
+					connection.close();
+				idle.clear();
+			}
+		}
+	}
+}
@@ -30,6 +30,8 @@ import com.logicaldoc.core.store.Storer;
 import com.logicaldoc.core.util.DocUtil;
 import com.logicaldoc.util.Context;
 import com.logicaldoc.util.config.ContextProperties;
+import com.logicaldoc.util.exec.Exec;
+import com.logicaldoc.util.exec.ProcessPool;
 import com.logicaldoc.util.io.FileUtil;
 import com.logicaldoc.util.plugin.PluginRegistry;
 
@@ -50,6 +52,12 @@ public class FormatConverterManager {
 	 */
 	public static final String PDF_CONVERSION_SUFFIX = "conversion.pdf";
 
+	/**
+	 * Name of the process pool used by the converters that launch external
+	 * programs
+	 */
+	public static final String PROCESS_POOL = "converters";
+
 	protected static Logger log = LoggerFactory.getLogger(FormatConverterManager.class);
 
 	private Storer storer;
@@ -67,6 +75,64 @@ public class FormatConverterManager {
 	// All the available converters
 	private Map<String, FormatConverter> availableConverters = new HashMap<String, FormatConverter>();
 
+	private ProcessPool processPool;
+
+	/**
+	 * Starts the pool of shells used to launch the external converters, its
+	 * size is specified by the property converter.pool.size(0, the default,
+	 * disables the pool). The pool is not available on Windows.
+	 */
+	public void init() {
+		int size = config.getInt("converter.pool.size", 0);
+		if (size <= 0)
+			return;
+		if (Exec.isWindows()) {
+			log.warn("The converters process pool is not supported on Windows");
+			return;
+		}
+		try {
+			processPool = new ProcessPool(PROCESS_POOL, size);
+			processPool.start();
+			Exec.registerPool(processPool);
+		} catch (Throwable t) {
+			log.error("Unable to start the converters process pool", t);
+			processPool = null;
+		}
+	}
+
+	public void destroy() {
+		if (processPool != null) {
+			Exec.unregisterPool(PROCESS_POOL);
+			log.info("Converters executed {} jobs, {} jobs/s, queue latency {}ms", processPool.getJobs(),
+					getJobsPerSecond(), getQueueLatency());
+			processPool.stop();
+			processPool = null;
+		}
+	}
+
+	/**
+	 * Average number of external conversions completed per second
+	 */
+	public double getJobsPerSecond() {
+		return processPool != null ? processPool.getJobsPerSecond() : 0D;
+	}
+
+	/**
+	 * Average time in milliseconds an external conversion waits for a free
+	 * process
+	 */
+	public long getQueueLatency() {
+		return processPool != null ? processPool.getAverageQueueLatency() : 0L;
+	}
+
+	/**
+	 * The pool of processes used by the external converters, null if not
+	 * enabled
+	 */
+	public ProcessPool getProcessPool() {
+		return processPool;
+	}
+
 	/**
 	 * Retrieves the content of the Pdf conversion. If the Pdf conversion is not
 	 * available in the store, it is created.
@@ -33,7 +33,7 @@ public class ImageConverter extends AbstractFormatConverter {
 		try {
 			ContextProperties conf = Context.get().getProperties();
 			String commandLine = conf.getProperty(CONVERT) + " -compress JPEG " + src.getPath() + " " + dest.getPath();
-			Exec.exec(commandLine, null, null, 10);
+			Exec.exec(FormatConverterManager.PROCESS_POOL, commandLine, 10);
 
 			if (!dest.exists() || dest.length() < 1)
 				throw new Exception("Empty conversion");
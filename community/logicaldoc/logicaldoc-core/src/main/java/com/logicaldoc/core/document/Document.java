@@ -17,6 +17,9 @@ public class Document extends AbstractDocument {
 	// Useful but not persisted
 	public Long templateId;
 
+	// The triple indexed, deleted, status as loaded from the database
+	private int[] statsState;
+
 	public Document() {
 	}
 
@@ -77,6 +80,7 @@ public class Document extends AbstractDocument {
 		Document cloned = new Document();
 		cloned.copyAttributes((Document) this);
 		cloned.setId(getId());
+		cloned.setStatsState(getStatsState());
 		if (getIndexed() != INDEX_INDEXED)
 			cloned.setIndexed(getIndexed());
 		cloned.setCustomId(null);
@@ -95,4 +99,19 @@ public class Document extends AbstractDocument {
 	public void setTemplateId(Long templateId) {
 		this.templateId = templateId;
 	}
+
+	/**
+	 * The fields that determine in which statistics the document is counted,
+	 * as they were when the document was loaded or last stored
+	 *
+	 * @return the triple indexed, deleted, status or null if the document was
+	 *         not loaded from the database
+	 */
+	public int[] getStatsState() {
+		return statsState;
+	}
+
+	public void setStatsState(int[] statsState) {
+		this.statsState = statsState;
+	}
 }
\ No newline at end of file
@@ -227,7 +227,8 @@ public interface DocumentManager {
 	public Version deleteVersion(long versionId, History transition) throws Exception;
 
 	/**
-	 * Retrieves the document's content as a string
+	 * Retrieves the document's content as a string, the extraction stops at
+	 * <b>index.maxtext</b> characters
 	 * 
 	 * @param doc The document representation
 	 * @return The document's content
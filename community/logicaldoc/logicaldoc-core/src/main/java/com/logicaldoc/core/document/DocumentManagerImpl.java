@@ -20,6 +20,7 @@ import javax.mail.MessagingException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +51,9 @@ import com.logicaldoc.util.Context;
 import com.logicaldoc.util.config.ContextProperties;
 import com.logicaldoc.util.crypt.CryptUtil;
 import com.logicaldoc.util.io.FileUtil;
+import com.logicaldoc.util.io.LimitedWriter;
+import com.logicaldoc.util.metrics.Metrics;
+import com.logicaldoc.util.metrics.Timer;
 import com.logicaldoc.util.time.TimeDiff;
 import com.logicaldoc.util.time.TimeDiff.TimeField;
 
@@ -104,6 +108,19 @@ public class DocumentManagerImpl implements DocumentManager {
 	@Override
 	public void checkin(long docId, File file, String filename, boolean release, Document docVO, History transaction)
 			throws Exception {
+		Timer.Context timer = Metrics.get().timer("document.checkin").start();
+		try {
+			internalCheckin(docId, file, filename, release, docVO, transaction);
+		} catch (Exception e) {
+			timer.error();
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	private void internalCheckin(long docId, File file, String filename, boolean release, Document docVO,
+			History transaction) throws Exception {
 		assert (transaction != null);
 		assert (transaction.getUser() != null);
 		assert (transaction.getComment() != null);
@@ -272,7 +289,7 @@ public class DocumentManagerImpl implements DocumentManager {
 		}
 
 		// stores it
-		long stored = storer.store(is, doc.getId(), resourceName);
+		long stored = storer.store(is, doc, resourceName);
 		if (stored < 0)
 			throw new IOException("Unable to store the document");
 
@@ -304,7 +321,8 @@ public class DocumentManagerImpl implements DocumentManager {
 	}
 
 	/**
-	 * Retrieves the document's content as a string
+	 * Retrieves the document's content as a string, the extraction stops at
+	 * <b>index.maxtext</b> characters
 	 * 
 	 * @param doc The document representation
 	 * @return The document's content
@@ -328,11 +346,19 @@ public class DocumentManagerImpl implements DocumentManager {
 
 		log.debug("Using parser {} to parse document {}", parser.getClass().getName(), doc.getId());
 
-		// and gets some fields
+		// and gets some fields, the text not stored in the index is not
+		// extracted at all
 		if (parser != null) {
 			TenantDAO tDao = (TenantDAO) Context.get().getBean(TenantDAO.class);
-			content = parser.parse(storer.getStream(doc.getId(), resource), doc.getFileName(), null, locale, tDao
-					.findById(doc.getTenantId()).getName());
+			LimitedWriter writer = new LimitedWriter(config.getInt("index.maxtext", -1));
+			InputStream stream = storer.getStream(doc.getId(), resource);
+			try {
+				parser.parse(stream, doc.getFileName(), null, locale, tDao.findById(doc.getTenantId()).getName(),
+						writer, 0);
+			} finally {
+				IOUtils.closeQuietly(stream);
+			}
+			content = writer.toString();
 		}
 
 		if (content == null) {
@@ -63,6 +63,25 @@ public interface DocumentDAO extends PersistentObjectDAO<Document> {
 	 */
 	public List<Document> findByFolder(long folderId, Integer max);
 
+	/**
+	 * Finds a page of the documents direct children of the given folder,
+	 * ordered by identifier.
+	 * 
+	 * @param folderId Folder identifier
+	 * @param first Index of the first document to retrieve
+	 * @param max Maximum number of documents to retrieve (optional)
+	 * @return Collection of documents in the folder.
+	 */
+	public List<Document> findByFolder(long folderId, int first, Integer max);
+
+	/**
+	 * Counts the documents direct children of the given folder.
+	 * 
+	 * @param folderId Folder identifier
+	 * @return Number of not deleted documents in the folder
+	 */
+	public long countByFolder(long folderId);
+
 	/**
 	 * Finds all document of the specified status and locked by the specified
 	 * user
@@ -46,10 +46,12 @@ import com.logicaldoc.core.generic.GenericDAO;
 import com.logicaldoc.core.metadata.Attribute;
 import com.logicaldoc.core.security.Session;
 import com.logicaldoc.core.security.SessionManager;
-import com.logicaldoc.core.security.Tenant;
+import com.logicaldoc.core.security.TenantConfig;
+import com.logicaldoc.core.security.TenantConfigCache;
 import com.logicaldoc.core.security.User;
 import com.logicaldoc.core.security.dao.TenantDAO;
 import com.logicaldoc.core.security.dao.UserDAO;
+import com.logicaldoc.core.stats.StatsCounters;
 import com.logicaldoc.core.store.Storer;
 import com.logicaldoc.util.Context;
 import com.logicaldoc.util.config.ContextProperties;
@@ -251,11 +253,11 @@ public class HibernateDocumentDAO extends HibernatePersistentObjectDAO<Document>
 	public boolean store(Document doc, final History transaction) {
 		boolean result = true;
 		try {
-			Tenant tenant = tenantDAO.findById(doc.getTenantId());
+			TenantConfig tenant = TenantConfigCache.get().getConfig(doc.getTenantId());
 
 			if (transaction != null) {
 				transaction.setTenantId(doc.getTenantId());
-				transaction.setTenant(tenant.getName());
+				transaction.setTenant(tenant.getTenantName());
 			}
 
 			// Truncate publishing dates
@@ -265,21 +267,11 @@ public class HibernateDocumentDAO extends HibernatePersistentObjectDAO<Document>
 				doc.setStopPublishing(DateUtils.truncate(doc.getStopPublishing(), Calendar.DATE));
 
 			// Check if the document must be indexed
-			if (!FileUtil.matches(
-					doc.getFileName(),
-					config.getProperty(tenant.getName() + ".index.includes") == null ? "" : config.getProperty(tenant
-							.getName() + ".index.includes"),
-					config.getProperty(tenant.getName() + ".index.excludes") == null ? "" : config.getProperty(tenant
-							.getName() + ".index.excludes")))
+			if (!tenant.getIndexMatcher().matches(doc.getFileName()))
 				doc.setIndexed(Document.INDEX_SKIP);
 
 			// Check if the document must be barcoded
-			if (!FileUtil.matches(
-					doc.getFileName(),
-					config.getProperty(tenant.getName() + ".barcode.includes") == null ? "" : config.getProperty(tenant
-							.getName() + ".barcode.includes"),
-					config.getProperty(tenant.getName() + ".barcode.excludes") == null ? "" : config.getProperty(tenant
-							.getName() + ".barcode.excludes")))
+			if (!tenant.getBarcodeMatcher().matches(doc.getFileName()))
 				doc.setBarcoded(Document.BARCODE_SKIP);
 
 			Set<Tag> src = doc.getTags();
@@ -364,11 +356,25 @@ public class HibernateDocumentDAO extends HibernatePersistentObjectDAO<Document>
 			// Use unique filename in the same folder
 			setUniqueFilename(doc);
 
+			// Remember the previous state to update the statistics
+			int[] previousState = doc.getStatsState();
+			if (previousState == null && doc.getId() != 0L)
+				previousState = getStatsState(doc.getId());
+
 			// Save the document
 			saveOrUpdate(doc);
+			boolean flushed = true;
 			try {
-				flush();
+				getCurrentSession().flush();
 			} catch (Throwable t) {
+				flushed = false;
+			}
+
+			// Count only the changes that reached the database
+			if (flushed) {
+				int[] state = new int[] { doc.getIndexed(), doc.getDeleted(), doc.getStatus() };
+				StatsCounters.get().documentChanged(doc.getTenantId(), previousState, state);
+				doc.setStatsState(state);
 			}
 			if (doc.getDeleted() == 0 && doc.getId() != 0L)
 				refresh(doc);
@@ -395,6 +401,22 @@ public class HibernateDocumentDAO extends HibernatePersistentObjectDAO<Document>
 		return result;
 	}
 
+	/**
+	 * Reads from the database the fields of a document that determine in
+	 * which statistics it is counted, used for the instances not loaded by
+	 * Hibernate
+	 * 
+	 * @return the triple indexed, deleted, status or null if the document is
+	 *         not persisted
+	 */
+	private int[] getStatsState(long docId) {
+		SqlRowSet rs = queryForRowSet("select ld_indexed, ld_deleted, ld_status from ld_document where ld_id="
+				+ docId, null, null);
+		if (rs != null && rs.next())
+			return new int[] { rs.getInt(1), rs.getInt(2), rs.getInt(3) };
+		return null;
+	}
+
 	/**
 	 * Avoid file name duplications in the same folder
 	 */
@@ -665,6 +687,17 @@ public class HibernateDocumentDAO extends HibernatePersistentObjectDAO<Document>
 		return findByWhere("_entity.folder.id = ?1 ", new Object[] { new Long(folderId) }, null, max);
 	}
 
+	@Override
+	public List<Document> findByFolder(long folderId, int first, Integer max) {
+		return findByWhere("_entity.folder.id = ?1 ", new Object[] { new Long(folderId) }, "order by _entity.id",
+				first, max);
+	}
+
+	@Override
+	public long countByFolder(long folderId) {
+		return queryForLong("select count(*) from ld_document where ld_deleted=0 and ld_folderid=" + folderId);
+	}
+
 	@Override
 	public List<Document> findArchivedByFolder(long folderId) {
 		return findByWhere("_entity.folder.id = " + folderId + " and _entity.status=" + AbstractDocument.DOC_ARCHIVED,
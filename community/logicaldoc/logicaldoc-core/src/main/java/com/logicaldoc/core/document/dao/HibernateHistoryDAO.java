@@ -1,10 +1,8 @@
 package com.logicaldoc.core.document.dao;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
@@ -14,6 +12,9 @@ import com.logicaldoc.core.HibernatePersistentObjectDAO;
 import com.logicaldoc.core.RunLevel;
 import com.logicaldoc.core.communication.EventCollector;
 import com.logicaldoc.core.document.History;
+import com.logicaldoc.core.history.HistoryRetention;
+import com.logicaldoc.core.security.Tenant;
+import com.logicaldoc.core.stats.StatsCounters;
 import com.logicaldoc.util.sql.SqlUtil;
 
 /**
@@ -61,26 +62,7 @@ public class HibernateHistoryDAO extends HibernatePersistentObjectDAO<History> i
 	 */
 	@Override
 	public void cleanOldHistories(int ttl) {
-		if (ttl > 0) {
-			Date today = new Date();
-			GregorianCalendar cal = new GregorianCalendar();
-			cal.add(Calendar.DAY_OF_MONTH, -ttl);
-			Date ldDate = cal.getTime();
-
-			log.debug("today: " + today);
-			log.debug("ldDate: " + ldDate);
-
-			try {
-				int rowsUpdated = jdbcUpdate("UPDATE ld_history SET ld_deleted = 1, ld_lastmodified = ?"
-						+ " WHERE ld_deleted = 0 AND ld_date < ?", today, ldDate);
-
-				log.info("cleanOldHistories rows updated: " + rowsUpdated);
-			} catch (Exception e) {
-				if (log.isErrorEnabled())
-					log.error(e.getMessage(), e);
-			}
-
-		}
+		new HistoryRetention(this, "ld_history", "histories").purge(ttl);
 	}
 
 	@Override
@@ -97,7 +79,10 @@ public class HibernateHistoryDAO extends HibernatePersistentObjectDAO<History> i
 	public boolean store(History history) {
 		// Write only if the history is enabled
 		if (RunLevel.current().aspectEnabled(History.ASPECT)) {
+			boolean newHistory = history.getId() == 0L;
 			boolean ret = super.store(history);
+			if (ret && newHistory)
+				StatsCounters.get().add(Tenant.SYSTEM_ID, "histories", 1L);
 			if (ret)
 				EventCollector.get().newEvent(history);
 			return ret;
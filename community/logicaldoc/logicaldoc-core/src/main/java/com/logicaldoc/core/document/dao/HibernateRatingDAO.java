@@ -16,6 +16,8 @@ import com.logicaldoc.core.document.History;
 import com.logicaldoc.core.document.Rating;
 import com.logicaldoc.core.security.Session;
 import com.logicaldoc.core.security.SessionManager;
+import com.logicaldoc.core.security.Tenant;
+import com.logicaldoc.core.stats.StatsCounters;
 import com.logicaldoc.util.Context;
 
 /**
@@ -34,9 +36,12 @@ public class HibernateRatingDAO extends HibernatePersistentObjectDAO<Rating> imp
 
 	@Override
 	public boolean store(Rating rating, History transaction) {
+		boolean newRating = rating.getId() == 0L;
 		boolean result = super.store(rating);
 		if (!result)
 			return false;
+		if (newRating)
+			StatsCounters.get().add(Tenant.SYSTEM_ID, "votes", 1L);
 
 		try {
 			if (transaction != null) {
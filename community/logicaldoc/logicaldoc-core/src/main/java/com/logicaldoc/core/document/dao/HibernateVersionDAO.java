@@ -14,8 +14,10 @@ import com.logicaldoc.core.HibernatePersistentObjectDAO;
 import com.logicaldoc.core.document.Version;
 import com.logicaldoc.core.folder.Folder;
 import com.logicaldoc.core.folder.FolderDAO;
+import com.logicaldoc.core.security.TenantConfig;
+import com.logicaldoc.core.security.TenantConfigCache;
+import com.logicaldoc.core.stats.StatsCounters;
 import com.logicaldoc.core.store.Storer;
-import com.logicaldoc.util.config.ContextProperties;
 import com.logicaldoc.util.io.FileUtil;
 
 /**
@@ -74,10 +76,15 @@ public class HibernateVersionDAO extends HibernatePersistentObjectDAO<Version> i
 	public boolean store(Version version) {
 		boolean result = true;
 		try {
-			super.store(version);
+			boolean newVersion = version.getId() == 0L;
+			if (super.store(version) && newVersion) {
+				StatsCounters.get().add(version.getTenantId(), "versions", 1L);
+				if (version.getVersion() != null && version.getVersion().equals(version.getFileVersion()))
+					StatsCounters.get().add(version.getTenantId(), "docdir", version.getFileSize());
+			}
 			// Checks the context property 'document.maxversions'
-			ContextProperties bean = new ContextProperties();
-			int maxVersions = bean.getInt("document.maxversions");
+			TenantConfig config = TenantConfigCache.get().getConfig(version.getTenantId());
+			int maxVersions = config != null ? config.getMaxVersions() : 0;
 			Folder workspace = folderDAO.findWorkspace(version.getFolderId());
 			if (workspace != null && workspace.getMaxVersions() != null && workspace.getMaxVersions() > 0)
 				maxVersions = workspace.getMaxVersions();
@@ -9,6 +9,7 @@ import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.logicaldoc.core.conversion.FormatConverterManager;
 import com.logicaldoc.core.document.Document;
 import com.logicaldoc.util.Context;
 import com.logicaldoc.util.config.ContextProperties;
@@ -24,13 +25,13 @@ public class ImageThumbnailBuilder extends AbstractThumbnailBuilder {
 	protected static Logger log = LoggerFactory.getLogger(AbstractThumbnailBuilder.class);
 
 	@Override
-	public synchronized void buildThumbnail(String sid, Document document, String fileVersion, File src, File dest, int size, int quality)
+	public void buildThumbnail(String sid, Document document, String fileVersion, File src, File dest, int size, int quality)
 			throws IOException {
 		try {
 			ContextProperties conf = Context.get().getProperties();
 			String commandLine = conf.getProperty(CONVERT) + " -compress JPEG -quality " + Integer.toString(quality)
 					+ " -resize x" + Integer.toString(size) + " " + src.getPath() + " " + dest.getPath();
-			Exec.exec(commandLine, null, null, 10);
+			Exec.exec(FormatConverterManager.PROCESS_POOL, commandLine, 10);
 
 			if (!dest.exists() || dest.length() == 0) {
 				/*
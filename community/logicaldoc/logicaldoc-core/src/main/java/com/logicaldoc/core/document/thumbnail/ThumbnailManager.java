@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.commons.io.FilenameUtils;
@@ -73,29 +74,6 @@ public class ThumbnailManager {
 			return;
 		}
 
-		String tenantName = DocUtil.getTenantName(document);
-
-		int size = 150;
-		try {
-			ContextProperties conf=Context.get().getProperties();
-			size = Integer.parseInt(conf.getProperty(tenantName + ".gui." + type + ".size"));
-		} catch (Throwable t) {
-			log.error(t.getMessage());
-		}
-
-		int quality = 100;
-		try {
-			ContextProperties conf=Context.get().getProperties();
-			int buf = Integer.parseInt(conf.getProperty(tenantName + ".gui." + type + ".quality"));
-			if (buf < 1)
-				buf = 1;
-			if (buf > 100)
-				buf = 100;
-			quality = buf;
-		} catch (Throwable t) {
-			log.error(t.getMessage());
-		}
-
 		// Prepare I/O files
 		File src = null;
 		File dest = File.createTempFile("dest", suffix);
@@ -103,7 +81,8 @@ public class ThumbnailManager {
 		try {
 			src = writeToTempFile(document, fileVersion);
 
-			builder.buildThumbnail(sid, document, fileVersion, src, dest, size, quality);
+			builder.buildThumbnail(sid, document, fileVersion, src, dest, getSize(document, type),
+					getQuality(document, type));
 
 			// Put the resource
 			String resource = storer.getResourceName(document, getSuitableFileVersion(document, fileVersion),
@@ -118,6 +97,110 @@ public class ThumbnailManager {
 		}
 	}
 
+	/**
+	 * Creates the thumbnail and the tile of the specified document and file
+	 * version in a single pass: the content is copied from the storage just
+	 * once and in case of PDF the first page is rasterized just once, then
+	 * the two images are scaled from the same rendering. Already existing
+	 * images are not produced again.
+	 * 
+	 * @param document The document to be treated
+	 * @param fileVersion The file version(optional)
+	 * @param sid The session identifier(optional)
+	 * @throws IOException If some of the images cannot be produced, the other
+	 *         ones are stored anyway
+	 */
+	public void createImages(Document document, String fileVersion, String sid) throws IOException {
+		ThumbnailBuilder builder = getBuilder(document);
+		if (builder == null) {
+			log.warn("No builder found for document " + document.getId());
+			return;
+		}
+
+		String fver = getSuitableFileVersion(document, fileVersion);
+		Map<String, String> types = new LinkedHashMap<String, String>();
+		if (storer.size(document.getId(), storer.getResourceName(document, fver, SUFFIX_THUMB)) <= 0L)
+			types.put("thumbnail", SUFFIX_THUMB);
+		if (storer.size(document.getId(), storer.getResourceName(document, fver, SUFFIX_TILE)) <= 0L)
+			types.put("tile", SUFFIX_TILE);
+		if (types.isEmpty())
+			return;
+
+		File src = null;
+		File page = null;
+		try {
+			src = writeToTempFile(document, fileVersion);
+
+			// Rasterize the first page only once and scale it for every image
+			if (builder instanceof PdfThumbnailBuilder) {
+				page = File.createTempFile("render", SUFFIX_THUMB);
+				((PdfThumbnailBuilder) builder).renderPage(src, page, 1);
+				builder = new ImageThumbnailBuilder();
+			}
+
+			Throwable error = null;
+			for (String type : types.keySet()) {
+				String suffix = types.get(type);
+				File dest = File.createTempFile("dest", suffix);
+				try {
+					builder.buildThumbnail(sid, document, fileVersion, page != null ? page : src, dest,
+							getSize(document, type), getQuality(document, type));
+					if (storer.store(dest, document.getId(), storer.getResourceName(document, fver, suffix)) <= 0)
+						throw new IOException("Cannot store the " + type);
+				} catch (Throwable e) {
+					log.warn("Error rendering " + type + " for document: " + document.getId() + " - "
+							+ document.getFileName(), e);
+					error = e;
+				} finally {
+					FileUtil.strongDelete(dest);
+				}
+			}
+
+			// Let the caller retry, the images already stored are not produced
+			// again
+			if (error != null)
+				throw new IOException("Cannot render the images of document " + document.getId() + ": "
+						+ error.getMessage(), error);
+		} finally {
+			FileUtil.strongDelete(src);
+			FileUtil.strongDelete(page);
+		}
+	}
+
+	/**
+	 * Gets the configured size of the given image type(thumbnail, tile)
+	 */
+	private int getSize(Document document, String type) {
+		int size = 150;
+		try {
+			ContextProperties conf = Context.get().getProperties();
+			size = Integer.parseInt(conf.getProperty(DocUtil.getTenantName(document) + ".gui." + type + ".size"));
+		} catch (Throwable t) {
+			log.error(t.getMessage());
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the configured quality of the given image type(thumbnail, tile)
+	 */
+	private int getQuality(Document document, String type) {
+		int quality = 100;
+		try {
+			ContextProperties conf = Context.get().getProperties();
+			int buf = Integer.parseInt(conf.getProperty(DocUtil.getTenantName(document) + ".gui." + type
+					+ ".quality"));
+			if (buf < 1)
+				buf = 1;
+			if (buf > 100)
+				buf = 100;
+			quality = buf;
+		} catch (Throwable t) {
+			log.error(t.getMessage());
+		}
+		return quality;
+	}
+
 	/**
 	 * Creates the thumbnail for the specified document
 	 * 
@@ -0,0 +1,300 @@
+package com.logicaldoc.core.document.thumbnail;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.core.document.Document;
+import com.logicaldoc.core.document.dao.DocumentDAO;
+import com.logicaldoc.core.generic.Generic;
+import com.logicaldoc.core.generic.GenericDAO;
+import com.logicaldoc.util.concurrency.NamedThreadFactory;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Renders thumbnails and tiles in background. The requests are persisted as
+ * {@link Generic}s of type <code>thumbnailjob</code>(qualifier is the
+ * document ID, subtype the file version, integer1 the failed attempts and
+ * date1 the date of the next attempt) so the pending work survives a restart,
+ * and are processed by a bounded pool of workers sized on the available
+ * processors. Concurrent requests for the same document and file version are
+ * merged into a single rendering.<br>
+ * A failed rendering is retried up to <b>thumbnail.renderer.retries</b> times
+ * waiting <b>thumbnail.renderer.retry.delay</b> seconds, doubled at each
+ * attempt. The record of a job is physically deleted once the job is
+ * completed or abandoned.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class ThumbnailRenderer {
+
+	public static final String JOB_TYPE = "thumbnailjob";
+
+	private static Logger log = LoggerFactory.getLogger(ThumbnailRenderer.class);
+
+	private ContextProperties config;
+
+	private ThumbnailManager thumbnailManager;
+
+	private DocumentDAO documentDao;
+
+	private GenericDAO genericDao;
+
+	private ThreadPoolExecutor executor;
+
+	// Resubmits the failed renderings once their delay has elapsed
+	private ScheduledThreadPoolExecutor scheduler;
+
+	private int retries = 3;
+
+	private long retryDelay = 60000L;
+
+	/**
+	 * Requests being rendered or waiting in the queue, the key is
+	 * docId-fileVersion
+	 */
+	private ConcurrentHashMap<String, Boolean> inflight = new ConcurrentHashMap<String, Boolean>();
+
+	public void start() {
+		if (executor != null)
+			stop();
+
+		int threads = config.getInt("thumbnail.renderer.threads", 0);
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		int queueSize = config.getInt("thumbnail.renderer.queue", 1000);
+
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(
+				queueSize), new NamedThreadFactory("ThumbnailRenderer"));
+		executor.allowCoreThreadTimeOut(true);
+		scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("ThumbnailRendererRetry"));
+
+		retries = Math.max(0, config.getInt("thumbnail.renderer.retries", 3));
+		retryDelay = Math.max(0, config.getInt("thumbnail.renderer.retry.delay", 60)) * 1000L;
+		log.info("Installed thumbnail renderer with {} workers", threads);
+
+		recover();
+	}
+
+	public void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		if (executor != null) {
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(3, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			executor = null;
+		}
+		inflight.clear();
+	}
+
+	/**
+	 * Requests the rendering of the thumbnail and tile of a document. The
+	 * method returns immediately, the images will be available in the storage
+	 * once rendered.
+	 *
+	 * @param document The document to render
+	 * @param fileVersion The file version(optional)
+	 * @param sid The session identifier(optional)
+	 *
+	 * @return true if a new rendering has been scheduled, false if the same
+	 *         rendering was already in progress
+	 */
+	public boolean request(Document document, String fileVersion, String sid) {
+		if (fileVersion == null)
+			fileVersion = document.getFileVersion();
+		String key = document.getId() + "-" + fileVersion;
+		if (inflight.putIfAbsent(key, Boolean.TRUE) != null)
+			return false;
+
+		try {
+			Generic job = genericDao.findByAlternateKey(JOB_TYPE, fileVersion, document.getId(),
+					document.getTenantId());
+			if (job == null) {
+				job = new Generic(JOB_TYPE, fileVersion, document.getId(), document.getTenantId());
+				job.setInteger1(0L);
+				job.setDate1(new Date());
+				genericDao.store(job);
+			}
+		} catch (Throwable t) {
+			log.warn("Unable to persist the rendering of document {}", document.getId(), t);
+		}
+
+		return submit(key, document.getId(), fileVersion, sid);
+	}
+
+	/**
+	 * Tells if the images of the given document are being rendered
+	 */
+	public boolean isRendering(long docId, String fileVersion) {
+		return inflight.containsKey(docId + "-" + fileVersion);
+	}
+
+	/**
+	 * Number of renderings waiting for a worker
+	 */
+	public int getQueueSize() {
+		return executor != null ? executor.getQueue().size() : 0;
+	}
+
+	private boolean submit(final String key, final long docId, final String fileVersion, final String sid) {
+		ThreadPoolExecutor executor = this.executor;
+		if (executor == null) {
+			inflight.remove(key);
+			return false;
+		}
+
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					render(key, docId, fileVersion, sid);
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			// The job remains persisted and will be taken again at the next
+			// request or restart
+			inflight.remove(key);
+			log.warn("Thumbnail renderer queue is full, rendering of document {} postponed", docId);
+			return false;
+		}
+	}
+
+	private void render(String key, long docId, String fileVersion, String sid) {
+		boolean retrying = false;
+		try {
+			Document document = documentDao.findById(docId);
+			if (document != null && document.getDeleted() == 0) {
+				long time = System.currentTimeMillis();
+				thumbnailManager.createImages(document, fileVersion, sid);
+				log.debug("Rendered images of document {} file version {} in {}ms", docId, fileVersion,
+						System.currentTimeMillis() - time);
+			}
+		} catch (Throwable t) {
+			log.warn("Error rendering images of document {}", docId, t);
+			retrying = retry(key, docId, fileVersion, sid);
+		} finally {
+			if (!retrying) {
+				deleteJobs(docId, fileVersion);
+				inflight.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Schedules a new attempt of a failed rendering, unless the maximum number
+	 * of retries has been reached
+	 *
+	 * @return true if the rendering has been scheduled again
+	 */
+	private boolean retry(final String key, final long docId, final String fileVersion, final String sid) {
+		ScheduledThreadPoolExecutor scheduler = this.scheduler;
+		if (scheduler == null)
+			return false;
+
+		try {
+			List<Generic> jobs = genericDao.findByTypeAndSubtype(JOB_TYPE, fileVersion, docId, null);
+			if (jobs.isEmpty())
+				return false;
+
+			Generic job = jobs.get(0);
+			long attempts = (job.getInteger1() != null ? job.getInteger1() : 0L) + 1;
+			if (attempts > retries) {
+				log.warn("Rendering of document {} abandoned after {} attempts", docId, attempts);
+				return false;
+			}
+
+			long delay = retryDelay << Math.min(attempts - 1, 10);
+			job.setInteger1(attempts);
+			job.setDate1(new Date(System.currentTimeMillis() + delay));
+			genericDao.store(job);
+
+			schedule(scheduler, key, docId, fileVersion, sid, delay);
+			log.info("Rendering of document {} will be retried in {}ms", docId, delay);
+			return true;
+		} catch (Throwable t) {
+			// The job remains persisted and will be taken again at the restart
+			log.warn("Unable to retry the rendering of document {}", docId, t);
+			inflight.remove(key);
+			return true;
+		}
+	}
+
+	private void schedule(ScheduledThreadPoolExecutor scheduler, final String key, final long docId,
+			final String fileVersion, final String sid, long delay) {
+		scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				submit(key, docId, fileVersion, sid);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Physically deletes the records of a job, so they do not pile up in the
+	 * generics table
+	 */
+	private void deleteJobs(long docId, String fileVersion) {
+		try {
+			genericDao.jdbcUpdate("delete from ld_generic where ld_type=? and ld_subtype=? and ld_qualifier=?",
+					JOB_TYPE, fileVersion, docId);
+		} catch (Throwable t) {
+			log.warn(t.getMessage(), t);
+		}
+	}
+
+	/**
+	 * Reschedules the jobs persisted before the last shutdown, respecting the
+	 * delay of those waiting for a retry
+	 */
+	private void recover() {
+		try {
+			List<Generic> jobs = genericDao.findByTypeAndSubtype(JOB_TYPE, null, null, null);
+			for (Generic job : jobs) {
+				String key = job.getQualifier() + "-" + job.getSubtype();
+				if (inflight.putIfAbsent(key, Boolean.TRUE) != null)
+					continue;
+				long delay = job.getDate1() != null ? job.getDate1().getTime() - System.currentTimeMillis() : 0L;
+				if (delay > 0)
+					schedule(scheduler, key, job.getQualifier(), job.getSubtype(), null, delay);
+				else
+					submit(key, job.getQualifier(), job.getSubtype(), null);
+			}
+			if (!jobs.isEmpty())
+				log.info("Rescheduled {} pending renderings", jobs.size());
+		} catch (Throwable t) {
+			log.warn("Unable to recover the pending renderings", t);
+		}
+	}
+
+	public void setConfig(ContextProperties config) {
+		this.config = config;
+	}
+
+	public void setThumbnailManager(ThumbnailManager thumbnailManager) {
+		this.thumbnailManager = thumbnailManager;
+	}
+
+	public void setDocumentDao(DocumentDAO documentDao) {
+		this.documentDao = documentDao;
+	}
+
+	public void setGenericDao(GenericDAO genericDao) {
+		this.genericDao = genericDao;
+	}
+}
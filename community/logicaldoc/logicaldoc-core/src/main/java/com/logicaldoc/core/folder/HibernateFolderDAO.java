@@ -34,6 +34,7 @@ import com.logicaldoc.core.document.dao.DocumentDAO;
 import com.logicaldoc.core.metadata.Attribute;
 import com.logicaldoc.core.security.Group;
 import com.logicaldoc.core.security.Permission;
+import com.logicaldoc.core.security.PrincipalCache;
 import com.logicaldoc.core.security.Tenant;
 import com.logicaldoc.core.security.User;
 import com.logicaldoc.core.security.dao.TenantDAO;
@@ -1080,6 +1081,9 @@ public class HibernateFolderDAO extends HibernatePersistentObjectDAO<Folder> imp
 		} catch (Throwable e) {
 			result = false;
 			log.error(e.getMessage(), e);
+		} finally {
+			// The ACLs have been written bypassing the DAO
+			PrincipalCache.get().invalidateAll();
 		}
 
 		return result;
@@ -1,10 +1,8 @@
 package com.logicaldoc.core.folder;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
@@ -13,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import com.logicaldoc.core.HibernatePersistentObjectDAO;
 import com.logicaldoc.core.RunLevel;
 import com.logicaldoc.core.communication.EventCollector;
+import com.logicaldoc.core.history.HistoryRetention;
 import com.logicaldoc.util.sql.SqlUtil;
 
 /**
@@ -46,22 +45,7 @@ public class HibernateFolderHistoryDAO extends HibernatePersistentObjectDAO<Fold
 
 	@Override
 	public void cleanOldHistories(int ttl) {
-		if (ttl > 0) {
-			Date today = new Date();
-			GregorianCalendar cal = new GregorianCalendar();
-			cal.add(Calendar.DAY_OF_MONTH, -ttl);
-			Date ldDate = cal.getTime();
-
-			try {
-				int rowsUpdated = jdbcUpdate("UPDATE ld_folder_history SET ld_deleted = 1, ld_lastmodified = ?"
-						+ " WHERE ld_deleted = 0 AND ld_date < ?", today, ldDate);
-
-				log.info("cleanOldHistories rows updated: " + rowsUpdated);
-			} catch (Exception e) {
-				if (log.isErrorEnabled())
-					log.error(e.getMessage(), e);
-			}
-		}
+		new HistoryRetention(this, "ld_folder_history", null).purge(ttl);
 	}
 
 	@Override
@@ -0,0 +1,314 @@
+package com.logicaldoc.core.history;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.support.rowset.SqlRowSetMetaData;
+
+import com.logicaldoc.core.PersistentObjectDAO;
+import com.logicaldoc.core.security.Tenant;
+import com.logicaldoc.core.stats.StatsCounters;
+import com.logicaldoc.util.Context;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Physically removes the expired records from a history table(eg.
+ * ld_history). The records are deleted in batches of
+ * <code>history.retention.batch</code> rows, each batch being a short
+ * statement on its own, with a pause of
+ * <code>history.retention.pause</code> milliseconds between two batches.<br>
+ * If <code>history.archive</code> is true, before being deleted the records
+ * are appended to a gzipped CSV file inside the folder
+ * <code>history.archive.dir</code>.<br>
+ * If <code>history.partitioned</code> is true and the table has been
+ * partitioned by range of <code>ld_date</code>, the partitions entirely
+ * older than the limit are dropped instead of deleting their records one by
+ * one. This is supported on PostgreSQL(declarative partitioning, where the
+ * partition of the next month is also created in advance) and MySQL(RANGE
+ * COLUMNS partitioning); the partitioning of the table must be done by the
+ * DBA.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class HistoryRetention {
+
+	protected static Logger log = LoggerFactory.getLogger(HistoryRetention.class);
+
+	private static final Pattern PG_UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+
+	private static final Pattern MYSQL_BOUND = Pattern.compile("'([^']+)'");
+
+	private PersistentObjectDAO<?> dao;
+
+	private String table;
+
+	private String stat;
+
+	/**
+	 * Constructor
+	 *
+	 * @param dao The DAO used to access the database
+	 * @param table Name of the history table
+	 * @param stat Name of the statistic that counts the records of the table,
+	 *        can be null
+	 */
+	public HistoryRetention(PersistentObjectDAO<?> dao, String table, String stat) {
+		this.dao = dao;
+		this.table = table;
+		this.stat = stat;
+	}
+
+	/**
+	 * Removes all the records older than the given number of days
+	 *
+	 * @param ttl The maximum age in days of the records, if not positive
+	 *        nothing is done
+	 * @return Number of removed records
+	 */
+	public long purge(int ttl) {
+		if (ttl <= 0)
+			return 0;
+		GregorianCalendar cal = new GregorianCalendar();
+		cal.add(Calendar.DAY_OF_MONTH, -ttl);
+		return purge(cal.getTime());
+	}
+
+	/**
+	 * Removes all the records older than a given date
+	 *
+	 * @param limit The records having a date before this are removed
+	 * @return Number of removed records
+	 */
+	public long purge(Date limit) {
+		ContextProperties config = Context.get().getProperties();
+		boolean archive = config.getBoolean("history.archive", false);
+		boolean partitioned = config.getBoolean("history.partitioned", false);
+
+		log.info("Purging the records of {} older than {}", table, limit);
+		long purged = 0;
+		try {
+			/*
+			 * When there is no archive to write the partitions can be dropped
+			 * straight away, otherwise their records must be archived first.
+			 */
+			if (partitioned && !archive)
+				purged += dropPartitions(limit);
+
+			purged += deleteInBatches(limit, config.getInt("history.retention.batch", 1000),
+					config.getLong("history.retention.pause", 0L),
+					archive ? getArchiveFile(config) : null);
+
+			if (partitioned) {
+				if (archive)
+					purged += dropPartitions(limit);
+				createNextPartition();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("Purge of {} interrupted", table);
+		} catch (Throwable t) {
+			log.error(t.getMessage(), t);
+		} finally {
+			if (stat != null)
+				StatsCounters.get().add(Tenant.SYSTEM_ID, stat, -purged);
+		}
+
+		log.info("Purged {} records of {}", purged, table);
+		return purged;
+	}
+
+	private long deleteInBatches(Date limit, int batch, long pause, File archiveFile) throws IOException,
+			InterruptedException {
+		long deleted = 0;
+		Writer archive = null;
+		try {
+			/*
+			 * Walk the table by ID, so every batch resumes where the previous
+			 * one stopped even if ld_date is not indexed
+			 */
+			long lastId = Long.MIN_VALUE;
+			while (true) {
+				@SuppressWarnings("unchecked")
+				List<Long> ids = dao.queryForList("select ld_id from " + table
+						+ " where ld_id > ? and ld_date < ? order by ld_id", new Object[] { lastId, limit },
+						Long.class, batch);
+				if (ids.isEmpty())
+					break;
+				lastId = ids.get(ids.size() - 1);
+
+				String idsList = StringUtils.join(ids, ',');
+				if (archiveFile != null) {
+					boolean header = archive == null;
+					if (archive == null)
+						archive = openArchive(archiveFile);
+					archive(idsList, archive, header);
+				}
+
+				deleted += dao.jdbcUpdate("delete from " + table + " where ld_id in (" + idsList + ")");
+				log.debug("Deleted {} records from {}", deleted, table);
+
+				if (ids.size() < batch)
+					break;
+				if (pause > 0)
+					Thread.sleep(pause);
+			}
+		} finally {
+			if (archive != null)
+				archive.close();
+		}
+		return deleted;
+	}
+
+	private File getArchiveFile(ContextProperties config) {
+		File dir = new File(config.getPropertyWithSubstitutions("history.archive.dir"));
+		dir.mkdirs();
+		return new File(dir, table + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv.gz");
+	}
+
+	private Writer openArchive(File file) throws IOException {
+		log.info("Archiving the records of {} into {}", table, file.getPath());
+		return new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file), true), "UTF-8");
+	}
+
+	/**
+	 * Appends the given records to the archive, the records are written
+	 * before being deleted so nothing gets lost if the deletion fails.
+	 */
+	private void archive(String idsList, Writer archive, boolean header) throws IOException {
+		SqlRowSet rs = dao.queryForRowSet("select * from " + table + " where ld_id in (" + idsList + ")", null,
+				null);
+		if (rs == null)
+			throw new IOException("Unable to read the records of " + table);
+
+		SqlRowSetMetaData meta = rs.getMetaData();
+		int columns = meta.getColumnCount();
+		StringBuilder sb = new StringBuilder();
+		if (header) {
+			for (int i = 1; i <= columns; i++) {
+				if (i > 1)
+					sb.append(',');
+				sb.append(meta.getColumnName(i).toLowerCase());
+			}
+			sb.append('\n');
+			archive.write(sb.toString());
+		}
+
+		while (rs.next()) {
+			sb.setLength(0);
+			for (int i = 1; i <= columns; i++) {
+				if (i > 1)
+					sb.append(',');
+				Object value = rs.getObject(i);
+				if (value != null)
+					sb.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+			}
+			sb.append('\n');
+			archive.write(sb.toString());
+		}
+		archive.flush();
+	}
+
+	/**
+	 * Drops the partitions of the table whose upper bound is not after the
+	 * given limit
+	 *
+	 * @return The number of records contained in the dropped partitions
+	 */
+	private long dropPartitions(Date limit) {
+		String dbms = dao.getDbms();
+		long dropped = 0;
+		if ("postgresql".equals(dbms)) {
+			SqlRowSet rs = dao.queryForRowSet("select c.relname, pg_get_expr(c.relpartbound, c.oid) from pg_inherits i"
+					+ " join pg_class c on c.oid = i.inhrelid join pg_class p on p.oid = i.inhparent"
+					+ " where p.relname = ?", new Object[] { table }, null);
+			while (rs != null && rs.next()) {
+				String partition = rs.getString(1);
+				Date upperBound = parseBound(rs.getString(2), PG_UPPER_BOUND);
+				if (upperBound != null && !upperBound.after(limit)) {
+					dropped += dao.queryForLong("select count(*) from " + partition);
+					dao.jdbcUpdate("drop table " + partition);
+					log.info("Dropped partition {} of {}", partition, table);
+				}
+			}
+		} else if ("mysql".equals(dbms)) {
+			SqlRowSet rs = dao.queryForRowSet("select partition_name, partition_description"
+					+ " from information_schema.partitions where table_schema = database() and table_name = ?"
+					+ " and partition_method = 'RANGE COLUMNS'", new Object[] { table }, null);
+			while (rs != null && rs.next()) {
+				String partition = rs.getString(1);
+				Date upperBound = parseBound(rs.getString(2), MYSQL_BOUND);
+				if (upperBound != null && !upperBound.after(limit)) {
+					dropped += dao.queryForLong("select count(*) from " + table + " partition (" + partition + ")");
+					dao.jdbcUpdate("alter table " + table + " drop partition " + partition);
+					log.info("Dropped partition {} of {}", partition, table);
+				}
+			}
+		} else {
+			log.debug("Partitions not supported on {}", dbms);
+		}
+		return dropped;
+	}
+
+	/**
+	 * Creates the monthly partition for the next month if the table is
+	 * partitioned, just on PostgreSQL because MySQL needs a reorganization of
+	 * the last partition.
+	 */
+	private void createNextPartition() {
+		if (!"postgresql".equals(dao.getDbms())
+				|| dao.queryForLong("select count(*) from pg_partitioned_table t join pg_class c on c.oid = t.partrelid"
+						+ " where c.relname = '" + table + "'") < 1)
+			return;
+
+		GregorianCalendar cal = new GregorianCalendar();
+		cal.set(Calendar.DAY_OF_MONTH, 1);
+		cal.add(Calendar.MONTH, 1);
+		Date from = cal.getTime();
+		cal.add(Calendar.MONTH, 1);
+		Date to = cal.getTime();
+
+		SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+		String partition = table + "_p" + new SimpleDateFormat("yyyyMM").format(from);
+		try {
+			dao.jdbcUpdate("create table if not exists " + partition + " partition of " + table + " for values from ('"
+					+ df.format(from) + "') to ('" + df.format(to) + "')");
+		} catch (Throwable t) {
+			log.warn("Unable to create partition {}: {}", partition, t.getMessage());
+		}
+	}
+
+	static Date parseBound(String expression, Pattern pattern) {
+		if (expression == null)
+			return null;
+		Matcher matcher = pattern.matcher(expression);
+		if (!matcher.find())
+			return null;
+
+		String value = matcher.group(1);
+		try {
+			if (value.length() >= 19)
+				return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(value.substring(0, 19));
+			else
+				return new SimpleDateFormat("yyyy-MM-dd").parse(value);
+		} catch (ParseException e) {
+			return null;
+		}
+	}
+}
@@ -16,6 +16,7 @@ import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.logicaldoc.util.StringUtil;
+import com.logicaldoc.util.io.LimitedWriter;
 
 /**
  * Text extractor for AbiWord documents.
@@ -70,7 +71,7 @@ public class AbiWordParser extends AbstractParser {
 	}
 
 	@Override
-	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, StringBuffer content) {
+	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, LimitedWriter content) {
 		try {
 			SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
 			saxParserFactory.setValidating(false);
@@ -5,18 +5,22 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.io.Writer;
 import java.util.Locale;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.logicaldoc.core.security.Tenant;
 import com.logicaldoc.util.Context;
+import com.logicaldoc.util.io.LimitedWriter;
+import com.logicaldoc.util.metrics.Metrics;
+import com.logicaldoc.util.metrics.Timer;
 
 /**
  * Abstract implementation of a Parser
@@ -47,46 +51,79 @@ public abstract class AbstractParser implements Parser {
 	}
 
 	@Override
-	public String parse(final InputStream input, String filename, String encoding, Locale locale, String tenant) {
+	public String parse(InputStream input, String filename, String encoding, Locale locale, String tenant) {
+		LimitedWriter content = new LimitedWriter(0);
+		parse(input, filename, encoding, locale, tenant, content, 0);
+		return content.toString();
+	}
+
+	@Override
+	public void parse(InputStream input, String filename, String encoding, Locale locale, String tenant,
+			Writer output, long maxText) {
 		log.debug("Parse started");
-		StringBuffer content = new StringBuffer();
+		LimitedWriter content = (output instanceof LimitedWriter && maxText <= 0) ? (LimitedWriter) output
+				: new LimitedWriter(output, maxText);
 
 		Locale lcl = locale != null ? locale : Locale.ENGLISH;
-		String tnt = locale != null ? tenant : Tenant.DEFAULT_NAME;
+		String tnt = tenant != null ? tenant : Tenant.DEFAULT_NAME;
 
 		long timeout = 0;
 
 		try {
-			timeout = Context.get().getProperties().getInt(tenant + ".parser.timeout", 120);
+			timeout = Context.get().getProperties().getInt(tnt + ".parser.timeout", 120);
 		} catch (Throwable e) {
 			log.warn(e.getMessage());
 		}
 
-		if (timeout <= 0)
-			try {
-				internalParse(input, filename, encoding, lcl, tnt, content);
-			} catch (Throwable e) {
-				log.error(e.getMessage(), e);
-			}
-		else {
-			// Invoke in a separate thread
-			ExecutorService executor = Executors.newSingleThreadExecutor();
-			String ret = null;
-			try {
-				ret = executor
-						.invokeAll(Arrays.asList(new InternalParseTask(input, filename, encoding, lcl, tnt, content)),
-								timeout, TimeUnit.SECONDS).get(0).get();
-			} catch (Throwable e) {
-				log.warn(e.getMessage(), e);
+		Timer.Context timer = Metrics.get().timer("parser.parse").start();
+		try {
+			if (timeout <= 0) {
+				try {
+					internalParse(input, filename, encoding, lcl, tnt, content);
+				} catch (Throwable e) {
+					timer.error();
+					log.error(e.getMessage(), e);
+				}
+			} else {
+				// Invoke in one of the shared parsing threads
+				Future<String> future = null;
+				try {
+					future = ParserExecutor.get().submit(
+							new InternalParseTask(input, filename, encoding, lcl, tnt, content));
+				} catch (RejectedExecutionException e) {
+					/*
+					 * Parsing in the current thread would escape the timeout,
+					 * better to give up
+					 */
+					log.warn("Too many parsings in progress, {} has not been parsed", filename);
+					timer.error();
+				}
+
+				if (future != null)
+					try {
+						future.get(timeout, TimeUnit.SECONDS);
+					} catch (TimeoutException e) {
+						log.warn("Parse timed out");
+						timer.error();
+						ParserExecutor.get().timedOut(future);
+						content.stop();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						future.cancel(true);
+						content.stop();
+					} catch (Throwable e) {
+						timer.error();
+						log.warn(e.getMessage(), e);
+					}
 			}
-			if (!"completed".equals(ret))
-				log.warn("Parse timed out");
-			executor.shutdownNow();
+		} finally {
+			timer.stop();
 		}
+		Metrics.get().histogram("parser.parse.chars").update(content.getWritten());
 
+		if (content.isTruncated())
+			log.debug("Parse stopped after {} characters", content.getWritten());
 		log.debug("Parse Finished");
-
-		return content.toString();
 	}
 
 	/**
@@ -103,10 +140,10 @@ public abstract class AbstractParser implements Parser {
 
 		private String tenant;
 
-		private StringBuffer content;
+		private LimitedWriter content;
 
 		public InternalParseTask(InputStream is, String filename, String encoding, Locale locale, String tenant,
-				StringBuffer content) {
+				LimitedWriter content) {
 			super();
 			this.is = is;
 			this.filename = filename;
@@ -117,8 +154,10 @@ public abstract class AbstractParser implements Parser {
 		}
 
 		public String call() throws Exception {
+			long start = System.currentTimeMillis();
 			try {
 				internalParse(is, filename, encoding, locale, tenant, content);
+				ParserExecutor.get().completed(System.currentTimeMillis() - start);
 				return "completed";
 			} catch (InterruptedException e) {
 				log.warn("Parse timed out");
@@ -128,8 +167,10 @@ public abstract class AbstractParser implements Parser {
 	}
 
 	/**
-	 * Invoked by the parse method
+	 * Invoked by the parse method. The implementations should check
+	 * {@link LimitedWriter#isFull()} to stop the extraction as soon as the
+	 * output does not accept more text.
 	 */
 	abstract protected void internalParse(InputStream is, String filename, String encoding, Locale locale,
-			String tenant, StringBuffer output) throws Exception;
-}
\ No newline at end of file
+			String tenant, LimitedWriter output) throws Exception;
+}
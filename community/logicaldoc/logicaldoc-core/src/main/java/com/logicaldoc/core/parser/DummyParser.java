@@ -3,6 +3,8 @@ package com.logicaldoc.core.parser;
 import java.io.InputStream;
 import java.util.Locale;
 
+import com.logicaldoc.util.io.LimitedWriter;
+
 /**
  * Parser that doesn't parse anything
  * 
@@ -12,7 +14,7 @@ import java.util.Locale;
 public class DummyParser extends AbstractParser {
 
 	@Override
-	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, StringBuffer content) {
+	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, LimitedWriter content) {
 		
 	}
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.logicaldoc.core.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.ContentType;
+import javax.mail.internet.InternetHeaders;
+import javax.mail.internet.MimeUtility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.core.util.StreamingMailParser;
+import com.logicaldoc.util.io.LimitedWriter;
+
+/**
+ * Text extractor for emails in MIME format(.eml). The message is read in a
+ * single pass without loading it in memory: the sender, the recipients, the
+ * subject and the first textual body are extracted, then the parsing stops so
+ * the attachments are not even read.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class EMLParser extends AbstractParser {
+
+	protected static Logger log = LoggerFactory.getLogger(EMLParser.class);
+
+	private static final String[] HEADERS = new String[] { "From", "To", "Cc", "Subject" };
+
+	@Override
+	protected void internalParse(InputStream is, String filename, String encoding, Locale locale, String tenant,
+			LimitedWriter output) throws Exception {
+		StreamingMailParser.parse(is, new StreamingMailParser.Handler() {
+
+			@Override
+			public boolean headers(InternetHeaders headers) {
+				for (String name : HEADERS) {
+					String value = headers.getHeader(name, ", ");
+					if (value == null)
+						continue;
+					try {
+						value = MimeUtility.decodeText(MimeUtility.unfold(value));
+					} catch (Throwable t) {
+						// Keep the raw value
+					}
+					output.append(value).append("\n");
+				}
+				output.append("\n");
+				return !output.isFull();
+			}
+
+			@Override
+			public boolean part(InternetHeaders headers, InputStream content) throws IOException, MessagingException {
+				ContentType type = StreamingMailParser.getContentType(headers);
+				if (StreamingMailParser.isAttachment(headers)
+						|| !(type.match("text/plain") || type.match("text/html")))
+					return true;
+
+				String charset = getCharset(type.getParameter("charset"));
+				if (type.match("text/html")) {
+					new HTMLParser().internalParse(content, filename, charset, locale, tenant, output);
+				} else {
+					Reader reader = new BufferedReader(new InputStreamReader(content, charset));
+					output.copy(reader);
+				}
+
+				// The body has been found, skip the rest of the message
+				return false;
+			}
+		});
+	}
+
+	private static String getCharset(String charset) {
+		if (charset != null)
+			try {
+				String javaCharset = MimeUtility.javaCharset(charset.trim());
+				if (Charset.isSupported(javaCharset))
+					return javaCharset;
+			} catch (Throwable t) {
+				// Use the default
+			}
+		return "UTF-8";
+	}
+}
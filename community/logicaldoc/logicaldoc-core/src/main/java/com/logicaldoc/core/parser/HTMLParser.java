@@ -26,6 +26,7 @@ import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.logicaldoc.util.StringUtil;
+import com.logicaldoc.util.io.LimitedWriter;
 
 /**
  * Text extractor for HyperText Markup Language (HTML).
@@ -79,7 +80,7 @@ public class HTMLParser extends AbstractParser {
 
 	@Override
 	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant,
-			StringBuffer content) {
+			LimitedWriter content) {
 		try {
 			TransformerFactory factory = TransformerFactory.newInstance();
 			Transformer transformer = factory.newTransformer();
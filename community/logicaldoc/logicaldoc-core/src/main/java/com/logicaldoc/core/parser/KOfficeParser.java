@@ -18,6 +18,7 @@ import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.logicaldoc.util.StringUtil;
+import com.logicaldoc.util.io.LimitedWriter;
 
 /**
  * Text extractor for KOffice 1.6 documents.
@@ -69,7 +70,7 @@ public class KOfficeParser extends AbstractParser {
 	}
 
 	@Override
-	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, StringBuffer content) {
+	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, LimitedWriter content) {
 		try {
 			SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
 			saxParserFactory.setValidating(false);
@@ -18,6 +18,7 @@ import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.logicaldoc.util.StringUtil;
+import com.logicaldoc.util.io.LimitedWriter;
 
 /**
  * Text extractor for OpenOffice/OpenDocument documents.
@@ -35,15 +36,31 @@ public class OpenOfficeParser extends AbstractParser {
 
 	private class OpenOfficeContentHandler extends DefaultHandler {
 
-		private StringBuffer content;
+		private StringBuilder content;
 
 		private boolean appendChar;
 
 		private boolean appendNewline;
 
-		public OpenOfficeContentHandler() {
-			content = new StringBuffer();
+		private long maxText;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param maxText the parsing is interrupted when this number of
+		 *        characters have been extracted
+		 */
+		public OpenOfficeContentHandler(long maxText) {
+			content = new StringBuilder();
 			appendChar = false;
+			this.maxText = maxText;
+		}
+
+		/**
+		 * Tells if the maximum number of characters have been extracted
+		 */
+		public boolean isFull() {
+			return content.length() >= maxText;
 		}
 
 		/**
@@ -72,6 +89,8 @@ public class OpenOfficeParser extends AbstractParser {
 
 			if (appendChar) {
 				content.append(ch, start, length);
+				if (isFull())
+					throw new SAXException("Maximum text length reached");
 			}
 		}
 
@@ -83,7 +102,7 @@ public class OpenOfficeParser extends AbstractParser {
 	}
 
 	@Override
-	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, StringBuffer content) {
+	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, LimitedWriter content) {
 		try {
 			try {
 				Thread.sleep(4000);
@@ -104,10 +123,15 @@ public class OpenOfficeParser extends AbstractParser {
 				ze = zis.getNextEntry();
 			}
 
-			OpenOfficeContentHandler contentHandler = new OpenOfficeContentHandler();
+			OpenOfficeContentHandler contentHandler = new OpenOfficeContentHandler(content.getRemaining());
 			xmlReader.setContentHandler(contentHandler);
 			try {
 				xmlReader.parse(new InputSource(zis));
+			} catch (SAXException e) {
+				// The handler interrupts the parsing when enough text has been
+				// extracted
+				if (!contentHandler.isFull())
+					throw e;
 			} finally {
 				zis.close();
 			}
@@ -1,9 +1,7 @@
 package com.logicaldoc.core.parser;
 
-import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Writer;
 import java.util.List;
 import java.util.Locale;
 
@@ -16,6 +14,8 @@ import org.apache.pdfbox.text.PDFTextStripper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.logicaldoc.util.io.LimitedWriter;
+
 /**
  * Text extractor for Portable Document Format (PDF). For parsing uses an
  * external library: PDFBox. Created on 4. November 2003, 18:09
@@ -32,7 +32,7 @@ public class PDFParser extends AbstractParser {
 
 	@Override
 	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant,
-			StringBuffer content) {
+			LimitedWriter content) {
 		PDDocument pdfDocument = null;
 		try {
 			pdfDocument = PDDocument.load(input);
@@ -79,9 +79,11 @@ public class PDFParser extends AbstractParser {
 	}
 
 	/**
-	 * Extract text and metadata from the main document
+	 * Extract text and metadata from the main document. The pages are
+	 * extracted one by one directly in the output and the process stops as
+	 * soon as the output is full.
 	 */
-	protected void parseDocument(PDDocument pdfDocument, StringBuffer content) {
+	protected void parseDocument(PDDocument pdfDocument, LimitedWriter content) {
 		try {
 			PDDocumentInformation information = pdfDocument.getDocumentInformation();
 			if (information == null) {
@@ -92,27 +94,17 @@ public class PDFParser extends AbstractParser {
 			 * Incrementally read all pages
 			 */
 			PDFTextStripper stripper = new PDFTextStripper();
+			stripper.setPageEnd("\n");
+			stripper.setParagraphEnd("\n");
+			stripper.setAddMoreFormatting(false);
 			int pages = pdfDocument.getNumberOfPages();
-			for (int i = 1; i <= pages; i++) {
-				Writer writer = new CharArrayWriter();
-
+			for (int i = 1; i <= pages && !content.isFull(); i++) {
 				try {
 					stripper.setStartPage(i);
 					stripper.setEndPage(i);
-					stripper.setPageEnd("\n");
-					stripper.setParagraphEnd("\n");
-					stripper.setAddMoreFormatting(false);
-					stripper.writeText(pdfDocument, writer);
-					writer.flush();
-					content.append(writer.toString());
+					stripper.writeText(pdfDocument, content);
 				} catch (Throwable tw) {
 					log.error("Exception reading pdf document: " + tw.getMessage());
-				} finally {
-					try {
-						writer.close();
-					} catch (Throwable e) {
-						log.error(e.getMessage(), e);
-					}
 				}
 			}
 		} catch (Exception e) {
@@ -123,7 +115,10 @@ public class PDFParser extends AbstractParser {
 	/**
 	 * Extract the text from the form fields
 	 */
-	private void parseForm(PDDocument pdfDocument, StringBuffer content) throws IOException {
+	private void parseForm(PDDocument pdfDocument, LimitedWriter content) throws IOException {
+		if (content.isFull())
+			return;
+
 		PDDocumentCatalog docCatalog = pdfDocument.getDocumentCatalog();
 		PDAcroForm acroForm = docCatalog.getAcroForm();
 
@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.logicaldoc.util.StringUtil;
+import com.logicaldoc.util.io.LimitedWriter;
 
 /**
  * Parser for Office 2003 presentations
@@ -24,7 +25,7 @@ public class PPTParser extends AbstractParser {
 
 	@Override
 	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant,
-			StringBuffer content) {
+			LimitedWriter content) {
 		PowerPointExtractor extractor = null;
 		try {
 			extractor = new PowerPointExtractor(input);
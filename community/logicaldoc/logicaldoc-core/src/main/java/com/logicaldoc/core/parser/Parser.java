@@ -2,6 +2,7 @@ package com.logicaldoc.core.parser;
 
 import java.io.File;
 import java.io.InputStream;
+import java.io.Writer;
 import java.util.Locale;
 
 /**
@@ -44,4 +45,19 @@ public interface Parser {
 	 * @param input binary document from which to extract text
 	 */
 	public String parse(InputStream input, String filename, String encoding, Locale locale, String tenant);
+
+	/**
+	 * Streaming version of the parsing: the extracted text is written in the
+	 * given output instead of being collected in a string. The parsing stops
+	 * as soon as <code>maxText</code> characters have been extracted, so huge
+	 * documents do not need to be fully processed when only the first part of
+	 * the text is needed(eg. for the full-text index).
+	 * 
+	 * @param input binary document from which to extract text
+	 * @param output where the extracted text is written
+	 * @param maxText maximum number of characters to extract(&lt;=0 means no
+	 *        limit)
+	 */
+	public void parse(InputStream input, String filename, String encoding, Locale locale, String tenant,
+			Writer output, long maxText);
 }
\ No newline at end of file
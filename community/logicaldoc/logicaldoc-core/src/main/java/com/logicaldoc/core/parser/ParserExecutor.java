@@ -0,0 +1,256 @@
+package com.logicaldoc.core.parser;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.util.Context;
+import com.logicaldoc.util.concurrency.NamedThreadFactory;
+
+/**
+ * Shared and bounded pool of threads used to execute the parsings that must
+ * respect a timeout. The number of workers is given by the
+ * <b>parser.threads</b> config. property(0 means the number of processors)
+ * and the waiting parsings are limited by <b>parser.queue</b>, when the queue
+ * is full the submission is rejected and the parsing fails.<br>
+ * A parsing that times out is interrupted, but many libraries ignore the
+ * interruption so its worker may remain busy: such worker is replaced by a
+ * new one until it terminates, so the stuck parsings cannot saturate the
+ * pool. At most <b>parser.threads</b> workers are replaced at the same time,
+ * beyond this limit the pool just shrinks.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class ParserExecutor {
+
+	protected static Logger log = LoggerFactory.getLogger(ParserExecutor.class);
+
+	private static ParserExecutor instance;
+
+	private final ThreadPoolExecutor executor;
+
+	private final int threads;
+
+	private final int maxReplaced;
+
+	// Number of stuck workers currently replaced
+	private int replaced = 0;
+
+	// Statistics
+	private final AtomicLong parsings = new AtomicLong(0);
+
+	private final AtomicLong timeouts = new AtomicLong(0);
+
+	private final AtomicLong rejections = new AtomicLong(0);
+
+	private final AtomicLong parseTime = new AtomicLong(0);
+
+	/**
+	 * Constructor
+	 *
+	 * @param threads Number of workers
+	 * @param queueSize Maximum number of waiting parsings
+	 * @param maxReplaced Maximum number of stuck workers replaced at the same
+	 *        time
+	 */
+	ParserExecutor(int threads, int queueSize, int maxReplaced) {
+		this.threads = threads;
+		this.maxReplaced = maxReplaced;
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(
+				queueSize), new NamedThreadFactory("Parser"));
+		executor.allowCoreThreadTimeOut(true);
+		log.info("Installed parser executor with {} workers", threads);
+	}
+
+	/**
+	 * Gets the shared instance, creating it at the first invocation
+	 */
+	public static synchronized ParserExecutor get() {
+		if (instance == null) {
+			int threads = 0;
+			int queueSize = 100;
+			try {
+				threads = Context.get().getProperties().getInt("parser.threads", 0);
+				queueSize = Context.get().getProperties().getInt("parser.queue", 100);
+			} catch (Throwable t) {
+				log.warn(t.getMessage());
+			}
+			if (threads <= 0)
+				threads = Runtime.getRuntime().availableProcessors();
+			instance = new ParserExecutor(threads, Math.max(1, queueSize), threads);
+		}
+		return instance;
+	}
+
+	/**
+	 * Shuts down the shared instance, it will be recreated at the next use
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			instance.stop();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Submits a parsing
+	 *
+	 * @param task The parsing to execute
+	 *
+	 * @return The future result
+	 *
+	 * @throws RejectedExecutionException if too many parsings are waiting
+	 */
+	<T> Future<T> submit(Callable<T> task) {
+		Parsing<T> parsing = new Parsing<T>(task);
+		try {
+			executor.execute(parsing);
+			return parsing;
+		} catch (RejectedExecutionException e) {
+			rejections.incrementAndGet();
+			throw e;
+		}
+	}
+
+	void completed(long time) {
+		parsings.incrementAndGet();
+		parseTime.addAndGet(time);
+	}
+
+	/**
+	 * Cancels a parsing that did not complete in time, if its worker does not
+	 * terminate on interruption it gets replaced
+	 *
+	 * @param future The parsing returned by {@link #submit(Callable)}
+	 */
+	void timedOut(Future<?> future) {
+		timeouts.incrementAndGet();
+		future.cancel(true);
+		if (future instanceof Parsing)
+			((Parsing<?>) future).abandon();
+	}
+
+	void stop() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Adds a worker in place of a stuck one
+	 *
+	 * @return true if the worker has been added
+	 */
+	private synchronized boolean addWorker() {
+		if (replaced >= maxReplaced) {
+			log.warn("{} parsings are stuck, the stuck workers are no more replaced", replaced);
+			return false;
+		}
+		replaced++;
+		executor.setMaximumPoolSize(threads + replaced);
+		executor.setCorePoolSize(threads + replaced);
+		log.warn("Replaced a stuck parser worker");
+		return true;
+	}
+
+	/**
+	 * Removes the worker added in place of a stuck one that finally
+	 * terminated
+	 */
+	private synchronized void removeWorker() {
+		replaced--;
+		executor.setCorePoolSize(threads + replaced);
+		executor.setMaximumPoolSize(threads + replaced);
+	}
+
+	public long getParsings() {
+		return parsings.get();
+	}
+
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	public long getRejections() {
+		return rejections.get();
+	}
+
+	/**
+	 * Average duration of a parsing in milliseconds
+	 */
+	public long getAverageParseTime() {
+		long count = parsings.get();
+		return count > 0 ? parseTime.get() / count : 0;
+	}
+
+	/**
+	 * Number of parsings being executed
+	 */
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * Number of parsings waiting for a worker
+	 */
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Number of stuck workers that have been replaced and did not terminate
+	 * yet
+	 */
+	public synchronized int getReplaced() {
+		return replaced;
+	}
+
+	/**
+	 * A parsing that keeps track of its worker, so a stuck worker can be
+	 * replaced until it terminates
+	 */
+	private class Parsing<T> extends FutureTask<T> {
+
+		private boolean running = false;
+
+		private boolean finished = false;
+
+		private boolean replaced = false;
+
+		public Parsing(Callable<T> callable) {
+			super(callable);
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				running = true;
+			}
+			try {
+				super.run();
+			} finally {
+				synchronized (this) {
+					finished = true;
+					if (replaced)
+						removeWorker();
+				}
+			}
+		}
+
+		/**
+		 * Invoked after the cancellation, if the worker is still busy it gets
+		 * replaced
+		 */
+		synchronized void abandon() {
+			if (running && !finished && !replaced)
+				replaced = addWorker();
+		}
+	}
+}
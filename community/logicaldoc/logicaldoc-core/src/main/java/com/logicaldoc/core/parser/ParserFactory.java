@@ -2,6 +2,7 @@ package com.logicaldoc.core.parser;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Locale;
@@ -17,7 +18,8 @@ import org.slf4j.LoggerFactory;
 
 import com.logicaldoc.core.parser.wordperfect.WordPerfectParser;
 import com.logicaldoc.core.security.Tenant;
-import com.logicaldoc.core.security.dao.TenantDAO;
+import com.logicaldoc.core.security.TenantConfig;
+import com.logicaldoc.core.security.TenantConfigCache;
 import com.logicaldoc.util.Context;
 import com.logicaldoc.util.config.ContextProperties;
 import com.logicaldoc.util.plugin.PluginRegistry;
@@ -93,6 +95,7 @@ public class ParserFactory {
 		parsers.put("csv", new TXTParser());
 		parsers.put("dbf", new TXTParser());
 		parsers.put("xml", new XMLParser());
+		parsers.put("eml", new EMLParser());
 		parsers.put("xls", new XLSParser());
 		parsers.put("xlt", new XLSParser());
 
@@ -131,13 +134,30 @@ public class ParserFactory {
 	public static String parse(InputStream input, String filename, String encoding, Locale locale, long tenantId) {
 		Parser parser = getParser(filename);
 		if (parser != null) {
-			TenantDAO dao = (TenantDAO) Context.get().getBean(TenantDAO.class);
-			Tenant t = dao.findById(tenantId);
-			return parser.parse(input, filename, encoding, locale, t != null ? t.getName() : Tenant.DEFAULT_NAME);
+			return parser.parse(input, filename, encoding, locale, getTenantName(tenantId));
 		} else
 			return "";
 	}
 
+	/**
+	 * Gets the proper parser and parse the given content writing the extracted
+	 * text in the given output
+	 * 
+	 * @param maxText maximum number of characters to extract(&lt;=0 means no
+	 *        limit)
+	 */
+	public static void parse(InputStream input, String filename, String encoding, Locale locale, long tenantId,
+			Writer output, long maxText) {
+		Parser parser = getParser(filename);
+		if (parser != null)
+			parser.parse(input, filename, encoding, locale, getTenantName(tenantId), output, maxText);
+	}
+
+	private static String getTenantName(long tenantId) {
+		TenantConfig config = TenantConfigCache.get().getConfig(tenantId);
+		return config != null ? config.getTenantName() : Tenant.DEFAULT_NAME;
+	}
+
 	/**
 	 * Method containing the lookup logic.
 	 */
@@ -23,6 +23,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.logicaldoc.util.StringUtil;
+import com.logicaldoc.util.io.LimitedWriter;
 
 /**
  * @author Michael Scholz
@@ -34,7 +35,7 @@ public class RTFParser extends AbstractParser {
 	protected static Logger log = LoggerFactory.getLogger(RTFParser.class);
 
 	@Override
-	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, StringBuffer content) {
+	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, LimitedWriter content) {
 		try {
 			BufferedInputStream bis0 = new BufferedInputStream(input);
 			bis0.mark(Integer.MAX_VALUE);
@@ -1,12 +1,14 @@
 package com.logicaldoc.core.parser;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
-import java.nio.charset.Charset;
 import java.util.Locale;
 
 import org.apache.commons.lang.StringUtils;
@@ -14,10 +16,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.logicaldoc.util.Context;
-import com.logicaldoc.util.StringUtil;
-import com.logicaldoc.util.charset.CharsetDetector;
-import com.logicaldoc.util.charset.CharsetMatch;
+import com.logicaldoc.util.charset.FastCharsetDetector;
 import com.logicaldoc.util.io.IOUtil;
+import com.logicaldoc.util.io.LimitedWriter;
 
 /**
  * Class for parsing text (*.txt) files.
@@ -40,15 +41,13 @@ public class TXTParser extends AbstractParser {
 
 			String enc = encoding;
 			if (StringUtils.isEmpty(enc)) {
-				// Determine the most probable encoding
+				/*
+				 * Determine the most probable encoding, the statistical
+				 * analysis is done only if the content is not plain ASCII or
+				 * UTF-8
+				 */
 				try {
-					CharsetDetector cd = new CharsetDetector();
-					cd.setText(bis);
-					CharsetMatch cm = cd.detect();
-					if (cm != null) {
-						if (Charset.isSupported(cm.getName()))
-							enc = cm.getName();
-					}
+					enc = FastCharsetDetector.detect(bis);
 				} catch (Throwable th) {
 					log.warn("Error during TXT fileNameCharset detection", th);
 				}
@@ -71,10 +70,18 @@ public class TXTParser extends AbstractParser {
 
 	@Override
 	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant,
-			StringBuffer content) {
+			LimitedWriter content) {
 		try {
-			if (input != null)
-				content.append(StringUtil.writeToString(getLimitedStream(input, tenant), encoding));
+			if (input != null) {
+				String enc = StringUtils.isNotEmpty(encoding) ? encoding : "UTF-8";
+				Reader reader = new BufferedReader(new InputStreamReader(getLimitedStream(input, tenant), enc));
+				try {
+					// Stop reading as soon as the output is full
+					content.copy(reader);
+				} finally {
+					reader.close();
+				}
+			}
 		} catch (UnsupportedEncodingException e) {
 			log.warn("Unsupported encoding '{}', using default ({}) instead.", encoding,
 					System.getProperty("file.encoding"));
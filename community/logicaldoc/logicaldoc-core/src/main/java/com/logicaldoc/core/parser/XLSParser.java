@@ -11,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.logicaldoc.util.StringUtil;
+import com.logicaldoc.util.io.LimitedWriter;
 
 /**
  * Parser for Office 2003 worksheets
@@ -25,7 +26,7 @@ public class XLSParser extends AbstractParser {
 
 	@Override
 	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant,
-			StringBuffer content) {
+			LimitedWriter content) {
 		ExcelExtractor extractor = null;
 		try {
 			POIFSFileSystem fs = new POIFSFileSystem(input);
@@ -10,6 +10,8 @@ import java.util.zip.GZIPInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.logicaldoc.util.io.LimitedWriter;
+
 /**
  * Text extractor for AbiWord compressed documents.
  * 
@@ -41,10 +43,12 @@ public class ZABWParser extends AbstractParser {
 	}
 
 	@Override
-	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, StringBuffer content) {
+	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant, LimitedWriter content) {
 		try {
+			// Invoke directly the internal parsing, we are already running in
+			// a parser's thread
 			AbiWordParser parser = new AbiWordParser();
-			content.append(parser.parse(input, filename, encoding, locale, tenant));
+			parser.internalParse(input, filename, encoding, locale, tenant, content);
 		} catch (Exception e) {
 			log.warn("Failed to extract AbiWord Compressed zabw text content", e);
 		}
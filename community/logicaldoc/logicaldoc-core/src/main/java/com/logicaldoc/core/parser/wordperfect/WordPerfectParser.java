@@ -9,6 +9,7 @@ import org.slf4j.LoggerFactory;
 
 import com.logicaldoc.core.parser.AbstractParser;
 import com.logicaldoc.util.StringUtil;
+import com.logicaldoc.util.io.LimitedWriter;
 
 /**
  * @author Alessandro Gasparini
@@ -20,7 +21,7 @@ public class WordPerfectParser extends AbstractParser {
 
 	@Override
 	public void internalParse(InputStream input, String filename, String encoding, Locale locale, String tenant,
-			StringBuffer content) {
+			LimitedWriter content) {
 		try {
 			WPStringExtractor extractor = new WPStringExtractor();
 			String text = extractor.extract(input).trim();
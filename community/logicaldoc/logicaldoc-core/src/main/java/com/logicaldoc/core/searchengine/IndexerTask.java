@@ -10,13 +10,13 @@ import com.logicaldoc.core.document.AbstractDocument;
 import com.logicaldoc.core.document.Document;
 import com.logicaldoc.core.document.DocumentManager;
 import com.logicaldoc.core.document.dao.DocumentDAO;
-import com.logicaldoc.core.security.Tenant;
+import com.logicaldoc.core.security.TenantConfig;
+import com.logicaldoc.core.security.TenantConfigCache;
 import com.logicaldoc.core.security.dao.TenantDAO;
 import com.logicaldoc.core.task.Task;
 import com.logicaldoc.i18n.I18N;
 import com.logicaldoc.util.Context;
 import com.logicaldoc.util.config.ContextProperties;
-import com.logicaldoc.util.io.FileUtil;
 import com.logicaldoc.util.time.TimeDiff;
 import com.logicaldoc.util.time.TimeDiff.TimeField;
 
@@ -132,15 +132,10 @@ public class IndexerTask extends Task {
 					log.debug("Indexing document " + id);
 
 					Document doc = documentDao.findById(id);
-					Tenant tenant = tenantDao.findById(doc.getTenantId());
+					TenantConfig tenant = TenantConfigCache.get().getConfig(doc.getTenantId());
 
 					// Check if this document must be marked for skipping
-					if (!FileUtil.matches(
-							doc.getFileName(),
-							config.getProperty(tenant.getName() + ".index.includes") == null ? "" : config
-									.getProperty(tenant.getName() + ".index.includes"),
-							config.getProperty(tenant.getName() + ".index.excludes") == null ? "" : config
-									.getProperty(tenant.getName() + ".index.excludes"))) {
+					if (!tenant.getIndexMatcher().matches(doc.getFileName())) {
 						documentDao.initialize(doc);
 						doc.setIndexed(Document.INDEX_SKIP);
 						documentDao.store(doc);
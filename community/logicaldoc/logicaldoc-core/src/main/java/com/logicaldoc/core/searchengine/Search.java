@@ -18,12 +18,10 @@ import org.springframework.jdbc.core.RowMapper;
 
 import com.logicaldoc.core.document.dao.DocumentDAO;
 import com.logicaldoc.core.metadata.Attribute;
-import com.logicaldoc.core.security.Tenant;
+import com.logicaldoc.core.security.TenantConfigCache;
 import com.logicaldoc.core.security.User;
-import com.logicaldoc.core.security.dao.TenantDAO;
 import com.logicaldoc.core.security.dao.UserDAO;
 import com.logicaldoc.util.Context;
-import com.logicaldoc.util.config.ContextProperties;
 import com.logicaldoc.util.plugin.PluginRegistry;
 
 /**
@@ -141,11 +139,7 @@ public abstract class Search {
 			log.error(e.getMessage(), e);
 		}
 
-		ContextProperties config = Context.get().getProperties();
-		TenantDAO tdao = (TenantDAO) Context.get().getBean(TenantDAO.class);
-		Tenant tenant = tdao.findById(searchUser.getTenantId());
-
-		String extattrs = config.getProperty(tenant.getName() + ".search.extattr");
+		String extattrs = TenantConfigCache.get().getConfig(searchUser.getTenantId()).getSearchExtattr();
 
 		if (StringUtils.isNotEmpty(extattrs) && !hits.isEmpty()) {
 			// the names of the extended attributes to show
@@ -40,6 +40,9 @@ import com.logicaldoc.core.searchengine.analyzer.FilteredAnalyzer;
 import com.logicaldoc.util.StringUtil;
 import com.logicaldoc.util.config.ContextProperties;
 import com.logicaldoc.util.io.FileUtil;
+import com.logicaldoc.util.io.LimitedWriter;
+import com.logicaldoc.util.metrics.Metrics;
+import com.logicaldoc.util.metrics.Timer;
 
 /**
  * Standard implementation that implements a local search engine
@@ -110,13 +113,7 @@ public class StandardSearchEngine implements SearchEngine {
 		hit.addField(HitField.TAGS.getName(), doc.getTagsString());
 		hit.addField(HitField.DOC_REF.getName(), doc.getDocRef());
 
-		int maxText = -1;
-		if (StringUtils.isNotEmpty(config.getProperty("index.maxtext"))) {
-			try {
-				maxText = config.getInt("index.maxtext");
-			} catch (Exception e) {
-			}
-		}
+		int maxText = getMaxText();
 
 		String utf8Content = StringUtil.removeNonUtf8Chars(content);
 		if (maxText > 0 && utf8Content.length() > maxText)
@@ -156,11 +153,16 @@ public class StandardSearchEngine implements SearchEngine {
 		if (sb.length() > 0)
 			hit.addField(HitField.NOTES.getName(), sb.toString());
 
+		Timer.Context timer = Metrics.get().timer("search.addhit").start();
 		try {
 			FilteredAnalyzer.lang.set(doc.getLanguage());
 			server.add(hit);
 			server.commit();
+		} catch (Exception e) {
+			timer.error();
+			throw e;
 		} finally {
+			timer.stop();
 			FilteredAnalyzer.lang.remove();
 		}
 	}
@@ -173,7 +175,7 @@ public class StandardSearchEngine implements SearchEngine {
 	 * .document.Document, java.io.InputStream)
 	 */
 	@Override
-	public synchronized void addHit(Document document, InputStream content) throws Exception {
+	public void addHit(Document document, InputStream content) throws Exception {
 		Document doc = document;
 		if (doc.getDocRef() != null)
 			doc = documentDao.findById(doc.getDocRef());
@@ -181,10 +183,28 @@ public class StandardSearchEngine implements SearchEngine {
 		Locale locale = doc.getLocale();
 		if (locale == null)
 			locale = Locale.ENGLISH;
-		 
-		String contentString = ParserFactory.parse(content, doc.getFileName(), null, locale, doc.getTenantId());
 
-		addHit(doc, contentString);
+		// Parse outside of the lock and only up to the text that will be
+		// stored in the index
+		LimitedWriter contentWriter = new LimitedWriter(getMaxText());
+		ParserFactory.parse(content, doc.getFileName(), null, locale, doc.getTenantId(), contentWriter, 0);
+
+		addHit(doc, contentWriter.toString());
+	}
+
+	/**
+	 * Maximum number of characters of the content stored in the index, as
+	 * specified by the <b>index.maxtext</b> config. parameter
+	 */
+	protected int getMaxText() {
+		int maxText = -1;
+		if (StringUtils.isNotEmpty(config.getProperty("index.maxtext"))) {
+			try {
+				maxText = config.getInt("index.maxtext");
+			} catch (Exception e) {
+			}
+		}
+		return maxText;
 	}
 
 	/*
@@ -355,12 +375,16 @@ public class StandardSearchEngine implements SearchEngine {
 			Hits hits = null;
 			SolrQuery query = prepareSearchQuery(expression, filters, expressionLanguage, rows);
 
+			Timer.Context timer = Metrics.get().timer("search.search").start();
 			try {
 				log.info("Execute search: " + expression);
 				QueryResponse rsp = server.query(query);
 				hits = new Hits(rsp);
 			} catch (Throwable e) {
+				timer.error();
 				log.error(e.getMessage(), e);
+			} finally {
+				timer.stop();
 			}
 			return hits;
 		} finally {
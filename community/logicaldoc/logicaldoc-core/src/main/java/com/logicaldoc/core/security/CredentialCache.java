@@ -0,0 +1,231 @@
+package com.logicaldoc.core.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.util.Context;
+
+/**
+ * Short-lived cache of the credentials already verified by the Basic
+ * authentication, used to not run the whole authentication chain and open a
+ * new session at each WebDAV or REST request. A successful verification maps a
+ * fingerprint of username, password and remote address to the session that
+ * has been opened, the following requests with the same credentials reuse that
+ * session as long as it is open and the entry is not expired.<br>
+ * The fingerprint is an HMAC computed with a random key generated at startup,
+ * so the cache never holds the passwords nor values that can be used to guess
+ * them. The time to live is given by the <b>security.basicauth.cache.ttl</b>
+ * config. property(seconds, 0 disables the cache) and the maximum number of
+ * entries by <b>security.basicauth.cache.size</b>, the least recently used
+ * entries are evicted first. The entries of a user are discarded as soon as
+ * the user is stored or deleted, so a password change or a disabled account
+ * takes effect immediately.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class CredentialCache {
+
+	protected static Logger log = LoggerFactory.getLogger(CredentialCache.class);
+
+	private static CredentialCache instance;
+
+	private final Map<String, Entry> entries;
+
+	private final long ttl;
+
+	private final SecretKeySpec key;
+
+	private final AtomicLong hits = new AtomicLong(0);
+
+	private final AtomicLong misses = new AtomicLong(0);
+
+	/**
+	 * Constructor
+	 *
+	 * @param ttl Time to live of the entries in milliseconds(&lt;=0 disables
+	 *        the cache)
+	 * @param size Maximum number of entries
+	 */
+	CredentialCache(long ttl, final int size) {
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > size;
+			}
+		};
+
+		byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		this.key = new SecretKeySpec(secret, "HmacSHA256");
+	}
+
+	/**
+	 * Gets the shared instance, creating it at the first invocation
+	 */
+	public static synchronized CredentialCache get() {
+		if (instance == null) {
+			int ttl = 60;
+			int size = 1000;
+			try {
+				ttl = Context.get().getProperties().getInt("security.basicauth.cache.ttl", 60);
+				size = Context.get().getProperties().getInt("security.basicauth.cache.size", 1000);
+			} catch (Throwable t) {
+				log.warn(t.getMessage());
+			}
+			instance = new CredentialCache(ttl * 1000L, Math.max(1, size));
+		}
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return ttl > 0;
+	}
+
+	/**
+	 * Gets the session opened by a previous verification of the same
+	 * credentials
+	 *
+	 * @param username The username
+	 * @param password The password in clear
+	 * @param address The remote address of the client
+	 *
+	 * @return The session identifier or null if the credentials must be
+	 *         verified
+	 */
+	public String getSid(String username, String password, String address) {
+		if (!isEnabled() || username == null || password == null)
+			return null;
+
+		String fingerprint = fingerprint(username, password, address);
+		Entry entry = null;
+		synchronized (entries) {
+			entry = entries.get(fingerprint);
+			if (entry != null && entry.expire < System.currentTimeMillis()) {
+				entries.remove(fingerprint);
+				entry = null;
+			}
+		}
+
+		if (entry != null) {
+			hits.incrementAndGet();
+			return entry.sid;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Records a successful verification
+	 *
+	 * @param username The username
+	 * @param password The password in clear
+	 * @param address The remote address of the client
+	 * @param session The session opened for the credentials
+	 */
+	public void put(String username, String password, String address, Session session) {
+		if (!isEnabled() || username == null || password == null || session == null)
+			return;
+
+		Entry entry = new Entry(session.getSid(), session.getUserId(), System.currentTimeMillis() + ttl);
+		String fingerprint = fingerprint(username, password, address);
+		synchronized (entries) {
+			entries.put(fingerprint, entry);
+		}
+	}
+
+	/**
+	 * Discards the entries of a user
+	 */
+	public void invalidateUser(long userId) {
+		synchronized (entries) {
+			for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext();)
+				if (iter.next().userId == userId)
+					iter.remove();
+		}
+	}
+
+	/**
+	 * Discards the entries that refer to a session
+	 */
+	public void invalidateSession(String sid) {
+		if (sid == null)
+			return;
+		synchronized (entries) {
+			for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext();)
+				if (sid.equals(iter.next().sid))
+					iter.remove();
+		}
+	}
+
+	/**
+	 * Discards all the entries
+	 */
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	private String fingerprint(String username, String password, String address) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(key);
+			mac.update(username.getBytes(StandardCharsets.UTF_8));
+			mac.update((byte) 0);
+			mac.update(password.getBytes(StandardCharsets.UTF_8));
+			mac.update((byte) 0);
+			if (address != null)
+				mac.update(address.getBytes(StandardCharsets.UTF_8));
+			byte[] digest = mac.doFinal();
+
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest)
+				sb.append(String.format("%02x", b));
+			return sb.toString();
+		} catch (Exception e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private static class Entry {
+		private final String sid;
+
+		private final long userId;
+
+		private final long expire;
+
+		Entry(String sid, long userId, long expire) {
+			this.sid = sid;
+			this.userId = userId;
+			this.expire = expire;
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package com.logicaldoc.core.security;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.logicaldoc.util.Context;
+
+/**
+ * Cache of the permissions on the menus. The groups of each user are cached
+ * as the list of their identifiers, that is also the key of the permissions
+ * so all the users with the same groups share the same entries.<br>
+ * The menu DAO discards all the entries when a menu is changed, while the
+ * changes of users and groups are detected through the generation of the
+ * {@link PrincipalCache}. Like in the {@link PrincipalCache}, the callers
+ * must take the {@link #getGeneration()} before loading a value and pass it
+ * when caching it.<br>
+ * The changes made by other nodes of a cluster are not notified, so all the
+ * entries are discarded every <b>menu.cache.ttl</b> seconds(0 means never).
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class MenuPermissionCache {
+
+	/**
+	 * The identity of a user as seen by the menu permissions
+	 */
+	public static class Principal {
+		private final boolean admin;
+
+		private final String groups;
+
+		public Principal(boolean admin, String groups) {
+			this.admin = admin;
+			this.groups = groups;
+		}
+
+		public boolean isAdmin() {
+			return admin;
+		}
+
+		/**
+		 * Comma separated identifiers of the groups, sorted
+		 */
+		public String getGroups() {
+			return groups;
+		}
+
+		public boolean hasGroups() {
+			return groups.length() > 0;
+		}
+	}
+
+	private final Map<Long, Principal> principals = new ConcurrentHashMap<Long, Principal>();
+
+	// Key is the group list, value is the menus that grant the read or write
+	// permission to at least one of the groups
+	private final Map<String, Set<Long>> readable = new ConcurrentHashMap<String, Set<Long>>();
+
+	private final Map<String, Set<Long>> writable = new ConcurrentHashMap<String, Set<Long>>();
+
+	// Key is the group list plus the permission
+	private final Map<String, List<Long>> menuIds = new ConcurrentHashMap<String, List<Long>>();
+
+	// Key is a menu, value is the menu that defines its policies
+	private final Map<Long, Long> securityRefs = new ConcurrentHashMap<Long, Long>();
+
+	private final AtomicLong generation = new AtomicLong(0);
+
+	private volatile long principalGeneration = PrincipalCache.get().getGeneration();
+
+	private final AtomicLong hits = new AtomicLong(0);
+
+	private final AtomicLong misses = new AtomicLong(0);
+
+	// Time to live of the entries in milliseconds
+	private final long ttl;
+
+	private volatile long expiration;
+
+	/**
+	 * Constructor, the time to live is taken from the configuration
+	 */
+	public MenuPermissionCache() {
+		long seconds = 60;
+		try {
+			seconds = Context.get().getProperties().getInt("menu.cache.ttl", (int) seconds);
+		} catch (Throwable t) {
+			// Use the default
+		}
+		this.ttl = seconds * 1000L;
+		this.expiration = System.currentTimeMillis() + ttl;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param ttl Time to live of the entries in milliseconds(0 means never)
+	 */
+	public MenuPermissionCache(long ttl) {
+		this.ttl = ttl;
+		this.expiration = System.currentTimeMillis() + ttl;
+	}
+
+	/**
+	 * The current generation, to be taken before loading a value
+	 */
+	public long getGeneration() {
+		checkValidity();
+		return generation.get();
+	}
+
+	/**
+	 * Discards everything if some users or groups have been changed or if the
+	 * time to live has elapsed
+	 */
+	private void checkValidity() {
+		long current = PrincipalCache.get().getGeneration();
+		if (current != principalGeneration)
+			synchronized (this) {
+				if (current != principalGeneration) {
+					invalidateAll();
+					principalGeneration = current;
+				}
+			}
+
+		if (ttl > 0 && System.currentTimeMillis() > expiration)
+			synchronized (this) {
+				if (System.currentTimeMillis() > expiration)
+					invalidateAll();
+			}
+	}
+
+	private <K, V> V lookup(Map<K, V> map, K key) {
+		checkValidity();
+		V value = map.get(key);
+		if (value != null)
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+		return value;
+	}
+
+	private synchronized <K, V> void store(Map<K, V> map, K key, V value, long generation) {
+		if (value != null && generation == this.generation.get())
+			map.put(key, value);
+	}
+
+	public Principal getPrincipal(long userId) {
+		return lookup(principals, userId);
+	}
+
+	public void putPrincipal(long userId, Principal principal, long generation) {
+		store(principals, userId, principal, generation);
+	}
+
+	/**
+	 * Gets the menus that grant a permission to at least one of the given
+	 * groups
+	 *
+	 * @param groups The group list
+	 * @param write True for the write permission, false for the read one
+	 */
+	public Set<Long> getGroupMenus(String groups, boolean write) {
+		return lookup(write ? writable : readable, groups);
+	}
+
+	public void putGroupMenus(String groups, boolean write, Set<Long> menus, long generation) {
+		store(write ? writable : readable, groups, Collections.unmodifiableSet(menus), generation);
+	}
+
+	/**
+	 * Gets the identifiers of all the menus accessible by the given groups
+	 * with a permission
+	 */
+	public List<Long> getMenuIds(String groups, Permission permission) {
+		List<Long> ids = lookup(menuIds, groups + "|" + permission.getName());
+		return ids != null ? new ArrayList<Long>(ids) : null;
+	}
+
+	public void putMenuIds(String groups, Permission permission, List<Long> ids, long generation) {
+		store(menuIds, groups + "|" + permission.getName(), new ArrayList<Long>(ids), generation);
+	}
+
+	/**
+	 * Gets the menu that defines the policies of another menu
+	 */
+	public Long getSecurityRef(long menuId) {
+		return lookup(securityRefs, menuId);
+	}
+
+	public void putSecurityRef(long menuId, long securityRef, long generation) {
+		store(securityRefs, menuId, securityRef, generation);
+	}
+
+	/**
+	 * Discards all the entries
+	 */
+	public synchronized void invalidateAll() {
+		generation.incrementAndGet();
+		expiration = System.currentTimeMillis() + ttl;
+		principals.clear();
+		readable.clear();
+		writable.clear();
+		menuIds.clear();
+		securityRefs.clear();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+}
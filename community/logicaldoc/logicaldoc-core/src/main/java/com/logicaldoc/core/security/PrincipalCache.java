@@ -0,0 +1,120 @@
+package com.logicaldoc.core.security;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the users, with their groups, associated to the sessions. It is
+ * used to avoid reloading the principal from the database at each invocation
+ * made with the same session identifier(eg. web service calls).<br>
+ * The entries of a user are discarded when the user is stored or deleted,
+ * while a change in any group discards all the entries. To not cache a user
+ * loaded concurrently with an invalidation, the callers must take the
+ * {@link #getGeneration()} before loading the user and pass it to
+ * {@link #put(String, User, long)}.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class PrincipalCache {
+
+	private static final PrincipalCache instance = new PrincipalCache();
+
+	private final Map<String, User> users = new ConcurrentHashMap<String, User>();
+
+	/**
+	 * Incremented at each invalidation, used to reject the users loaded
+	 * while an invalidation was in progress
+	 */
+	private final AtomicLong generation = new AtomicLong(0);
+
+	private final AtomicLong hits = new AtomicLong(0);
+
+	private final AtomicLong misses = new AtomicLong(0);
+
+	private PrincipalCache() {
+	}
+
+	public static PrincipalCache get() {
+		return instance;
+	}
+
+	/**
+	 * Gets the user associated to a session
+	 *
+	 * @param sid The session identifier
+	 *
+	 * @return The cached user or null if the user must be loaded
+	 */
+	public User getUser(String sid) {
+		if (sid == null)
+			return null;
+		User user = users.get(sid);
+		if (user != null) {
+			hits.incrementAndGet();
+			return user;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Caches the user of a session
+	 *
+	 * @param sid The session identifier
+	 * @param user The user with the groups already initialized
+	 * @param generation The generation taken before loading the user
+	 */
+	public synchronized void put(String sid, User user, long generation) {
+		if (sid == null || user == null || generation != this.generation.get())
+			return;
+		users.put(sid, user);
+	}
+
+	/**
+	 * The current generation, to be taken before loading a user
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Discards the entry of a session
+	 */
+	public void invalidate(String sid) {
+		if (sid != null)
+			users.remove(sid);
+	}
+
+	/**
+	 * Discards the entries of a user
+	 */
+	public synchronized void invalidateUser(long userId) {
+		generation.incrementAndGet();
+		for (Iterator<User> iter = users.values().iterator(); iter.hasNext();)
+			if (iter.next().getId() == userId)
+				iter.remove();
+	}
+
+	/**
+	 * Discards all the entries
+	 */
+	public synchronized void invalidateAll() {
+		generation.incrementAndGet();
+		users.clear();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		return users.size();
+	}
+}
@@ -5,8 +5,20 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
@@ -24,6 +36,7 @@ import com.logicaldoc.core.security.dao.SessionDAO;
 import com.logicaldoc.core.security.spring.LDAuthenticationToken;
 import com.logicaldoc.core.security.spring.LDSecurityContextRepository;
 import com.logicaldoc.util.Context;
+import com.logicaldoc.util.concurrency.NamedThreadFactory;
 
 /**
  * Repository of all current user sessions.
@@ -50,7 +63,27 @@ public class SessionManager extends ConcurrentHashMap<String, Session> {
 
 	private SessionTimeoutWatchDog timeoutWatchDog = new SessionTimeoutWatchDog();
 
+	/**
+	 * Sessions waiting to be written in the database
+	 */
+	private Queue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<PendingWrite>();
+
+	/**
+	 * Tells if a drain of the pending writes has already been scheduled
+	 */
+	private AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+	/**
+	 * Single thread that persists the sessions, so the writes of the same
+	 * session are executed in order
+	 */
+	private ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("SessionWriter"));
+
+	private AtomicBoolean cleaning = new AtomicBoolean(false);
+
 	private SessionManager() {
+		writer.allowCoreThreadTimeOut(true);
 		timeoutWatchDog.start();
 		log.info("Starting the session timeout watchdog");
 	}
@@ -61,9 +94,10 @@ public class SessionManager extends ConcurrentHashMap<String, Session> {
 
 	/**
 	 * Creates a new session by authenticated the given user and stores it in
-	 * the pool of opened sessions
+	 * the pool of opened sessions. Concurrent logins are not serialized, the
+	 * session is persisted asynchronously.
 	 */
-	public synchronized Session newSession(String username, String password, String key, Client client)
+	public Session newSession(String username, String password, String key, Client client)
 			throws AuthenticationException {
 		User user = authenticationChain.authenticate(username, password, key, client);
 		if (user == null)
@@ -83,12 +117,87 @@ public class SessionManager extends ConcurrentHashMap<String, Session> {
 	 * Creates a new session by authenticated the given user and stores it in
 	 * the pool of opened sessions
 	 */
-	public synchronized Session newSession(String username, String password, Client client)
+	public Session newSession(String username, String password, Client client)
 			throws AuthenticationException {
 		return newSession(username, password, null, client);
 	}
 
+	/**
+	 * Schedules the persistence of the session's state
+	 */
 	private void storeSession(Session session) {
+		enqueue(new PendingWrite(session, false));
+	}
+
+	private void enqueue(PendingWrite write) {
+		pendingWrites.add(write);
+		if (drainScheduled.compareAndSet(false, true))
+			try {
+				writer.execute(new Runnable() {
+					@Override
+					public void run() {
+						drain();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// The manager is shutting down
+				drain();
+			}
+	}
+
+	/**
+	 * Waits for all the pending writes to be persisted
+	 */
+	public void flush() {
+		try {
+			writer.submit(new Runnable() {
+				@Override
+				public void run() {
+					drain();
+				}
+			}).get();
+		} catch (RejectedExecutionException e) {
+			drain();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			log.warn(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Persists all the pending writes in a single batch, the multiple writes
+	 * of the same session are collapsed into one.
+	 */
+	private void drain() {
+		synchronized (pendingWrites) {
+			drainScheduled.set(false);
+
+			Map<String, Session> toStore = new LinkedHashMap<String, Session>();
+			Set<String> toDelete = new HashSet<String>();
+			PendingWrite write = null;
+			while ((write = pendingWrites.poll()) != null) {
+				toStore.put(write.session.getSid(), write.session);
+				if (write.delete)
+					toDelete.add(write.session.getSid());
+			}
+
+			for (Session session : toStore.values()) {
+				if (toDelete.contains(session.getSid())) {
+					if (session.getId() != 0L)
+						try {
+							sessionDao.delete(session.getId());
+						} catch (Throwable t) {
+							log.warn(t.getMessage(), t);
+						}
+				} else {
+					persist(session);
+				}
+			}
+		}
+	}
+
+	private void persist(Session session) {
 		try {
 			if (session.getId() == 0L) {
 				Session dbSession = (Session) session.clone();
@@ -122,12 +231,17 @@ public class SessionManager extends ConcurrentHashMap<String, Session> {
 			log.warn("Killed session " + sid);
 			storeSession(session);
 		}
+		PrincipalCache.get().invalidate(sid);
+		CredentialCache.get().invalidateSession(sid);
 	}
 
 	@Override
 	public Session remove(Object sid) {
+		Session session = get(sid);
+		if (session == null)
+			return null;
 		kill((String) sid);
-		sessionDao.delete(get(sid).getId());
+		enqueue(new PendingWrite(session, true));
 		return super.remove(sid);
 	}
 
@@ -200,6 +314,7 @@ public class SessionManager extends ConcurrentHashMap<String, Session> {
 	 * Counts the total number of opened sessions
 	 */
 	public int countOpened() {
+		flush();
 		return sessionDao.countSessions(null, Session.STATUS_OPEN);
 	}
 
@@ -207,6 +322,7 @@ public class SessionManager extends ConcurrentHashMap<String, Session> {
 	 * Counts the total number of opened sessions per tenant
 	 */
 	public int countOpened(long tenantId) {
+		flush();
 		return sessionDao.countSessions(tenantId, Session.STATUS_OPEN);
 	}
 
@@ -225,6 +341,17 @@ public class SessionManager extends ConcurrentHashMap<String, Session> {
 	 * MAX_CLOSED_SESSIONS
 	 */
 	private void cleanClosedSessions() {
+		// Only one thread at a time does the cleanup
+		if (!cleaning.compareAndSet(false, true))
+			return;
+		try {
+			cleanClosedSessions0();
+		} finally {
+			cleaning.set(false);
+		}
+	}
+
+	private void cleanClosedSessions0() {
 		List<String> garbage = new ArrayList<String>();
 		int counter = 0;
 		for (Session session : getSessions()) {
@@ -390,6 +517,9 @@ public class SessionManager extends ConcurrentHashMap<String, Session> {
 		}
 		clear();
 
+		flush();
+		writer.shutdown();
+
 		if (timeoutWatchDog.isAlive()) {
 			try {
 				timeoutWatchDog.interrupt();
@@ -440,6 +570,20 @@ public class SessionManager extends ConcurrentHashMap<String, Session> {
 		}
 	}
 
+	/**
+	 * A write of a session waiting to be persisted
+	 */
+	private static class PendingWrite {
+		private Session session;
+
+		private boolean delete;
+
+		private PendingWrite(Session session, boolean delete) {
+			this.session = session;
+			this.delete = delete;
+		}
+	}
+
 	public SessionDAO getSessionDao() {
 		return sessionDao;
 	}
@@ -0,0 +1,106 @@
+package com.logicaldoc.core.security;
+
+import com.logicaldoc.util.config.ContextProperties;
+import com.logicaldoc.util.io.FileNameMatcher;
+import com.logicaldoc.util.io.FileUtil;
+
+/**
+ * Snapshot of the settings of a tenant read at each document or version
+ * save, so they are taken from memory instead of the database and the
+ * context properties. Instances are immutable and are provided by the
+ * {@link TenantConfigCache}.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class TenantConfig {
+
+	private final long tenantId;
+
+	private final String tenantName;
+
+	private final String indexIncludes;
+
+	private final String indexExcludes;
+
+	private final String barcodeIncludes;
+
+	private final String barcodeExcludes;
+
+	private final FileNameMatcher indexMatcher;
+
+	private final FileNameMatcher barcodeMatcher;
+
+	private final String searchExtattr;
+
+	private final int maxVersions;
+
+	public TenantConfig(Tenant tenant, ContextProperties config) {
+		this.tenantId = tenant.getId();
+		this.tenantName = tenant.getName();
+		this.indexIncludes = config.getProperty(tenantName + ".index.includes", "");
+		this.indexExcludes = config.getProperty(tenantName + ".index.excludes", "");
+		this.barcodeIncludes = config.getProperty(tenantName + ".barcode.includes", "");
+		this.barcodeExcludes = config.getProperty(tenantName + ".barcode.excludes", "");
+		this.indexMatcher = FileUtil.getMatcher(indexIncludes, indexExcludes);
+		this.barcodeMatcher = FileUtil.getMatcher(barcodeIncludes, barcodeExcludes);
+		this.searchExtattr = config.getProperty(tenantName + ".search.extattr");
+		this.maxVersions = config.getInt("document.maxversions");
+	}
+
+	public long getTenantId() {
+		return tenantId;
+	}
+
+	public String getTenantName() {
+		return tenantName;
+	}
+
+	/**
+	 * The file name patterns of the documents to index
+	 */
+	public String getIndexIncludes() {
+		return indexIncludes;
+	}
+
+	/**
+	 * The file name patterns of the documents not to index
+	 */
+	public String getIndexExcludes() {
+		return indexExcludes;
+	}
+
+	/**
+	 * Matcher of the file names of the documents to index
+	 */
+	public FileNameMatcher getIndexMatcher() {
+		return indexMatcher;
+	}
+
+	public FileNameMatcher getBarcodeMatcher() {
+		return barcodeMatcher;
+	}
+
+	public String getBarcodeIncludes() {
+		return barcodeIncludes;
+	}
+
+	public String getBarcodeExcludes() {
+		return barcodeExcludes;
+	}
+
+	/**
+	 * Comma separated names of the extended attributes to show in the search
+	 * results, may be null
+	 */
+	public String getSearchExtattr() {
+		return searchExtattr;
+	}
+
+	/**
+	 * Maximum number of versions to keep for each document, 0 means no limit
+	 */
+	public int getMaxVersions() {
+		return maxVersions;
+	}
+}
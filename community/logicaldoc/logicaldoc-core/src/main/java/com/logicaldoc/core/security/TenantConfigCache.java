@@ -0,0 +1,114 @@
+package com.logicaldoc.core.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.logicaldoc.core.security.dao.TenantDAO;
+import com.logicaldoc.util.Context;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Cache of the {@link TenantConfig}s. The snapshots are discarded as soon as
+ * the context properties are changed, so the changes made in the settings
+ * take effect immediately. The {@link TenantDAO} calls {@link #invalidateAll()}
+ * whenever a tenant is stored or deleted.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class TenantConfigCache {
+
+	private static final TenantConfigCache instance = new TenantConfigCache();
+
+	private final Map<Long, TenantConfig> configs = new ConcurrentHashMap<Long, TenantConfig>();
+
+	/**
+	 * Incremented at each invalidation, used to reject the snapshots built
+	 * while an invalidation was in progress
+	 */
+	private final AtomicLong generation = new AtomicLong(0);
+
+	// The properties the snapshots have been taken from
+	private volatile ContextProperties source;
+
+	private volatile long sourceGeneration;
+
+	private final AtomicLong hits = new AtomicLong(0);
+
+	private final AtomicLong misses = new AtomicLong(0);
+
+	private TenantConfigCache() {
+	}
+
+	public static TenantConfigCache get() {
+		return instance;
+	}
+
+	/**
+	 * Gets the settings of a tenant
+	 *
+	 * @param tenantId Identifier of the tenant
+	 *
+	 * @return The snapshot or null if the tenant does not exist
+	 */
+	public TenantConfig getConfig(long tenantId) {
+		ContextProperties config = Context.get().getProperties();
+		long gen = checkSource(config);
+
+		TenantConfig tenantConfig = configs.get(tenantId);
+		if (tenantConfig != null) {
+			hits.incrementAndGet();
+			return tenantConfig;
+		}
+		misses.incrementAndGet();
+
+		TenantDAO dao = (TenantDAO) Context.get().getBean(TenantDAO.class);
+		Tenant tenant = dao.findById(tenantId);
+		if (tenant == null)
+			return null;
+
+		tenantConfig = new TenantConfig(tenant, config);
+		put(tenantConfig, gen);
+		return tenantConfig;
+	}
+
+	/**
+	 * Discards everything if the properties have changed since the snapshots
+	 * were taken
+	 *
+	 * @return The current generation
+	 */
+	private long checkSource(ContextProperties config) {
+		if (config != source || config.getGeneration() != sourceGeneration)
+			synchronized (this) {
+				if (config != source || config.getGeneration() != sourceGeneration) {
+					invalidateAll();
+					source = config;
+					sourceGeneration = config.getGeneration();
+				}
+			}
+		return generation.get();
+	}
+
+	private synchronized void put(TenantConfig tenantConfig, long generation) {
+		if (generation == this.generation.get())
+			configs.put(tenantConfig.getTenantId(), tenantConfig);
+	}
+
+	/**
+	 * Discards all the snapshots
+	 */
+	public synchronized void invalidateAll() {
+		generation.incrementAndGet();
+		configs.clear();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+}
@@ -7,6 +7,7 @@ import org.slf4j.LoggerFactory;
 
 import com.logicaldoc.core.HibernatePersistentObjectDAO;
 import com.logicaldoc.core.security.Group;
+import com.logicaldoc.core.security.PrincipalCache;
 import com.logicaldoc.util.Context;
 import com.logicaldoc.util.sql.SqlUtil;
 
@@ -50,6 +51,15 @@ public class HibernateGroupDAO extends HibernatePersistentObjectDAO<Group> imple
 			result = false;
 		}
 
+		PrincipalCache.get().invalidateAll();
+
+		return result;
+	}
+
+	@Override
+	public boolean store(Group group) {
+		boolean result = super.store(group);
+		PrincipalCache.get().invalidateAll();
 		return result;
 	}
 
@@ -124,6 +134,8 @@ public class HibernateGroupDAO extends HibernatePersistentObjectDAO<Group> imple
 			result = false;
 		}
 
+		PrincipalCache.get().invalidateAll();
+
 		return result;
 	}
 
@@ -172,6 +184,11 @@ public class HibernateGroupDAO extends HibernatePersistentObjectDAO<Group> imple
 			}
 		} catch (Throwable e) {
 			log.error(e.getMessage(), e);
+		} finally {
+			// The ACLs have been written bypassing the DAOs
+			PrincipalCache.get().invalidateAll();
+			if (menuDAO != null)
+				menuDAO.invalidatePermissions();
 		}
 	}
 
@@ -2,22 +2,26 @@ package com.logicaldoc.core.security.dao;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.LoggerFactory;
 
 import com.logicaldoc.core.HibernatePersistentObjectDAO;
 import com.logicaldoc.core.security.Group;
 import com.logicaldoc.core.security.Menu;
-import com.logicaldoc.core.security.MenuGroup;
+import com.logicaldoc.core.security.MenuPermissionCache;
+import com.logicaldoc.core.security.MenuPermissionCache.Principal;
 import com.logicaldoc.core.security.Permission;
 import com.logicaldoc.core.security.User;
 import com.logicaldoc.util.sql.SqlUtil;
 
 /**
- * Hibernate implementation of <code>MenuDAO</code>
+ * Hibernate implementation of <code>MenuDAO</code>. The permissions are cached
+ * by the {@link MenuPermissionCache}.
  * 
  * @author Marco Meschieri - LogicalDOC
  * @since 3.0
@@ -27,6 +31,8 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 
 	private UserDAO userDAO;
 
+	private MenuPermissionCache cache = new MenuPermissionCache();
+
 	protected HibernateMenuDAO() {
 		super(Menu.class);
 		super.log = LoggerFactory.getLogger(HibernateMenuDAO.class);
@@ -40,6 +46,71 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 		this.userDAO = userDAO;
 	}
 
+	public MenuPermissionCache getPermissionCache() {
+		return cache;
+	}
+
+	@Override
+	public void invalidatePermissions() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Gets the groups of a user, as cached in the permissions cache
+	 * 
+	 * @return The principal or null if the user does not exist
+	 */
+	private Principal getPrincipal(long userId) {
+		Principal principal = cache.getPrincipal(userId);
+		if (principal != null)
+			return principal;
+
+		long generation = cache.getGeneration();
+		User user = userDAO.findById(userId);
+		if (user == null)
+			return null;
+
+		List<Long> groupIds = new ArrayList<Long>();
+		for (Group group : user.getGroups())
+			groupIds.add(group.getId());
+		Collections.sort(groupIds);
+
+		principal = new Principal(user.isMemberOf("admin"), StringUtils.join(groupIds, ','));
+		cache.putPrincipal(userId, principal, generation);
+		return principal;
+	}
+
+	/**
+	 * Gets the menu that defines the policies of the given menu
+	 */
+	private long getSecurityId(long menuId) {
+		Long id = cache.getSecurityRef(menuId);
+		if (id != null)
+			return id;
+
+		long generation = cache.getGeneration();
+		Menu menu = findById(menuId);
+		id = menu.getSecurityRef() != null ? menu.getSecurityRef() : menuId;
+		cache.putSecurityRef(menuId, id, generation);
+		return id;
+	}
+
+	/**
+	 * Gets the menus that define a permission for at least one of the given
+	 * groups
+	 */
+	private Set<Long> getGroupMenus(String groups, boolean write) {
+		Set<Long> menus = cache.getGroupMenus(groups, write);
+		if (menus != null)
+			return menus;
+
+		long generation = cache.getGeneration();
+		menus = new HashSet<Long>((List<Long>) queryForList("select distinct(ld_menuid) from ld_menugroup where "
+				+ (write ? "ld_write=1 and " : "") + "ld_groupid in (" + groups + ")", Long.class));
+		cache.putGroupMenus(groups, write, menus, generation);
+		return menus;
+	}
+
 	@Override
 	public boolean store(Menu menu) {
 		boolean result = true;
@@ -54,61 +125,28 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 			result = false;
 		}
 
+		cache.invalidateAll();
 		return result;
 	}
 
 	@Override
-	@SuppressWarnings("rawtypes")
 	public List<Menu> findByUserId(long userId) {
 		List<Menu> coll = new ArrayList<Menu>();
 
 		try {
-			User user = userDAO.findById(userId);
-			if (user == null)
+			Principal principal = getPrincipal(userId);
+			if (principal == null)
 				return coll;
 
 			// The administrators can see all menus
-			if (user.isMemberOf("admin"))
+			if (principal.isAdmin())
 				return findAll();
 
-			Set<Group> precoll = user.getGroups();
-			Iterator iter = precoll.iterator();
-			if (!precoll.isEmpty()) {
-				// First of all collect all menus that define it's own policies
-				StringBuffer query = new StringBuffer("select distinct(_menu) from Menu _menu  ");
-				query.append(" left join _menu.menuGroups as _group ");
-				query.append(" where _group.groupId in (");
-
-				boolean first = true;
-				while (iter.hasNext()) {
-					if (!first)
-						query.append(",");
-					Group ug = (Group) iter.next();
-					query.append(Long.toString(ug.getId()));
-					first = false;
-				}
-				query.append(")");
-				coll = (List<Menu>) findByQuery(query.toString(), null, null);
-
-				// Now collect all menues that references the policies of the
-				// previously found menues
-				List<Menu> tmp = new ArrayList<Menu>();
-				query = new StringBuffer("select _menu from Menu _menu  where _menu.securityRef in (");
-				first = true;
-				for (Menu menu : coll) {
-					if (!first)
-						query.append(",");
-					query.append(Long.toString(menu.getId()));
-					first = false;
-				}
-				query.append(")");
-				tmp = (List<Menu>) findByQuery(query.toString(), null, null);
-
-				for (Menu menu : tmp) {
-					if (!coll.contains(menu))
-						coll.add(menu);
-				}
-			}
+			// The accessible menus, both the ones that define their own
+			// policies and the ones that reference them
+			List<Long> ids = findMenuIdByUserIdAndPermission(userId, Permission.READ);
+			if (!ids.isEmpty())
+				coll = findByWhere("_entity.id in (" + StringUtils.join(ids, ',') + ")", null, null);
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
 		}
@@ -122,39 +160,27 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 		return findByUserId(userId, parentId, null);
 	}
 
-	@SuppressWarnings("rawtypes")
 	public List<Menu> findByUserId(long userId, long parentId, Integer type) {
 		List<Menu> coll = new ArrayList<Menu>();
 
 		try {
-			User user = userDAO.findById(userId);
-			if (user == null)
+			Principal principal = getPrincipal(userId);
+			if (principal == null)
 				return coll;
-			if (user.isMemberOf("admin"))
+			if (principal.isAdmin())
 				return findByWhere("_entity.id!=_entity.parentId and _entity.parentId=" + parentId
 						+ (type == null ? "" : (" and _entity.type=" + type)), " order by  _entity.position asc, _entity.name asc", null);
+			if (!principal.hasGroups())
+				return coll;
+
 			/*
 			 * Search for all those menus that defines its own security policies
 			 */
 			StringBuffer query1 = new StringBuffer();
-			Set<Group> precoll = user.getGroups();
-			Iterator iter = precoll.iterator();
-			if (precoll.isEmpty())
-				return coll;
-
 			query1.append("select distinct(_entity) from Menu _entity ");
 			query1.append(" left join _entity.menuGroups as _group");
-			query1.append(" where _group.groupId in (");
-
-			boolean first = true;
-			while (iter.hasNext()) {
-				if (!first)
-					query1.append(",");
-				Group ug = (Group) iter.next();
-				query1.append(Long.toString(ug.getId()));
-				first = false;
-			}
-			query1.append(") and _entity.parentId = ?1 and _entity.id!=_entity.parentId");
+			query1.append(" where _group.groupId in (" + principal.getGroups() + ")");
+			query1.append(" and _entity.parentId = ?1 and _entity.id!=_entity.parentId");
 			if (type != null)
 				query1.append(" and _entity.type = " + type.toString());
 
@@ -168,18 +194,7 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 			query2.append(" and _entity.securityRef in (");
 			query2.append("    select distinct(B.id) from Menu B ");
 			query2.append(" left join B.menuGroups as _group");
-			query2.append(" where _group.groupId in (");
-
-			first = true;
-			iter = precoll.iterator();
-			while (iter.hasNext()) {
-				if (!first)
-					query2.append(",");
-				Group ug = (Group) iter.next();
-				query2.append(Long.toString(ug.getId()));
-				first = false;
-			}
-			query2.append("))");
+			query2.append(" where _group.groupId in (" + principal.getGroups() + "))");
 
 			List<Menu> coll2 = (List<Menu>) findByQuery(query2.toString(), new Long[] { parentId }, null);
 			for (Menu menu : coll2) {
@@ -200,36 +215,23 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 				max);
 	}
 
-	@SuppressWarnings("rawtypes")
 	@Override
 	public List<Menu> findChildren(long parentId, long userId) {
 		List<Menu> coll = new ArrayList<Menu>();
 		try {
-			User user = userDAO.findById(userId);
-			if (user.isMemberOf("admin"))
+			Principal principal = getPrincipal(userId);
+			if (principal.isAdmin())
 				return findChildren(parentId, null);
-
-			Set<Group> groups = user.getGroups();
-			if (groups.isEmpty())
+			if (!principal.hasGroups())
 				return coll;
-			Iterator iter = groups.iterator();
 
 			/*
 			 * Search for the menus that define its own policies
 			 */
 			StringBuffer query1 = new StringBuffer("select distinct(_entity) from Menu _entity  ");
 			query1.append(" left join _entity.menuGroups as _group ");
-			query1.append(" where _group.groupId in (");
-
-			boolean first = true;
-			while (iter.hasNext()) {
-				if (!first)
-					query1.append(",");
-				Group ug = (Group) iter.next();
-				query1.append(Long.toString(ug.getId()));
-				first = false;
-			}
-			query1.append(") and _entity.parentId=" + parentId);
+			query1.append(" where _group.groupId in (" + principal.getGroups() + ")");
+			query1.append(" and _entity.parentId=" + parentId);
 			query1.append(" and not(_entity.id=" + parentId + ")");
 
 			coll = (List<Menu>) findByQuery(query1.toString(), null, null);
@@ -242,18 +244,7 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 			query2.append(" and _entity.securityRef in (");
 			query2.append("    select distinct(B.id) from Menu B ");
 			query2.append(" left join B.menuGroups as _group");
-			query2.append(" where _group.groupId in (");
-
-			first = true;
-			iter = groups.iterator();
-			while (iter.hasNext()) {
-				if (!first)
-					query2.append(",");
-				Group ug = (Group) iter.next();
-				query2.append(Long.toString(ug.getId()));
-				first = false;
-			}
-			query2.append("))");
+			query2.append(" where _group.groupId in (" + principal.getGroups() + "))");
 			query2.append(" and not(_entity.id=" + parentId + ")");
 
 			List<Menu> coll2 = (List<Menu>) findByQuery(query2.toString(), new Long[] { parentId }, null);
@@ -292,43 +283,25 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 	}
 
 	@Override
-	@SuppressWarnings("rawtypes")
 	public boolean isWriteEnable(long menuId, long userId) {
+		return isEnable(menuId, userId, true);
+	}
+
+	/**
+	 * Checks if a user has the read or write permission on a menu
+	 */
+	private boolean isEnable(long menuId, long userId, boolean write) {
 		boolean result = true;
 		try {
-			User user = userDAO.findById(userId);
-			if (user == null)
+			Principal principal = getPrincipal(userId);
+			if (principal == null)
 				return false;
-			if (user.isMemberOf("admin"))
+			if (principal.isAdmin())
 				return true;
-
-			long id = menuId;
-			Menu menu = findById(menuId);
-			if (menu.getSecurityRef() != null)
-				id = menu.getSecurityRef().longValue();
-
-			Set<Group> groups = user.getGroups();
-			if (groups.isEmpty())
+			if (!principal.hasGroups())
 				return false;
 
-			Iterator iter = groups.iterator();
-
-			StringBuffer query = new StringBuffer("select distinct(_entity) from Menu _entity  ");
-			query.append(" left join _entity.menuGroups as _group ");
-			query.append(" where _group.write=1 and _group.groupId in (");
-
-			boolean first = true;
-			while (iter.hasNext()) {
-				if (!first)
-					query.append(",");
-				Group ug = (Group) iter.next();
-				query.append(Long.toString(ug.getId()));
-				first = false;
-			}
-			query.append(") and _entity.id=?1");
-
-			List<MenuGroup> coll = (List<MenuGroup>) findByQuery(query.toString(), new Object[] { new Long(id) }, null);
-			result = coll.size() > 0;
+			result = getGroupMenus(principal.getGroups(), write).contains(getSecurityId(menuId));
 		} catch (Exception e) {
 			if (log.isErrorEnabled())
 				log.error(e.getMessage(), e);
@@ -339,50 +312,8 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 	}
 
 	@Override
-	@SuppressWarnings("rawtypes")
 	public boolean isReadEnable(long menuId, long userId) {
-		boolean result = true;
-		try {
-			User user = userDAO.findById(userId);
-			if (user == null)
-				return false;
-			if (user.isMemberOf("admin"))
-				return true;
-
-			long id = menuId;
-			Menu menu = findById(menuId);
-			if (menu.getSecurityRef() != null)
-				id = menu.getSecurityRef().longValue();
-
-			Set<Group> Groups = user.getGroups();
-			if (Groups.isEmpty())
-				return false;
-
-			Iterator iter = Groups.iterator();
-
-			StringBuffer query = new StringBuffer("select distinct(_entity) from Menu _entity  ");
-			query.append(" left join _entity.menuGroups as _group ");
-			query.append(" where _group.groupId in (");
-
-			boolean first = true;
-			while (iter.hasNext()) {
-				if (!first)
-					query.append(",");
-				Group ug = (Group) iter.next();
-				query.append(Long.toString(ug.getId()));
-				first = false;
-			}
-			query.append(") and _entity.id=?1");
-
-			List<MenuGroup> coll = (List<MenuGroup>) findByQuery(query.toString(), new Object[] { new Long(id) }, null);
-			result = coll.size() > 0;
-		} catch (Exception e) {
-			if (log.isErrorEnabled())
-				log.error(e.getMessage(), e);
-			result = false;
-		}
-
-		return result;
+		return isEnable(menuId, userId, false);
 	}
 
 	@Override
@@ -472,33 +403,20 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 		return coll;
 	}
 
-	@SuppressWarnings("rawtypes")
 	public List<Long> findIdByUserId(long userId, long parentId, Integer type) {
 		List<Long> ids = new ArrayList<Long>();
 		try {
-			User user = userDAO.findById(userId);
-			if (user == null)
+			Principal principal = getPrincipal(userId);
+			if (principal == null)
 				return ids;
-			if (user.isMemberOf("admin"))
+			if (principal.isAdmin())
 				return findIdsByWhere("_entity.parentId=" + parentId
 						+ (type == null ? "" : " and _entity.type=" + type), null, null);
 
-			StringBuffer query1 = new StringBuffer();
-			Set<Group> precoll = user.getGroups();
-			Iterator iter = precoll.iterator();
-			if (!precoll.isEmpty()) {
-				query1 = new StringBuffer("select distinct(A.ld_menuid) from ld_menugroup A, ld_menu B "
+			if (principal.hasGroups()) {
+				StringBuffer query1 = new StringBuffer("select distinct(A.ld_menuid) from ld_menugroup A, ld_menu B "
 						+ " where B.ld_deleted=0 and A.ld_menuid=B.ld_id AND B.ld_parentid=" + parentId
-						+ " AND A.ld_groupid in (");
-				boolean first = true;
-				while (iter.hasNext()) {
-					if (!first)
-						query1.append(",");
-					Group ug = (Group) iter.next();
-					query1.append(Long.toString(ug.getId()));
-					first = false;
-				}
-				query1.append(")");
+						+ " AND A.ld_groupid in (" + principal.getGroups() + ")");
 				if (type != null)
 					query1.append(" AND B.ld_type=" + type.toString());
 
@@ -585,6 +503,7 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 	@Override
 	public void restore(long menuId, boolean parents) {
 		bulkUpdate("set ld_deleted=0 where ld_id=" + menuId, null);
+		cache.invalidateAll();
 
 		// Restore parents
 		if (parents) {
@@ -601,19 +520,20 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 	public List<Long> findMenuIdByUserIdAndPermission(long userId, Permission permission) {
 		List<Long> ids = new ArrayList<Long>();
 		try {
-			User user = userDAO.findById(userId);
-			if (user == null)
+			Principal principal = getPrincipal(userId);
+			if (principal == null)
 				return ids;
 
-			// The administrators have all permissions on all menus
-			if (user.isMemberOf("admin")) {
-				return findAllIds();
-			}
-
-			Set<Group> precoll = user.getGroups();
-			Iterator<Group> iter = precoll.iterator();
+			String key = principal.isAdmin() ? "admin" : principal.getGroups();
+			List<Long> cached = cache.getMenuIds(key, permission);
+			if (cached != null)
+				return cached;
+			long generation = cache.getGeneration();
 
-			if (!precoll.isEmpty()) {
+			// The administrators have all permissions on all menus
+			if (principal.isAdmin()) {
+				ids = findAllIds();
+			} else if (principal.hasGroups()) {
 				/*
 				 * Check menus that specify its own permissions
 				 */
@@ -621,16 +541,7 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 						+ " where A.ld_menuid=B.ld_id and B.ld_deleted=0 ");
 				if (permission != Permission.READ)
 					query1.append(" and A.ld_" + permission.getName() + "=1 ");
-				query1.append(" and A.ld_groupid in (");
-				boolean first = true;
-				while (iter.hasNext()) {
-					if (!first)
-						query1.append(",");
-					Group ug = (Group) iter.next();
-					query1.append(Long.toString(ug.getId()));
-					first = false;
-				}
-				query1.append(")");
+				query1.append(" and A.ld_groupid in (" + principal.getGroups() + ")");
 
 				ids = (List<Long>) queryForList(query1.toString(), Long.class);
 
@@ -648,6 +559,8 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 				}
 
 			}
+
+			cache.putMenuIds(key, permission, ids, generation);
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
 		}
@@ -707,58 +620,12 @@ public class HibernateMenuDAO extends HibernatePersistentObjectDAO<Menu> impleme
 			result = false;
 		}
 
+		cache.invalidateAll();
 		return result;
 	}
 
-	@SuppressWarnings("rawtypes")
 	@Override
 	public List<Long> findIdByUserId(long userId, long parentId) {
-		List<Long> ids = new ArrayList<Long>();
-		try {
-			User user = userDAO.findById(userId);
-			if (user == null)
-				return ids;
-			if (user.isMemberOf("admin"))
-				return findIdsByWhere("_entity.parentId=" + parentId, null, null);
-
-			StringBuffer query1 = new StringBuffer();
-			Set<Group> precoll = user.getGroups();
-			Iterator iter = precoll.iterator();
-			if (!precoll.isEmpty()) {
-				query1 = new StringBuffer("select distinct(A.ld_menuid) from ld_menugroup A, ld_menu B "
-						+ " where B.ld_deleted=0 and A.ld_menuid=B.ld_id AND B.ld_parentid=" + parentId
-						+ " AND A.ld_groupid in (");
-				boolean first = true;
-				while (iter.hasNext()) {
-					if (!first)
-						query1.append(",");
-					Group ug = (Group) iter.next();
-					query1.append(Long.toString(ug.getId()));
-					first = false;
-				}
-				query1.append(")");
-
-				ids = (List<Long>) queryForList(query1.toString(), Long.class);
-
-				/*
-				 * Now find all menues referencing the previously found ones
-				 */
-				StringBuffer query2 = new StringBuffer("select B.ld_id from ld_menu B where B.ld_deleted=0 ");
-				query2.append(" and B.ld_parentid=" + parentId);
-				query2.append("	and B.ld_securityref in (");
-				query2.append(query1.toString());
-				query2.append(")");
-
-				List<Long> menuids2 = (List<Long>) queryForList(query2.toString(), Long.class);
-				for (Long menuid : menuids2) {
-					if (!ids.contains(menuid))
-						ids.add(menuid);
-				}
-
-			}
-		} catch (Exception e) {
-			log.error(e.getMessage(), e);
-		}
-		return ids;
+		return findIdByUserId(userId, parentId, null);
 	}
 }
\ No newline at end of file
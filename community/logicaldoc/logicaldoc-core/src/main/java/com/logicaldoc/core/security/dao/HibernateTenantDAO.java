@@ -12,6 +12,7 @@ import com.logicaldoc.core.generic.GenericDAO;
 import com.logicaldoc.core.metadata.AttributeSetDAO;
 import com.logicaldoc.core.metadata.TemplateDAO;
 import com.logicaldoc.core.security.Tenant;
+import com.logicaldoc.core.security.TenantConfigCache;
 import com.logicaldoc.util.config.ContextProperties;
 import com.logicaldoc.util.sql.SqlUtil;
 
@@ -103,9 +104,20 @@ public class HibernateTenantDAO extends HibernatePersistentObjectDAO<Tenant> imp
 		this.messageTemplateDao = messageTemplateDao;
 	}
 
+	/**
+	 * Only the existing tenants can be altered, the creation of new tenants
+	 * is not enabled
+	 */
 	@Override
 	public boolean store(Tenant entity) {
-		throw new RuntimeException("Feature not enabled");
+		if (entity.getId() == 0L)
+			throw new RuntimeException("Feature not enabled");
+
+		boolean result = super.store(entity);
+
+		// The snapshots may refer to the old name
+		TenantConfigCache.get().invalidateAll();
+		return result;
 	}
 
 	public void setAttributeSetDao(AttributeSetDAO attributeSetDao) {
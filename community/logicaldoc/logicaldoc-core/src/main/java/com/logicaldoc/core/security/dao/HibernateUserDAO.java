@@ -18,6 +18,8 @@ import com.logicaldoc.core.PersistentObject;
 import com.logicaldoc.core.generic.Generic;
 import com.logicaldoc.core.generic.GenericDAO;
 import com.logicaldoc.core.security.Group;
+import com.logicaldoc.core.security.CredentialCache;
+import com.logicaldoc.core.security.PrincipalCache;
 import com.logicaldoc.core.security.Tenant;
 import com.logicaldoc.core.security.User;
 import com.logicaldoc.core.security.UserGroup;
@@ -190,6 +192,9 @@ public class HibernateUserDAO extends HibernatePersistentObjectDAO<User> impleme
 			result = false;
 		}
 
+		PrincipalCache.get().invalidateUser(user.getId());
+		CredentialCache.get().invalidateUser(user.getId());
+
 		return result;
 	}
 
@@ -338,6 +343,9 @@ public class HibernateUserDAO extends HibernatePersistentObjectDAO<User> impleme
 			result = false;
 		}
 
+		PrincipalCache.get().invalidateUser(userId);
+		CredentialCache.get().invalidateUser(userId);
+
 		return result;
 	}
 
@@ -1,8 +1,5 @@
 package com.logicaldoc.core.security.dao;
 
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.List;
 
 import org.slf4j.LoggerFactory;
@@ -11,8 +8,11 @@ import com.logicaldoc.core.HibernatePersistentObjectDAO;
 import com.logicaldoc.core.RunLevel;
 import com.logicaldoc.core.communication.EventCollector;
 import com.logicaldoc.core.document.History;
+import com.logicaldoc.core.history.HistoryRetention;
+import com.logicaldoc.core.security.Tenant;
 import com.logicaldoc.core.security.User;
 import com.logicaldoc.core.security.UserHistory;
+import com.logicaldoc.core.stats.StatsCounters;
 import com.logicaldoc.util.config.ContextProperties;
 
 @SuppressWarnings("unchecked")
@@ -52,33 +52,17 @@ public class HibernateUserHistoryDAO extends HibernatePersistentObjectDAO<UserHi
 	 */
 	@Override
 	public void cleanOldHistories(int ttl) {
-		if (ttl > 0) {
-			Date today = new Date();
-			GregorianCalendar cal = new GregorianCalendar();
-			cal.add(Calendar.DAY_OF_MONTH, -ttl);
-			Date ldDate = cal.getTime();
-
-			log.debug("today: " + today);
-			log.debug("ldDate: " + ldDate);
-
-			try {
-				int rowsUpdated = jdbcUpdate("UPDATE ld_user_history SET ld_deleted = 1, ld_lastmodified = ?"
-						+ " WHERE ld_deleted = 0 AND ld_date < ?", today, ldDate);
-
-				log.info("cleanOldHistories rows updated: " + rowsUpdated);
-			} catch (Exception e) {
-				if (log.isErrorEnabled())
-					log.error(e.getMessage(), e);
-			}
-
-		}
+		new HistoryRetention(this, "ld_user_history", "userhistories").purge(ttl);
 	}
 
 	@Override
 	public boolean store(UserHistory history) {
 		// Write only if the history is enabled
 		if (RunLevel.current().aspectEnabled(History.ASPECT)) {
+			boolean newHistory = history.getId() == 0L;
 			boolean ret = super.store(history);
+			if (ret && newHistory)
+				StatsCounters.get().add(Tenant.SYSTEM_ID, "userhistories", 1L);
 			if (ret)
 				EventCollector.get().newEvent(history);
 			return ret;
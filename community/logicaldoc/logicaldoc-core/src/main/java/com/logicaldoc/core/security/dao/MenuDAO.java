@@ -196,4 +196,10 @@ public interface MenuDAO extends PersistentObjectDAO<Menu> {
 	 * Propagates the security policies of a node to the whole subree
 	 */
 	public boolean applyRithtToTree(long id);
+
+	/**
+	 * Discards the cached permissions, to be invoked when the ACLs of the
+	 * menus are changed without passing through this DAO
+	 */
+	public void invalidatePermissions();
 }
\ No newline at end of file
@@ -64,25 +64,10 @@ public class LDAuthenticationProvider implements AuthenticationProvider {
 		try {
 			session = SessionManager.get().newSession(username, password, key, client);
 
-			// Preferably clear the password in the user object before storing
-			// in authentication object
-			session.getUser().clearPassword();
-
-			String[] groups = session.getUser().getGroupNames();
-			Collection<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>();
-			for (String role : groups) {
-				authorities.add(new SimpleGrantedAuthority(role));
-			}
-
 			// Clear the login failures
 			LoginThrottle.clearFailures(username, client.getAddress());
 
-			// Return an authenticated token, containing user data and
-			// authorities
-			LDAuthenticationToken a = new LDAuthenticationToken(session.getUser(), null, authorities);
-			a.setSid(session.getSid());
-
-			return a;
+			return buildAuthentication(session);
 		} catch (AccountNotFoundException nf) {
 			String message = String.format("Username %s not found", username);
 			log.warn(message);
@@ -107,6 +92,29 @@ public class LDAuthenticationProvider implements AuthenticationProvider {
 		}
 	}
 
+	/**
+	 * Builds the authenticated token of an opened session
+	 * 
+	 * @param session The session
+	 * 
+	 * @return The token, containing user data and authorities
+	 */
+	public static LDAuthenticationToken buildAuthentication(Session session) {
+		// Preferably clear the password in the user object before storing
+		// in authentication object
+		session.getUser().clearPassword();
+
+		String[] groups = session.getUser().getGroupNames();
+		Collection<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>();
+		for (String role : groups) {
+			authorities.add(new SimpleGrantedAuthority(role));
+		}
+
+		LDAuthenticationToken a = new LDAuthenticationToken(session.getUser(), null, authorities);
+		a.setSid(session.getSid());
+		return a;
+	}
+
 	@Override
 	public boolean supports(Class<?> arg0) {
 		return true;
@@ -6,6 +6,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.http.Consts;
@@ -28,6 +29,9 @@ import com.logicaldoc.core.security.Tenant;
 import com.logicaldoc.core.security.UserHistory;
 import com.logicaldoc.core.security.dao.GroupDAO;
 import com.logicaldoc.core.security.dao.TenantDAO;
+import com.logicaldoc.core.store.CompressingStorer;
+import com.logicaldoc.core.store.CompressionStats;
+import com.logicaldoc.core.store.Storer;
 import com.logicaldoc.core.task.Task;
 import com.logicaldoc.core.util.UserUtil;
 import com.logicaldoc.util.config.ContextProperties;
@@ -35,7 +39,16 @@ import com.logicaldoc.util.http.HttpUtil;
 import com.logicaldoc.util.plugin.PluginRegistry;
 
 /**
- * Collects statistical informations to the stats site
+ * Collects statistical informations to the stats site<br>
+ * The DAOs record the variations of the most used statistics in the
+ * {@link StatsCounters} and at each run they are just added to the saved
+ * values. Every <b>stat.reconciliation</b> hours all the statistics are
+ * counted again from the database and the file system, pausing
+ * <b>stat.reconciliation.pause</b> milliseconds between the heaviest queries
+ * so the reconciliation does not hammer the database, and the results are
+ * sent to the stats site. The pending variations of each statistic are
+ * discarded right before it gets counted, so the changes made during the
+ * reconciliation are not counted twice.
  * 
  * @author Marco Meschieri - LogicalDOC
  * @since 6.0
@@ -55,6 +68,8 @@ public class StatsCollector extends Task {
 
 	protected TenantDAO tenantDAO;
 
+	protected Storer storer;
+
 	protected ContextProperties config;
 
 	private static String userno = "community";
@@ -72,6 +87,16 @@ public class StatsCollector extends Task {
 	protected void runTask() throws Exception {
 		log.info("Start statistics collection");
 
+		if (!isReconciliationDue()) {
+			flushCounters();
+			saveCompressionStats();
+			saveStatistic("lastrun", new Date(), Tenant.SYSTEM_ID);
+			log.info("Statistics updated");
+			return;
+		}
+
+		Date reconciliation = new Date();
+
 		/*
 		 * Collect identification data
 		 */
@@ -113,6 +138,7 @@ public class StatsCollector extends Task {
 		int groups = groupDAO.count();
 		log.debug("Collected users data");
 
+		pause();
 		long userdir = 0;
 		File userDir = UserUtil.getUsersDir();
 		userdir = FileUtils.sizeOfDirectory(userDir);
@@ -179,43 +205,70 @@ public class StatsCollector extends Task {
 		/*
 		 * Collect documents statistics
 		 */
+		pause();
 		long[] docStats = extractDocStats(Tenant.SYSTEM_ID);
 		long totaldocs = docStats[3];
 		long archiveddocs = docStats[4];
 		long docdir = docStats[5];
 
 		List<Tenant> tenants = tenantDAO.findAll();
-		for (Tenant tenant : tenants)
+		for (Tenant tenant : tenants) {
+			pause();
 			extractDocStats(tenant.getId());
+			StatsCounters.get().reset(tenant.getId(), "versions");
+			saveStatistic("versions",
+					documentDAO.queryForLong("SELECT COUNT(*) FROM ld_version where ld_tenantid=" + tenant.getId()),
+					tenant.getId());
+		}
 
 		log.info("Saved documents statistics");
 
+		/*
+		 * Collect compression statistics
+		 */
+		countCompressionStats(tenants);
+
 		/*
 		 * Collect folders statistics
 		 */
+		pause();
 		long[] fldStats = extractFldStats(Tenant.SYSTEM_ID);
 		long withdocs = fldStats[0];
 		long empty = fldStats[1];
 		long deletedfolders = fldStats[2];
 
-		for (Tenant tenant : tenants)
+		for (Tenant tenant : tenants) {
+			pause();
 			extractFldStats(tenant.getId());
+		}
 
 		log.info("Saved folder statistics");
 
 		/*
 		 * Collect sizing statistics
 		 */
+		pause();
+		StatsCounters.get().reset(Tenant.SYSTEM_ID, "versions", "histories", "userhistories", "votes");
 		long tags = folderDAO.queryForLong("SELECT COUNT(*) FROM ld_tag");
+		pause();
 		long versions = folderDAO.queryForLong("SELECT COUNT(*) FROM ld_version");
+		pause();
 		long histories = folderDAO.queryForLong("SELECT COUNT(*) FROM ld_history");
+		pause();
 		long user_histories = folderDAO.queryForLong("SELECT COUNT(*) FROM ld_user_history");
 		long votes = folderDAO.queryForLong("SELECT COUNT(*) FROM ld_rating");
 
+		saveStatistic("tags", tags, Tenant.SYSTEM_ID);
+		saveStatistic("versions", versions, Tenant.SYSTEM_ID);
+		saveStatistic("histories", histories, Tenant.SYSTEM_ID);
+		saveStatistic("userhistories", user_histories, Tenant.SYSTEM_ID);
+		saveStatistic("votes", votes, Tenant.SYSTEM_ID);
+
 		/*
 		 * Save the last update time
 		 */
 		saveStatistic("lastrun", new Date(), Tenant.SYSTEM_ID);
+		saveStatistic("lastreconciliation", reconciliation, Tenant.SYSTEM_ID);
 
 		log.info("Statistics collected");
 
@@ -460,6 +513,9 @@ public class StatsCollector extends Task {
 	 *         </ol>
 	 */
 	private long[] extractDocStats(long tenantId) {
+		StatsCounters.get().reset(tenantId, "notindexeddocs", "indexeddocs", "deleteddocs", "totaldocs",
+				"archiveddocs", "docdir");
+
 		long[] stats = new long[6];
 		stats[0] = documentDAO
 				.queryForLong("SELECT COUNT(A.ld_id) FROM ld_document A where A.ld_indexed = 0 and A.ld_deleted = 0 "
@@ -526,6 +582,117 @@ public class StatsCollector extends Task {
 		return stats;
 	}
 
+	/**
+	 * Adds the sizes of the resources compressed since the last run to the
+	 * totals of each tenant and saves the compression ratio as the percentage
+	 * of the compressed size over the plain size
+	 */
+	private void saveCompressionStats() {
+		Map<Long, long[]> sizes = CompressionStats.get().drain();
+		if (sizes.isEmpty())
+			return;
+
+		long[] total = new long[2];
+		for (Map.Entry<Long, long[]> entry : sizes.entrySet()) {
+			addCompressionStats(entry.getValue(), entry.getKey());
+			total[0] += entry.getValue()[0];
+			total[1] += entry.getValue()[1];
+		}
+		addCompressionStats(total, Tenant.SYSTEM_ID);
+	}
+
+	private void addCompressionStats(long[] sizes, long tenantId) {
+		Generic gen = genericDAO.findByAlternateKey(STAT, "compressedplain", null, tenantId);
+		long plain = sizes[0] + (gen != null && gen.getInteger1() != null ? gen.getInteger1() : 0L);
+		gen = genericDAO.findByAlternateKey(STAT, "compressedsize", null, tenantId);
+		long compressed = sizes[1] + (gen != null && gen.getInteger1() != null ? gen.getInteger1() : 0L);
+		saveCompressionStats(new long[] { plain, compressed }, tenantId);
+	}
+
+	private void saveCompressionStats(long[] sizes, long tenantId) {
+		saveStatistic("compressedplain", sizes[0], tenantId);
+		saveStatistic("compressedsize", sizes[1], tenantId);
+		saveStatistic("compressionratio", sizes[0] > 0 ? sizes[1] * 100 / sizes[0] : 100L, tenantId);
+	}
+
+	/**
+	 * Counts again the sizes of all the compressed resources, so the totals
+	 * reflect also the deleted resources and the ones stored without knowing
+	 * their tenant
+	 */
+	private void countCompressionStats(List<Tenant> tenants) {
+		if (!(storer instanceof CompressingStorer))
+			return;
+
+		CompressingStorer compressing = (CompressingStorer) storer;
+		CompressionStats.get().drain();
+		long[] total = new long[2];
+		for (Tenant tenant : tenants) {
+			pause();
+			long[] sizes = new long[2];
+
+			// The deleted documents are included because their files are
+			// still in the store
+			@SuppressWarnings("unchecked")
+			List<Long> ids = (List<Long>) documentDAO.queryForList("select ld_id from ld_document where ld_tenantid="
+					+ tenant.getId() + " and ld_docref is null", Long.class);
+			for (Long docId : ids)
+				for (String resource : compressing.listResources(docId, null)) {
+					long[] buf = compressing.getCompressionSizes(docId, resource);
+					if (buf != null) {
+						sizes[0] += buf[0];
+						sizes[1] += buf[1];
+					}
+				}
+
+			saveCompressionStats(sizes, tenant.getId());
+			total[0] += sizes[0];
+			total[1] += sizes[1];
+		}
+		saveCompressionStats(total, Tenant.SYSTEM_ID);
+	}
+
+	/**
+	 * Checks if <b>stat.reconciliation</b> hours have passed since the last
+	 * full count of the statistics
+	 */
+	protected boolean isReconciliationDue() {
+		Generic gen = genericDAO.findByAlternateKey(STAT, "lastreconciliation", null, Tenant.SYSTEM_ID);
+		if (gen == null || gen.getDate1() == null)
+			return true;
+		long interval = config.getInt("stat.reconciliation", 24) * 3600000L;
+		return System.currentTimeMillis() - gen.getDate1().getTime() >= interval;
+	}
+
+	/**
+	 * Adds the variations recorded by the DAOs since the last run to the saved
+	 * statistics
+	 */
+	protected void flushCounters() {
+		Map<Long, Map<String, Long>> counters = StatsCounters.get().drain();
+		for (Map.Entry<Long, Map<String, Long>> tenant : counters.entrySet())
+			for (Map.Entry<String, Long> counter : tenant.getValue().entrySet()) {
+				Generic gen = genericDAO.findByAlternateKey(STAT, counter.getKey(), null, tenant.getKey());
+				long value = gen != null && gen.getInteger1() != null ? gen.getInteger1() : 0L;
+				saveStatistic(counter.getKey(), Math.max(0L, value + counter.getValue()), tenant.getKey());
+			}
+		log.debug("Saved the variations of {} tenants", counters.size());
+	}
+
+	/**
+	 * Waits between two heavy queries of the reconciliation
+	 */
+	private void pause() {
+		long pause = config.getLong("stat.reconciliation.pause", 0L);
+		if (pause <= 0)
+			return;
+		try {
+			Thread.sleep(pause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	/**
 	 * Convenience method for saving statistical data in the DB as Generics
 	 */
@@ -616,4 +783,8 @@ public class StatsCollector extends Task {
 	public void setTenantDAO(TenantDAO tenantDAO) {
 		this.tenantDAO = tenantDAO;
 	}
+
+	public void setStorer(Storer storer) {
+		this.storer = storer;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.logicaldoc.core.stats;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.logicaldoc.core.document.AbstractDocument;
+import com.logicaldoc.core.security.Tenant;
+
+/**
+ * Accumulates the variations of the statistics as they are caused by the
+ * DAOs, so the statistics can be maintained without counting the rows of the
+ * tables. Each variation is recorded for the tenant and for the whole system,
+ * the values are periodically drained and added to the persisted statistics
+ * by the {@link StatsCollector}, that also reconciles them from time to time
+ * with a full count.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class StatsCounters {
+
+	private static StatsCounters instance = new StatsCounters();
+
+	// Key is the tenant, value is the map statistic - variation
+	private Map<Long, Map<String, Long>> counters = new HashMap<Long, Map<String, Long>>();
+
+	private StatsCounters() {
+	}
+
+	public static StatsCounters get() {
+		return instance;
+	}
+
+	/**
+	 * Records a variation of a statistic
+	 *
+	 * @param tenantId The tenant, the variation is also added to the system
+	 * @param stat Name of the statistic(eg. totaldocs)
+	 * @param delta The variation
+	 */
+	public synchronized void add(long tenantId, String stat, long delta) {
+		if (delta == 0)
+			return;
+		addTo(tenantId, stat, delta);
+		if (tenantId != Tenant.SYSTEM_ID)
+			addTo(Tenant.SYSTEM_ID, stat, delta);
+	}
+
+	private void addTo(long tenantId, String stat, long delta) {
+		Map<String, Long> map = counters.get(tenantId);
+		if (map == null) {
+			map = new HashMap<String, Long>();
+			counters.put(tenantId, map);
+		}
+		Long value = map.get(stat);
+		map.put(stat, (value != null ? value : 0L) + delta);
+	}
+
+	/**
+	 * Records the change of state of a document
+	 *
+	 * @param tenantId The tenant of the document
+	 * @param before The state before the change or null for a new document
+	 * @param after The state after the change
+	 */
+	public void documentChanged(long tenantId, int[] before, int[] after) {
+		if (Arrays.equals(before, after))
+			return;
+		if (before == null)
+			add(tenantId, "totaldocs", 1L);
+		for (String stat : getDocumentStats(before))
+			add(tenantId, stat, -1L);
+		for (String stat : getDocumentStats(after))
+			add(tenantId, stat, 1L);
+	}
+
+	/**
+	 * Gets the statistics a document contributes to
+	 *
+	 * @param state The triple indexed, deleted, status of the document
+	 */
+	static String[] getDocumentStats(int[] state) {
+		if (state == null)
+			return new String[0];
+
+		int indexed = state[0];
+		int deleted = state[1];
+		int status = state[2];
+		String stat = null;
+		if (deleted > 0)
+			stat = "deleteddocs";
+		else if (status != AbstractDocument.DOC_ARCHIVED && indexed == AbstractDocument.INDEX_TO_INDEX)
+			stat = "notindexeddocs";
+		else if (status != AbstractDocument.DOC_ARCHIVED && indexed == AbstractDocument.INDEX_INDEXED)
+			stat = "indexeddocs";
+
+		if (status == AbstractDocument.DOC_ARCHIVED)
+			return stat != null ? new String[] { stat, "archiveddocs" } : new String[] { "archiveddocs" };
+		else
+			return stat != null ? new String[] { stat } : new String[0];
+	}
+
+	/**
+	 * Gets the variation of a statistic not yet drained
+	 */
+	public synchronized long getPending(long tenantId, String stat) {
+		Map<String, Long> map = counters.get(tenantId);
+		if (map == null)
+			return 0L;
+		Long value = map.get(stat);
+		return value != null ? value : 0L;
+	}
+
+	/**
+	 * Discards the variations of some statistics of a tenant, to be invoked
+	 * right before counting them again so the changes made meanwhile are not
+	 * counted twice
+	 *
+	 * @param tenantId The tenant, the system is not affected
+	 * @param stats Names of the statistics
+	 */
+	public synchronized void reset(long tenantId, String... stats) {
+		Map<String, Long> map = counters.get(tenantId);
+		if (map == null)
+			return;
+		for (String stat : stats)
+			map.remove(stat);
+		if (map.isEmpty())
+			counters.remove(tenantId);
+	}
+
+	/**
+	 * Gets the variations recorded since the last invocation
+	 *
+	 * @return Map tenantId - map statistic / variation
+	 */
+	public synchronized Map<Long, Map<String, Long>> drain() {
+		Map<Long, Map<String, Long>> buf = counters;
+		counters = new HashMap<Long, Map<String, Long>>();
+		return buf;
+	}
+}
@@ -0,0 +1,127 @@
+package com.logicaldoc.core.store;
+
+import java.util.List;
+import java.util.Locale;
+
+import com.logicaldoc.core.document.dao.DocumentDAO;
+import com.logicaldoc.core.task.Task;
+import com.logicaldoc.i18n.I18N;
+
+/**
+ * Base class for the tasks that walk the whole store processing the files of
+ * each document one by one, like the {@link StoreRebalancer} and the
+ * {@link StoreEncrypter}.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public abstract class AbstractStoreTask extends Task {
+
+	protected DocumentDAO documentDao;
+
+	protected Storer storer;
+
+	protected long processed = 0;
+
+	protected long changed = 0;
+
+	protected long errors = 0;
+
+	public AbstractStoreTask(String name) {
+		super(name);
+	}
+
+	public void setDocumentDao(DocumentDAO documentDao) {
+		this.documentDao = documentDao;
+	}
+
+	public void setStorer(Storer storer) {
+		this.storer = storer;
+	}
+
+	@Override
+	public boolean isIndeterminate() {
+		return false;
+	}
+
+	@Override
+	public boolean isConcurrent() {
+		return false;
+	}
+
+	/**
+	 * Checks if the store has to be processed
+	 *
+	 * @return false if there is nothing to do
+	 */
+	protected abstract boolean prepare();
+
+	/**
+	 * Processes the files of a document
+	 *
+	 * @param docId The document identifier
+	 *
+	 * @return Number of files that have been changed
+	 */
+	protected abstract int process(long docId) throws Exception;
+
+	/**
+	 * Key of the message that describes what has been changed, it is used in
+	 * the report
+	 */
+	protected abstract String getChangedKey();
+
+	@Override
+	protected void runTask() throws Exception {
+		processed = 0;
+		changed = 0;
+		errors = 0;
+
+		if (!prepare())
+			return;
+
+		log.info("Start processing the store");
+		try {
+			// The deleted documents are included because their files are
+			// still in the store
+			@SuppressWarnings("unchecked")
+			List<Long> ids = (List<Long>) documentDao.queryForList(
+					"select ld_id from ld_document where ld_docref is null order by ld_id", Long.class);
+			size = ids.size();
+			log.info("Found a total of {} documents to be checked", size);
+
+			for (Long id : ids) {
+				try {
+					changed += process(id);
+					processed++;
+				} catch (Throwable e) {
+					log.error("Cannot process document {}: {}", id, e.getMessage());
+					errors++;
+				} finally {
+					next();
+				}
+				if (interruptRequested)
+					return;
+			}
+		} finally {
+			log.info("Store processing finished");
+			log.info("Processed documents: {}", processed);
+			log.info("{}: {}", I18N.message(getChangedKey(), Locale.ENGLISH), changed);
+			log.info("Errors: {}", errors);
+		}
+	}
+
+	@Override
+	protected String prepareReport(Locale locale) {
+		StringBuffer sb = new StringBuffer();
+		sb.append(I18N.message("processeddocs", locale) + ": ");
+		sb.append(processed);
+		sb.append("\n");
+		sb.append(I18N.message(getChangedKey(), locale) + ": ");
+		sb.append(changed);
+		sb.append("\n");
+		sb.append(I18N.message("errors", locale) + ": ");
+		sb.append(errors);
+		return sb.toString();
+	}
+}
@@ -14,6 +14,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -94,6 +95,11 @@ public abstract class AbstractStorer implements Storer {
 		return store(is, docId, resource);
 	}
 
+	@Override
+	public long store(InputStream stream, Document document, String resource) {
+		return store(stream, document.getId(), resource);
+	}
+
 	/**
 	 * Computes the relative path of a document's folder inside the storage
 	 * root. The document's id is tokenized by three chars tokens, than the doc/
@@ -142,6 +148,21 @@ public abstract class AbstractStorer implements Storer {
 		return null;
 	}
 
+	@Override
+	public InputStream getStream(long docId, String resource, long start, long length) {
+		InputStream is = getStream(docId, resource);
+		if (is == null)
+			return null;
+		try {
+			IOUtils.skipFully(is, start);
+			return length < 0 ? is : new BoundedInputStream(is, length);
+		} catch (IOException e) {
+			log.error(e.getMessage());
+			IOUtils.closeQuietly(is);
+			return null;
+		}
+	}
+
 	@Override
 	public void writeToStream(long docId, String resource, OutputStream output, long start, long length)
 			throws IOException {
@@ -0,0 +1,305 @@
+package com.logicaldoc.core.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.core.document.Document;
+import com.logicaldoc.util.MimeType;
+import com.logicaldoc.util.config.ContextProperties;
+import com.logicaldoc.util.io.BlockCompression;
+import com.logicaldoc.util.io.BlockCompression.CompressingInputStream;
+import com.logicaldoc.util.io.BlockCompression.Trailer;
+
+/**
+ * A storer that compresses the resources before handing them to another
+ * storer. Only the resources whose extension or MIME type is listed in
+ * <b>store.<i>id</i>.compress.types</b> are compressed, the decorated storer
+ * is specified in <b>store.<i>id</i>.delegate</b>(by default the
+ * {@link FSStorer}).<br>
+ * The content is compressed in blocks(see {@link BlockCompression}) so the
+ * ranged reads just decompress the blocks they touch. The resources stored
+ * before the compression was enabled are still read as they are. The sizes
+ * of the compressed resources are collected by {@link CompressionStats}, the
+ * statistics collector counts them again at each reconciliation.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class CompressingStorer extends AbstractStorer {
+
+	protected static Logger log = LoggerFactory.getLogger(CompressingStorer.class);
+
+	public static final String DEFAULT_TYPES = "txt,csv,xml,html,htm,json,log,rtf,eml,fodt,fods,fodp,text/*,application/xml,application/json";
+
+	private Storer storer;
+
+	public CompressingStorer() {
+		super();
+	}
+
+	public CompressingStorer(Storer storer) {
+		super();
+		this.storer = storer;
+	}
+
+	/**
+	 * The decorated storer
+	 */
+	public synchronized Storer getStorer() {
+		if (storer == null) {
+			String className = getConfig().getProperty("store." + id + ".delegate", FSStorer.class.getName());
+			try {
+				storer = (Storer) Class.forName(className).newInstance();
+			} catch (Throwable e) {
+				throw new IllegalStateException("Cannot instantiate the storer " + className, e);
+			}
+			storer.setId(id);
+			storer.getParameters().putAll(parameters);
+			if (storer instanceof AbstractStorer)
+				((AbstractStorer) storer).setConfig(getConfig());
+		}
+		return storer;
+	}
+
+	@Override
+	public void setId(int id) {
+		super.setId(id);
+		if (storer != null)
+			storer.setId(id);
+	}
+
+	@Override
+	public void setConfig(ContextProperties config) {
+		super.setConfig(config);
+		if (storer instanceof AbstractStorer)
+			((AbstractStorer) storer).setConfig(config);
+	}
+
+	/**
+	 * Checks if a file must be compressed looking at its extension
+	 */
+	protected boolean isCompressible(String fileName) {
+		String extension = FilenameUtils.getExtension(fileName).toLowerCase();
+		if (StringUtils.isEmpty(extension))
+			return false;
+
+		String mimeType = MimeType.get(extension);
+		String types = getConfig().getProperty("store." + id + ".compress.types", DEFAULT_TYPES);
+		for (String type : types.toLowerCase().split(",")) {
+			type = type.trim();
+			if (type.endsWith("/*") && mimeType != null && mimeType.startsWith(type.substring(0, type.length() - 1)))
+				return true;
+			else if (type.equals(extension) || type.equals(mimeType))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * The name that tells the type of a resource: resources like
+	 * 1.0-conversion.pdf have their own extension, the document's file
+	 * instead takes the one of the document's file name
+	 *
+	 * @return the name or null if it is the one of the document
+	 */
+	private static String getTypedName(String resource) {
+		return resource.contains("-") ? resource.substring(resource.indexOf('-') + 1) : null;
+	}
+
+	/**
+	 * Without the document just the resources with their own extension can
+	 * be recognized, the document's file is stored as is
+	 */
+	@Override
+	public long store(InputStream stream, long docId, String resource) {
+		String name = getTypedName(resource);
+		if (name == null || !isCompressible(name))
+			return getStorer().store(stream, docId, resource);
+		return compress(stream, docId, resource, null);
+	}
+
+	@Override
+	public long store(InputStream stream, Document document, String resource) {
+		String name = getTypedName(resource);
+		if (!isCompressible(name != null ? name : document.getFileName()))
+			return getStorer().store(stream, document, resource);
+		return compress(stream, document.getId(), resource, document.getTenantId());
+	}
+
+	/**
+	 * Stores a resource compressed
+	 *
+	 * @param tenantId The tenant of the document if known, used to record the
+	 *        sizes in the {@link CompressionStats}
+	 */
+	private long compress(InputStream stream, long docId, String resource, Long tenantId) {
+		CompressingInputStream compressed = BlockCompression.compress(stream, BlockCompression.DEFAULT_BLOCK_SIZE);
+		long stored = getStorer().store(compressed, docId, resource);
+		if (stored < 0)
+			return stored;
+
+		if (tenantId != null)
+			CompressionStats.get().record(tenantId, compressed.getPlainLength(), compressed.getLength());
+		return compressed.getPlainLength();
+	}
+
+	/**
+	 * Gets the sizes of a compressed resource
+	 *
+	 * @return The pair plain size - compressed size, or null if the resource
+	 *         is not compressed
+	 */
+	public long[] getCompressionSizes(long docId, String resource) {
+		try {
+			byte[] header = getStorer().getBytes(docId, resource, 0, BlockCompression.HEADER_LENGTH);
+			if (!BlockCompression.isCompressed(header))
+				return null;
+			return new long[] { readTrailer(docId, resource).getPlainLength(), getStorer().size(docId, resource) };
+		} catch (Throwable e) {
+			log.error(e.getMessage());
+			return null;
+		}
+	}
+
+	private Trailer readTrailer(long docId, String resource) throws IOException {
+		long size = getStorer().size(docId, resource);
+		return new Trailer(getStorer().getBytes(docId, resource, size - BlockCompression.TRAILER_LENGTH,
+				BlockCompression.TRAILER_LENGTH));
+	}
+
+	/**
+	 * Opens a range of a resource, decompressing it if needed. Just the
+	 * header, the trailer and the index entry of the first block are read
+	 * before the blocks.
+	 */
+	private InputStream openStream(long docId, String resource, long start, long length) throws IOException {
+		Storer st = getStorer();
+		byte[] header = st.getBytes(docId, resource, 0, BlockCompression.HEADER_LENGTH);
+		if (!BlockCompression.isCompressed(header))
+			return start == 0 && length < 0 ? st.getStream(docId, resource) : st.getStream(docId, resource, start,
+					length);
+
+		Trailer trailer = readTrailer(docId, resource);
+		if (start >= trailer.getPlainLength() || length == 0)
+			return new ByteArrayInputStream(new byte[0]);
+
+		int blockSize = BlockCompression.getBlockSize(header);
+		long block = start / blockSize;
+		long offset = block == 0 ? BlockCompression.HEADER_LENGTH : BlockCompression.readIndexEntry(st.getBytes(
+				docId, resource, trailer.getIndexEntryOffset(block), 8));
+
+		InputStream blocks = st.getStream(docId, resource, offset, trailer.getIndexOffset() - offset);
+		if (blocks == null)
+			throw new IOException("Cannot read resource " + resource + " of document " + docId);
+		return BlockCompression.decompress(blocks, blockSize, (int) (start - block * blockSize), length);
+	}
+
+	@Override
+	public InputStream getStream(long docId, String resource) {
+		return getStream(docId, resource, 0, -1);
+	}
+
+	@Override
+	public InputStream getStream(long docId, String resource, long start, long length) {
+		try {
+			return openStream(docId, resource, start, length);
+		} catch (Throwable e) {
+			log.error(e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public byte[] getBytes(long docId, String resource, long start, long length) {
+		InputStream is = getStream(docId, resource, start, length);
+		if (is == null)
+			return null;
+		try {
+			return IOUtils.toByteArray(is);
+		} catch (IOException e) {
+			log.error(e.getMessage());
+			return null;
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	@Override
+	public void writeToStream(long docId, String resource, OutputStream output, long start, long length)
+			throws IOException {
+		InputStream is = null;
+		try {
+			is = openStream(docId, resource, start, length);
+			IOUtils.copyLarge(is, output);
+		} catch (IOException ioe) {
+			log.error(ioe.getMessage(), ioe);
+			throw ioe;
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	@Override
+	public void writeToStream(long docId, String resource, OutputStream output) throws IOException {
+		writeToStream(docId, resource, output, 0, -1);
+	}
+
+	@Override
+	public long size(long docId, String resource) {
+		try {
+			byte[] header = getStorer().getBytes(docId, resource, 0, BlockCompression.HEADER_LENGTH);
+			if (BlockCompression.isCompressed(header))
+				return readTrailer(docId, resource).getPlainLength();
+		} catch (Throwable e) {
+			log.error(e.getMessage());
+		}
+		return getStorer().size(docId, resource);
+	}
+
+	@Override
+	public void delete(long docId) {
+		getStorer().delete(docId);
+	}
+
+	@Override
+	public void delete(long docId, String resource) {
+		getStorer().delete(docId, resource);
+	}
+
+	@Override
+	public List<String> listResources(long docId, String fileVersion) {
+		return getStorer().listResources(docId, fileVersion);
+	}
+
+	@Override
+	public boolean exists(long docId, String resource) {
+		return getStorer().exists(docId, resource);
+	}
+
+	/**
+	 * The space really occupied, that is the compressed size
+	 */
+	@Override
+	public long getTotalSize() {
+		return getStorer().getTotalSize();
+	}
+
+	@Override
+	public List<String> getParameterNames() {
+		return getStorer().getParameterNames();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return getStorer().isEnabled();
+	}
+}
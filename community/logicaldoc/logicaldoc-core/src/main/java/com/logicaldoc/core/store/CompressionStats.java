@@ -0,0 +1,55 @@
+package com.logicaldoc.core.store;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accumulates, for each tenant, the plain and compressed sizes of the
+ * resources written by the {@link CompressingStorer}. The values are
+ * periodically drained and persisted by the statistics collector.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class CompressionStats {
+
+	private static CompressionStats instance = new CompressionStats();
+
+	// Key is the tenant, value is the pair plain size - compressed size
+	private Map<Long, long[]> sizes = new HashMap<Long, long[]>();
+
+	private CompressionStats() {
+	}
+
+	public static CompressionStats get() {
+		return instance;
+	}
+
+	/**
+	 * Records a compressed resource
+	 *
+	 * @param tenantId The tenant
+	 * @param plainSize Size of the plain content
+	 * @param compressedSize Size of the compressed content
+	 */
+	public synchronized void record(long tenantId, long plainSize, long compressedSize) {
+		long[] buf = sizes.get(tenantId);
+		if (buf == null) {
+			buf = new long[2];
+			sizes.put(tenantId, buf);
+		}
+		buf[0] += plainSize;
+		buf[1] += compressedSize;
+	}
+
+	/**
+	 * Gets the sizes recorded since the last invocation
+	 *
+	 * @return Map tenantId - pair plain size / compressed size
+	 */
+	public synchronized Map<Long, long[]> drain() {
+		Map<Long, long[]> buf = sizes;
+		sizes = new HashMap<Long, long[]>();
+		return buf;
+	}
+}
@@ -0,0 +1,32 @@
+package com.logicaldoc.core.store;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Striped read-write locks of the documents kept in a store, used by the
+ * storers that must serialize the changes of a document's files with the
+ * reads.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+class DocumentLocks {
+
+	private static final int LOCKS = 64;
+
+	private final ReadWriteLock[] locks = new ReadWriteLock[LOCKS];
+
+	DocumentLocks() {
+		for (int i = 0; i < LOCKS; i++)
+			locks[i] = new ReentrantReadWriteLock();
+	}
+
+	/**
+	 * The lock of a document, shared with the other documents of the same
+	 * stripe
+	 */
+	ReadWriteLock get(long docId) {
+		return locks[(int) (StripedFSStorer.mix(docId) & (LOCKS - 1))];
+	}
+}
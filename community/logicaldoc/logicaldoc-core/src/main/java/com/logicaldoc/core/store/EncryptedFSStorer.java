@@ -0,0 +1,292 @@
+package com.logicaldoc.core.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.util.Base64Coder;
+import com.logicaldoc.util.crypt.StreamingAead;
+
+/**
+ * A filesystem storer that encrypts the resources at rest with AES-GCM in
+ * authenticated chunks(see {@link StreamingAead}), so the ranged reads just
+ * decrypt the chunks they touch. The key is specified in base64 in
+ * <b>store.<i>id</i>.key</b>, without a key the storer is not enabled.<br>
+ * The resources stored before the encryption was enabled are still read as
+ * they are, they can be encrypted in place with the {@link StoreEncrypter}
+ * task.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class EncryptedFSStorer extends FSStorer {
+
+	protected static Logger log = LoggerFactory.getLogger(EncryptedFSStorer.class);
+
+	/**
+	 * The current cipher together with the key it has been created with, it
+	 * is replaced as a whole when the key changes
+	 */
+	private volatile KeyedAead cipher;
+
+	/**
+	 * The writes, the deletions and the in place encryptions take the write
+	 * lock, the reads take the read lock to open the file
+	 */
+	private final DocumentLocks locks = new DocumentLocks();
+
+	private static class KeyedAead {
+		private final String key;
+
+		private final StreamingAead aead;
+
+		KeyedAead(String key) {
+			this.key = key;
+			this.aead = new StreamingAead(Base64Coder.decode(key.trim()));
+		}
+	}
+
+	public EncryptedFSStorer() {
+		super();
+	}
+
+	private StreamingAead getAead() {
+		String spec = getParameters().get("key");
+		if (StringUtils.isEmpty(spec))
+			spec = getConfig().getProperty("store." + id + ".key", "");
+		if (StringUtils.isEmpty(spec))
+			throw new IllegalStateException("Encryption key not specified for store " + id);
+
+		KeyedAead current = cipher;
+		if (current == null || !spec.equals(current.key)) {
+			current = new KeyedAead(spec);
+			cipher = current;
+		}
+		return current.aead;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		try {
+			return getAead() != null;
+		} catch (Throwable t) {
+			log.warn(t.getMessage());
+			return false;
+		}
+	}
+
+	@Override
+	protected void writeResource(InputStream stream, File file) throws Exception {
+		OutputStream out = getAead().encrypt(new BufferedOutputStream(new FileOutputStream(file), DEFAULT_BUFFER_SIZE));
+		try {
+			IOUtils.copyLarge(stream, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	@Override
+	public long store(InputStream stream, long docId, String resource) {
+		Lock lock = locks.get(docId).writeLock();
+		lock.lock();
+		try {
+			return super.store(stream, docId, resource);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	protected long getLength(File file) {
+		if (!file.exists())
+			return 0L;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			if (StreamingAead.isEncrypted(raf))
+				return StreamingAead.getPlainLength(raf);
+			return raf.length();
+		} catch (IOException e) {
+			log.error(e.getMessage());
+			return file.length();
+		}
+	}
+
+	/**
+	 * Opens a range of a resource's file, decrypting it if needed. The file
+	 * is opened once and its header decides how to read it, so a file
+	 * encrypted meanwhile is never read as plain content.
+	 */
+	private InputStream openStream(long docId, String resource, long start, long length) throws IOException {
+		RandomAccessFile raf;
+		Lock lock = locks.get(docId).readLock();
+		lock.lock();
+		try {
+			raf = new RandomAccessFile(new File(getContainer(docId), resource), "r");
+		} finally {
+			lock.unlock();
+		}
+
+		try {
+			if (StreamingAead.isEncrypted(raf))
+				return getAead().decrypt(raf, start, length);
+
+			FileChannel channel = raf.getChannel();
+			channel.position(Math.max(start, 0));
+			InputStream is = new BufferedInputStream(Channels.newInputStream(channel), DEFAULT_BUFFER_SIZE);
+			return length < 0 ? is : new BoundedInputStream(is, length);
+		} catch (IOException | RuntimeException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public InputStream getStream(long docId, String resource) {
+		return getStream(docId, resource, 0, -1);
+	}
+
+	@Override
+	public InputStream getStream(long docId, String resource, long start, long length) {
+		try {
+			return openStream(docId, resource, start, length);
+		} catch (Throwable e) {
+			log.error(e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public byte[] getBytes(long docId, String resource, long start, long length) {
+		InputStream is = getStream(docId, resource, start, length);
+		if (is == null)
+			return null;
+		try {
+			return IOUtils.toByteArray(is);
+		} catch (IOException e) {
+			log.error(e.getMessage());
+			return null;
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	@Override
+	public void writeToStream(long docId, String resource, OutputStream output, long start, long length)
+			throws IOException {
+		InputStream is = null;
+		try {
+			is = openStream(docId, resource, start, length);
+			IOUtils.copyLarge(is, output);
+		} catch (IOException ioe) {
+			log.error(ioe.getMessage(), ioe);
+			throw ioe;
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	/**
+	 * The files are never handed out: the encrypted ones must be decrypted on
+	 * read and the ones still stored in clear can be encrypted at any time,
+	 * also after the caller checked them.
+	 */
+	@Override
+	public File getFile(long docId, String resource) {
+		return null;
+	}
+
+	@Override
+	public void delete(long docId) {
+		Lock lock = locks.get(docId).writeLock();
+		lock.lock();
+		try {
+			super.delete(docId);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void delete(long docId, String resource) {
+		Lock lock = locks.get(docId).writeLock();
+		lock.lock();
+		try {
+			super.delete(docId, resource);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Encrypts a resource stored in clear. The encrypted content is written in
+	 * an hidden file of the same container that then replaces the original
+	 * file, all under the document's write lock so a resource stored
+	 * meanwhile is not lost.
+	 *
+	 * @param docId The document identifier
+	 * @param resource Name of the resource
+	 *
+	 * @return true if the resource has been encrypted
+	 *
+	 * @throws IOException If the resource cannot be encrypted
+	 */
+	public boolean encrypt(long docId, String resource) throws IOException {
+		Lock lock = locks.get(docId).writeLock();
+		lock.lock();
+		try {
+			return encryptFile(new File(getContainer(docId), resource));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean encryptFile(File file) throws IOException {
+		String resource = file.getName();
+		if (!file.exists() || StreamingAead.isEncrypted(file))
+			return false;
+
+		File tmp = new File(file.getParentFile(), "." + resource + ".encrypting");
+		try {
+			InputStream is = new BufferedInputStream(new FileInputStream(file), DEFAULT_BUFFER_SIZE);
+			try {
+				writeResource(is, tmp);
+			} finally {
+				is.close();
+			}
+			tmp.setLastModified(file.lastModified());
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e.getMessage(), e);
+		} finally {
+			if (tmp.exists())
+				tmp.delete();
+		}
+	}
+
+	@Override
+	public List<String> getParameterNames() {
+		return Arrays.asList("key");
+	}
+}
@@ -6,15 +6,23 @@ import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.logicaldoc.util.io.FileUtil;
+import com.logicaldoc.util.metrics.Metrics;
+import com.logicaldoc.util.metrics.Timer;
 
 /**
  * This class is an implementation of the Storer interface to persist documents
@@ -70,20 +78,44 @@ public class FSStorer extends AbstractStorer {
 		}
 
 		File file = null;
+		Timer.Context timer = Metrics.get().timer("storer.store").start();
 		try {
 			File dir = getContainer(docId);
 			FileUtils.forceMkdir(dir);
 			file = new File(new StringBuilder(dir.getPath()).append("/").append(resource).toString());
-			FileUtil.writeFile(stream, file.getPath());
+			writeResource(stream, file);
 		} catch (Throwable e) {
+			timer.error();
 			log.error(e.getMessage(), e);
 			return -1;
 		} finally {
+			timer.stop();
 			try {
 				stream.close();
 			} catch (IOException e) {
 			}
 		}
+		long length = getLength(file);
+		Metrics.get().histogram("storer.store.bytes").update(length);
+		return length;
+	}
+
+	/**
+	 * Writes the content of a resource in its file
+	 * 
+	 * @param stream The content
+	 * @param file The file of the resource
+	 */
+	protected void writeResource(InputStream stream, File file) throws Exception {
+		FileUtil.writeFile(stream, file.getPath());
+	}
+
+	/**
+	 * Computes the length of the content of a resource stored in a file
+	 * 
+	 * @param file The file of the resource
+	 */
+	protected long getLength(File file) {
 		return file.length();
 	}
 
@@ -100,6 +132,29 @@ public class FSStorer extends AbstractStorer {
 		}
 	}
 
+	/**
+	 * Positions a file channel at the requested offset, so the skipped bytes
+	 * are never read.
+	 */
+	@Override
+	public InputStream getStream(long docId, String resource, long start, long length) {
+		File file = new File(getContainer(docId), resource);
+
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel();
+			channel.position(start);
+			InputStream is = new BufferedInputStream(Channels.newInputStream(channel), DEFAULT_BUFFER_SIZE);
+			return length < 0 ? is : new BoundedInputStream(is, length);
+		} catch (Throwable e) {
+			// Closing the file closes also its channel
+			IOUtils.closeQuietly(raf);
+			log.error(e.getMessage(), e);
+			return null;
+		}
+	}
+
 	@Override
 	public long getTotalSize() {
 		long size = 0;
@@ -123,6 +178,42 @@ public class FSStorer extends AbstractStorer {
 		}
 	}
 
+	/**
+	 * Writes the resource using <code>FileChannel.transferTo</code> so the
+	 * bytes are moved by the operating system without heap copies.
+	 */
+	@Override
+	public void writeToStream(long docId, String resource, OutputStream output, long start, long length)
+			throws IOException {
+		File file = new File(getContainer(docId), resource);
+		try {
+			FileUtil.transfer(file, output, start, length);
+		} catch (IOException ioe) {
+			log.error(ioe.getMessage(), ioe);
+			throw ioe;
+		}
+	}
+
+	@Override
+	public void writeToStream(long docId, String resource, OutputStream output) throws IOException {
+		writeToStream(docId, resource, output, 0, -1);
+	}
+
+	/**
+	 * Gets the file of a resource, useful to let the caller(for instance the
+	 * servlet container) transfer the bytes directly from the disk.
+	 * 
+	 * @param docId The document identifier
+	 * @param resource Name of the resource
+	 * 
+	 * @return The file if it exists and contains the plain content of the
+	 *         resource, null otherwise
+	 */
+	public File getFile(long docId, String resource) {
+		File file = new File(getContainer(docId), resource);
+		return file.exists() ? file : null;
+	}
+
 	@Override
 	public void delete(long docId, String resource) {
 		File file = new File(getContainer(docId), resource);
@@ -160,7 +251,7 @@ public class FSStorer extends AbstractStorer {
 	public long size(long docId, String resource) {
 		File file = getContainer(docId);
 		file = new File(file, resource);
-		return file.length();
+		return getLength(file);
 	}
 
 	@Override
@@ -0,0 +1,47 @@
+package com.logicaldoc.core.store;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * This task encrypts in place the resources stored in clear before the
+ * {@link EncryptedFSStorer} was enabled. It does nothing if the store is not
+ * encrypted.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class StoreEncrypter extends AbstractStoreTask {
+	public static final String NAME = "StoreEncrypter";
+
+	public StoreEncrypter() {
+		super(NAME);
+		log = LoggerFactory.getLogger(StoreEncrypter.class);
+	}
+
+	@Override
+	protected boolean prepare() {
+		if (!(storer instanceof EncryptedFSStorer) || !storer.isEnabled()) {
+			log.info("The store is not encrypted, nothing to do");
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	protected int process(long docId) throws Exception {
+		EncryptedFSStorer encryptedStorer = (EncryptedFSStorer) storer;
+		int encrypted = 0;
+		for (String resource : storer.listResources(docId, null)) {
+			if (encryptedStorer.encrypt(docId, resource))
+				encrypted++;
+			if (interruptRequested)
+				break;
+		}
+		return encrypted;
+	}
+
+	@Override
+	protected String getChangedKey() {
+		return "encryptedresources";
+	}
+}
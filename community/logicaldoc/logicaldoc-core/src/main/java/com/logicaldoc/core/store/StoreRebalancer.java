@@ -0,0 +1,47 @@
+package com.logicaldoc.core.store;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * This task moves the documents in the root they are assigned to by the
+ * {@link StripedFSStorer}, it must be executed after a new root has been added
+ * to the store. It does nothing if the store is not striped.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class StoreRebalancer extends AbstractStoreTask {
+	public static final String NAME = "StoreRebalancer";
+
+	public StoreRebalancer() {
+		super(NAME);
+		log = LoggerFactory.getLogger(StoreRebalancer.class);
+	}
+
+	@Override
+	protected boolean prepare() {
+		if (!(storer instanceof StripedFSStorer)) {
+			log.info("The store is not striped, nothing to rebalance");
+			return false;
+		}
+
+		StripedFSStorer striped = (StripedFSStorer) storer;
+		if (striped.getRoots().size() < 2) {
+			log.info("The store has just one root, nothing to rebalance");
+			return false;
+		}
+
+		log.info("Rebalancing the store over {} roots", striped.getRoots().size());
+		return true;
+	}
+
+	@Override
+	protected int process(long docId) throws Exception {
+		return ((StripedFSStorer) storer).rebalance(docId) ? 1 : 0;
+	}
+
+	@Override
+	protected String getChangedKey() {
+		return "moveddocs";
+	}
+}
@@ -46,6 +46,14 @@ public interface Storer extends Comparable<Storer> {
 	 */
 	public long store(File file, long docId, String resource);
 
+	/**
+	 * Stores a resource of a document already at hand, so the implementation
+	 * can use the document's properties without loading it again.
+	 * 
+	 * @see store(InputStream stream, long docId, String resource)
+	 */
+	public long store(InputStream stream, Document document, String resource);
+
 	/**
 	 * Deletes all resources of a document from the storage.
 	 * 
@@ -151,6 +159,19 @@ public interface Storer extends Comparable<Storer> {
 	 */
 	public InputStream getStream(long docId, String resource);
 
+	/**
+	 * Obtains a portion of the document's content for the specified resource
+	 * 
+	 * @param docId The document's identifier
+	 * @param resource Name of the resource
+	 * @param start Index of the starting byte
+	 * @param length Total packet length, use a negative value to read up to
+	 *        the end
+	 * 
+	 * @return The stream of the requested bytes
+	 */
+	public InputStream getStream(long docId, String resource, long start, long length);
+
 	/**
 	 * Obtains the document's raw bytes for the specified resource
 	 * 
@@ -0,0 +1,415 @@
+package com.logicaldoc.core.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A filesystem storer that stripes the documents over several roots, typically
+ * mounted on different disks, so the I/O of the uploads and downloads is
+ * spread among them. The first root is the one specified in
+ * <b>store.<i>id</i>.dir</b>, the others are listed in the comma separated
+ * <b>store.<i>id</i>.roots</b>.<br>
+ * Each document is assigned to a root using a rendezvous hash of its
+ * identifier and of the root's path, so the assignment is stable and does not
+ * depend on the order of the roots: when a root is added only the documents
+ * that must go in the new root change their location, when a root is removed
+ * only its documents do. Those documents are moved by the
+ * {@link StoreRebalancer} task, meanwhile they are still found in the root
+ * they were stored in. The writes and the moves of the same document are
+ * serialized by a lock, so a move never loses a file written meanwhile.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class StripedFSStorer extends FSStorer {
+
+	protected static Logger log = LoggerFactory.getLogger(StripedFSStorer.class);
+
+	private static final String REBALANCE_SUFFIX = ".rebalance";
+
+	/**
+	 * The specification the current roots have been parsed from
+	 */
+	private String rootsSpec;
+
+	private List<File> roots = new ArrayList<File>();
+
+	// Hashes of the roots' paths, in the same order of the roots
+	private long[] rootHashes = new long[0];
+
+	/**
+	 * Striped locks of the documents: the reads take the read lock to open the
+	 * file or for the whole transfer into an output stream, the writes, the deletions and the moves take the write
+	 * lock
+	 */
+	private final DocumentLocks locks = new DocumentLocks();
+
+	public StripedFSStorer() {
+		super();
+	}
+
+	private ReadWriteLock getLock(long docId) {
+		return locks.get(docId);
+	}
+
+	/**
+	 * The roots the documents are striped on, the first one is the
+	 * <b>store.<i>id</i>.dir</b>
+	 */
+	public synchronized List<File> getRoots() {
+		String spec = getDir() + "," + getRootsSpec();
+		if (!spec.equals(rootsSpec)) {
+			List<File> buf = new ArrayList<File>();
+			for (String path : spec.split(",")) {
+				if (StringUtils.isEmpty(path.trim()))
+					continue;
+				File root = new File(path.trim());
+				if (!buf.contains(root))
+					buf.add(root);
+			}
+			long[] hashes = new long[buf.size()];
+			for (int i = 0; i < hashes.length; i++)
+				hashes[i] = hash(buf.get(i));
+			roots = Collections.unmodifiableList(buf);
+			rootHashes = hashes;
+			rootsSpec = spec;
+		}
+		return roots;
+	}
+
+	private String getRootsSpec() {
+		String spec = getParameters().get("roots");
+		if (StringUtils.isEmpty(spec))
+			spec = getConfig().getPropertyWithSubstitutions("store." + id + ".roots", "");
+		return spec;
+	}
+
+	/**
+	 * Finds the container where all document's files are stored. This is the
+	 * container in the document's target root unless the document is still
+	 * stored in another root waiting to be rebalanced.
+	 */
+	@Override
+	public File getContainer(long docId) {
+		List<File> roots = getRoots();
+		String relativePath = computeRelativePath(docId);
+		File target = new File(getTargetRoot(docId), relativePath);
+		if (roots.size() == 1 || target.exists())
+			return target;
+
+		for (File root : roots) {
+			File container = new File(root, relativePath);
+			if (container.exists())
+				return container;
+		}
+		return target;
+	}
+
+	/**
+	 * The container the document belongs to according to the current roots
+	 */
+	public File getTargetContainer(long docId) {
+		return new File(getTargetRoot(docId), computeRelativePath(docId));
+	}
+
+	/**
+	 * Computes the root assigned to the document, that is the one with the
+	 * highest hash of the pair document-root
+	 */
+	public File getTargetRoot(long docId) {
+		List<File> roots;
+		long[] hashes;
+		synchronized (this) {
+			roots = getRoots();
+			hashes = rootHashes;
+		}
+
+		int target = 0;
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < roots.size(); i++) {
+			long weight = mix(docId ^ hashes[i]);
+			if (weight > max) {
+				max = weight;
+				target = i;
+			}
+		}
+		return roots.get(target);
+	}
+
+	/**
+	 * Stable 64 bits hash(FNV-1a) of the normalized path of a root, it does
+	 * not depend on the position of the root in the list
+	 */
+	static long hash(File root) {
+		String path = FilenameUtils.normalizeNoEndSeparator(root.getPath(), true);
+		if (path == null)
+			path = root.getPath();
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < path.length(); i++) {
+			hash ^= path.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * Finalizer of the MurmurHash3, spreads the bits of the value
+	 */
+	static long mix(long value) {
+		long z = value;
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return z ^ (z >>> 33);
+	}
+
+	/**
+	 * Moves the document's container in the target root if it is stored in
+	 * another one. The files are first copied in a temporary folder of the
+	 * target root and then renamed, so the container appears in the target
+	 * root only when complete. The whole move holds the document's lock, so
+	 * no file can be written or deleted meanwhile, and the old container is
+	 * deleted only after verifying that the target contains all its files.
+	 *
+	 * @param docId The document identifier
+	 *
+	 * @return true if the document has been moved
+	 *
+	 * @throws IOException If the files cannot be moved
+	 */
+	public boolean rebalance(long docId) throws IOException {
+		List<File> roots = getRoots();
+		if (roots.size() < 2)
+			return false;
+
+		String relativePath = computeRelativePath(docId);
+		File targetRoot = getTargetRoot(docId);
+		File target = new File(targetRoot, relativePath);
+
+		Lock lock = getLock(docId).writeLock();
+		lock.lock();
+		try {
+			return move(docId, roots, relativePath, targetRoot, target);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean move(long docId, List<File> roots, String relativePath, File targetRoot, File target)
+			throws IOException {
+		boolean moved = false;
+		for (File root : roots) {
+			if (root.equals(targetRoot))
+				continue;
+			File source = new File(root, relativePath);
+			if (!source.exists())
+				continue;
+
+			if (!target.exists()) {
+				File tmp = new File(target.getPath() + REBALANCE_SUFFIX);
+				if (tmp.exists())
+					FileUtils.forceDelete(tmp);
+				FileUtils.copyDirectory(source, tmp, true);
+				if (!tmp.renameTo(target))
+					throw new IOException("Cannot rename " + tmp.getPath() + " into " + target.getPath());
+			}
+
+			// Merge the files left by a previous interrupted move
+			File[] files = source.listFiles();
+			if (files != null)
+				for (File file : files) {
+					File dest = new File(target, file.getName());
+					if (!dest.exists() || dest.lastModified() < file.lastModified())
+						FileUtils.copyFile(file, dest, true);
+				}
+
+			verify(source, target);
+			FileUtils.forceDelete(source);
+			log.debug("Moved document {} from {} to {}", docId, root.getPath(), targetRoot.getPath());
+			moved = true;
+		}
+		return moved;
+	}
+
+	/**
+	 * Checks that all the files of the source container are in the target
+	 * one with the same size
+	 */
+	private static void verify(File source, File target) throws IOException {
+		File[] files = source.listFiles();
+		if (files == null)
+			throw new IOException("Cannot list " + source.getPath());
+		for (File file : files) {
+			File dest = new File(target, file.getName());
+			if (file.isDirectory()) {
+				if (!dest.isDirectory())
+					throw new IOException("Missing " + dest.getPath());
+				verify(file, dest);
+			} else if (!dest.isFile() || dest.length() != file.length()) {
+				throw new IOException("Missing or incomplete " + dest.getPath());
+			}
+		}
+	}
+
+	@Override
+	public long store(InputStream stream, long docId, String resource) {
+		Lock lock = getLock(docId).writeLock();
+		lock.lock();
+		try {
+			return super.store(stream, docId, resource);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public InputStream getStream(long docId, String resource) {
+		Lock lock = getLock(docId).readLock();
+		lock.lock();
+		try {
+			return super.getStream(docId, resource);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public InputStream getStream(long docId, String resource, long start, long length) {
+		Lock lock = getLock(docId).readLock();
+		lock.lock();
+		try {
+			return super.getStream(docId, resource, start, length);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public byte[] getBytes(long docId, String resource, long start, long length) {
+		Lock lock = getLock(docId).readLock();
+		lock.lock();
+		try {
+			return super.getBytes(docId, resource, start, length);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The whole transfer holds the read lock, so the document cannot be moved
+	 * while it is being written in the output
+	 */
+	@Override
+	public void writeToStream(long docId, String resource, OutputStream output, long start, long length)
+			throws IOException {
+		Lock lock = getLock(docId).readLock();
+		lock.lock();
+		try {
+			super.writeToStream(docId, resource, output, start, length);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The files are never handed out because a rebalance can move them at
+	 * any time, also after the caller released the lock(for instance while
+	 * the servlet container is sending the file), so the content must be read
+	 * through the streams.
+	 */
+	@Override
+	public File getFile(long docId, String resource) {
+		return null;
+	}
+
+	@Override
+	public long size(long docId, String resource) {
+		Lock lock = getLock(docId).readLock();
+		lock.lock();
+		try {
+			return super.size(docId, resource);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean exists(long docId, String resource) {
+		Lock lock = getLock(docId).readLock();
+		lock.lock();
+		try {
+			return super.exists(docId, resource);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public List<String> listResources(long docId, String fileVersion) {
+		Lock lock = getLock(docId).readLock();
+		lock.lock();
+		try {
+			return super.listResources(docId, fileVersion);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void delete(long docId) {
+		String relativePath = computeRelativePath(docId);
+		Lock lock = getLock(docId).writeLock();
+		lock.lock();
+		try {
+			for (File root : getRoots()) {
+				File docDir = new File(root, relativePath);
+				try {
+					if (docDir.exists())
+						FileUtils.forceDelete(docDir);
+				} catch (IOException e) {
+					log.error(e.getMessage());
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void delete(long docId, String resource) {
+		Lock lock = getLock(docId).writeLock();
+		lock.lock();
+		try {
+			super.delete(docId, resource);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long getTotalSize() {
+		long size = 0;
+		for (File root : getRoots())
+			if (root.exists())
+				size += FileUtils.sizeOfDirectory(root);
+		return size;
+	}
+
+	@Override
+	public List<String> getParameterNames() {
+		return Arrays.asList("roots");
+	}
+}
@@ -32,6 +32,8 @@ import com.logicaldoc.core.system.SystemLoadMonitor;
 import com.logicaldoc.i18n.I18N;
 import com.logicaldoc.util.Context;
 import com.logicaldoc.util.config.ContextProperties;
+import com.logicaldoc.util.metrics.Metrics;
+import com.logicaldoc.util.metrics.Timer;
 
 /**
  * A task is a long running sequence of operations
@@ -183,6 +185,7 @@ public abstract class Task implements Runnable {
 		setProgress(0);
 		lastRunError = null;
 
+		Timer.Context timer = Metrics.get().timer("task." + getName()).start();
 		try {
 			/*
 			 * Need to acquire the lock
@@ -194,7 +197,10 @@ public abstract class Task implements Runnable {
 			log.error("Error caught " + t.getMessage(), t);
 			log.error("The task is stopped");
 			lastRunError = t;
+			timer.error();
 		} finally {
+			timer.stop();
+
 			// In any case release the lock
 			try {
 				lockManager.release(getName(), transactionId);
@@ -336,7 +342,7 @@ public abstract class Task implements Runnable {
 
 			// Send the email
 			try {
-				sender.send(email, "task.report", dictionary);
+				sender.sendBatched(email, "task.report", dictionary);
 				log.info("Report sent to: " + recipient.getEmail());
 			} catch (Exception e) {
 				log.error(e.getMessage(), e);
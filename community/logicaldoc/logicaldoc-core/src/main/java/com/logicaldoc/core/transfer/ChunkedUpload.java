@@ -0,0 +1,250 @@
+package com.logicaldoc.core.transfer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.Properties;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * The state of a resumable upload: the content is sent in numbered chunks of
+ * fixed size that are written at their own position of a staging file, so
+ * they can arrive in any order and a failed chunk can just be sent again. The
+ * state is saved next to the staging file so the upload can be resumed also
+ * after a restart: it records the number of chunks received without gaps and
+ * a bitmap of the chunks received after the first gap, so it stays small
+ * whatever the number of chunks.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class ChunkedUpload {
+
+	private String id;
+
+	private long tenantId;
+
+	private long userId;
+
+	private String fileName;
+
+	private long size;
+
+	private int chunkSize;
+
+	private Date creation = new Date();
+
+	private Date lastModified = new Date();
+
+	// True while the upload is being stored
+	private boolean committing = false;
+
+	private BitSet received = new BitSet();
+
+	private File file;
+
+	ChunkedUpload(String id, File file) {
+		this.id = id;
+		this.file = file;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public long getTenantId() {
+		return tenantId;
+	}
+
+	void setTenantId(long tenantId) {
+		this.tenantId = tenantId;
+	}
+
+	public long getUserId() {
+		return userId;
+	}
+
+	void setUserId(long userId) {
+		this.userId = userId;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	/**
+	 * The declared size of the whole file
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	void setSize(long size) {
+		this.size = size;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public Date getCreation() {
+		return creation;
+	}
+
+	/**
+	 * When the last chunk has been received
+	 */
+	public synchronized Date getLastModified() {
+		return lastModified;
+	}
+
+	synchronized boolean isCommitting() {
+		return committing;
+	}
+
+	synchronized void setCommitting(boolean committing) {
+		this.committing = committing;
+	}
+
+	/**
+	 * The staging file the chunks are written in
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	File getStateFile() {
+		return new File(file.getParentFile(), id + ".properties");
+	}
+
+	/**
+	 * Total number of chunks
+	 */
+	public int getChunks() {
+		return (int) ((size + chunkSize - 1) / chunkSize);
+	}
+
+	/**
+	 * Expected length of the given chunk, just the last one may be shorter
+	 * than the chunk size
+	 */
+	public int getChunkLength(int chunk) {
+		return (int) Math.min(chunkSize, size - (long) chunk * chunkSize);
+	}
+
+	public synchronized boolean isReceived(int chunk) {
+		return received.get(chunk);
+	}
+
+	synchronized void setReceived(int chunk) {
+		received.set(chunk);
+		lastModified = new Date();
+	}
+
+	/**
+	 * The offset up to which all the chunks have been received, the client
+	 * resumes the upload from here
+	 */
+	public synchronized long getOffset() {
+		return Math.min(size, (long) received.nextClearBit(0) * chunkSize);
+	}
+
+	/**
+	 * Checks if all the chunks have been received
+	 */
+	public synchronized boolean isComplete() {
+		return received.nextClearBit(0) >= getChunks();
+	}
+
+	synchronized void save() throws IOException {
+		Properties props = new Properties();
+		props.setProperty("tenantId", Long.toString(tenantId));
+		props.setProperty("userId", Long.toString(userId));
+		props.setProperty("fileName", fileName);
+		props.setProperty("size", Long.toString(size));
+		props.setProperty("chunkSize", Integer.toString(chunkSize));
+		props.setProperty("creation", Long.toString(creation.getTime()));
+		props.setProperty("lastModified", Long.toString(lastModified.getTime()));
+
+		// The contiguous chunks and the bitmap of the following ones
+		int contiguous = received.nextClearBit(0);
+		props.setProperty("contiguous", Integer.toString(contiguous));
+		BitSet following = received.get(contiguous, Math.max(contiguous, received.length()));
+		props.setProperty("bitmap", Base64.getEncoder().encodeToString(following.toByteArray()));
+
+		// Write a new file and replace the old one, so a crash never leaves a
+		// broken state
+		File state = getStateFile();
+		File tmp = new File(state.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(tmp);
+		try {
+			props.store(out, null);
+		} finally {
+			out.close();
+		}
+		try {
+			Files.move(tmp.toPath(), state.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), state.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Loads an upload from the state saved in the given directory
+	 *
+	 * @return the upload or null if there is no such upload
+	 */
+	static ChunkedUpload load(String id, File dir) throws IOException {
+		ChunkedUpload upload = new ChunkedUpload(id, new File(dir, id + ".part"));
+		File state = upload.getStateFile();
+		if (!state.exists())
+			return null;
+
+		Properties props = new Properties();
+		InputStream in = new FileInputStream(state);
+		try {
+			props.load(in);
+		} finally {
+			in.close();
+		}
+
+		upload.tenantId = Long.parseLong(props.getProperty("tenantId"));
+		upload.userId = Long.parseLong(props.getProperty("userId"));
+		upload.fileName = props.getProperty("fileName");
+		upload.size = Long.parseLong(props.getProperty("size"));
+		upload.chunkSize = Integer.parseInt(props.getProperty("chunkSize"));
+		upload.creation = new Date(Long.parseLong(props.getProperty("creation")));
+		upload.lastModified = new Date(Long.parseLong(props.getProperty("lastModified",
+				props.getProperty("creation"))));
+
+		int contiguous = Integer.parseInt(props.getProperty("contiguous", "0"));
+		upload.received.set(0, contiguous);
+		BitSet following = BitSet.valueOf(Base64.getDecoder().decode(props.getProperty("bitmap", "")));
+		for (int i = following.nextSetBit(0); i >= 0; i = following.nextSetBit(i + 1))
+			upload.received.set(contiguous + i);
+
+		// State saved by previous versions
+		for (String chunk : StringUtils.split(props.getProperty("chunks", ""), ','))
+			upload.received.set(Integer.parseInt(chunk.trim()));
+		return upload;
+	}
+}
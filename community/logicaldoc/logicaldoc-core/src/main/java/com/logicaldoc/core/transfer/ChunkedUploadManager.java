@@ -0,0 +1,442 @@
+package com.logicaldoc.core.transfer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.core.security.Tenant;
+import com.logicaldoc.core.security.dao.TenantDAO;
+import com.logicaldoc.util.Context;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Manages the resumable uploads. The client starts an upload declaring the
+ * size of the file and of the chunks, then sends the chunks each one with the
+ * SHA-1 digest of its content; a chunk whose digest does not match is
+ * rejected and must be sent again. At any time the client can ask for the
+ * offset up to which the content has been received. Once all the chunks are
+ * in place the upload is completed and the staging file is handed to the
+ * caller as is, ready to be stored; the upload is released only after the
+ * file has been stored, so a failed storage can be retried without sending
+ * the content again.<br>
+ * The uploads are subject to the same limits of the other uploads:
+ * <b>upload.maxsize</b> and <b><i>tenant</i>.upload.disallow</b>.<br>
+ * The staging files are kept in the folder specified by
+ * <b>upload.stagingdir</b>, the uploads that do not receive any chunk for
+ * <b>upload.staging.ttl</b> hours are discarded.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class ChunkedUploadManager {
+
+	protected static Logger log = LoggerFactory.getLogger(ChunkedUploadManager.class);
+
+	public static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+	public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private static ChunkedUploadManager instance = new ChunkedUploadManager();
+
+	private Map<String, ChunkedUpload> uploads = new HashMap<String, ChunkedUpload>();
+
+	private File dir;
+
+	private ChunkedUploadManager() {
+	}
+
+	public static ChunkedUploadManager get() {
+		return instance;
+	}
+
+	/**
+	 * The folder the staging files are written in
+	 */
+	public synchronized File getDir() {
+		if (dir == null) {
+			String path = null;
+			try {
+				ContextProperties config = Context.get().getProperties();
+				path = config.getPropertyWithSubstitutions("upload.stagingdir");
+			} catch (Throwable t) {
+				log.debug(t.getMessage());
+			}
+			if (StringUtils.isEmpty(path))
+				path = new File(System.getProperty("java.io.tmpdir"), "logicaldoc-upload").getPath();
+			dir = new File(path);
+		}
+		dir.mkdirs();
+		return dir;
+	}
+
+	public synchronized void setDir(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Starts a new upload
+	 *
+	 * @param tenantId The tenant of the user
+	 * @param userId The user that uploads the file
+	 * @param fileName Name of the file
+	 * @param size Size of the whole file
+	 * @param chunkSize Size of the chunks
+	 *
+	 * @return The new upload
+	 *
+	 * @throws IOException If the upload cannot be started
+	 */
+	public ChunkedUpload start(long tenantId, long userId, String fileName, long size, int chunkSize)
+			throws IOException {
+		if (StringUtils.isEmpty(fileName))
+			throw new IOException("Missing file name");
+		if (size < 0)
+			throw new IOException("Invalid size " + size);
+		if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE)
+			throw new IOException("The chunk size must be between " + MIN_CHUNK_SIZE + " and " + MAX_CHUNK_SIZE);
+		long maxSize = getMaxUploadSize();
+		if (maxSize > 0 && size > maxSize)
+			throw new IOException("The file exceeds the maximum size of " + maxSize + " bytes");
+		if (!isAllowedForUpload(fileName, getTenantName(tenantId)))
+			throw new IOException("The file " + fileName + " is not allowed for upload");
+
+		purge();
+
+		String id = UUID.randomUUID().toString();
+		ChunkedUpload upload = new ChunkedUpload(id, new File(getDir(), id + ".part"));
+		upload.setTenantId(tenantId);
+		upload.setUserId(userId);
+		upload.setFileName(fileName);
+		upload.setSize(size);
+		upload.setChunkSize(chunkSize);
+
+		FileUtils.touch(upload.getFile());
+		upload.save();
+
+		synchronized (this) {
+			uploads.put(id, upload);
+		}
+		log.debug("Started upload {} of file {}", id, fileName);
+		return upload;
+	}
+
+	/**
+	 * Gets an upload of a given user
+	 *
+	 * @param id Identifier of the upload
+	 * @param userId The user that started the upload
+	 *
+	 * @return The upload
+	 *
+	 * @throws IOException If the upload does not exist or belongs to another
+	 *         user
+	 */
+	public synchronized ChunkedUpload getUpload(String id, long userId) throws IOException {
+		// The identifier is used as file name, so accept just UUIDs
+		if (id == null || !id.matches("[0-9a-f\\-]{36}"))
+			throw new IOException("Invalid upload " + id);
+
+		ChunkedUpload upload = uploads.get(id);
+		if (upload == null) {
+			upload = ChunkedUpload.load(id, getDir());
+			if (upload != null)
+				uploads.put(id, upload);
+		}
+
+		if (upload == null || upload.getUserId() != userId)
+			throw new IOException("Unexisting upload " + id);
+		return upload;
+	}
+
+	/**
+	 * Writes a chunk in the staging file
+	 *
+	 * @param id Identifier of the upload
+	 * @param userId The user that started the upload
+	 * @param chunk Number of the chunk, starting from 0
+	 * @param content The content of the chunk
+	 * @param digest SHA-1 of the content, hex encoded
+	 *
+	 * @return The offset up to which all the chunks have been received
+	 *
+	 * @throws IOException If the chunk cannot be written or its digest does
+	 *         not match
+	 */
+	public long writeChunk(String id, long userId, int chunk, InputStream content, String digest)
+			throws IOException {
+		ChunkedUpload upload = getUpload(id, userId);
+		if (chunk < 0 || chunk >= upload.getChunks())
+			throw new IOException("Invalid chunk " + chunk);
+		if (StringUtils.isEmpty(digest))
+			throw new IOException("Missing digest of chunk " + chunk);
+
+		int expected = upload.getChunkLength(chunk);
+		long position = (long) chunk * upload.getChunkSize();
+
+		/*
+		 * The chunk is received in a file of its own and verified, only then
+		 * it is copied in the staging file, so a bad copy of a chunk already
+		 * received never overwrites the good one
+		 */
+		File tmp = File.createTempFile(id + "-" + chunk + "-", ".chunk", getDir());
+		try {
+			DigestInputStream dis = new DigestInputStream(content, newDigest());
+			long written = 0;
+			OutputStream out = new FileOutputStream(tmp);
+			try {
+				byte[] buf = new byte[BUFFER_SIZE];
+				int n;
+				while ((n = dis.read(buf)) != -1) {
+					if (written + n > expected)
+						throw new IOException("Chunk " + chunk + " exceeds " + expected + " bytes");
+					out.write(buf, 0, n);
+					written += n;
+				}
+			} finally {
+				out.close();
+			}
+
+			if (written != expected)
+				throw new IOException("Chunk " + chunk + " is " + written + " bytes long instead of " + expected);
+			if (!digest.trim().equalsIgnoreCase(Hex.encodeHexString(dis.getMessageDigest().digest())))
+				throw new IOException("Digest mismatch for chunk " + chunk);
+
+			synchronized (upload) {
+				// The file may be being stored right now
+				if (upload.isCommitting() || upload.isComplete())
+					throw new IOException("Upload " + id + " is already complete");
+
+				RandomAccessFile raf = new RandomAccessFile(upload.getFile(), "rw");
+				InputStream in = new FileInputStream(tmp);
+				try {
+					FileChannel channel = raf.getChannel();
+					byte[] buf = new byte[BUFFER_SIZE];
+					long copied = 0;
+					int n;
+					while ((n = in.read(buf)) != -1) {
+						ByteBuffer buffer = ByteBuffer.wrap(buf, 0, n);
+						while (buffer.hasRemaining())
+							channel.write(buffer, position + copied + buffer.position());
+						copied += n;
+					}
+				} finally {
+					in.close();
+					raf.close();
+				}
+
+				upload.setReceived(chunk);
+				upload.save();
+				return upload.getOffset();
+			}
+		} finally {
+			FileUtils.deleteQuietly(tmp);
+		}
+	}
+
+	private static MessageDigest newDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Completes an upload, the upload stays reserved to the caller that must
+	 * invoke {@link #release(ChunkedUpload)} once the file has been stored or
+	 * {@link #resume(ChunkedUpload)} if the storage failed.
+	 *
+	 * @param id Identifier of the upload
+	 * @param userId The user that started the upload
+	 *
+	 * @return The upload with the assembled file
+	 *
+	 * @throws IOException If some chunks are still missing or the upload is
+	 *         already being completed
+	 */
+	public ChunkedUpload complete(String id, long userId) throws IOException {
+		ChunkedUpload upload = getUpload(id, userId);
+		if (!upload.isComplete())
+			throw new IOException("Upload " + id + " is incomplete, received " + upload.getOffset() + " of "
+					+ upload.getSize() + " bytes");
+		if (upload.getFile().length() != upload.getSize())
+			throw new IOException("Upload " + id + " has an invalid length");
+
+		synchronized (upload) {
+			if (upload.isCommitting())
+				throw new IOException("Upload " + id + " is already being completed");
+			upload.setCommitting(true);
+		}
+		return upload;
+	}
+
+	/**
+	 * Releases a completed upload once its file has been stored, the staging
+	 * file is deleted
+	 */
+	public void release(ChunkedUpload upload) {
+		discard(upload);
+		log.debug("Completed upload {} of file {}", upload.getId(), upload.getFileName());
+	}
+
+	/**
+	 * Forgets a completed upload leaving its staging file to the caller, that
+	 * becomes responsible for deleting it
+	 */
+	public void detach(ChunkedUpload upload) {
+		synchronized (this) {
+			uploads.remove(upload.getId());
+		}
+		FileUtils.deleteQuietly(upload.getStateFile());
+	}
+
+	/**
+	 * Makes a completed upload available again because its file could not be
+	 * stored, so the completion can be retried
+	 */
+	public void resume(ChunkedUpload upload) {
+		upload.setCommitting(false);
+	}
+
+	/**
+	 * Cancels an upload deleting its staging file
+	 */
+	public void cancel(String id, long userId) throws IOException {
+		discard(getUpload(id, userId));
+	}
+
+	private void discard(ChunkedUpload upload) {
+		synchronized (this) {
+			uploads.remove(upload.getId());
+		}
+		FileUtils.deleteQuietly(upload.getStateFile());
+		FileUtils.deleteQuietly(upload.getFile());
+	}
+
+	/**
+	 * Discards the uploads that did not receive chunks in the last
+	 * <b>upload.staging.ttl</b> hours
+	 */
+	public void purge() {
+		int ttl = 24;
+		try {
+			ttl = Context.get().getProperties().getInt("upload.staging.ttl", 24);
+		} catch (Throwable t) {
+			log.debug(t.getMessage());
+		}
+		long limit = System.currentTimeMillis() - ttl * 3600000L;
+
+		File[] states = getDir().listFiles();
+		if (states == null)
+			return;
+		for (File state : states) {
+			if (state.lastModified() > limit)
+				continue;
+			if (state.getName().endsWith(".chunk")) {
+				// A chunk left behind by a crash while being received
+				FileUtils.deleteQuietly(state);
+				continue;
+			}
+			if (!state.getName().endsWith(".properties"))
+				continue;
+			try {
+				ChunkedUpload upload = ChunkedUpload.load(
+						state.getName().substring(0, state.getName().length() - ".properties".length()), getDir());
+				ChunkedUpload active = null;
+				synchronized (this) {
+					if (upload != null)
+						active = uploads.get(upload.getId());
+				}
+				if (active != null && (active.isCommitting() || !active.getLastModified().before(new Date(limit))))
+					continue;
+				if (upload != null && upload.getLastModified().before(new Date(limit))) {
+					log.info("Discarding expired upload {} of file {}", upload.getId(), upload.getFileName());
+					discard(upload);
+				}
+			} catch (Throwable t) {
+				log.warn("Cannot purge upload state {}", state.getName());
+			}
+		}
+	}
+
+	/**
+	 * The maximum size of an upload in bytes, as configured in
+	 * <b>upload.maxsize</b>(MB)
+	 *
+	 * @return the size or -1 if there is no limit
+	 */
+	public static long getMaxUploadSize() {
+		long maxUploadMB = 100;
+		try {
+			ContextProperties config = Context.get().getProperties();
+			if (config.getProperty("upload.maxsize") != null)
+				maxUploadMB = Long.parseLong(config.getProperty("upload.maxsize").trim());
+		} catch (Throwable t) {
+			log.debug(t.getMessage());
+		}
+		return maxUploadMB > 0 ? maxUploadMB * 1024 * 1024 : -1;
+	}
+
+	/**
+	 * Checks if the passed filename can be uploaded or not on the basis of what
+	 * configured in '<i>tenant</i>.upload.disallow'.
+	 */
+	public static boolean isAllowedForUpload(String filename, String tenant) {
+		String disallow = null;
+		try {
+			disallow = Context.get().getProperties().getProperty(tenant + ".upload.disallow");
+		} catch (Throwable t) {
+			log.debug(t.getMessage());
+		}
+
+		if (disallow == null || disallow.trim().isEmpty())
+			return true;
+
+		// Extract and normalize the extensions
+		String[] disallowedExtensions = disallow.split(",");
+		for (int i = 0; i < disallowedExtensions.length; i++) {
+			disallowedExtensions[i] = disallowedExtensions[i].toLowerCase().trim();
+			if (!disallowedExtensions[i].startsWith("."))
+				disallowedExtensions[i] = "." + disallowedExtensions[i];
+		}
+
+		for (int i = 0; i < disallowedExtensions.length; i++)
+			if (filename.toLowerCase().endsWith(disallowedExtensions[i]))
+				return false;
+
+		return true;
+	}
+
+	private static String getTenantName(long tenantId) {
+		try {
+			TenantDAO dao = (TenantDAO) Context.get().getBean(TenantDAO.class);
+			Tenant tenant = dao.findById(tenantId);
+			if (tenant != null)
+				return tenant.getName();
+		} catch (Throwable t) {
+			log.debug(t.getMessage());
+		}
+		return Tenant.DEFAULT_NAME;
+	}
+}
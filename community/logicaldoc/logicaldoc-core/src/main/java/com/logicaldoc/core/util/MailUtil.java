@@ -22,10 +22,15 @@ import javax.mail.URLName;
 import javax.mail.internet.ContentDisposition;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimePart;
 import javax.mail.internet.MimeUtility;
+import javax.mail.util.SharedByteArrayInputStream;
+import javax.mail.util.SharedFileInputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +42,7 @@ import com.auxilii.msgparser.attachment.FileAttachment;
 import com.logicaldoc.core.communication.EMail;
 import com.logicaldoc.core.communication.EMailAttachment;
 import com.logicaldoc.core.communication.Recipient;
+import com.logicaldoc.util.Context;
 
 /**
  * Utility methods for handling emails
@@ -51,6 +57,8 @@ public class MailUtil {
 
 	public static final String NO_BODY = "(Message without body)";
 
+	private static final int DEFAULT_SPOOL_THRESHOLD = 1024 * 1024;
+
 	/**
 	 * Builds an EMail from a .msg file.
 	 **/
@@ -147,10 +155,47 @@ public class MailUtil {
 	}
 
 	/**
-	 * Builds an EMail from a .eml file.
+	 * Builds an EMail from a .eml file. The stream is kept in memory only if
+	 * it is not bigger than the spool threshold, otherwise it is saved in a
+	 * temporary file.
 	 **/
 	public static EMail messageToMail(InputStream is, boolean extractAttachmentContent) throws MessagingException,
 			IOException {
+		DeferredFileOutputStream spool = new DeferredFileOutputStream(getSpoolThreshold(), "eml", ".eml", null);
+		try {
+			IOUtils.copy(is, spool);
+		} finally {
+			spool.close();
+		}
+
+		if (spool.isInMemory()) {
+			MimeMessage msg = new MimeMessage(getSession(), new SharedByteArrayInputStream(spool.getData()));
+			return messageToMail(msg, extractAttachmentContent);
+		} else {
+			try {
+				return messageToMail(spool.getFile(), extractAttachmentContent);
+			} finally {
+				FileUtils.deleteQuietly(spool.getFile());
+			}
+		}
+	}
+
+	/**
+	 * Builds an EMail from a .eml file. The message is not loaded in memory,
+	 * its parts are read from the file when needed.
+	 **/
+	public static EMail messageToMail(File emlFile, boolean extractAttachmentContent) throws MessagingException,
+			IOException {
+		SharedFileInputStream is = new SharedFileInputStream(emlFile);
+		try {
+			MimeMessage msg = new MimeMessage(getSession(), is);
+			return messageToMail(msg, extractAttachmentContent);
+		} finally {
+			is.close();
+		}
+	}
+
+	private static Session getSession() {
 		Properties props = System.getProperties();
 		props.put("mail.transport.protocol", "smtp");
     	props.put("mail.smtp.provider.class", CustomTransport.class.getName());
@@ -159,23 +204,19 @@ public class MailUtil {
 //		props.put("mail.host", "smtp.unexisting.com");
 		props.put("mail.transport.protocol", "smtp");
 
-		Session mailSession = Session.getDefaultInstance(props, null);
-		MimeMessage msg = new MimeMessage(mailSession, is);
-		return messageToMail(msg, extractAttachmentContent);
+		return Session.getDefaultInstance(props, null);
 	}
 
 	/**
-	 * Builds an EMail from a .eml file.
-	 **/
-	public static EMail messageToMail(File emlFile, boolean extractAttachmentContent) throws MessagingException,
-			IOException {
-
-		InputStream is = null;
+	 * Size in bytes over which the messages and the attachments are spooled
+	 * on disk rather than kept in memory, configured by
+	 * <b>mail.spool.threshold</b>
+	 */
+	static int getSpoolThreshold() {
 		try {
-			is = new FileInputStream(emlFile);
-			return messageToMail(is, extractAttachmentContent);
-		} finally {
-			IOUtils.closeQuietly(is);
+			return Context.get().getProperties().getInt("mail.spool.threshold", DEFAULT_SPOOL_THRESHOLD);
+		} catch (Throwable t) {
+			return DEFAULT_SPOOL_THRESHOLD;
 		}
 	}
 
@@ -303,17 +344,18 @@ public class MailUtil {
 			for (int i = 1; i < count; i++) {
 				BodyPart bp = mp.getBodyPart(i);
 				if (bp.getFileName() != null) {
-					addAttachment(bp, email);
+					addAttachment(bp, email, extractAttachmentContent);
 				} else if (bp.isMimeType("multipart/*")) {
 					addAttachments(bp, email, extractAttachmentContent);
 				}
 			}
 		} else if (StringUtils.isNotEmpty(p.getFileName())) {
-			addAttachment(p, email);
+			addAttachment(p, email, extractAttachmentContent);
 		}
 	}
 
-	private static void addAttachment(BodyPart bp, EMail email) throws UnsupportedEncodingException, MessagingException {
+	private static void addAttachment(BodyPart bp, EMail email, boolean extractAttachmentContent)
+			throws UnsupportedEncodingException, MessagingException {
 		// Skip part without a filename
 		if (StringUtils.isEmpty(bp.getFileName()))
 			return;
@@ -334,14 +376,33 @@ public class MailUtil {
 		attachment.setMimeType(bp.getContentType());
 		attachment.setSize(bp.getSize());
 
-		InputStream is = null;
-		try {
-			is = bp.getInputStream();
-			byte[] bytes = IOUtils.toByteArray(is);
-			attachment.setData(bytes);
-			attachment.setSize(bytes.length);
-		} catch (Throwable t) {
-			IOUtils.closeQuietly(is);
+		if (extractAttachmentContent) {
+			/*
+			 * The content is decoded while copying, the small ones are kept in
+			 * memory and the others are spooled on disk
+			 */
+			DeferredFileOutputStream spool = new DeferredFileOutputStream(getSpoolThreshold(), "att", null, null);
+			InputStream is = null;
+			try {
+				is = bp.getInputStream();
+				IOUtils.copy(is, spool);
+				spool.close();
+				if (spool.isInMemory())
+					attachment.setData(spool.getData());
+				else
+					attachment.setFile(spool.getFile());
+				attachment.setSize(spool.getByteCount());
+			} catch (Throwable t) {
+				log.warn("Unable to extract attachment {} - {}", fileName, t.getMessage());
+				IOUtils.closeQuietly(spool);
+				if (spool.getFile() != null)
+					FileUtils.deleteQuietly(spool.getFile());
+			} finally {
+				IOUtils.closeQuietly(is);
+			}
+		} else if (bp instanceof MimePart && "base64".equalsIgnoreCase(((MimePart) bp).getEncoding())) {
+			// The size of the encoded content, estimate the decoded one
+			attachment.setSize(bp.getSize() * 3 / 4);
 		}
 		email.addAttachment(attachment);
 	}
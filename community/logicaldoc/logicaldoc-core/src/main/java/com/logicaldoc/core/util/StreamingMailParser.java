@@ -0,0 +1,329 @@
+package com.logicaldoc.core.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.ContentDisposition;
+import javax.mail.internet.ContentType;
+import javax.mail.internet.InternetHeaders;
+import javax.mail.internet.MimeUtility;
+import javax.mail.internet.ParseException;
+
+/**
+ * Parses an email in MIME format(.eml) in a single pass, without loading it in
+ * memory. The headers of the message and of each part are handed to a
+ * {@link Handler} together with the decoded content of the part as a stream,
+ * the handler reads just what it needs and can stop the parsing at any time,
+ * so the rest of the message(typically the attachments) is not even read.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class StreamingMailParser {
+
+	// Longest segment of a line kept in memory
+	private static final int MAX_LINE = 8192;
+
+	// Headers exceeding this size are truncated
+	private static final int MAX_HEADERS = 256 * 1024;
+
+	private static final byte[] NO_EOL = new byte[0];
+
+	private static final byte[] CRLF = new byte[] { '\r', '\n' };
+
+	private static final byte[] LF = new byte[] { '\n' };
+
+	/**
+	 * Receives the elements of the message as they are parsed
+	 */
+	public interface Handler {
+
+		/**
+		 * Invoked with the headers of the message
+		 *
+		 * @return false to stop the parsing
+		 */
+		public boolean headers(InternetHeaders headers) throws IOException, MessagingException;
+
+		/**
+		 * Invoked for each part that is not a multipart(for a single part
+		 * message it is the message itself)
+		 *
+		 * @param headers Headers of the part
+		 * @param content The decoded content, there is no need to read it
+		 *        entirely
+		 * @return false to stop the parsing
+		 */
+		public boolean part(InternetHeaders headers, InputStream content) throws IOException, MessagingException;
+	}
+
+	private StreamingMailParser() {
+	}
+
+	/**
+	 * Parses a message
+	 *
+	 * @param input The message in MIME format, it is not closed
+	 * @param handler The handler to be notified
+	 */
+	public static void parse(InputStream input, Handler handler) throws IOException, MessagingException {
+		InputStream in = input instanceof BufferedInputStream ? input : new BufferedInputStream(input);
+		InternetHeaders headers = readHeaders(in);
+		if (handler.headers(headers))
+			walk(headers, in, handler);
+	}
+
+	/**
+	 * Gets the content type declared by some headers, text/plain if it is
+	 * missing or invalid
+	 */
+	public static ContentType getContentType(InternetHeaders headers) {
+		String value = headers.getHeader("Content-Type", null);
+		if (value != null)
+			try {
+				return new ContentType(value);
+			} catch (ParseException e) {
+				// Use the default
+			}
+		return new ContentType("text", "plain", null);
+	}
+
+	/**
+	 * Checks if some headers describe an attachment, that is a part with a
+	 * file name or an attachment disposition
+	 */
+	public static boolean isAttachment(InternetHeaders headers) {
+		String value = headers.getHeader("Content-Disposition", null);
+		if (value != null)
+			try {
+				ContentDisposition disposition = new ContentDisposition(value);
+				if ("attachment".equalsIgnoreCase(disposition.getDisposition())
+						|| disposition.getParameter("filename") != null)
+					return true;
+			} catch (ParseException e) {
+				// Ignore the disposition
+			}
+		return getContentType(headers).getParameter("name") != null;
+	}
+
+	/**
+	 * Walks the body of an entity
+	 *
+	 * @return false if the handler asked to stop
+	 */
+	private static boolean walk(InternetHeaders headers, InputStream body, Handler handler) throws IOException,
+			MessagingException {
+		ContentType type = getContentType(headers);
+		String boundary = type.getParameter("boundary");
+		if (type.match("multipart/*") && boundary != null) {
+			// Skip the preamble
+			PartInputStream part = new PartInputStream(body, boundary);
+			drain(part);
+
+			while (part.isDelimited() && !part.isLast()) {
+				part = new PartInputStream(body, boundary);
+				if (!walk(readHeaders(part), part, handler))
+					return false;
+				drain(part);
+			}
+			return true;
+		} else {
+			InputStream content = body;
+			String encoding = headers.getHeader("Content-Transfer-Encoding", null);
+			if (encoding != null)
+				try {
+					content = MimeUtility.decode(body, encoding.trim().toLowerCase());
+				} catch (MessagingException e) {
+					// Unknown encoding, give the raw content
+				}
+			return handler.part(headers, content);
+		}
+	}
+
+	/**
+	 * Reads the headers up to the first empty line
+	 */
+	private static InternetHeaders readHeaders(InputStream in) throws IOException, MessagingException {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+
+		// Length of the current line, terminator excluded
+		int lineLength = 0;
+		int c;
+		while ((c = in.read()) != -1) {
+			if (c == '\n') {
+				if (lineLength == 0)
+					break;
+				lineLength = 0;
+			} else if (c != '\r') {
+				lineLength++;
+			}
+			if (buf.size() < MAX_HEADERS)
+				buf.write(c);
+		}
+		return new InternetHeaders(new ByteArrayInputStream(buf.toByteArray()));
+	}
+
+	private static void drain(InputStream in) throws IOException {
+		byte[] buf = new byte[8192];
+		while (in.read(buf) != -1)
+			;
+	}
+
+	/**
+	 * The raw content of a part of a multipart, it ends at the next delimiter
+	 * line of the given boundary. The line terminator that precedes a
+	 * delimiter belongs to the delimiter, so it is held back until the next
+	 * line has been checked.
+	 */
+	static class PartInputStream extends InputStream {
+
+		private final InputStream source;
+
+		private final byte[] delimiter;
+
+		private final byte[] segment = new byte[MAX_LINE];
+
+		private final byte[] out = new byte[MAX_LINE + 2];
+
+		private int outPos = 0;
+
+		private int outLen = 0;
+
+		private byte[] pendingEol = NO_EOL;
+
+		private boolean lineStart = true;
+
+		private boolean ended = false;
+
+		private boolean delimited = false;
+
+		private boolean last = false;
+
+		PartInputStream(InputStream source, String boundary) {
+			this.source = source;
+			this.delimiter = ("--" + boundary).getBytes();
+		}
+
+		/**
+		 * True if the part was closed by a delimiter rather than by the end
+		 * of the stream
+		 */
+		boolean isDelimited() {
+			return delimited;
+		}
+
+		/**
+		 * True if the closing delimiter was found, so there are no more parts
+		 */
+		boolean isLast() {
+			return last;
+		}
+
+		@Override
+		public int read() throws IOException {
+			while (outPos >= outLen)
+				if (!fill())
+					return -1;
+			return out[outPos++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			while (outPos >= outLen)
+				if (!fill())
+					return -1;
+			int count = Math.min(len, outLen - outPos);
+			System.arraycopy(out, outPos, b, off, count);
+			outPos += count;
+			return count;
+		}
+
+		/**
+		 * Reads the next line or segment of line from the source
+		 *
+		 * @return false if the part has ended
+		 */
+		private boolean fill() throws IOException {
+			if (ended)
+				return false;
+
+			outPos = 0;
+			outLen = 0;
+
+			int n = 0;
+			int c = 0;
+			while (n < segment.length && (c = source.read()) != -1) {
+				segment[n++] = (byte) c;
+				if (c == '\n')
+					break;
+			}
+
+			if (n == 0) {
+				// End of the source: the pending line terminator is content
+				ended = true;
+				System.arraycopy(pendingEol, 0, out, 0, pendingEol.length);
+				outLen = pendingEol.length;
+				pendingEol = NO_EOL;
+				return outLen > 0;
+			}
+
+			boolean terminated = segment[n - 1] == '\n';
+			if (lineStart && (terminated || c == -1) && isDelimiter(n)) {
+				ended = true;
+				delimited = true;
+				pendingEol = NO_EOL;
+				return false;
+			}
+
+			int contentLength = n;
+			byte[] eol = NO_EOL;
+			if (terminated) {
+				if (n > 1 && segment[n - 2] == '\r') {
+					contentLength = n - 2;
+					eol = CRLF;
+				} else {
+					contentLength = n - 1;
+					eol = LF;
+				}
+			}
+
+			System.arraycopy(pendingEol, 0, out, 0, pendingEol.length);
+			System.arraycopy(segment, 0, out, pendingEol.length, contentLength);
+			outLen = pendingEol.length + contentLength;
+			pendingEol = eol;
+			lineStart = terminated;
+			return true;
+		}
+
+		/**
+		 * Checks if the current segment is a delimiter line, that is
+		 * --boundary or --boundary-- followed just by white spaces
+		 */
+		private boolean isDelimiter(int n) {
+			if (n < delimiter.length)
+				return false;
+			for (int i = 0; i < delimiter.length; i++)
+				if (segment[i] != delimiter[i])
+					return false;
+
+			int i = delimiter.length;
+			boolean close = false;
+			if (i + 1 < n && segment[i] == '-' && segment[i + 1] == '-') {
+				close = true;
+				i += 2;
+			}
+			for (; i < n; i++)
+				if (segment[i] != ' ' && segment[i] != '\t' && segment[i] != '\r' && segment[i] != '\n')
+					return false;
+
+			last = close;
+			return true;
+		}
+	}
+}
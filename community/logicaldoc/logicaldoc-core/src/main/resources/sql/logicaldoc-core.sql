@@ -245,6 +245,9 @@ create index LD_HIST_NOT on ld_history (ld_notified);
 create index LD_HIST_EVENT on ld_history (ld_event);
 create index LD_FHIST_FID on ld_folder_history (ld_folderid);
 create index LD_FHIST_NOT on ld_folder_history (ld_notified);
+create index LD_HIST_DATE on ld_history (ld_date);
+create index LD_FHIST_DATE on ld_folder_history (ld_date);
+create index LD_UHIST_DATE on ld_user_history (ld_date);
 create index LD_TAG_TAG on ld_tag (ld_tag);
 create index LD_FTAG_TAG on ld_foldertag (ld_tag);
 create index LD_EXT_NAME on ld_document_ext (ld_name);
@@ -0,0 +1,84 @@
+package com.logicaldoc.core.automation;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.logicaldoc.core.AbstractCoreTCase;
+import com.logicaldoc.core.security.Tenant;
+
+/**
+ * Test case for <code>Automation</code>
+ * 
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class AutomationTest extends AbstractCoreTCase {
+
+	@Test
+	public void testEvaluate() {
+		Automation automation = new Automation("test", Locale.ENGLISH, Tenant.DEFAULT_ID);
+		String expression = "Hello $name\n#set($total = $count + 1)total: $total";
+
+		Map<String, Object> dictionary = new HashMap<String, Object>();
+		dictionary.put("name", "John");
+		dictionary.put("count", 1);
+		Assert.assertEquals("Hello John\ntotal: 2", automation.evaluate(expression, dictionary));
+
+		long misses = Automation.getCacheMisses();
+		long hits = Automation.getCacheHits();
+
+		// The second evaluation reuses the parsed expression
+		dictionary = new HashMap<String, Object>();
+		dictionary.put("name", "Jack");
+		dictionary.put("count", 5);
+		Assert.assertEquals("Hello Jack\ntotal: 6", automation.evaluate(expression, dictionary));
+		Assert.assertEquals(misses, Automation.getCacheMisses());
+		Assert.assertEquals(hits + 1, Automation.getCacheHits());
+
+		// The tools are available
+		Assert.assertEquals("tenant " + Tenant.DEFAULT_ID, automation.evaluate("tenant $tenantId",
+				new HashMap<String, Object>()));
+		Assert.assertNotNull(automation.evaluate("$DateTool.format($CURRENT_DATE, false)",
+				new HashMap<String, Object>()));
+	}
+
+	@Test
+	public void testTemplateName() throws Exception {
+		Assert.assertEquals("first", Automation.getTemplate("Hello $name", "first").getName());
+		Assert.assertEquals("second", Automation.getTemplate("Hello $name", "second").getName());
+		Assert.assertEquals("first", Automation.getTemplate("Hello $name", "first").getName());
+	}
+
+	@Test
+	public void testI18NReadOnly() {
+		Map<String, String> messages = new HashMap<String, String>();
+		messages.put("greeting", "Hello {0}");
+		I18NTool i18n = new I18NTool(messages);
+		Assert.assertEquals("Hello John", i18n.format("greeting", "John"));
+		Assert.assertEquals("missing", i18n.get("missing"));
+
+		// Evaluations cannot alter the shared messages
+		Automation automation = new Automation("test", Locale.ENGLISH, Tenant.DEFAULT_ID);
+		automation.evaluate("$I18N.put('format_date', 'x')$I18N.clear()", new HashMap<String, Object>());
+		Assert.assertFalse("x".equals(automation.evaluate("$I18N.get('format_date')", new HashMap<String, Object>())));
+
+		try {
+			i18n.put("greeting", "Bye");
+			Assert.fail("The messages have been modified");
+		} catch (UnsupportedOperationException e) {
+			// All right
+		}
+		try {
+			i18n.entrySet().iterator().next().setValue("Bye");
+			Assert.fail("The messages have been modified");
+		} catch (UnsupportedOperationException e) {
+			// All right
+		}
+		Assert.assertEquals("Hello {0}", i18n.get("greeting"));
+	}
+}
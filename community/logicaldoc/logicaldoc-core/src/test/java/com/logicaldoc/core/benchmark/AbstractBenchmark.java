@@ -0,0 +1,64 @@
+package com.logicaldoc.core.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.logicaldoc.core.AbstractCoreTCase;
+
+/**
+ * Base for the JMH micro-benchmarks of the core. Each benchmark runs against
+ * the same embedded HSQLDB database and the same Spring context used by the
+ * unit tests, the index and the repository are placed under
+ * <code>target</code> so no running server is required.<br>
+ * Run all the benchmarks with <code>mvn -Pbenchmark test</code>, a subset
+ * can be selected with <code>-Dbenchmark=&lt;regexp&gt;</code>.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public abstract class AbstractBenchmark extends AbstractCoreTCase {
+
+	@Setup(Level.Trial)
+	public void setUpTrial() throws Exception {
+		setUp();
+		prepare();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownTrial() throws Exception {
+		try {
+			release();
+		} finally {
+			tearDown();
+		}
+	}
+
+	/**
+	 * Prepares the benchmark once the database and the context are ready
+	 */
+	protected void prepare() throws Exception {
+	}
+
+	/**
+	 * Releases the resources before the context gets closed
+	 */
+	protected void release() throws Exception {
+	}
+}
@@ -0,0 +1,123 @@
+package com.logicaldoc.core.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.logicaldoc.util.charset.CharsetDetector;
+import com.logicaldoc.util.charset.CharsetMatch;
+import com.logicaldoc.util.charset.FastCharsetDetector;
+
+/**
+ * Benchmark of the charset detection and decoding done by the TXT parser on a
+ * corpus of texts in different languages and encodings: <b>statistical</b>
+ * always runs the {@link CharsetDetector} like it was done before the
+ * introduction of the {@link FastCharsetDetector}, <b>fast</b> runs the
+ * {@link FastCharsetDetector}. The setup verifies that both decode the same
+ * text and that they detect the same charset, except for the pure ASCII texts
+ * where the statistical analysis reports one of the ASCII compatible charsets.
+ * It does not need the database so it does not extend
+ * {@link AbstractBenchmark}.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CharsetDetectionBenchmark {
+
+	private static final String[][] TEXTS = {
+			{ "The quick brown fox jumps over the lazy dog, the document describes the installation of the server. ",
+					"US-ASCII", "UTF-8", "UTF-16" },
+			{ "Perché la città è più bella d'estate? Così è, se vi pare: l'università ha già aperto le iscrizioni. ",
+					"UTF-8", "ISO-8859-1", "UTF-16" },
+			{ "Größere Änderungen an der Straße müssen geprüft werden, für Bürger ist das Verfahren kostenlos. ",
+					"UTF-8", "ISO-8859-1" },
+			{ "Съешь же ещё этих мягких французских булок, да выпей чаю. Документ описывает установку сервера. ",
+					"UTF-8", "windows-1251", "KOI8-R" },
+			{ "これは日本語のテキストです。サーバーのインストールとリポジトリの設定について説明します。", "UTF-8",
+					"Shift_JIS", "EUC-JP" },
+			{ "Zażółć gęślą jaźń. Dokument opisuje instalację serwera i konfigurację repozytorium. ", "UTF-8",
+					"ISO-8859-2" } };
+
+	private static final int[] SIZES = { 500, 5000, 50000 };
+
+	private List<byte[]> corpus = new ArrayList<byte[]>();
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		for (String[] text : TEXTS)
+			for (int i = 1; i < text.length; i++)
+				for (int size : SIZES) {
+					StringBuilder sb = new StringBuilder();
+					while (sb.length() < size)
+						sb.append(text[0]);
+					corpus.add(sb.toString().getBytes(text[i]));
+				}
+
+		for (byte[] content : corpus) {
+			String statistical = detectStatistical(content);
+			String fast = FastCharsetDetector.detect(new BufferedInputStream(new ByteArrayInputStream(content)));
+			if (!decode(content, statistical).equals(decode(content, fast)))
+				throw new IllegalStateException("Different text decoded with " + statistical + " and " + fast);
+			if (!isAscii(content) && !statistical.equals(fast))
+				throw new IllegalStateException("Detected " + fast + " instead of " + statistical);
+		}
+	}
+
+	@Benchmark
+	public long statistical() throws IOException {
+		long length = 0;
+		for (byte[] content : corpus)
+			length += decode(content, detectStatistical(content)).length();
+		return length;
+	}
+
+	@Benchmark
+	public long fast() throws IOException {
+		long length = 0;
+		for (byte[] content : corpus) {
+			InputStream is = new BufferedInputStream(new ByteArrayInputStream(content));
+			length += decode(content, FastCharsetDetector.detect(is)).length();
+		}
+		return length;
+	}
+
+	private static String detectStatistical(byte[] content) throws IOException {
+		CharsetMatch match = new CharsetDetector().setText(new BufferedInputStream(new ByteArrayInputStream(content)))
+				.detect();
+		return match != null && Charset.isSupported(match.getName()) ? match.getName() : null;
+	}
+
+	private static String decode(byte[] content, String charset) throws IOException {
+		return new String(content, charset != null ? charset : "UTF-8");
+	}
+
+	private static boolean isAscii(byte[] content) {
+		for (byte b : content)
+			if (b < 0)
+				return false;
+		return true;
+	}
+}
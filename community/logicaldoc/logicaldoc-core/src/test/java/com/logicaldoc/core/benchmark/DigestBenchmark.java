@@ -0,0 +1,65 @@
+package com.logicaldoc.core.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.logicaldoc.util.io.FileUtil;
+
+/**
+ * Benchmark of the computation of the digest of a file. It does not need the
+ * database so it does not extend {@link AbstractBenchmark}.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DigestBenchmark {
+
+	/**
+	 * Size of the file in bytes
+	 */
+	@Param({ "4096", "1048576", "16777216" })
+	public int size;
+
+	private File file;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		file = File.createTempFile("digest", ".bin");
+		FileUtils.writeByteArrayToFile(file, data);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		FileUtils.deleteQuietly(file);
+	}
+
+	@Benchmark
+	public String computeDigest() {
+		return FileUtil.computeDigest(file);
+	}
+}
@@ -0,0 +1,34 @@
+package com.logicaldoc.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import com.logicaldoc.core.document.Document;
+import com.logicaldoc.core.document.dao.DocumentDAO;
+
+/**
+ * Benchmark of the update of an existing document
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class DocumentBenchmark extends AbstractBenchmark {
+
+	private DocumentDAO dao;
+
+	private Document document;
+
+	private long counter = 0;
+
+	@Override
+	protected void prepare() {
+		dao = (DocumentDAO) context.getBean("DocumentDAO");
+		document = dao.findById(1);
+		dao.initialize(document);
+	}
+
+	@Benchmark
+	public boolean store() {
+		document.setComment("benchmark " + counter++);
+		return dao.store(document);
+	}
+}
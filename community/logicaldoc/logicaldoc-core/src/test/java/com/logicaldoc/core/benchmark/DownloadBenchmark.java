@@ -0,0 +1,110 @@
+package com.logicaldoc.core.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import com.logicaldoc.core.store.FSStorer;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Compares the throughput of the downloads made copying the resource through
+ * heap buffers with the ones made with <code>FileChannel.transferTo</code>,
+ * for whole files and for ranges. The <b>stream</b> sink is a generic output
+ * stream like the one of a servlet response, the <b>file</b> sink is backed
+ * by a file channel so the transfer is made by the operating system. Run with
+ * <code>-prof gc</code> to compare the allocation rates.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class DownloadBenchmark extends AbstractBenchmark {
+
+	private static final long DOC_ID = 3000L;
+
+	private static final String RESOURCE = "1.0";
+
+	private static final int BUFFER_SIZE = 10240;
+
+	private static final int RANGE = 1048576;
+
+	@Param({ "stream", "file" })
+	public String sink;
+
+	/**
+	 * Size of the resource in bytes
+	 */
+	@Param({ "16777216" })
+	public int size;
+
+	private FSStorer storer;
+
+	private FileOutputStream file;
+
+	@Override
+	protected void prepare() throws Exception {
+		storer = new FSStorer();
+		storer.setConfig((ContextProperties) context.getBean("ContextProperties"));
+
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		storer.store(new ByteArrayInputStream(data), DOC_ID, RESOURCE);
+
+		if ("file".equals(sink)) {
+			File out = File.createTempFile("download", ".bin");
+			out.deleteOnExit();
+			file = new FileOutputStream(out);
+		}
+	}
+
+	@Override
+	protected void release() throws Exception {
+		IOUtils.closeQuietly(file);
+	}
+
+	private OutputStream getOutput() throws IOException {
+		if (file == null)
+			return NullOutputStream.NULL_OUTPUT_STREAM;
+		file.getChannel().position(0);
+		return file;
+	}
+
+	@Benchmark
+	public long copy() throws IOException {
+		InputStream is = storer.getStream(DOC_ID, RESOURCE);
+		try {
+			return IOUtils.copyLarge(is, getOutput(), new byte[BUFFER_SIZE]);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	@Benchmark
+	public void transfer() throws IOException {
+		storer.writeToStream(DOC_ID, RESOURCE, getOutput());
+	}
+
+	@Benchmark
+	public long copyRange() throws IOException {
+		InputStream is = storer.getStream(DOC_ID, RESOURCE, size / 2 + 100, RANGE);
+		try {
+			return IOUtils.copyLarge(is, getOutput(), new byte[BUFFER_SIZE]);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	@Benchmark
+	public void transferRange() throws IOException {
+		storer.writeToStream(DOC_ID, RESOURCE, getOutput(), size / 2 + 100, RANGE);
+	}
+}
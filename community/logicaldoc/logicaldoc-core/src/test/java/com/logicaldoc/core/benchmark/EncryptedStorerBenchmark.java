@@ -0,0 +1,87 @@
+package com.logicaldoc.core.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import com.logicaldoc.core.store.EncryptedFSStorer;
+import com.logicaldoc.core.store.FSStorer;
+import com.logicaldoc.util.Base64Coder;
+import com.logicaldoc.util.config.ContextProperties;
+import com.logicaldoc.util.crypt.StreamingAead;
+
+/**
+ * Compares the throughput of the encrypted storer with the plain filesystem
+ * storer, for whole files and for ranges like the ones requested by a video
+ * player.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class EncryptedStorerBenchmark extends AbstractBenchmark {
+
+	private static final long DOC_ID = 2000L;
+
+	private static final String RESOURCE = "1.0";
+
+	private static final int RANGE = 65536;
+
+	@Param({ "plain", "encrypted" })
+	public String type;
+
+	/**
+	 * Size of the resource in bytes
+	 */
+	@Param({ "1048576", "16777216" })
+	public int size;
+
+	private FSStorer storer;
+
+	private byte[] data;
+
+	@Override
+	protected void prepare() {
+		if ("encrypted".equals(type)) {
+			storer = new EncryptedFSStorer();
+			storer.getParameters().put("key", new String(Base64Coder.encode(StreamingAead.generateKey(16))));
+		} else {
+			storer = new FSStorer();
+		}
+		storer.setConfig((ContextProperties) context.getBean("ContextProperties"));
+
+		data = new byte[size];
+		new Random(size).nextBytes(data);
+		storer.store(new ByteArrayInputStream(data), DOC_ID, RESOURCE);
+	}
+
+	@Benchmark
+	public long store() {
+		return storer.store(new ByteArrayInputStream(data), DOC_ID + 1, RESOURCE);
+	}
+
+	@Benchmark
+	public long getStream() throws IOException {
+		InputStream is = storer.getStream(DOC_ID, RESOURCE);
+		try {
+			return IOUtils.copyLarge(is, NullOutputStream.NULL_OUTPUT_STREAM);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	@Benchmark
+	public long getRange() throws IOException {
+		InputStream is = storer.getStream(DOC_ID, RESOURCE, size / 2 + 100, RANGE);
+		try {
+			return IOUtils.copyLarge(is, NullOutputStream.NULL_OUTPUT_STREAM);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+}
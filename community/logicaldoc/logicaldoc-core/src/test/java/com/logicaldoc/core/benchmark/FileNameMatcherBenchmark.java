@@ -0,0 +1,106 @@
+package com.logicaldoc.core.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.logicaldoc.util.io.FileNameMatcher;
+import com.logicaldoc.util.io.FileUtil;
+
+/**
+ * Benchmark of the selection of 100k file names by includes and excludes
+ * expressions: <b>split</b> parses the expressions at each file like it was
+ * done before the introduction of the {@link FileNameMatcher},
+ * <b>matches</b> goes through the cache of
+ * {@link FileUtil#matches(String, String, String)} and <b>compiled</b> uses
+ * the same matcher for all the files. It does not need the database so it
+ * does not extend {@link AbstractBenchmark}.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FileNameMatcherBenchmark {
+
+	private static final int FILES = 100000;
+
+	private static final String[] EXTENSIONS = { "pdf", "doc", "docx", "xls", "txt", "PDF", "tif", "eml", "zip",
+			"exe", "tar.gz", "bin" };
+
+	/**
+	 * The includes and excludes separated by a pipe
+	 */
+	@Param({ "*.pdf,*.doc,*.docx,*.txt|*.exe,*.bin,*.iso", "*.pdf,invoice*,*.tar.gz|*draft*,scan_????.tif" })
+	public String expressions;
+
+	private String includes;
+
+	private String excludes;
+
+	private String[] names = new String[FILES];
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		includes = StringUtils.substringBefore(expressions, "|");
+		excludes = StringUtils.substringAfter(expressions, "|");
+
+		Random random = new Random(FILES);
+		String[] prefixes = { "invoice", "scan_", "contract", "draft", "report", "IMG_" };
+		for (int i = 0; i < FILES; i++)
+			names[i] = prefixes[random.nextInt(prefixes.length)] + random.nextInt(10000) + "."
+					+ EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+	}
+
+	@Benchmark
+	public int split() {
+		int count = 0;
+		for (String name : names)
+			if (FileUtil.matches(name, splitExpressions(includes), splitExpressions(excludes)))
+				count++;
+		return count;
+	}
+
+	@Benchmark
+	public int matches() {
+		int count = 0;
+		for (String name : names)
+			if (FileUtil.matches(name, includes, excludes))
+				count++;
+		return count;
+	}
+
+	@Benchmark
+	public int compiled() {
+		FileNameMatcher matcher = FileUtil.getMatcher(includes, excludes);
+		int count = 0;
+		for (String name : names)
+			if (matcher.matches(name))
+				count++;
+		return count;
+	}
+
+	private static String[] splitExpressions(String expressions) {
+		String[] tokens = StringUtils.split(expressions, ',');
+		for (int i = 0; i < tokens.length; i++)
+			tokens[i] = tokens[i].trim();
+		return tokens;
+	}
+}
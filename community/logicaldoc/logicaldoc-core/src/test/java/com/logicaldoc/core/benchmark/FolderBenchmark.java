@@ -0,0 +1,35 @@
+package com.logicaldoc.core.benchmark;
+
+import java.util.Collection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import com.logicaldoc.core.folder.FolderDAO;
+
+/**
+ * Benchmark of the computation of the folders accessible by a user
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class FolderBenchmark extends AbstractBenchmark {
+
+	/**
+	 * The administrator and an ordinary user
+	 */
+	@Param({ "1", "3" })
+	public long userId;
+
+	private FolderDAO dao;
+
+	@Override
+	protected void prepare() {
+		dao = (FolderDAO) context.getBean("FolderDAO");
+	}
+
+	@Benchmark
+	public Collection<Long> findFolderIdByUserId() {
+		return dao.findFolderIdByUserId(userId, null, true);
+	}
+}
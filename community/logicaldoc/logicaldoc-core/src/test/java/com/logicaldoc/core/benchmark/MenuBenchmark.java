@@ -0,0 +1,65 @@
+package com.logicaldoc.core.benchmark;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.springframework.aop.framework.Advised;
+
+import com.logicaldoc.core.security.Menu;
+import com.logicaldoc.core.security.MenuPermissionCache;
+import com.logicaldoc.core.security.dao.HibernateMenuDAO;
+import com.logicaldoc.core.security.dao.MenuDAO;
+
+/**
+ * Benchmark of the menu permissions checked when the GUI is loaded: the
+ * accessible menus of the user plus the checks on the single menus made by
+ * the panels. With <b>cache</b> false the permissions cache is discarded at
+ * each invocation, reproducing the behaviour without the cache.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class MenuBenchmark extends AbstractBenchmark {
+
+	private static final long[] CHECKED_MENUS = { Menu.ADMINISTRATION, Menu.SECURITY, Menu.SETTINGS, Menu.DOCUMENTS,
+			Menu.SESSIONS, 26, 1200 };
+
+	/**
+	 * The administrator and an ordinary user
+	 */
+	@Param({ "1", "4" })
+	public long userId;
+
+	@Param({ "true", "false" })
+	public boolean cache;
+
+	private MenuDAO dao;
+
+	private MenuPermissionCache permissionCache;
+
+	@Override
+	protected void prepare() throws Exception {
+		dao = (MenuDAO) context.getBean("MenuDAO");
+
+		// The DAO is wrapped by the transactional proxy
+		HibernateMenuDAO target = (HibernateMenuDAO) ((Advised) dao).getTargetSource().getTarget();
+		permissionCache = target.getPermissionCache();
+	}
+
+	@Benchmark
+	public int bootstrap() {
+		if (!cache)
+			permissionCache.invalidateAll();
+
+		List<Long> menus = dao.findMenuIdByUserId(userId);
+		int count = menus.size();
+		for (long menuId : CHECKED_MENUS) {
+			if (dao.isReadEnable(menuId, userId))
+				count++;
+			if (dao.isWriteEnable(menuId, userId))
+				count++;
+		}
+		return count + dao.findByUserId(userId, Menu.ADMINISTRATION).size();
+	}
+}
@@ -0,0 +1,40 @@
+package com.logicaldoc.core.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Locale;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import com.logicaldoc.core.parser.ParserFactory;
+
+/**
+ * Benchmark of the text extraction from the sample files of the unit tests
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class ParserBenchmark extends AbstractBenchmark {
+
+	@Param({ "small.pdf", "probiotic-1.4.pdf", "logicaldoc-user_manual-en.odt", "AnalyzeFileTest_enc.txt" })
+	public String file;
+
+	private byte[] data;
+
+	@Override
+	protected void prepare() throws Exception {
+		InputStream is = getClass().getResourceAsStream("/" + file);
+		try {
+			data = IOUtils.toByteArray(is);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	@Benchmark
+	public String parse() {
+		return ParserFactory.parse(new ByteArrayInputStream(data), file, null, Locale.ENGLISH, 1L);
+	}
+}
@@ -0,0 +1,77 @@
+package com.logicaldoc.core.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import com.logicaldoc.core.document.Document;
+import com.logicaldoc.core.folder.Folder;
+import com.logicaldoc.core.searchengine.Hits;
+import com.logicaldoc.core.searchengine.SearchEngine;
+
+/**
+ * Benchmark of the indexing and the search in the full-text index
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class SearchBenchmark extends AbstractBenchmark {
+
+	private static final int INITIAL_HITS = 1000;
+
+	private static final String TEXT = "This is a test document used to measure the indexing. Solr is an enterprise-ready, "
+			+ "Lucene-based search server that supports faceted search, highlighting and many other features. ";
+
+	private SearchEngine engine;
+
+	private Folder folder;
+
+	private byte[] content;
+
+	private long id = 0;
+
+	@Override
+	protected void prepare() throws Exception {
+		engine = (SearchEngine) context.getBean("SearchEngine");
+		engine.unlock();
+
+		folder = new Folder();
+		folder.setId(Folder.DEFAULTWORKSPACEID);
+		folder.setName("test");
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 50; i++)
+			sb.append(TEXT);
+		content = sb.toString().getBytes("UTF-8");
+
+		for (int i = 0; i < INITIAL_HITS; i++)
+			engine.addHit(newDocument(), TEXT + " document" + i);
+	}
+
+	@Override
+	protected void release() {
+		engine.unlock();
+		engine.close();
+	}
+
+	private Document newDocument() {
+		Document document = new Document();
+		document.setId(++id);
+		document.setFileName("document" + id + ".txt");
+		document.setLanguage("en");
+		document.setDate(new Date());
+		document.setFolder(folder);
+		return document;
+	}
+
+	@Benchmark
+	public void addHit() throws Exception {
+		engine.addHit(newDocument(), new ByteArrayInputStream(content));
+	}
+
+	@Benchmark
+	public Hits search() {
+		return engine.search("content:document", null, "en", 50);
+	}
+}
@@ -0,0 +1,59 @@
+package com.logicaldoc.core.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import com.logicaldoc.core.store.Storer;
+
+/**
+ * Benchmark of the write and read of a resource in the documents repository
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class StorerBenchmark extends AbstractBenchmark {
+
+	private static final long DOC_ID = 1000L;
+
+	private static final String RESOURCE = "1.0";
+
+	/**
+	 * Size of the resource in bytes
+	 */
+	@Param({ "4096", "1048576", "16777216" })
+	public int size;
+
+	private Storer storer;
+
+	private byte[] data;
+
+	@Override
+	protected void prepare() {
+		storer = (Storer) context.getBean("Storer");
+		data = new byte[size];
+		new Random(size).nextBytes(data);
+		storer.store(new ByteArrayInputStream(data), DOC_ID, RESOURCE);
+	}
+
+	@Benchmark
+	public long store() {
+		return storer.store(new ByteArrayInputStream(data), DOC_ID + 1, RESOURCE);
+	}
+
+	@Benchmark
+	public long getStream() throws IOException {
+		InputStream is = storer.getStream(DOC_ID, RESOURCE);
+		try {
+			return IOUtils.copyLarge(is, NullOutputStream.NULL_OUTPUT_STREAM);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package com.logicaldoc.core.communication;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.Locale;
+
+import javax.mail.MessagingException;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for <code>EMailSender</code>, the messages are delivered to a
+ * {@link FakeSmtpServer}
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class EMailSenderTest {
+
+	private FakeSmtpServer server = new FakeSmtpServer();
+
+	// Instance under test
+	private EMailSender sender;
+
+	@Before
+	public void setUp() throws Exception {
+		server.start();
+		SmtpTransportPool.shutdown();
+
+		sender = new EMailSender();
+		sender.setHost("127.0.0.1");
+		sender.setPort(server.getPort());
+		sender.setSender("logicaldoc@acme.com");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		SmtpTransportPool.shutdown();
+		server.stop();
+	}
+
+	private static EMail prepareEmail(String to, String subject) {
+		EMail email = new EMail();
+		email.setLocale(Locale.ENGLISH);
+		email.parseRecipients(to);
+		email.setSubject(subject);
+		email.setMessageText("Text of " + subject);
+		return email;
+	}
+
+	@Test
+	public void testSend() throws Exception {
+		sender.send(prepareEmail("a@acme.com", "first"));
+		sender.send(prepareEmail("b@acme.com", "second"));
+		sender.send(prepareEmail("a@acme.com", "third"));
+
+		Assert.assertEquals(3, server.getMessages().size());
+		Assert.assertTrue(server.getMessages().get(0).contains("Subject: first"));
+
+		// All the messages went through the same connection
+		Assert.assertEquals(1, server.getConnections());
+		Assert.assertEquals(1L, SmtpTransportPool.get().getConnections());
+		Assert.assertEquals(3L, SmtpTransportPool.get().getMessages());
+	}
+
+	@Test
+	public void testSendAfterDisconnection() throws Exception {
+		sender.send(prepareEmail("a@acme.com", "first"));
+		server.dropConnections();
+		sender.send(prepareEmail("a@acme.com", "second"));
+
+		Assert.assertEquals(2, server.getMessages().size());
+		Assert.assertEquals(2, server.getConnections());
+	}
+
+	@Test
+	public void testConnectionFailure() {
+		Assert.assertTrue(SmtpTransportPool.isConnectionFailure(new IllegalStateException("Not connected")));
+		Assert.assertTrue(SmtpTransportPool.isConnectionFailure(new MessagingException(
+				"Exception reading response", new SocketException("Connection reset"))));
+		Assert.assertTrue(SmtpTransportPool.isConnectionFailure(new MessagingException("[EOF]")));
+
+		// The server may have accepted the message, it must not be sent again
+		Assert.assertFalse(SmtpTransportPool.isConnectionFailure(new MessagingException("554 Message rejected")));
+		Assert.assertFalse(SmtpTransportPool.isConnectionFailure(new MessagingException(
+				"IOException while sending message", new IOException("Missing attachment"))));
+	}
+
+	@Test
+	public void testLifecycle() throws Exception {
+		SmtpTransportPool pool = new SmtpTransportPool();
+		pool.start();
+		Assert.assertSame(pool, SmtpTransportPool.get());
+
+		sender.send(prepareEmail("a@acme.com", "first"));
+		Assert.assertEquals(1L, pool.getMessages());
+
+		// Once stopped a new instance is created at the next use
+		pool.stop();
+		Assert.assertNotSame(pool, SmtpTransportPool.get());
+	}
+
+	@Test
+	public void testBatcher() throws Exception {
+		NotificationBatcher batcher = new NotificationBatcher(60000L, 50);
+		batcher.add(sender, prepareEmail("a@acme.com", "one"));
+		batcher.add(sender, prepareEmail("b@acme.com", "two"));
+		batcher.add(sender, prepareEmail("a@acme.com", "three"));
+		batcher.add(sender, prepareEmail("a@acme.com", "four"));
+
+		// Messages with more recipients are not merged
+		batcher.add(sender, prepareEmail("a@acme.com,b@acme.com", "five"));
+		Assert.assertEquals(1, server.getMessages().size());
+
+		batcher.flushAll();
+		Assert.assertEquals(3, server.getMessages().size());
+
+		String digest = null;
+		for (String message : server.getMessages())
+			if (message.contains("Subject: one (+2)"))
+				digest = message;
+		Assert.assertNotNull(digest);
+		Assert.assertTrue(digest.contains("Text of three"));
+		Assert.assertTrue(digest.contains("Text of four"));
+	}
+
+	@Test
+	public void testBatcherMax() throws Exception {
+		NotificationBatcher batcher = new NotificationBatcher(60000L, 2);
+		batcher.add(sender, prepareEmail("a@acme.com", "one"));
+		Assert.assertEquals(0, server.getMessages().size());
+
+		// The digest is full, so it gets delivered
+		batcher.add(sender, prepareEmail("a@acme.com", "two"));
+		Assert.assertEquals(1, server.getMessages().size());
+		Assert.assertTrue(server.getMessages().get(0).contains("Subject: one (+1)"));
+	}
+
+	@Test
+	public void testBatcherStop() throws Exception {
+		NotificationBatcher batcher = new NotificationBatcher(60000L, 50);
+		batcher.add(sender, prepareEmail("a@acme.com", "one"));
+		batcher.add(sender, prepareEmail("a@acme.com", "two"));
+		Assert.assertEquals(0, server.getMessages().size());
+
+		// The waiting notifications are delivered at shutdown
+		batcher.stop();
+		Assert.assertEquals(1, server.getMessages().size());
+		Assert.assertTrue(server.getMessages().get(0).contains("Subject: one (+1)"));
+
+		// A stopped batcher sends immediately
+		batcher.add(sender, prepareEmail("a@acme.com", "three"));
+		Assert.assertEquals(2, server.getMessages().size());
+	}
+}
@@ -0,0 +1,139 @@
+package com.logicaldoc.core.communication;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal SMTP server running in the same process, it accepts every message
+ * and keeps it in memory so the tests can deliver mails without a real
+ * server.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class FakeSmtpServer {
+
+	private ServerSocket serverSocket;
+
+	private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+	private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>());
+
+	private final AtomicInteger connections = new AtomicInteger(0);
+
+	/**
+	 * Starts listening on a free port of the loopback interface
+	 */
+	public void start() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(() -> {
+			while (!serverSocket.isClosed()) {
+				try {
+					Socket socket = serverSocket.accept();
+					connections.incrementAndGet();
+					sockets.add(socket);
+					Thread session = new Thread(() -> serve(socket), "FakeSmtpSession");
+					session.setDaemon(true);
+					session.start();
+				} catch (IOException e) {
+					// Closed
+				}
+			}
+		}, "FakeSmtpServer");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public void stop() throws IOException {
+		dropConnections();
+		serverSocket.close();
+	}
+
+	/**
+	 * Abruptly closes all the open connections, like a server that times out
+	 * the idle clients
+	 */
+	public void dropConnections() {
+		synchronized (sockets) {
+			for (Socket socket : sockets)
+				try {
+					socket.close();
+				} catch (IOException e) {
+					// Nothing to do
+				}
+			sockets.clear();
+		}
+	}
+
+	private void serve(Socket socket) {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+			reply(out, "220 localhost FakeSmtpServer");
+
+			String line;
+			while ((line = in.readLine()) != null) {
+				String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+				if ("EHLO".equals(command) || "HELO".equals(command)) {
+					reply(out, "250 localhost");
+				} else if ("DATA".equals(command)) {
+					reply(out, "354 End data with <CR><LF>.<CR><LF>");
+					StringBuilder message = new StringBuilder();
+					while ((line = in.readLine()) != null && !".".equals(line))
+						message.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+					messages.add(message.toString());
+					reply(out, "250 OK");
+				} else if ("QUIT".equals(command)) {
+					reply(out, "221 Bye");
+					break;
+				} else if ("MAIL".equals(command) || "RCPT".equals(command) || "RSET".equals(command)
+						|| "NOOP".equals(command)) {
+					reply(out, "250 OK");
+				} else {
+					reply(out, "502 Command not implemented");
+				}
+			}
+		} catch (IOException e) {
+			// Connection dropped
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Nothing to do
+			}
+		}
+	}
+
+	private static void reply(Writer out, String line) throws IOException {
+		out.write(line + "\r\n");
+		out.flush();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Number of connections accepted since the start
+	 */
+	public int getConnections() {
+		return connections.get();
+	}
+
+	/**
+	 * The received messages in raw format(headers and body)
+	 */
+	public List<String> getMessages() {
+		return messages;
+	}
+}
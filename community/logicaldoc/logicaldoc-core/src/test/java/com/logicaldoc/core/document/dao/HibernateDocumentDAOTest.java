@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
@@ -29,6 +30,7 @@ import com.logicaldoc.core.folder.FolderDAO;
 import com.logicaldoc.core.lock.LockManager;
 import com.logicaldoc.core.security.Tenant;
 import com.logicaldoc.core.security.User;
+import com.logicaldoc.core.stats.StatsCounters;
 import com.logicaldoc.util.crypt.CryptUtil;
 
 /**
@@ -331,6 +333,28 @@ public class HibernateDocumentDAOTest extends AbstractCoreTCase {
 		Assert.assertEquals("test_val_1", doc.getValue("val1"));
 	}
 
+	@Test
+	public void testStoreStats() {
+		StatsCounters.get().drain();
+
+		// The state is remembered at load, so no query is needed on update
+		Document doc = dao.findById(1);
+		Assert.assertTrue(Arrays.equals(new int[] { AbstractDocument.INDEX_INDEXED, 0, AbstractDocument.DOC_UNLOCKED },
+				doc.getStatsState()));
+		dao.initialize(doc);
+
+		doc.setIndexed(AbstractDocument.INDEX_TO_INDEX);
+		Assert.assertTrue(dao.store(doc));
+		Assert.assertEquals(1L, StatsCounters.get().getPending(1L, "notindexeddocs"));
+		Assert.assertEquals(-1L, StatsCounters.get().getPending(1L, "indexeddocs"));
+		Assert.assertEquals(AbstractDocument.INDEX_TO_INDEX, doc.getStatsState()[0]);
+
+		// Storing it again does not count it twice
+		Assert.assertTrue(dao.store(doc));
+		Assert.assertEquals(1L, StatsCounters.get().getPending(1L, "notindexeddocs"));
+		Assert.assertEquals(0L, StatsCounters.get().getPending(1L, "totaldocs"));
+	}
+
 	@Test
 	public void testFindTags() {
 		TagsProcessor processor = (TagsProcessor) context.getBean("TagsProcessor");
@@ -1,12 +1,19 @@
 package com.logicaldoc.core.document.dao;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import junit.framework.Assert;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -14,6 +21,8 @@ import com.logicaldoc.core.AbstractCoreTCase;
 import com.logicaldoc.core.document.DocumentEvent;
 import com.logicaldoc.core.document.History;
 import com.logicaldoc.core.i18n.DateBean;
+import com.logicaldoc.util.Context;
+import com.logicaldoc.util.config.ContextProperties;
 
 /**
  * Test case for <code>HibernateHistoryDAO</code>
@@ -193,6 +202,41 @@ public class HibernateHistoryDAOTest extends AbstractCoreTCase {
 		Assert.assertEquals(0, histories.size());
 	}
 
+	@Test
+	public void testCleanOldHistoriesArchive() throws IOException {
+		long count = dao.queryForLong("select count(*) from ld_history");
+		Assert.assertTrue(count > 2);
+
+		File dir = new File("target/history-archive");
+		FileUtils.deleteQuietly(dir);
+		ContextProperties config = Context.get().getProperties();
+		config.setProperty("history.archive", "true");
+		config.setProperty("history.archive.dir", dir.getAbsolutePath());
+		config.setProperty("history.retention.batch", "2");
+		try {
+			dao.cleanOldHistories(5);
+		} finally {
+			config.remove("history.archive");
+			config.remove("history.archive.dir");
+			config.remove("history.retention.batch");
+		}
+
+		// The rows have been physically deleted
+		Assert.assertEquals(0, dao.queryForLong("select count(*) from ld_history"));
+
+		// And archived with the header
+		File[] archives = dir.listFiles();
+		Assert.assertEquals(1, archives.length);
+		InputStream is = new GZIPInputStream(new FileInputStream(archives[0]));
+		try {
+			List<String> lines = IOUtils.readLines(is, "UTF-8");
+			Assert.assertEquals(count + 1, lines.size());
+			Assert.assertTrue(lines.get(0).startsWith("ld_id,"));
+		} finally {
+			is.close();
+		}
+	}
+
 	@SuppressWarnings("rawtypes")
 	@Test
 	public void testFindByUserIdAndEvent() {
@@ -0,0 +1,139 @@
+package com.logicaldoc.core.document.thumbnail;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.logicaldoc.core.AbstractCoreTCase;
+import com.logicaldoc.core.document.Document;
+import com.logicaldoc.core.document.dao.DocumentDAO;
+import com.logicaldoc.core.generic.Generic;
+import com.logicaldoc.core.generic.GenericDAO;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Test case for {@link ThumbnailRenderer}, the images are not really produced
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class ThumbnailRendererTest extends AbstractCoreTCase {
+
+	private DocumentDAO documentDao;
+
+	private GenericDAO genericDao;
+
+	private ContextProperties config;
+
+	private ThumbnailRenderer renderer;
+
+	// Number of invocations of the thumbnail manager
+	private AtomicInteger renderings = new AtomicInteger(0);
+
+	// Number of renderings that must fail
+	private AtomicInteger failures = new AtomicInteger(0);
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+
+		documentDao = (DocumentDAO) context.getBean("DocumentDAO");
+		genericDao = (GenericDAO) context.getBean("GenericDAO");
+		config = (ContextProperties) context.getBean("ContextProperties");
+		config.setProperty("thumbnail.renderer.threads", "2");
+		config.setProperty("thumbnail.renderer.retries", "2");
+		config.setProperty("thumbnail.renderer.retry.delay", "0");
+
+		renderer = new ThumbnailRenderer();
+		renderer.setConfig(config);
+		renderer.setDocumentDao(documentDao);
+		renderer.setGenericDao(genericDao);
+		renderer.setThumbnailManager(new ThumbnailManager() {
+			@Override
+			public void createImages(Document document, String fileVersion, String sid) throws IOException {
+				renderings.incrementAndGet();
+				if (failures.getAndDecrement() > 0)
+					throw new IOException("Rendering failed");
+			}
+		});
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		renderer.stop();
+		super.tearDown();
+	}
+
+	private void waitRendered(long docId, String fileVersion) throws InterruptedException {
+		for (int i = 0; i < 100 && renderer.isRendering(docId, fileVersion); i++)
+			Thread.sleep(100);
+		Assert.assertFalse(renderer.isRendering(docId, fileVersion));
+	}
+
+	private int countJobs() {
+		// Count also the records marked as deleted
+		return genericDao.queryForInt("select count(*) from ld_generic where ld_type='" + ThumbnailRenderer.JOB_TYPE
+				+ "'");
+	}
+
+	@Test
+	public void testRequest() throws Exception {
+		renderer.start();
+		Document document = documentDao.findById(1);
+		Assert.assertTrue(renderer.request(document, null, null));
+		waitRendered(1, "1.0");
+		Assert.assertEquals(1, renderings.get());
+
+		// The completed job leaves no record
+		Assert.assertEquals(0, countJobs());
+
+		Assert.assertTrue(renderer.request(document, null, null));
+		waitRendered(1, "1.0");
+		Assert.assertEquals(2, renderings.get());
+		Assert.assertEquals(0, countJobs());
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		renderer.start();
+		failures.set(2);
+		Assert.assertTrue(renderer.request(documentDao.findById(1), null, null));
+		waitRendered(1, "1.0");
+
+		// Two failures and the final success
+		Assert.assertEquals(3, renderings.get());
+		Assert.assertEquals(0, countJobs());
+	}
+
+	@Test
+	public void testAbandon() throws Exception {
+		renderer.start();
+		failures.set(100);
+		Assert.assertTrue(renderer.request(documentDao.findById(1), null, null));
+		waitRendered(1, "1.0");
+
+		// The first attempt and two retries
+		Assert.assertEquals(3, renderings.get());
+		Assert.assertEquals(0, countJobs());
+	}
+
+	@Test
+	public void testRecover() throws Exception {
+		// A job persisted before the shutdown
+		Generic job = new Generic(ThumbnailRenderer.JOB_TYPE, "1.0", 1L, 1L);
+		job.setInteger1(0L);
+		job.setDate1(new Date());
+		genericDao.store(job);
+
+		renderer.start();
+		waitRendered(1, "1.0");
+		Assert.assertEquals(1, renderings.get());
+		Assert.assertEquals(0, countJobs());
+	}
+}
@@ -0,0 +1,33 @@
+package com.logicaldoc.core.history;
+
+import java.text.SimpleDateFormat;
+import java.util.regex.Pattern;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Test case for <code>HistoryRetention</code>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class HistoryRetentionTest {
+
+	@Test
+	public void testParseBound() throws Exception {
+		SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+		Pattern pg = Pattern.compile("TO \\('([^']+)'\\)");
+		Pattern mysql = Pattern.compile("'([^']+)'");
+
+		Assert.assertEquals(df.parse("2026-02-01"), HistoryRetention.parseBound(
+				"FOR VALUES FROM ('2026-01-01 00:00:00') TO ('2026-02-01 00:00:00')", pg));
+		Assert.assertEquals(df.parse("2026-02-01"),
+				HistoryRetention.parseBound("FOR VALUES FROM ('2026-01-01') TO ('2026-02-01')", pg));
+		Assert.assertEquals(df.parse("2026-02-01"), HistoryRetention.parseBound("'2026-02-01 00:00:00'", mysql));
+		Assert.assertNull(HistoryRetention.parseBound("DEFAULT", pg));
+		Assert.assertNull(HistoryRetention.parseBound("MAXVALUE", mysql));
+		Assert.assertNull(HistoryRetention.parseBound(null, mysql));
+	}
+}
@@ -0,0 +1,31 @@
+package com.logicaldoc.core.parser;
+
+import java.io.File;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.logicaldoc.core.AbstractCoreTCase;
+import com.logicaldoc.core.security.Tenant;
+
+public class EMLParserTest extends AbstractCoreTCase {
+
+	@Test
+	public void testParse() {
+		File file = new File("src/test/resources/kajima.eml");
+		Parser parser = ParserFactory.getParser(file.getName());
+		Assert.assertTrue(parser instanceof EMLParser);
+
+		String content = parser.parse(file, file.getName(), null, Locale.ENGLISH, Tenant.DEFAULT_NAME);
+		Assert.assertTrue(content.contains("Project Kajima - RFI"));
+		Assert.assertTrue(content.contains("vendor_info@kajima.co.uk"));
+		Assert.assertTrue(content.contains("Colin"));
+		Assert.assertFalse(content.contains("<html"));
+
+		file = new File("src/test/resources/parche 2.eml");
+		content = parser.parse(file, file.getName(), null, Locale.ENGLISH, Tenant.DEFAULT_NAME);
+		Assert.assertTrue(content.contains("RE: parche 2"));
+		Assert.assertTrue(content.contains("Saludos"));
+	}
+}
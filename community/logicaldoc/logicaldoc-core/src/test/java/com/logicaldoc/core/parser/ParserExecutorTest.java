@@ -0,0 +1,141 @@
+package com.logicaldoc.core.parser;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test case for {@link ParserExecutor}
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class ParserExecutorTest {
+
+	// Releases the stuck parsings
+	private CountDownLatch release = new CountDownLatch(1);
+
+	private ParserExecutor executor;
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		if (executor != null)
+			executor.stop();
+	}
+
+	/**
+	 * A parsing that ignores the interruptions until it gets released
+	 */
+	private Callable<String> stuck(final CountDownLatch started) {
+		return new Callable<String>() {
+			@Override
+			public String call() {
+				started.countDown();
+				while (true)
+					try {
+						release.await();
+						return "released";
+					} catch (InterruptedException e) {
+						// Ignore like many libraries do
+					}
+			}
+		};
+	}
+
+	private Callable<String> quick() {
+		return new Callable<String>() {
+			@Override
+			public String call() {
+				return "completed";
+			}
+		};
+	}
+
+	private static void waitReplaced(ParserExecutor executor, int expected) throws InterruptedException {
+		for (int i = 0; i < 100 && executor.getReplaced() != expected; i++)
+			Thread.sleep(50);
+		Assert.assertEquals(expected, executor.getReplaced());
+	}
+
+	@Test
+	public void testSubmit() throws Exception {
+		executor = new ParserExecutor(2, 10, 2);
+		Assert.assertEquals("completed", executor.submit(quick()).get(5, TimeUnit.SECONDS));
+		Assert.assertEquals(0, executor.getTimeouts());
+		Assert.assertEquals(0, executor.getReplaced());
+	}
+
+	@Test
+	public void testStuckWorkerReplaced() throws Exception {
+		executor = new ParserExecutor(1, 10, 1);
+
+		CountDownLatch started = new CountDownLatch(1);
+		Future<String> future = executor.submit(stuck(started));
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		try {
+			future.get(100, TimeUnit.MILLISECONDS);
+			Assert.fail("The parsing did not time out");
+		} catch (TimeoutException e) {
+			executor.timedOut(future);
+		}
+		Assert.assertTrue(future.isCancelled());
+		Assert.assertEquals(1, executor.getTimeouts());
+		Assert.assertEquals(1, executor.getReplaced());
+
+		// The only original worker is stuck but the pool still parses
+		Assert.assertEquals("completed", executor.submit(quick()).get(5, TimeUnit.SECONDS));
+
+		// Once the stuck parsing terminates its replacement is removed
+		release.countDown();
+		waitReplaced(executor, 0);
+		Assert.assertEquals("completed", executor.submit(quick()).get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testMaxReplaced() throws Exception {
+		executor = new ParserExecutor(1, 1, 0);
+
+		CountDownLatch started = new CountDownLatch(1);
+		Future<String> future = executor.submit(stuck(started));
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.timedOut(future);
+		Assert.assertEquals(0, executor.getReplaced());
+
+		// The worker is stuck and the queue accepts one parsing only
+		Future<String> queued = executor.submit(quick());
+		try {
+			executor.submit(quick());
+			Assert.fail("The parsing has not been rejected");
+		} catch (RejectedExecutionException e) {
+			// All right
+		}
+		Assert.assertEquals(1, executor.getRejections());
+
+		release.countDown();
+		Assert.assertEquals("completed", queued.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testQueuedParsingCancelled() throws Exception {
+		executor = new ParserExecutor(1, 10, 1);
+
+		CountDownLatch started = new CountDownLatch(1);
+		executor.submit(stuck(started));
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		// A parsing still in queue has no worker to replace
+		Future<String> queued = executor.submit(quick());
+		executor.timedOut(queued);
+		Assert.assertTrue(queued.isCancelled());
+		Assert.assertEquals(0, executor.getReplaced());
+	}
+}
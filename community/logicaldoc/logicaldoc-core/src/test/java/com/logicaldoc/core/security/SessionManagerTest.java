@@ -1,5 +1,17 @@
 package com.logicaldoc.core.security;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
@@ -45,6 +57,53 @@ public class SessionManagerTest extends AbstractCoreTCase {
 		Assert.assertEquals(2, sm.getSessions().size());
 	}
 
+	@Test
+	public void testConcurrentLogins() throws Exception {
+		SessionManager sm = SessionManager.get();
+		sm.clear();
+
+		int threads = 8;
+		int logins = 50 * threads;
+
+		int before = sm.countOpened();
+		Set<String> sids = login(sm, threads, logins);
+
+		// All the sessions are distinct, open and persisted
+		Assert.assertEquals(logins, sids.size());
+		Assert.assertEquals(before + logins, sm.countOpened());
+		for (String sid : sids)
+			Assert.assertTrue(sm.isOpen(sid));
+	}
+
+	/**
+	 * Executes a number of logins distributed among the given threads
+	 * 
+	 * @return the identifiers of the created sessions
+	 */
+	private Set<String> login(final SessionManager sm, int threads, final int logins) throws Exception {
+		final Set<String> sids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger counter = new AtomicInteger(0);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < threads; i++)
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					start.await();
+					while (counter.incrementAndGet() <= logins)
+						sids.add(sm.newSession("admin", "admin", null).getSid());
+					return null;
+				}
+			}));
+
+		start.countDown();
+		for (Future<?> future : futures)
+			future.get();
+		executor.shutdown();
+		return sids;
+	}
+
 	@Test
 	public void testTimeout() {
 		ContextProperties conf = Context.get().getProperties();
@@ -63,4 +122,37 @@ public class SessionManagerTest extends AbstractCoreTCase {
 
 		Assert.assertFalse(sm.isOpen(session1.getSid()));
 	}
+
+	@Test
+	public void testCredentialCache() {
+		SessionManager sm = SessionManager.get();
+		sm.clear();
+		CredentialCache cache = new CredentialCache(60000L, 2);
+
+		Session session = sm.newSession("admin", "admin", null);
+		cache.put("admin", "admin", "127.0.0.1", session);
+		Assert.assertEquals(session.getSid(), cache.getSid("admin", "admin", "127.0.0.1"));
+		Assert.assertNull(cache.getSid("admin", "wrong", "127.0.0.1"));
+		Assert.assertNull(cache.getSid("admin", "admin", "10.0.0.1"));
+
+		// The least recently used entries are evicted
+		cache.put("admin", "admin", "10.0.0.1", session);
+		cache.put("admin", "admin", "10.0.0.2", session);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNull(cache.getSid("admin", "admin", "127.0.0.1"));
+
+		cache.invalidateUser(session.getUserId());
+		Assert.assertEquals(0, cache.size());
+
+		// A cache without time to live is disabled
+		cache = new CredentialCache(-1L, 10);
+		cache.put("admin", "admin", "127.0.0.1", session);
+		Assert.assertNull(cache.getSid("admin", "admin", "127.0.0.1"));
+
+		// Killing the session discards the shared entries
+		cache = CredentialCache.get();
+		cache.put("admin", "admin", "127.0.0.1", session);
+		sm.kill(session.getSid());
+		Assert.assertNull(cache.getSid("admin", "admin", "127.0.0.1"));
+	}
 }
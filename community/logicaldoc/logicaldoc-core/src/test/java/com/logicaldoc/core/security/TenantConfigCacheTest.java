@@ -0,0 +1,75 @@
+package com.logicaldoc.core.security;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.logicaldoc.core.AbstractCoreTCase;
+import com.logicaldoc.core.security.dao.TenantDAO;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Test case for <code>TenantConfigCache</code>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class TenantConfigCacheTest extends AbstractCoreTCase {
+
+	// Instance under test
+	private TenantConfigCache cache = TenantConfigCache.get();
+
+	private ContextProperties config;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		config = (ContextProperties) context.getBean("ContextProperties");
+	}
+
+	@Test
+	public void testGetConfig() {
+		TenantConfig tenantConfig = cache.getConfig(Tenant.DEFAULT_ID);
+		Assert.assertNotNull(tenantConfig);
+		Assert.assertEquals(Tenant.DEFAULT_NAME, tenantConfig.getTenantName());
+		Assert.assertEquals(2, tenantConfig.getMaxVersions());
+
+		// The second time the snapshot is taken from the cache
+		Assert.assertSame(tenantConfig, cache.getConfig(Tenant.DEFAULT_ID));
+
+		Assert.assertNull(cache.getConfig(999L));
+	}
+
+	@Test
+	public void testChangedSettings() {
+		TenantConfig tenantConfig = cache.getConfig(Tenant.DEFAULT_ID);
+		Assert.assertNull(tenantConfig.getSearchExtattr());
+
+		// A change in the settings is seen immediately
+		config.setProperty(Tenant.DEFAULT_NAME + ".search.extattr", "source,sourceAuthor");
+		config.setProperty(Tenant.DEFAULT_NAME + ".index.excludes", "*.zip");
+		tenantConfig = cache.getConfig(Tenant.DEFAULT_ID);
+		Assert.assertEquals("source,sourceAuthor", tenantConfig.getSearchExtattr());
+		Assert.assertEquals("*.zip", tenantConfig.getIndexExcludes());
+
+		config.remove(Tenant.DEFAULT_NAME + ".search.extattr");
+		Assert.assertNull(cache.getConfig(Tenant.DEFAULT_ID).getSearchExtattr());
+	}
+
+	@Test
+	public void testRenamedTenant() {
+		TenantDAO dao = (TenantDAO) context.getBean("TenantDAO");
+		Assert.assertEquals("tenant2", cache.getConfig(2L).getTenantName());
+
+		// The renamed tenant is seen immediately
+		Tenant tenant = dao.findById(2L);
+		tenant.setName("renamed");
+		Assert.assertTrue(dao.store(tenant));
+		Assert.assertEquals("renamed", cache.getConfig(2L).getTenantName());
+
+		// The deleted tenant is not served anymore
+		Assert.assertTrue(dao.delete(2L));
+		Assert.assertNull(cache.getConfig(2L));
+	}
+}
@@ -140,4 +140,17 @@ public class HibernateGroupDAOTest extends AbstractCoreTCase {
 		System.out.println(manager.getAllowedGroups(9));
 		Assert.assertTrue(manager.getAllowedGroups(9).contains(group));
 	}
+
+	@Test
+	public void testInheritACLsInvalidatesMenuPermissions() {
+		MenuDAO menuDao = (MenuDAO) context.getBean("MenuDAO");
+
+		// User 5 is in group 3 that cannot access the menu 103
+		Assert.assertFalse(menuDao.isReadEnable(103, 5));
+
+		// Group 2 can access the menu 103
+		dao.inheritACLs(3, 2);
+		Assert.assertTrue(menuDao.isReadEnable(103, 5));
+		Assert.assertTrue(menuDao.isWriteEnable(103, 5));
+	}
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import org.junit.Test;
 import com.logicaldoc.core.AbstractCoreTCase;
 import com.logicaldoc.core.document.dao.DocumentDAO;
 import com.logicaldoc.core.security.Menu;
+import com.logicaldoc.core.security.MenuPermissionCache;
 import com.logicaldoc.core.security.Permission;
 import com.logicaldoc.core.security.User;
 
@@ -172,6 +173,33 @@ public class HibernateMenuDAOTest extends AbstractCoreTCase {
 		Assert.assertFalse(dao.isWriteEnable(2, 999));
 	}
 
+	@Test
+	public void testPermissionsCache() {
+		// Load the permissions in the cache
+		Assert.assertTrue(dao.isWriteEnable(1200, 4));
+		Assert.assertTrue(dao.findMenuIdByUserId(4).contains(1200L));
+
+		// Menu 1200 takes the policies from menu 103
+		Menu menu = dao.findById(103);
+		dao.initialize(menu);
+		menu.clearMenuGroups();
+		Assert.assertTrue(dao.store(menu));
+
+		Assert.assertFalse(dao.isWriteEnable(1200, 4));
+		Assert.assertFalse(dao.isReadEnable(1200, 4));
+		Assert.assertFalse(dao.findMenuIdByUserId(4).contains(1200L));
+	}
+
+	@Test
+	public void testPermissionsCacheExpiration() throws InterruptedException {
+		MenuPermissionCache cache = new MenuPermissionCache(200);
+		cache.putSecurityRef(1200, 103, cache.getGeneration());
+		Assert.assertEquals(Long.valueOf(103), cache.getSecurityRef(1200));
+
+		Thread.sleep(400);
+		Assert.assertNull(cache.getSecurityRef(1200));
+	}
+
 	@Test
 	public void testIsReadEnable() {
 		Assert.assertTrue(dao.isReadEnable(2, 1));
@@ -13,6 +13,7 @@ import org.junit.Test;
 
 import com.logicaldoc.core.AbstractCoreTCase;
 import com.logicaldoc.core.security.Group;
+import com.logicaldoc.core.security.PrincipalCache;
 import com.logicaldoc.core.security.User;
 import com.logicaldoc.core.security.UserHistory;
 import com.logicaldoc.util.crypt.CryptUtil;
@@ -228,6 +229,32 @@ public class HibernateUserDAOTest extends AbstractCoreTCase {
 		Assert.assertEquals(3, user.getGroups().size());
 	}
 
+	@Test
+	public void testStoreInvalidatesPrincipalCache() {
+		PrincipalCache cache = PrincipalCache.get();
+		cache.invalidateAll();
+
+		User user = dao.findByUsername("boss");
+		cache.put("sid1", user, cache.getGeneration());
+		User other = dao.findByUsername("admin");
+		cache.put("sid2", other, cache.getGeneration());
+		Assert.assertSame(user, cache.getUser("sid1"));
+
+		// A user loaded before an invalidation must not be cached
+		long generation = cache.getGeneration();
+		dao.store(user);
+		Assert.assertNull(cache.getUser("sid1"));
+		Assert.assertNotNull(cache.getUser("sid2"));
+		cache.put("sid1", user, generation);
+		Assert.assertNull(cache.getUser("sid1"));
+
+		// Any change in the groups invalidates everything
+		groupDao.store(groupDao.findById(1));
+		Assert.assertNull(cache.getUser("sid2"));
+		Assert.assertTrue(cache.getHits() >= 2);
+		Assert.assertTrue(cache.getMisses() >= 3);
+	}
+
 	@Test
 	public void testValidateUser() {
 		Assert.assertTrue(dao.validateUser("admin", "admin"));
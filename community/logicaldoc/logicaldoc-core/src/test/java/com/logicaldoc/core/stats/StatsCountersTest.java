@@ -0,0 +1,91 @@
+package com.logicaldoc.core.stats;
+
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.logicaldoc.core.document.AbstractDocument;
+import com.logicaldoc.core.security.Tenant;
+
+/**
+ * Test case for <code>StatsCounters</code>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class StatsCountersTest {
+
+	// Instance under test
+	private StatsCounters counters = StatsCounters.get();
+
+	@Before
+	public void setUp() throws Exception {
+		counters.drain();
+	}
+
+	@Test
+	public void testDocumentChanged() {
+		int[] toIndex = new int[] { AbstractDocument.INDEX_TO_INDEX, 0, AbstractDocument.DOC_UNLOCKED };
+		int[] indexed = new int[] { AbstractDocument.INDEX_INDEXED, 0, AbstractDocument.DOC_UNLOCKED };
+		int[] deleted = new int[] { AbstractDocument.INDEX_INDEXED, 1, AbstractDocument.DOC_UNLOCKED };
+		int[] archived = new int[] { AbstractDocument.INDEX_INDEXED, 0, AbstractDocument.DOC_ARCHIVED };
+
+		// Two new documents, one gets indexed and then archived
+		counters.documentChanged(2L, null, toIndex);
+		counters.documentChanged(2L, null, toIndex);
+		counters.documentChanged(2L, toIndex, indexed);
+		counters.documentChanged(2L, indexed, archived);
+		counters.documentChanged(2L, archived, archived);
+
+		Assert.assertEquals(2L, counters.getPending(2L, "totaldocs"));
+		Assert.assertEquals(1L, counters.getPending(2L, "notindexeddocs"));
+		Assert.assertEquals(0L, counters.getPending(2L, "indexeddocs"));
+		Assert.assertEquals(1L, counters.getPending(2L, "archiveddocs"));
+
+		// The other one gets deleted
+		counters.documentChanged(2L, toIndex, deleted);
+		Assert.assertEquals(0L, counters.getPending(2L, "notindexeddocs"));
+		Assert.assertEquals(1L, counters.getPending(2L, "deleteddocs"));
+
+		// The system collects the variations of all the tenants
+		counters.documentChanged(3L, null, indexed);
+		Assert.assertEquals(3L, counters.getPending(Tenant.SYSTEM_ID, "totaldocs"));
+		Assert.assertEquals(1L, counters.getPending(Tenant.SYSTEM_ID, "indexeddocs"));
+
+		Map<Long, Map<String, Long>> drained = counters.drain();
+		Assert.assertEquals(3, drained.size());
+		Assert.assertEquals(Long.valueOf(2L), drained.get(2L).get("totaldocs"));
+		Assert.assertEquals(0L, counters.getPending(2L, "totaldocs"));
+	}
+
+	@Test
+	public void testReset() {
+		counters.add(2L, "versions", 3L);
+		counters.add(2L, "docdir", 100L);
+
+		// Only the tenant's variation is discarded, the system still has it
+		counters.reset(2L, "versions");
+		Assert.assertEquals(0L, counters.getPending(2L, "versions"));
+		Assert.assertEquals(100L, counters.getPending(2L, "docdir"));
+		Assert.assertEquals(3L, counters.getPending(Tenant.SYSTEM_ID, "versions"));
+
+		counters.reset(Tenant.SYSTEM_ID, "versions", "docdir");
+		counters.reset(2L, "docdir");
+		Assert.assertTrue(counters.drain().isEmpty());
+	}
+
+	@Test
+	public void testAdd() {
+		counters.add(Tenant.SYSTEM_ID, "histories", 1L);
+		counters.add(Tenant.SYSTEM_ID, "histories", 1L);
+		counters.add(Tenant.SYSTEM_ID, "versions", 0L);
+		Assert.assertEquals(2L, counters.getPending(Tenant.SYSTEM_ID, "histories"));
+
+		Map<Long, Map<String, Long>> drained = counters.drain();
+		Assert.assertEquals(1, drained.size());
+		Assert.assertFalse(drained.get(Tenant.SYSTEM_ID).containsKey("versions"));
+	}
+}
@@ -0,0 +1,90 @@
+package com.logicaldoc.core.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.logicaldoc.core.AbstractCoreTCase;
+import com.logicaldoc.core.document.Document;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Test case for <code>CompressingStorer</code>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class CompressingStorerTest extends AbstractCoreTCase {
+
+	// Instance under test
+	private CompressingStorer storer;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		FileUtils.deleteQuietly(new File("target/store"));
+
+		storer = new CompressingStorer();
+		storer.setConfig((ContextProperties) context.getBean("ContextProperties"));
+		CompressionStats.get().drain();
+	}
+
+	@Test
+	public void testStore() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++)
+			sb.append("line ").append(i).append('\n');
+		byte[] text = sb.toString().getBytes();
+
+		// The extension of the resource is txt, so it gets compressed
+		String resource = "1.0-test.txt";
+		Assert.assertEquals(text.length, storer.store(new ByteArrayInputStream(text), 1L, resource));
+		Assert.assertTrue(storer.exists(1L, resource));
+		Assert.assertEquals(text.length, storer.size(1L, resource));
+		Assert.assertTrue(storer.getStorer().size(1L, resource) < text.length / 2);
+		Assert.assertEquals(sb.toString(), storer.getString(1L, resource));
+
+		// A range that spans over two blocks
+		Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(text, 65000, 67000),
+				storer.getBytes(1L, resource, 65000, 2000)));
+		Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(text, text.length - 10, text.length),
+				storer.getBytes(1L, resource, text.length - 10, 100)));
+
+		long[] sizes = storer.getCompressionSizes(1L, resource);
+		Assert.assertEquals(text.length, sizes[0]);
+		Assert.assertEquals(storer.getStorer().size(1L, resource), sizes[1]);
+
+		// Without the document the tenant is unknown
+		Assert.assertTrue(CompressionStats.get().drain().isEmpty());
+
+		// Without the document, the document's file is stored as is
+		Assert.assertEquals(text.length, storer.store(new ByteArrayInputStream(text), 1L, "1.0"));
+		Assert.assertEquals(text.length, storer.getStorer().size(1L, "1.0"));
+		Assert.assertEquals(sb.toString(), storer.getString(1L, "1.0"));
+		Assert.assertNull(storer.getCompressionSizes(1L, "1.0"));
+
+		// The document's file takes the extension of the document's file name
+		Document document = new Document();
+		document.setId(2L);
+		document.setTenantId(1L);
+		document.setFileName("test.txt");
+		Assert.assertEquals(text.length, storer.store(new ByteArrayInputStream(text), document, "1.0"));
+		Assert.assertTrue(storer.getStorer().size(2L, "1.0") < text.length / 2);
+		Assert.assertEquals(sb.toString(), storer.getString(2L, "1.0"));
+		Map<Long, long[]> stats = CompressionStats.get().drain();
+		Assert.assertEquals(text.length, stats.get(1L)[0]);
+		Assert.assertEquals(storer.getStorer().size(2L, "1.0"), stats.get(1L)[1]);
+
+		document.setFileName("test");
+		Assert.assertEquals(text.length, storer.store(new ByteArrayInputStream(text), document, "1.0"));
+		Assert.assertEquals(text.length, storer.getStorer().size(2L, "1.0"));
+		Assert.assertTrue(CompressionStats.get().drain().isEmpty());
+	}
+}
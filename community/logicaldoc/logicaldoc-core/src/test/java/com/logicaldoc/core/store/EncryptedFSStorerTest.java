@@ -0,0 +1,138 @@
+package com.logicaldoc.core.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.logicaldoc.core.AbstractCoreTCase;
+import com.logicaldoc.util.Base64Coder;
+import com.logicaldoc.util.config.ContextProperties;
+import com.logicaldoc.util.crypt.StreamingAead;
+
+/**
+ * Test case for <code>EncryptedFSStorer</code>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class EncryptedFSStorerTest extends AbstractCoreTCase {
+
+	// Instance under test
+	private EncryptedFSStorer storer;
+
+	private byte[] content = new byte[200000];
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		FileUtils.deleteQuietly(new File("target/store"));
+
+		storer = new EncryptedFSStorer();
+		storer.setConfig((ContextProperties) context.getBean("ContextProperties"));
+		storer.getParameters().put("key", new String(Base64Coder.encode(StreamingAead.generateKey(16))));
+
+		new Random(1).nextBytes(content);
+	}
+
+	@Test
+	public void testStore() throws IOException {
+		String resource = "1.0";
+		Assert.assertTrue(storer.isEnabled());
+		Assert.assertEquals(content.length, storer.store(new ByteArrayInputStream(content), 1L, resource));
+		Assert.assertTrue(storer.exists(1L, resource));
+		Assert.assertEquals(content.length, storer.size(1L, resource));
+
+		// The files are never handed out
+		File file = new File(storer.getContainer(1L), resource);
+		Assert.assertTrue(StreamingAead.isEncrypted(file));
+		Assert.assertNull(storer.getFile(1L, resource));
+
+		Assert.assertTrue(Arrays.equals(content, storer.getBytes(1L, resource, 0, -1)));
+
+		// A range that spans over two chunks
+		Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(content, 65000, 67000),
+				storer.getBytes(1L, resource, 65000, 2000)));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		storer.writeToStream(1L, resource, out, content.length - 10, 100);
+		Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(content, content.length - 10, content.length),
+				out.toByteArray()));
+	}
+
+	@Test
+	public void testEncrypt() throws IOException {
+		// A resource stored in clear before the encryption was enabled
+		String resource = "1.0";
+		File file = new File(storer.getContainer(1L), resource);
+		FileUtils.writeByteArrayToFile(file, content);
+		Assert.assertEquals(content.length, storer.size(1L, resource));
+		Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(content, 100, 200), storer.getBytes(1L, resource, 100, 100)));
+
+		Assert.assertTrue(storer.encrypt(1L, resource));
+		Assert.assertFalse(storer.encrypt(1L, resource));
+		Assert.assertTrue(StreamingAead.isEncrypted(file));
+		Assert.assertEquals(content.length, storer.size(1L, resource));
+		Assert.assertTrue(Arrays.equals(content, storer.getBytes(1L, resource, 0, -1)));
+		Assert.assertEquals(1, storer.listResources(1L, null).size());
+	}
+
+	@Test
+	public void testConcurrentEncrypt() throws Exception {
+		// The resources are stored in clear and rewritten while being encrypted
+		final String resource = "1.0";
+		final byte[] last = "last version".getBytes();
+		for (long docId = 1; docId <= 20; docId++)
+			FileUtils.writeByteArrayToFile(new File(storer.getContainer(docId), resource), content);
+
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				for (long docId = 1; docId <= 20; docId++)
+					storer.store(new ByteArrayInputStream(last), docId, resource);
+			}
+		};
+		writer.start();
+		for (long docId = 1; docId <= 20; docId++)
+			storer.encrypt(docId, resource);
+		writer.join();
+
+		// No stored content has been overwritten by an encryption
+		for (long docId = 1; docId <= 20; docId++) {
+			Assert.assertTrue(StreamingAead.isEncrypted(new File(storer.getContainer(docId), resource)));
+			Assert.assertTrue(Arrays.equals(last, storer.getBytes(docId, resource, 0, -1)));
+		}
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		String resource = "1.0";
+		storer.store(new ByteArrayInputStream(content), 1L, resource);
+
+		// Just the header is left, it must not be read as an empty content
+		File file = new File(storer.getContainer(1L), resource);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(StreamingAead.HEADER_LENGTH);
+		} finally {
+			raf.close();
+		}
+
+		Assert.assertNull(storer.getStream(1L, resource));
+		Assert.assertNull(storer.getBytes(1L, resource, 0, -1));
+		try {
+			storer.writeToStream(1L, resource, new ByteArrayOutputStream(), 0, -1);
+			Assert.fail("Truncation not detected");
+		} catch (IOException e) {
+			// All ok
+		}
+	}
+}
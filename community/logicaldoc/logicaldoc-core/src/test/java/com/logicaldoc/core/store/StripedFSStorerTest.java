@@ -0,0 +1,113 @@
+package com.logicaldoc.core.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.logicaldoc.core.AbstractCoreTCase;
+import com.logicaldoc.util.config.ContextProperties;
+
+/**
+ * Test case for <code>StripedFSStorer</code>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class StripedFSStorerTest extends AbstractCoreTCase {
+
+	private File root2 = new File("target/store2");
+
+	// Instance under test
+	private StripedFSStorer storer;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		FileUtils.deleteQuietly(new File("target/store"));
+		FileUtils.deleteQuietly(root2);
+
+		storer = new StripedFSStorer();
+		storer.setConfig((ContextProperties) context.getBean("ContextProperties"));
+	}
+
+	@Test
+	public void testRebalance() throws IOException {
+		Assert.assertEquals(1, storer.getRoots().size());
+		for (long docId = 1; docId <= 40; docId++)
+			storer.store(new ByteArrayInputStream(("document " + docId).getBytes()), docId, "1.0");
+
+		// Add a second root, the documents assigned to it are still readable
+		storer.getParameters().put("roots", root2.getPath());
+		Assert.assertEquals(2, storer.getRoots().size());
+
+		int toMove = 0;
+		for (long docId = 1; docId <= 40; docId++) {
+			if (storer.getTargetRoot(docId).equals(root2))
+				toMove++;
+			Assert.assertEquals("document " + docId, storer.getString(docId, "1.0"));
+		}
+		Assert.assertTrue(toMove > 0 && toMove < 40);
+
+		int moved = 0;
+		for (long docId = 1; docId <= 40; docId++)
+			if (storer.rebalance(docId))
+				moved++;
+		Assert.assertEquals(toMove, moved);
+
+		for (long docId = 1; docId <= 40; docId++) {
+			Assert.assertEquals(storer.getTargetContainer(docId), storer.getContainer(docId));
+			Assert.assertEquals("document " + docId, storer.getString(docId, "1.0"));
+			Assert.assertEquals("ment", new String(storer.getBytes(docId, "1.0", 4, 4)));
+			Assert.assertFalse(storer.rebalance(docId));
+		}
+
+		// The files can be moved, so they are read just through the streams
+		Assert.assertTrue(storer.exists(5L, "1.0"));
+		Assert.assertNull(storer.getFile(5L, "1.0"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		storer.writeToStream(5L, "1.0", out);
+		Assert.assertEquals("document 5", out.toString());
+		Assert.assertEquals(1, storer.listResources(5L, null).size());
+
+		storer.delete(5L);
+		Assert.assertFalse(storer.exists(5L, "1.0"));
+	}
+
+	@Test
+	public void testTargetRootStability() {
+		File root1 = new File(storer.getDir());
+		File root3 = new File("target/store3");
+		storer.getParameters().put("roots", root2.getPath() + "," + root3.getPath());
+		Assert.assertEquals(3, storer.getRoots().size());
+
+		File[] assigned = new File[1000];
+		for (int docId = 1; docId <= 1000; docId++)
+			assigned[docId - 1] = storer.getTargetRoot(docId);
+
+		// The order of the roots does not matter
+		storer.getParameters().put("roots", root3.getPath() + "," + root2.getPath());
+		for (int docId = 1; docId <= 1000; docId++)
+			Assert.assertEquals(assigned[docId - 1], storer.getTargetRoot(docId));
+
+		// Removing a root relocates only its documents
+		storer.getParameters().put("roots", root3.getPath());
+		int relocated = 0;
+		for (int docId = 1; docId <= 1000; docId++) {
+			File target = storer.getTargetRoot(docId);
+			if (assigned[docId - 1].equals(root2)) {
+				relocated++;
+				Assert.assertTrue(target.equals(root1) || target.equals(root3));
+			} else {
+				Assert.assertEquals(assigned[docId - 1], target);
+			}
+		}
+		Assert.assertTrue(relocated > 0);
+	}
+}
@@ -0,0 +1,186 @@
+package com.logicaldoc.core.transfer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.logicaldoc.util.io.FileUtil;
+
+/**
+ * Test case for <code>ChunkedUploadManager</code>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class ChunkedUploadManagerTest {
+
+	private static final int CHUNK_SIZE = ChunkedUploadManager.MIN_CHUNK_SIZE;
+
+	// Instance under test
+	private ChunkedUploadManager manager = ChunkedUploadManager.get();
+
+	private byte[] data = new byte[CHUNK_SIZE * 3 + 1000];
+
+	@Before
+	public void setUp() throws Exception {
+		File dir = new File("target/upload");
+		FileUtils.deleteQuietly(dir);
+		manager.setDir(dir);
+		new Random(1).nextBytes(data);
+	}
+
+	private long send(ChunkedUpload upload, int chunk) throws IOException {
+		byte[] content = Arrays.copyOfRange(data, chunk * CHUNK_SIZE,
+				Math.min(data.length, (chunk + 1) * CHUNK_SIZE));
+		return manager.writeChunk(upload.getId(), 1L, chunk, new ByteArrayInputStream(content),
+				FileUtil.computeDigest(new ByteArrayInputStream(content)));
+	}
+
+	@Test
+	public void testUpload() throws IOException {
+		ChunkedUpload upload = manager.start(1L, 1L, "test.bin", data.length, CHUNK_SIZE);
+		Assert.assertEquals(4, upload.getChunks());
+
+		// The chunks arrive out of order
+		Assert.assertEquals(CHUNK_SIZE, send(upload, 0));
+		Assert.assertEquals(CHUNK_SIZE, send(upload, 3));
+		Assert.assertEquals(CHUNK_SIZE, send(upload, 2));
+
+		// A corrupted chunk is rejected
+		try {
+			manager.writeChunk(upload.getId(), 1L, 1, new ByteArrayInputStream(new byte[CHUNK_SIZE]), "abc");
+			Assert.fail("Corrupted chunk accepted");
+		} catch (IOException e) {
+			// All ok
+		}
+
+		// The upload cannot be completed yet
+		try {
+			manager.complete(upload.getId(), 1L);
+			Assert.fail("Incomplete upload completed");
+		} catch (IOException e) {
+			// All ok
+		}
+
+		// Another user cannot see the upload
+		try {
+			manager.getUpload(upload.getId(), 2L);
+			Assert.fail("Upload of another user accessed");
+		} catch (IOException e) {
+			// All ok
+		}
+
+		Assert.assertEquals(data.length, send(upload, 1));
+		File file = manager.complete(upload.getId(), 1L).getFile();
+		Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(file)));
+
+		// While being stored the upload cannot be completed again
+		try {
+			manager.complete(upload.getId(), 1L);
+			Assert.fail("Upload completed twice");
+		} catch (IOException e) {
+			// All ok
+		}
+
+		// The storage failed, the upload can be completed again
+		manager.resume(upload);
+		Assert.assertEquals(file, manager.complete(upload.getId(), 1L).getFile());
+
+		manager.release(upload);
+		Assert.assertFalse(file.exists());
+		try {
+			manager.getUpload(upload.getId(), 1L);
+			Assert.fail("Released upload still available");
+		} catch (IOException e) {
+			// All ok
+		}
+	}
+
+	@Test
+	public void testResend() throws IOException {
+		ChunkedUpload upload = manager.start(1L, 1L, "test.bin", data.length, CHUNK_SIZE);
+		for (int chunk = 0; chunk < 3; chunk++)
+			send(upload, chunk);
+
+		// A bad copy of a chunk already received, both corrupted and short
+		byte[] bad = Arrays.copyOfRange(data, CHUNK_SIZE, 2 * CHUNK_SIZE);
+		String digest = FileUtil.computeDigest(new ByteArrayInputStream(bad));
+		bad[10] ^= 1;
+		try {
+			manager.writeChunk(upload.getId(), 1L, 1, new ByteArrayInputStream(bad), digest);
+			Assert.fail("Corrupted chunk accepted");
+		} catch (IOException e) {
+			// All ok
+		}
+		try {
+			manager.writeChunk(upload.getId(), 1L, 1, new ByteArrayInputStream(bad, 0, 100), digest);
+			Assert.fail("Short chunk accepted");
+		} catch (IOException e) {
+			// All ok
+		}
+		Assert.assertTrue(upload.isReceived(1));
+
+		send(upload, 3);
+		File file = manager.complete(upload.getId(), 1L).getFile();
+		Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(file)));
+
+		// A late chunk cannot change the file being stored
+		try {
+			send(upload, 2);
+			Assert.fail("Chunk accepted while storing the file");
+		} catch (IOException e) {
+			// All ok
+		}
+		Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(file)));
+		manager.release(upload);
+	}
+
+	@Test
+	public void testLimits() throws IOException {
+		// Without configuration the maximum size is 100MB
+		try {
+			manager.start(1L, 1L, "test.bin", 101L * 1024 * 1024, CHUNK_SIZE);
+			Assert.fail("Too big upload started");
+		} catch (IOException e) {
+			// All ok
+		}
+		Assert.assertTrue(ChunkedUploadManager.isAllowedForUpload("test.bin", "default"));
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		ChunkedUpload upload = manager.start(1L, 1L, "test.bin", data.length, CHUNK_SIZE);
+		send(upload, 0);
+		send(upload, 1);
+		send(upload, 3);
+
+		// Simulate a restart, the state is reloaded from the disk
+		manager.setDir(new File("target/upload"));
+		File dir = manager.getDir();
+		ChunkedUpload loaded = ChunkedUpload.load(upload.getId(), dir);
+		Assert.assertEquals(2 * CHUNK_SIZE, loaded.getOffset());
+		Assert.assertFalse(loaded.isReceived(2));
+		Assert.assertTrue(loaded.isReceived(3));
+
+		send(upload, 2);
+		Assert.assertTrue(manager.getUpload(upload.getId(), 1L).isComplete());
+
+		manager.cancel(upload.getId(), 1L);
+		Assert.assertFalse(upload.getFile().exists());
+		Assert.assertEquals(0, manager.getDir().list().length);
+		try {
+			manager.getUpload(upload.getId(), 1L);
+			Assert.fail("Cancelled upload still available");
+		} catch (IOException e) {
+			// All ok
+		}
+	}
+}
@@ -1,14 +1,18 @@
 package com.logicaldoc.core.util;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.Set;
 
 import junit.framework.Assert;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
 import com.logicaldoc.core.AbstractCoreTCase;
 import com.logicaldoc.core.communication.EMail;
+import com.logicaldoc.core.communication.EMailAttachment;
 import com.logicaldoc.core.communication.Recipient;
 
 /**
@@ -79,4 +83,42 @@ public class MailUtilTest extends AbstractCoreTCase {
 			Assert.assertTrue(mail.getMessageText().contains("Saludos"));
 		}
 	}
+
+	@Test
+	public void testMessageToMailSpool() throws Exception {
+		// The test configuration spools on disk the contents over 32KB
+		{
+			InputStream is = new FileInputStream("src/test/resources/kajima.eml");
+			EMail mail = null;
+			try {
+				mail = MailUtil.messageToMail(is, true);
+			} finally {
+				is.close();
+			}
+			Assert.assertEquals("Project Kajima - RFI", mail.getSubject());
+			Assert.assertEquals(3, mail.getAttachmentsCount());
+
+			EMailAttachment attachment = mail.getAttachment(1);
+			File file = attachment.getFile();
+			Assert.assertNotNull(file);
+			Assert.assertTrue(file.exists());
+			Assert.assertEquals(71663, file.length());
+			Assert.assertEquals(71663, attachment.getSize());
+			Assert.assertEquals(71663, IOUtils.toByteArray(attachment.getInputStream()).length);
+
+			mail.dispose();
+			Assert.assertFalse(file.exists());
+		}
+
+		{
+			// Without extraction the attachments are not read at all
+			EMail mail = MailUtil.messageToMail(new File("src/test/resources/kajima.eml"), false);
+			Assert.assertEquals(3, mail.getAttachmentsCount());
+			EMailAttachment attachment = mail.getAttachment(1);
+			Assert.assertNull(attachment.getData());
+			Assert.assertNull(attachment.getInputStream());
+			// The size is estimated from the encoded content
+			Assert.assertTrue(Math.abs(71663 - attachment.getSize()) < 71663 / 20);
+		}
+	}
 }
@@ -0,0 +1,37 @@
+package com.logicaldoc.gui.common.client.data;
+
+import com.smartgwt.client.data.DataSource;
+import com.smartgwt.client.data.fields.DataSourceFloatField;
+import com.smartgwt.client.data.fields.DataSourceIntegerField;
+import com.smartgwt.client.data.fields.DataSourceTextField;
+
+/**
+ * Datasource to retrieve the metrics collected by the server. It is based on
+ * Xml parsing.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class MetricsDS extends DataSource {
+
+	public MetricsDS() {
+		setTitleField("name");
+		setRecordXPath("/list/metric");
+
+		DataSourceTextField name = new DataSourceTextField("name");
+		name.setPrimaryKey(true);
+
+		DataSourceTextField type = new DataSourceTextField("type");
+		DataSourceIntegerField count = new DataSourceIntegerField("count");
+		DataSourceIntegerField errors = new DataSourceIntegerField("errors");
+		DataSourceFloatField mean = new DataSourceFloatField("mean");
+		DataSourceFloatField p50 = new DataSourceFloatField("p50");
+		DataSourceFloatField p95 = new DataSourceFloatField("p95");
+		DataSourceFloatField p99 = new DataSourceFloatField("p99");
+		DataSourceFloatField max = new DataSourceFloatField("max");
+
+		setFields(name, type, count, errors, mean, p50, p95, p99, max);
+		setDataURL("data/metrics.xml");
+		setClientOnly(true);
+	}
+}
@@ -141,6 +141,12 @@ public interface SystemService extends RemoteService {
 	 * Confirms the last update
 	 */
 	public void confirmUpdate() throws ServerException;
+
+	/**
+	 * Resets the metrics collected by the application, the user must have the
+	 * write permission on the administration menu
+	 */
+	public void resetMetrics() throws ServerException;
 	
 	public static class Instance {
 		private static SystemServiceAsync instance;
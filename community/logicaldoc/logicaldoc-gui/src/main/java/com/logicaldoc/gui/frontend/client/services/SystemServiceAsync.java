@@ -40,4 +40,6 @@ public interface SystemServiceAsync {
 	void getPlugins(AsyncCallback<GUIValue[]> callback);
 
 	void confirmUpdate(AsyncCallback<Void> callback);
+
+	void resetMetrics(AsyncCallback<Void> callback);
 }
\ No newline at end of file
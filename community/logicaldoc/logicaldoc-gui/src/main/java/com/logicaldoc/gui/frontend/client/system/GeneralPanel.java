@@ -28,6 +28,12 @@ public class GeneralPanel extends AdminPanel {
 		if (Menu.enabled(Menu.ADMIN_SESSIONS))
 			tabs.addTab(sessions);
 
+		Tab metrics = new Tab();
+		metrics.setTitle(I18N.message("metrics"));
+		metrics.setPane(new MetricsPanel());
+		if (Session.get().isDefaultTenant())
+			tabs.addTab(metrics);
+
 		Tab plugins = new Tab();
 		plugins.setTitle(I18N.message("plugins"));
 		plugins.setPane(new PluginsPanel());
@@ -0,0 +1,120 @@
+package com.logicaldoc.gui.frontend.client.system;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.logicaldoc.gui.common.client.data.MetricsDS;
+import com.logicaldoc.gui.common.client.i18n.I18N;
+import com.logicaldoc.gui.common.client.log.Log;
+import com.logicaldoc.gui.common.client.util.LD;
+import com.logicaldoc.gui.common.client.widgets.RefreshableListGrid;
+import com.logicaldoc.gui.frontend.client.services.SystemService;
+import com.smartgwt.client.types.ListGridFieldType;
+import com.smartgwt.client.types.SelectionStyle;
+import com.smartgwt.client.util.BooleanCallback;
+import com.smartgwt.client.widgets.events.ClickEvent;
+import com.smartgwt.client.widgets.events.ClickHandler;
+import com.smartgwt.client.widgets.grid.ListGridField;
+import com.smartgwt.client.widgets.layout.VLayout;
+import com.smartgwt.client.widgets.toolbar.ToolStrip;
+import com.smartgwt.client.widgets.toolbar.ToolStripButton;
+
+/**
+ * Displays the timers, histograms and counters collected by the server. The
+ * durations are expressed in milliseconds.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class MetricsPanel extends VLayout {
+
+	private RefreshableListGrid list;
+
+	public MetricsPanel() {
+		ToolStrip toolStrip = new ToolStrip();
+		toolStrip.setHeight(20);
+		toolStrip.setWidth100();
+		toolStrip.addSpacer(2);
+		ToolStripButton refresh = new ToolStripButton(I18N.message("refresh"));
+		toolStrip.addButton(refresh);
+		refresh.addClickHandler(new ClickHandler() {
+			@Override
+			public void onClick(ClickEvent event) {
+				list.refresh(new MetricsDS());
+			}
+		});
+		ToolStripButton reset = new ToolStripButton(I18N.message("reset"));
+		toolStrip.addButton(reset);
+		reset.addClickHandler(new ClickHandler() {
+			@Override
+			public void onClick(ClickEvent event) {
+				LD.ask(I18N.message("question"), I18N.message("confirmresetmetrics"), new BooleanCallback() {
+					@Override
+					public void execute(Boolean value) {
+						if (value)
+							SystemService.Instance.get().resetMetrics(new AsyncCallback<Void>() {
+								@Override
+								public void onFailure(Throwable caught) {
+									Log.serverError(caught);
+								}
+
+								@Override
+								public void onSuccess(Void result) {
+									list.refresh(new MetricsDS());
+								}
+							});
+					}
+				});
+			}
+		});
+		toolStrip.addFill();
+		addMember(toolStrip);
+	}
+
+	@Override
+	public void onDraw() {
+		ListGridField name = new ListGridField("name", I18N.message("name"), 220);
+		name.setCanFilter(true);
+
+		ListGridField type = new ListGridField("type", I18N.message("type"), 80);
+		type.setCanFilter(true);
+
+		ListGridField count = new ListGridField("count", I18N.message("count"), 80);
+		count.setType(ListGridFieldType.INTEGER);
+		count.setCanFilter(false);
+
+		ListGridField errors = new ListGridField("errors", I18N.message("errors"), 60);
+		errors.setType(ListGridFieldType.INTEGER);
+		errors.setCanFilter(false);
+
+		ListGridField mean = new ListGridField("mean", I18N.message("mean"), 80);
+		mean.setType(ListGridFieldType.FLOAT);
+		mean.setCanFilter(false);
+
+		ListGridField p50 = new ListGridField("p50", I18N.message("median"), 80);
+		p50.setType(ListGridFieldType.FLOAT);
+		p50.setCanFilter(false);
+
+		ListGridField p95 = new ListGridField("p95", I18N.message("percentile95"), 100);
+		p95.setType(ListGridFieldType.FLOAT);
+		p95.setCanFilter(false);
+
+		ListGridField p99 = new ListGridField("p99", I18N.message("percentile99"), 100);
+		p99.setType(ListGridFieldType.FLOAT);
+		p99.setCanFilter(false);
+
+		ListGridField max = new ListGridField("max", I18N.message("maximum"), 80);
+		max.setType(ListGridFieldType.FLOAT);
+		max.setCanFilter(false);
+
+		list = new RefreshableListGrid();
+		list.setEmptyMessage(I18N.message("notitemstoshow"));
+		list.setCanFreezeFields(true);
+		list.setAutoFetchData(true);
+		list.setShowFilterEditor(true);
+		list.setFilterOnKeypress(true);
+		list.setSelectionType(SelectionStyle.SINGLE);
+		list.setDataSource(new MetricsDS());
+		list.setFields(name, type, count, errors, mean, p50, p95, p99, max);
+
+		addMember(list);
+	}
+}
@@ -33,8 +33,10 @@ public class StatsPanel extends VLayout {
 
 			@Override
 			public void onSuccess(GUIParameter[][] parameters) {
-				Label lastUpdateLabel = new Label("<b>" + I18N.message("lastupdate") + ": "
-						+ parameters[3][0].getValue() + "</b>");
+				String text = I18N.message("lastupdate") + ": " + parameters[3][0].getValue();
+				if (parameters[3][1] != null && !"".equals(parameters[3][1].getValue()))
+					text = I18N.message("compressionratio") + ": " + parameters[3][1].getValue() + "% &nbsp; " + text;
+				Label lastUpdateLabel = new Label("<b>" + text + "</b>");
 				lastUpdateLabel.setHeight(30);
 				lastUpdateLabel.setAlign(Alignment.RIGHT);
 
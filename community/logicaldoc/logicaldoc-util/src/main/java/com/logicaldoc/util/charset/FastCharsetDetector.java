@@ -0,0 +1,141 @@
+package com.logicaldoc.util.charset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Detects the charset of a text resolving the obvious cases without the
+ * statistical analysis of the {@link CharsetDetector}: the byte order marks,
+ * the pure ASCII and the valid UTF-8 input are recognized scanning just the
+ * beginning of the text, the same portion examined by the
+ * {@link CharsetDetector}. All the recognizers of the {@link CharsetDetector}
+ * are evaluated only when the input is ambiguous.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class FastCharsetDetector {
+
+	/**
+	 * Number of bytes examined, the same of the {@link CharsetDetector}
+	 */
+	public static final int PREFIX_SIZE = 8000;
+
+	/**
+	 * Reported for pure ASCII input, like the {@link CharsetDetector} usually
+	 * does. Any ASCII compatible charset decodes the same text.
+	 */
+	static final String ASCII = "ISO-8859-1";
+
+	private FastCharsetDetector() {
+	}
+
+	/**
+	 * Detects the charset of a stream
+	 *
+	 * @param in The stream, it must support the mark and it is positioned
+	 *        back at the beginning
+	 * @return The name of the charset or null if it cannot be detected or it
+	 *         is not supported by the JVM
+	 */
+	public static String detect(InputStream in) throws IOException {
+		byte[] prefix = new byte[PREFIX_SIZE];
+		int length = 0;
+		in.mark(PREFIX_SIZE);
+		try {
+			int count;
+			while (length < PREFIX_SIZE && (count = in.read(prefix, length, PREFIX_SIZE - length)) > 0)
+				length += count;
+		} finally {
+			in.reset();
+		}
+
+		String charset = detectFast(prefix, length);
+		if (charset == null) {
+			// Ambiguous input, do the statistical analysis
+			byte[] input = prefix;
+			if (length < PREFIX_SIZE) {
+				input = new byte[length];
+				System.arraycopy(prefix, 0, input, 0, length);
+			}
+			CharsetMatch match = new CharsetDetector().setText(input).detect();
+			if (match != null)
+				charset = match.getName();
+		}
+
+		return charset != null && Charset.isSupported(charset) ? charset : null;
+	}
+
+	/**
+	 * Detects the charset looking just for byte order marks, pure ASCII and
+	 * valid UTF-8
+	 *
+	 * @param input The beginning of the text
+	 * @param length Number of valid bytes in <code>input</code>
+	 * @return The name of the charset or null if the input is ambiguous
+	 */
+	public static String detectFast(byte[] input, int length) {
+		if (length == 0)
+			return null;
+
+		String charset = detectBOM(input, length);
+		if (charset != null)
+			return charset;
+
+		int valid = 0;
+		for (int i = 0; i < length; i++) {
+			int b = input[i] & 0xFF;
+			if (b < 0x80) {
+				// NUL may be UTF-16/32 and ESC a ISO-2022 sequence
+				if (b == 0x00 || b == 0x1B)
+					return null;
+				continue;
+			}
+
+			int trailBytes;
+			if (b >= 0xC2 && b <= 0xDF)
+				trailBytes = 1;
+			else if (b >= 0xE0 && b <= 0xEF)
+				trailBytes = 2;
+			else if (b >= 0xF0 && b <= 0xF4)
+				trailBytes = 3;
+			else
+				return null;
+
+			for (; trailBytes > 0; trailBytes--) {
+				if (++i >= length) {
+					// Sequence truncated by the end of the prefix
+					return valid > 3 ? "UTF-8" : null;
+				}
+				if ((input[i] & 0xC0) != 0x80)
+					return null;
+			}
+			valid++;
+		}
+
+		if (valid == 0)
+			return ASCII;
+
+		/*
+		 * Few multi-byte sequences can be found also in other charsets, in this
+		 * case the statistical analysis decides
+		 */
+		return valid > 3 ? "UTF-8" : null;
+	}
+
+	private static String detectBOM(byte[] input, int length) {
+		int b0 = input[0] & 0xFF;
+		int b1 = length > 1 ? input[1] & 0xFF : -1;
+		int b2 = length > 2 ? input[2] & 0xFF : -1;
+		int b3 = length > 3 ? input[3] & 0xFF : -1;
+
+		if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF)
+			return "UTF-8";
+		if (b0 == 0xFE && b1 == 0xFF)
+			return "UTF-16BE";
+		if (b0 == 0xFF && b1 == 0xFE)
+			return b2 == 0x00 && b3 == 0x00 ? null : "UTF-16LE";
+		return null;
+	}
+}
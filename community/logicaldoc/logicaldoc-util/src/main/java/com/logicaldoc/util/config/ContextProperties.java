@@ -37,6 +37,12 @@ public class ContextProperties extends OrderedProperties {
 
 	protected int maxBackups = 1;
 
+	/**
+	 * Incremented at each change, used by the caches of the settings to
+	 * detect that they are stale
+	 */
+	private transient volatile long generation;
+
 	public ContextProperties(int maxBackups) throws IOException {
 		this();
 		this.maxBackups = maxBackups;
@@ -239,6 +245,33 @@ public class ContextProperties extends OrderedProperties {
 		return StrSubstitutor.replaceSystemProperties(getProperty(property, defaultValue));
 	}
 
+	@Override
+	public synchronized Object put(Object key, Object value) {
+		Object old = super.put(key, value);
+		generation++;
+		return old;
+	}
+
+	@Override
+	public synchronized Object remove(Object key) {
+		Object old = super.remove(key);
+		generation++;
+		return old;
+	}
+
+	@Override
+	public synchronized void clear() {
+		super.clear();
+		generation++;
+	}
+
+	/**
+	 * The number of changes made to these properties so far
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
 	public int getMaxBackups() {
 		return maxBackups;
 	}
@@ -0,0 +1,402 @@
+package com.logicaldoc.util.crypt;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Streaming authenticated encryption of files with AES-GCM. The plain content
+ * is split in chunks of fixed size, each one encrypted and authenticated on
+ * its own, so any range of a file can be decrypted reading just the chunks
+ * that contain it.<br>
+ * The encrypted file starts with a header made of a magic number, the chunk
+ * size and a random nonce prefix, followed by the chunks, each one being the
+ * cipher text of the plain chunk followed by the 16 bytes tag. The nonce of a
+ * chunk is the nonce prefix followed by the chunk's index, the header and a
+ * flag that marks the last chunk are authenticated as well, so chunks cannot
+ * be reordered, moved among files or truncated without being detected.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class StreamingAead {
+
+	public static final int DEFAULT_CHUNK_SIZE = 65536;
+
+	/**
+	 * The biggest chunk size accepted, also when read from the header of a
+	 * file
+	 */
+	public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+	private static final byte[] MAGIC = { 'L', 'D', 'A', 'E', 'A', 'D', 0, 1 };
+
+	private static final int PREFIX_LENGTH = 8;
+
+	public static final int HEADER_LENGTH = MAGIC.length + 4 + PREFIX_LENGTH;
+
+	public static final int TAG_LENGTH = 16;
+
+	private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+	private static final SecureRandom random = new SecureRandom();
+
+	private final SecretKey key;
+
+	private final int chunkSize;
+
+	/**
+	 * Constructor
+	 *
+	 * @param key The AES key, 16, 24 or 32 bytes long
+	 */
+	public StreamingAead(byte[] key) {
+		this(key, DEFAULT_CHUNK_SIZE);
+	}
+
+	public StreamingAead(byte[] key, int chunkSize) {
+		if (key == null || (key.length != 16 && key.length != 24 && key.length != 32))
+			throw new IllegalArgumentException("The key must be 16, 24 or 32 bytes long");
+		if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE)
+			throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+		this.key = new SecretKeySpec(key, "AES");
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Generates a new random key
+	 *
+	 * @param length The key length in bytes
+	 */
+	public static byte[] generateKey(int length) {
+		byte[] key = new byte[length];
+		random.nextBytes(key);
+		return key;
+	}
+
+	/**
+	 * Creates a stream that encrypts all the bytes written into
+	 * <code>out</code>, the last chunk is written when the stream is closed.
+	 */
+	public OutputStream encrypt(OutputStream out) throws IOException {
+		return new EncryptingOutputStream(out);
+	}
+
+	/**
+	 * Opens a stream that decrypts a range of an encrypted file, only the
+	 * chunks that contain the range are read.
+	 *
+	 * @param file The encrypted file
+	 * @param start Position of the first plain byte to read
+	 * @param length Number of plain bytes to read, a negative value means up
+	 *        to the end of the file
+	 */
+	public InputStream decrypt(File file, long start, long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return decrypt(raf, start, length);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a stream that decrypts a range of an already opened encrypted
+	 * file, the file is closed when the stream is closed.
+	 *
+	 * @see #decrypt(File, long, long)
+	 */
+	public InputStream decrypt(RandomAccessFile file, long start, long length) throws IOException {
+		file.seek(0);
+		return new DecryptingInputStream(file, start, length);
+	}
+
+	/**
+	 * Checks if a file starts with the header of the encrypted files
+	 */
+	public static boolean isEncrypted(File file) throws IOException {
+		if (!file.exists())
+			return false;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			return isEncrypted(raf);
+		}
+	}
+
+	/**
+	 * Checks if an already opened file starts with the header of the
+	 * encrypted files, the file pointer is moved at the beginning
+	 */
+	public static boolean isEncrypted(RandomAccessFile file) throws IOException {
+		if (file.length() < HEADER_LENGTH)
+			return false;
+		byte[] magic = new byte[MAGIC.length];
+		file.seek(0);
+		file.readFully(magic);
+		file.seek(0);
+		return Arrays.equals(magic, MAGIC);
+	}
+
+	/**
+	 * Computes the length of the plain content of an encrypted file
+	 *
+	 * @throws IOException If the length is not the one of an encrypted file,
+	 *         that is the file has been truncated
+	 */
+	public static long getPlainLength(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			return getPlainLength(raf);
+		}
+	}
+
+	/**
+	 * Computes the length of the plain content of an already opened encrypted
+	 * file
+	 *
+	 * @see #getPlainLength(File)
+	 */
+	public static long getPlainLength(RandomAccessFile file) throws IOException {
+		file.seek(MAGIC.length);
+		return plainLength(file.length(), checkChunkSize(file.readInt()));
+	}
+
+	/**
+	 * Checks a chunk size read from the header of a file, a tampered header
+	 * must not cause overflows or huge allocations
+	 */
+	private static int checkChunkSize(int chunkSize) throws IOException {
+		if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE)
+			throw new IOException("Invalid chunk size " + chunkSize);
+		return chunkSize;
+	}
+
+	static long plainLength(long encryptedLength, int chunkSize) throws IOException {
+		long body = encryptedLength - HEADER_LENGTH;
+		long chunks = body / (chunkSize + TAG_LENGTH);
+		long rest = body % (chunkSize + TAG_LENGTH);
+
+		/*
+		 * Even the empty content has its last chunk, so a file with less than
+		 * a tag after the header or after the last full chunk is truncated
+		 */
+		if (body < TAG_LENGTH || (rest > 0 && rest < TAG_LENGTH))
+			throw new IOException("Invalid length " + encryptedLength + ", the file has been truncated");
+		return chunks * chunkSize + (rest > 0 ? rest - TAG_LENGTH : 0);
+	}
+
+	private static byte[] nonce(byte[] header, long index) {
+		ByteBuffer nonce = ByteBuffer.allocate(12);
+		nonce.put(header, MAGIC.length + 4, PREFIX_LENGTH);
+		nonce.putInt((int) index);
+		return nonce.array();
+	}
+
+	private Cipher init(int mode, byte[] header, long index, boolean last) throws IOException {
+		try {
+			Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+			cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce(header, index)));
+			cipher.updateAAD(header);
+			cipher.updateAAD(new byte[] { (byte) (last ? 1 : 0) });
+			return cipher;
+		} catch (GeneralSecurityException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	private class EncryptingOutputStream extends FilterOutputStream {
+
+		private final byte[] header = new byte[HEADER_LENGTH];
+
+		private final byte[] buffer = new byte[chunkSize];
+
+		private int count = 0;
+
+		private long index = 0;
+
+		private boolean closed = false;
+
+		EncryptingOutputStream(OutputStream out) throws IOException {
+			super(out);
+			ByteBuffer buf = ByteBuffer.wrap(header);
+			buf.put(MAGIC);
+			buf.putInt(chunkSize);
+			byte[] prefix = new byte[PREFIX_LENGTH];
+			random.nextBytes(prefix);
+			buf.put(prefix);
+			out.write(header);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				// A full chunk is written only when more data arrives, so the
+				// last chunk is always known
+				if (count == chunkSize)
+					writeChunk(false);
+				int n = Math.min(len, chunkSize - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		private void writeChunk(boolean last) throws IOException {
+			if (index > 0xFFFFFFFFL)
+				throw new IOException("Too many chunks");
+			try {
+				out.write(init(Cipher.ENCRYPT_MODE, header, index, last).doFinal(buffer, 0, count));
+			} catch (GeneralSecurityException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+			index++;
+			count = 0;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed)
+				return;
+			closed = true;
+			try {
+				writeChunk(true);
+				out.flush();
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	private class DecryptingInputStream extends InputStream {
+
+		private final RandomAccessFile file;
+
+		private final FileChannel channel;
+
+		private final byte[] header = new byte[HEADER_LENGTH];
+
+		private final int fileChunkSize;
+
+		private final long fileLength;
+
+		private final long end;
+
+		private long position;
+
+		private byte[] chunk;
+
+		private long chunkIndex = -1;
+
+		DecryptingInputStream(RandomAccessFile file, long start, long length) throws IOException {
+			this.file = file;
+			this.channel = file.getChannel();
+			this.fileLength = channel.size();
+
+			file.readFully(header);
+			if (!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC))
+				throw new IOException("Not an encrypted file");
+			fileChunkSize = checkChunkSize(ByteBuffer.wrap(header, MAGIC.length, 4).getInt());
+
+			long plainLength;
+			try {
+				plainLength = plainLength(fileLength, fileChunkSize);
+			} catch (IOException e) {
+				throw new IOException("The file cannot be authenticated", e);
+			}
+
+			// The empty content has nothing to read, authenticate it now
+			if (plainLength == 0)
+				load(0);
+
+			this.position = Math.min(Math.max(start, 0), plainLength);
+			this.end = length < 0 ? plainLength : Math.min(plainLength, position + length);
+		}
+
+		private void load(long index) throws IOException {
+			if (index > 0xFFFFFFFFL)
+				throw new IOException("Too many chunks");
+			long offset = HEADER_LENGTH + index * (fileChunkSize + TAG_LENGTH);
+			int size = (int) Math.min(fileChunkSize + TAG_LENGTH, fileLength - offset);
+			ByteBuffer buf = ByteBuffer.allocate(size);
+			while (buf.hasRemaining())
+				if (channel.read(buf, offset + buf.position()) < 0)
+					throw new EOFException();
+
+			boolean last = offset + size == fileLength;
+			try {
+				chunk = init(Cipher.DECRYPT_MODE, header, index, last).doFinal(buf.array(), 0, size);
+			} catch (GeneralSecurityException e) {
+				throw new IOException("Chunk " + index + " cannot be authenticated", e);
+			}
+			chunkIndex = index;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int n = read(b, 0, 1);
+			return n < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (position >= end)
+				return -1;
+
+			long index = position / fileChunkSize;
+			if (index != chunkIndex)
+				load(index);
+
+			int inChunk = (int) (position % fileChunkSize);
+			int n = (int) Math.min(Math.min(len, chunk.length - inChunk), end - position);
+			System.arraycopy(chunk, inChunk, b, off, n);
+			position += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) {
+			long skipped = Math.max(0, Math.min(n, end - position));
+			position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			if (chunk == null || chunkIndex != position / fileChunkSize)
+				return 0;
+			return (int) Math.min(chunk.length - position % fileChunkSize, end - position);
+		}
+
+		@Override
+		public void close() throws IOException {
+			file.close();
+		}
+	}
+}
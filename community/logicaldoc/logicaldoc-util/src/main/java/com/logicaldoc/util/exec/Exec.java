@@ -5,8 +5,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -26,6 +30,69 @@ public class Exec {
 
 	protected static Logger log = LoggerFactory.getLogger(Exec.class);
 
+	/**
+	 * The process pools available to execute commands, the key is the pool
+	 * name
+	 */
+	private static Map<String, ProcessPool> pools = new ConcurrentHashMap<String, ProcessPool>();
+
+	/**
+	 * Registers a process pool that will be used by
+	 * {@link #exec(String, String, int)}
+	 */
+	public static void registerPool(ProcessPool pool) {
+		pools.put(pool.getName(), pool);
+	}
+
+	/**
+	 * Removes a process pool, it is not stopped
+	 */
+	public static ProcessPool unregisterPool(String name) {
+		return pools.remove(name);
+	}
+
+	public static ProcessPool getPool(String name) {
+		return pools.get(name);
+	}
+
+	/**
+	 * Executes the command in the given process pool, if the pool is not
+	 * available a new process is launched by
+	 * {@link #exec(String, String[], File, int)}. The command line is split in
+	 * arguments at the white spaces, like Runtime.exec() does.
+	 * 
+	 * @param pool Name of the process pool
+	 * @param commandLine The command line to process
+	 * @param timeout The timeout in seconds
+	 * 
+	 * @return The exit code
+	 */
+	public static int exec(String pool, String commandLine, int timeout) throws IOException {
+		List<String> command = new ArrayList<String>();
+		StringTokenizer st = new StringTokenizer(commandLine);
+		while (st.hasMoreTokens())
+			command.add(st.nextToken());
+		return exec(pool, command, timeout);
+	}
+
+	/**
+	 * Executes the command in the given process pool, if the pool is not
+	 * available a new process is launched by
+	 * {@link #exec(List, String[], File, int)}.
+	 * 
+	 * @param pool Name of the process pool
+	 * @param commandLine The command and its arguments
+	 * @param timeout The timeout in seconds
+	 * 
+	 * @return The exit code
+	 */
+	public static int exec(String pool, List<String> commandLine, int timeout) throws IOException {
+		ProcessPool processPool = pools.get(pool);
+		if (processPool == null)
+			return exec(commandLine, null, null, timeout);
+		return processPool.execute(commandLine, timeout);
+	}
+
 	public static boolean isWindows() {
 		boolean windows = System.getProperty("os.name").toLowerCase().indexOf("win") >= 0;
 		return windows;
@@ -0,0 +1,378 @@
+package com.logicaldoc.util.exec;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of long-lived POSIX shells used to run external commands without
+ * forking the JVM and starting new reader threads for each invocation. Each
+ * job is written to the standard input of an idle shell followed by a command
+ * that prints a unique marker and the exit code, the shell's output is read up
+ * to that marker.<br>
+ * Note that the pooled processes are the shells, not the launched programs:
+ * each command is still a new process forked by the shell, what is saved is
+ * the fork of the JVM and the reader threads, not the start-up of the
+ * programs themselves(keeping Ghostscript or ImageMagick resident is out of
+ * scope). Windows is not supported because cmd.exe cannot safely quote
+ * arbitrary arguments nor report the PID of the launched program.<br>
+ * Where <code>setsid</code> is available each command runs in its own process
+ * group, so a job that exceeds its timeout is killed together with the
+ * processes it spawned, then the worker is restarted. The same happens when a
+ * worker dies unexpectedly.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class ProcessPool {
+
+	protected static Logger log = LoggerFactory.getLogger(ProcessPool.class);
+
+	private static final String EOF = "\u0000EOF";
+
+	// Launches the commands in a new process group, null if not available
+	private static final String SETSID = findSetsid();
+
+	private final String name;
+
+	private final int size;
+
+	private BlockingQueue<PooledProcess> idle;
+
+	private volatile boolean closed = false;
+
+	private final AtomicLong counter = new AtomicLong(0);
+
+	// Statistics
+	private final AtomicLong jobs = new AtomicLong(0);
+
+	private final AtomicLong failures = new AtomicLong(0);
+
+	private final AtomicLong restarts = new AtomicLong(0);
+
+	private final AtomicLong queueTime = new AtomicLong(0);
+
+	private final AtomicLong execTime = new AtomicLong(0);
+
+	private volatile long started = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param name Name of the pool, used in the logs
+	 * @param size Number of worker processes
+	 */
+	public ProcessPool(String name, int size) {
+		this.name = name;
+		this.size = size;
+	}
+
+	/**
+	 * Launches the worker processes
+	 * 
+	 * @throws IOException If the shells cannot be started or the platform is
+	 *         Windows
+	 */
+	public synchronized void start() throws IOException {
+		if (Exec.isWindows())
+			throw new IOException("Process pools are not supported on Windows");
+		if (idle != null)
+			return;
+		closed = false;
+		started = System.currentTimeMillis();
+		idle = new LinkedBlockingQueue<PooledProcess>();
+		for (int i = 0; i < size; i++)
+			idle.add(new PooledProcess(name + "-" + i));
+		log.info("Started process pool {} with {} workers", name, size);
+	}
+
+	/**
+	 * Kills all the worker processes
+	 */
+	public synchronized void stop() {
+		closed = true;
+		if (idle == null)
+			return;
+		List<PooledProcess> workers = new ArrayList<PooledProcess>();
+		idle.drainTo(workers);
+		for (PooledProcess worker : workers)
+			worker.destroy();
+		idle = null;
+		log.info("Stopped process pool {}, {} jobs executed", name, jobs.get());
+	}
+
+	/**
+	 * Executes a command in one of the workers, waiting if all of them are
+	 * busy.
+	 *
+	 * @param command The command and its arguments
+	 * @param timeout Maximum execution time in seconds(&lt;=0 means no limit)
+	 *
+	 * @return The exit code of the command
+	 *
+	 * @throws IOException If the command timed out or the worker died
+	 */
+	public int execute(List<String> command, int timeout) throws IOException {
+		return execute(command, timeout, null);
+	}
+
+	/**
+	 * Executes a command in one of the workers, waiting if all of them are
+	 * busy.
+	 *
+	 * @param command The command and its arguments
+	 * @param timeout Maximum execution time in seconds(&lt;=0 means no limit)
+	 * @param output Optional writer that receives the output of the command
+	 *
+	 * @return The exit code of the command
+	 *
+	 * @throws IOException If the command timed out or the worker died
+	 */
+	public int execute(List<String> command, int timeout, Writer output) throws IOException {
+		BlockingQueue<PooledProcess> queue = idle;
+		if (closed || queue == null)
+			throw new IOException("Process pool " + name + " is not running");
+
+		long enqueued = System.currentTimeMillis();
+		PooledProcess worker = null;
+		try {
+			worker = queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a worker");
+		}
+		long begin = System.currentTimeMillis();
+		queueTime.addAndGet(begin - enqueued);
+
+		try {
+			if (!worker.isAlive())
+				worker = restart(worker);
+			int exit = worker.execute(command, timeout, output);
+			jobs.incrementAndGet();
+			return exit;
+		} catch (IOException e) {
+			failures.incrementAndGet();
+			worker = restart(worker);
+			throw e;
+		} finally {
+			execTime.addAndGet(System.currentTimeMillis() - begin);
+			if (closed)
+				worker.destroy();
+			else
+				queue.add(worker);
+		}
+	}
+
+	private PooledProcess restart(PooledProcess worker) throws IOException {
+		worker.destroy();
+		restarts.incrementAndGet();
+		log.warn("Restarting worker {} of process pool {}", worker.name, name);
+		return new PooledProcess(worker.name);
+	}
+
+	/**
+	 * Average number of jobs completed per second since the pool was started
+	 */
+	public double getJobsPerSecond() {
+		long elapsed = System.currentTimeMillis() - started;
+		if (started == 0 || elapsed <= 0)
+			return 0;
+		return jobs.get() * 1000D / elapsed;
+	}
+
+	/**
+	 * Average time in milliseconds a job waited for a free worker
+	 */
+	public long getAverageQueueLatency() {
+		long total = jobs.get() + failures.get();
+		return total > 0 ? queueTime.get() / total : 0;
+	}
+
+	/**
+	 * Average execution time of a job in milliseconds
+	 */
+	public long getAverageExecutionTime() {
+		long total = jobs.get() + failures.get();
+		return total > 0 ? execTime.get() / total : 0;
+	}
+
+	public long getJobs() {
+		return jobs.get();
+	}
+
+	public long getFailures() {
+		return failures.get();
+	}
+
+	public long getRestarts() {
+		return restarts.get();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	private static String findSetsid() {
+		for (String path : new String[] { "/usr/bin/setsid", "/bin/setsid" })
+			if (new File(path).canExecute())
+				return path;
+		return null;
+	}
+
+	/**
+	 * Quotes an argument for the shell, nothing is interpreted inside single
+	 * quotes
+	 */
+	protected static String quote(String arg) {
+		return "'" + arg.replace("'", "'\\''") + "'";
+	}
+
+	/**
+	 * A worker process, its output is read by a dedicated thread into a queue
+	 * of lines
+	 */
+	private class PooledProcess {
+		private final String name;
+
+		private final Process process;
+
+		private final Writer stdin;
+
+		private final BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+
+		PooledProcess(String name) throws IOException {
+			this.name = name;
+			ProcessBuilder pb = new ProcessBuilder("/bin/sh");
+			pb.redirectErrorStream(true);
+			process = pb.start();
+			stdin = new OutputStreamWriter(process.getOutputStream());
+
+			Thread reader = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()));
+						String line = null;
+						while ((line = br.readLine()) != null)
+							lines.add(line);
+					} catch (IOException e) {
+						// The process is dead
+					} finally {
+						lines.add(EOF);
+					}
+				}
+			}, "ProcessPool-" + name);
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		/**
+		 * Kills the command launched by the interpreter, and all its children
+		 * when it leads its own process group
+		 */
+		private void kill(String pid) {
+			if (pid == null)
+				return;
+			try {
+				if (SETSID != null)
+					new ProcessBuilder("kill", "-9", "--", "-" + pid).start().waitFor();
+				new ProcessBuilder("kill", "-9", pid).start().waitFor();
+			} catch (Throwable t) {
+				log.warn("Unable to kill process {}", pid);
+			}
+		}
+
+		boolean isAlive() {
+			return process.isAlive();
+		}
+
+		void destroy() {
+			try {
+				stdin.close();
+			} catch (Throwable t) {
+				// Nothing to do
+			}
+			process.destroyForcibly();
+		}
+
+		int execute(List<String> command, int timeout, Writer output) throws IOException {
+			String marker = "__JOB_" + counter.incrementAndGet() + "__";
+			lines.clear();
+
+			StringBuffer sb = new StringBuffer();
+			if (SETSID != null)
+				sb.append(quote(SETSID));
+			for (String arg : command) {
+				if (sb.length() > 0)
+					sb.append(" ");
+				sb.append(quote(arg));
+			}
+			// Run in background to know the PID of the command, needed to kill
+			// it in case of timeout
+			sb.append(" </dev/null &\necho " + marker + "PID $!\nwait $!\necho " + marker + " $?\n");
+
+			log.debug("Executing command in worker {}: {}", name, command);
+			stdin.write(sb.toString());
+			stdin.flush();
+
+			long deadline = timeout > 0 ? System.currentTimeMillis() + timeout * 1000L : Long.MAX_VALUE;
+			String pid = null;
+			while (true) {
+				String line = null;
+				try {
+					long wait = deadline - System.currentTimeMillis();
+					if (wait > 0)
+						line = lines.poll(wait, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					kill(pid);
+					throw new IOException("Interrupted command " + command);
+				}
+
+				if (line == null) {
+					kill(pid);
+					throw new IOException("Timeout command " + command);
+				}
+				if (EOF.equals(line)) {
+					kill(pid);
+					throw new IOException("Worker " + name + " died executing " + command);
+				}
+
+				int index = line.indexOf(marker);
+				if (index >= 0 && line.startsWith("PID", index + marker.length())) {
+					pid = line.substring(index + marker.length() + 3).trim();
+					continue;
+				} else if (index >= 0) {
+					try {
+						return Integer.parseInt(line.substring(index + marker.length()).trim());
+					} catch (NumberFormatException e) {
+						return 1;
+					}
+				}
+
+				if (output != null) {
+					output.write(line);
+					output.write("\n");
+				} else {
+					log.debug(line);
+				}
+			}
+		}
+	}
+}
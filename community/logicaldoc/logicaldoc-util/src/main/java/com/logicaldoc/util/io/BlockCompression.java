@@ -0,0 +1,368 @@
+package com.logicaldoc.util.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Block compression of files, each block of fixed size is deflated on its own
+ * so any range of the content can be read decompressing just the blocks that
+ * contain it.<br>
+ * The compressed file is made of:
+ * <ol>
+ * <li>a header with a magic number and the block size</li>
+ * <li>the blocks, each one preceded by its compressed length, a negative
+ * length marks a block stored as is because not compressible</li>
+ * <li>the index, the offset of each block in the file</li>
+ * <li>a trailer with the offset of the index, the length of the plain content
+ * and the number of blocks</li>
+ * </ol>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class BlockCompression {
+
+	public static final int DEFAULT_BLOCK_SIZE = 65536;
+
+	private static final byte[] MAGIC = { 'L', 'D', 'B', 'L', 'K', 'Z', 0, 1 };
+
+	public static final int HEADER_LENGTH = MAGIC.length + 4;
+
+	public static final int TRAILER_LENGTH = 20;
+
+	private BlockCompression() {
+	}
+
+	/**
+	 * Checks if the given header is the one of a compressed file
+	 */
+	public static boolean isCompressed(byte[] header) {
+		return header != null && header.length >= HEADER_LENGTH
+				&& Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC);
+	}
+
+	/**
+	 * Extracts the block size from the header of a compressed file
+	 */
+	public static int getBlockSize(byte[] header) {
+		return ByteBuffer.wrap(header, MAGIC.length, 4).getInt();
+	}
+
+	/**
+	 * Creates a stream that reads the compressed form of the given content
+	 *
+	 * @param in The plain content
+	 * @param blockSize Size of the plain blocks
+	 */
+	public static CompressingInputStream compress(InputStream in, int blockSize) {
+		return new CompressingInputStream(in, blockSize);
+	}
+
+	/**
+	 * Opens a stream that decompresses a range of a compressed file
+	 *
+	 * @param blocks The records of the blocks, starting from the one that
+	 *        contains the first byte of the range
+	 * @param blockSize Size of the plain blocks
+	 * @param skip Number of plain bytes to be skipped in the first block
+	 * @param length Number of plain bytes to read, a negative value means up
+	 *        to the end
+	 */
+	public static InputStream decompress(InputStream blocks, int blockSize, int skip, long length) {
+		return new DecompressingInputStream(blocks, blockSize, skip, length);
+	}
+
+	/**
+	 * The trailer of a compressed file
+	 */
+	public static class Trailer {
+		private final long indexOffset;
+
+		private final long plainLength;
+
+		private final int blockCount;
+
+		public Trailer(byte[] trailer) throws IOException {
+			if (trailer == null || trailer.length != TRAILER_LENGTH)
+				throw new IOException("Invalid trailer");
+			ByteBuffer buf = ByteBuffer.wrap(trailer);
+			indexOffset = buf.getLong();
+			plainLength = buf.getLong();
+			blockCount = buf.getInt();
+		}
+
+		/**
+		 * Position in the file of the index
+		 */
+		public long getIndexOffset() {
+			return indexOffset;
+		}
+
+		/**
+		 * Position in the index of the entry of the given block
+		 */
+		public long getIndexEntryOffset(long block) {
+			return indexOffset + block * 8;
+		}
+
+		public long getPlainLength() {
+			return plainLength;
+		}
+
+		public int getBlockCount() {
+			return blockCount;
+		}
+	}
+
+	/**
+	 * Reads an entry of the index, that is the offset of a block
+	 */
+	public static long readIndexEntry(byte[] entry) {
+		return ByteBuffer.wrap(entry).getLong();
+	}
+
+	/**
+	 * Compresses the content read from another stream, the length of the
+	 * plain and compressed contents are available once the whole stream has
+	 * been read.
+	 */
+	public static class CompressingInputStream extends InputStream {
+
+		private final InputStream in;
+
+		private final int blockSize;
+
+		private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+
+		private final byte[] plain;
+
+		private byte[] compressed;
+
+		private ByteBuffer output;
+
+		private long[] index = new long[16];
+
+		private int blocks = 0;
+
+		private long plainLength = 0;
+
+		private long length = 0;
+
+		private boolean eof = false;
+
+		private boolean finished = false;
+
+		CompressingInputStream(InputStream in, int blockSize) {
+			this.in = in;
+			this.blockSize = blockSize;
+			this.plain = new byte[blockSize];
+			this.compressed = new byte[blockSize + 4];
+			output = ByteBuffer.allocate(HEADER_LENGTH);
+			output.put(MAGIC);
+			output.putInt(blockSize);
+			output.flip();
+		}
+
+		/**
+		 * Prepares the next part of the output, that is a block or the
+		 * closing index and trailer
+		 */
+		private boolean fill() throws IOException {
+			if (finished)
+				return false;
+
+			int count = eof ? 0 : IOUtils.read(in, plain);
+			if (count < blockSize)
+				eof = true;
+
+			if (count > 0) {
+				if (blocks == index.length)
+					index = Arrays.copyOf(index, blocks * 2);
+				index[blocks++] = length;
+				plainLength += count;
+
+				deflater.reset();
+				deflater.setInput(plain, 0, count);
+				deflater.finish();
+				int size = 0;
+				while (!deflater.finished() && size < count)
+					size += deflater.deflate(compressed, 4 + size, compressed.length - 4 - size);
+
+				output = ByteBuffer.wrap(compressed);
+				if (deflater.finished() && size < count) {
+					output.putInt(size);
+				} else {
+					// Not compressible, keep the block as is
+					output.putInt(-count);
+					System.arraycopy(plain, 0, compressed, 4, count);
+					size = count;
+				}
+				output.position(0);
+				output.limit(4 + size);
+			} else {
+				ByteBuffer buf = ByteBuffer.allocate(blocks * 8 + TRAILER_LENGTH);
+				for (int i = 0; i < blocks; i++)
+					buf.putLong(index[i]);
+				buf.putLong(length);
+				buf.putLong(plainLength);
+				buf.putInt(blocks);
+				buf.flip();
+				output = buf;
+				finished = true;
+				deflater.end();
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int n = read(b, 0, 1);
+			return n < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			while (!output.hasRemaining())
+				if (!fill())
+					return -1;
+			int n = Math.min(len, output.remaining());
+			output.get(b, off, n);
+			length += n;
+			return n;
+		}
+
+		/**
+		 * Length of the plain content read so far
+		 */
+		public long getPlainLength() {
+			return plainLength;
+		}
+
+		/**
+		 * Length of the compressed content produced so far
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!finished)
+				deflater.end();
+			in.close();
+		}
+	}
+
+	private static class DecompressingInputStream extends InputStream {
+
+		private final InputStream in;
+
+		private final int blockSize;
+
+		private final Inflater inflater = new Inflater(true);
+
+		private byte[] record;
+
+		private final byte[] block;
+
+		private int position = 0;
+
+		private int limit = 0;
+
+		private int skip;
+
+		private long remaining;
+
+		DecompressingInputStream(InputStream in, int blockSize, int skip, long length) {
+			this.in = in;
+			this.blockSize = blockSize;
+			this.block = new byte[blockSize];
+			this.record = new byte[blockSize];
+			this.skip = skip;
+			this.remaining = length < 0 ? Long.MAX_VALUE : length;
+		}
+
+		private boolean load() throws IOException {
+			byte[] header = new byte[4];
+			int n = IOUtils.read(in, header);
+			if (n == 0)
+				return false;
+			if (n < 4)
+				throw new EOFException("Truncated block");
+
+			int size = ByteBuffer.wrap(header).getInt();
+			if (size < 0) {
+				limit = -size;
+				if (limit > blockSize)
+					throw new IOException("Invalid block length " + limit);
+				IOUtils.readFully(in, block, 0, limit);
+			} else {
+				if (record.length < size)
+					record = new byte[size];
+				IOUtils.readFully(in, record, 0, size);
+				inflater.reset();
+				inflater.setInput(record, 0, size);
+				try {
+					limit = 0;
+					while (!inflater.finished() && limit < blockSize) {
+						int count = inflater.inflate(block, limit, blockSize - limit);
+						if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+							throw new EOFException("Truncated block");
+						limit += count;
+					}
+				} catch (DataFormatException e) {
+					throw new IOException(e.getMessage(), e);
+				}
+			}
+
+			position = Math.min(skip, limit);
+			skip = 0;
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int n = read(b, 0, 1);
+			return n < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (remaining <= 0)
+				return -1;
+			while (position >= limit)
+				if (!load())
+					return -1;
+			int n = (int) Math.min(Math.min(len, limit - position), remaining);
+			System.arraycopy(block, position, b, off, n);
+			position += n;
+			remaining -= n;
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(limit - position, remaining);
+		}
+
+		@Override
+		public void close() throws IOException {
+			inflater.end();
+			in.close();
+		}
+	}
+}
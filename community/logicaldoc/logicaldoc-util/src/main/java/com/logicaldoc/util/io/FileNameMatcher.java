@@ -0,0 +1,178 @@
+package com.logicaldoc.util.io;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Compiled form of a list of includes and excludes expressions (eg.
+ * *.doc,*dummy*) used to select the files by name. In the expressions
+ * <b>*</b> stands for any sequence of characters and <b>?</b> for a single
+ * character, the comparison is case insensitive.<br>
+ * The expressions are compiled just once: those like <code>*.pdf</code>
+ * become a lookup of the file's extension, those with just a leading or
+ * trailing <b>*</b> a comparison of the suffix or prefix and all the others
+ * are merged in a single regular expression. Instances are immutable and can
+ * be shared between threads.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class FileNameMatcher {
+
+	private final Expressions includes;
+
+	private final Expressions excludes;
+
+	/**
+	 * Constructor
+	 *
+	 * @param includes comma-separated list of includes expressions
+	 * @param excludes comma-separated list of excludes expressions
+	 */
+	public FileNameMatcher(String includes, String excludes) {
+		this(split(includes), split(excludes));
+	}
+
+	public FileNameMatcher(String[] includes, String[] excludes) {
+		this.includes = new Expressions(includes);
+		this.excludes = new Expressions(excludes);
+	}
+
+	private static String[] split(String expressions) {
+		List<String> list = new ArrayList<String>();
+		if (StringUtils.isNotEmpty(expressions)) {
+			StringTokenizer st = new StringTokenizer(expressions, ",", false);
+			while (st.hasMoreTokens())
+				list.add(st.nextToken().trim());
+		}
+		return list.toArray(new String[0]);
+	}
+
+	/**
+	 * Check if a given filename matches the includes and not the excludes
+	 *
+	 * @param filename The filename to consider
+	 * @return true only if the passed filename matches the includes and not
+	 *         the excludes
+	 */
+	public boolean matches(String filename) {
+		// First of all check if the filename must be excluded
+		if (excludes.matches(filename))
+			return false;
+
+		// Then check if the filename can be included
+		return includes.isEmpty() || includes.matches(filename);
+	}
+
+	/**
+	 * A list of expressions grouped by the way they are evaluated
+	 */
+	private static class Expressions {
+
+		private boolean empty = true;
+
+		// True if there is a '*' that matches everything
+		private boolean any = false;
+
+		// All in lower case
+		private final Set<String> names = new HashSet<String>();
+
+		private final Set<String> extensions = new HashSet<String>();
+
+		private final List<String> suffixes = new ArrayList<String>();
+
+		private final List<String> prefixes = new ArrayList<String>();
+
+		private Pattern regex;
+
+		Expressions(String[] expressions) {
+			if (expressions == null)
+				return;
+
+			StringBuilder sb = new StringBuilder();
+			for (String expression : expressions) {
+				if (expression == null)
+					continue;
+				empty = false;
+
+				String lower = expression.toLowerCase(Locale.ENGLISH);
+				int wildcards = StringUtils.countMatches(expression, "*") + StringUtils.countMatches(expression, "?");
+				if (wildcards == 0) {
+					names.add(lower);
+				} else if ("*".equals(expression)) {
+					any = true;
+				} else if (wildcards == 1 && expression.startsWith("*")) {
+					String suffix = lower.substring(1);
+					if (suffix.startsWith(".") && suffix.indexOf('.', 1) < 0)
+						extensions.add(suffix.substring(1));
+					else
+						suffixes.add(suffix);
+				} else if (wildcards == 1 && expression.endsWith("*")) {
+					prefixes.add(lower.substring(0, lower.length() - 1));
+				} else {
+					if (sb.length() > 0)
+						sb.append('|');
+					sb.append("(?:");
+					appendRegex(expression, sb);
+					sb.append(')');
+				}
+			}
+
+			if (sb.length() > 0)
+				regex = Pattern.compile(sb.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
+						| Pattern.DOTALL);
+		}
+
+		private static void appendRegex(String expression, StringBuilder sb) {
+			StringBuilder literal = new StringBuilder();
+			for (char c : expression.toCharArray()) {
+				if (c == '*' || c == '?') {
+					if (literal.length() > 0) {
+						sb.append(Pattern.quote(literal.toString()));
+						literal.setLength(0);
+					}
+					sb.append(c == '*' ? ".*" : ".");
+				} else {
+					literal.append(c);
+				}
+			}
+			if (literal.length() > 0)
+				sb.append(Pattern.quote(literal.toString()));
+		}
+
+		boolean isEmpty() {
+			return empty;
+		}
+
+		boolean matches(String filename) {
+			if (empty || filename == null)
+				return false;
+			if (any)
+				return true;
+
+			String lower = filename.toLowerCase(Locale.ENGLISH);
+			if (!extensions.isEmpty()) {
+				int dot = lower.lastIndexOf('.');
+				if (dot >= 0 && extensions.contains(lower.substring(dot + 1)))
+					return true;
+			}
+			if (!names.isEmpty() && names.contains(lower))
+				return true;
+			for (String suffix : suffixes)
+				if (lower.endsWith(suffix))
+					return true;
+			for (String prefix : prefixes)
+				if (lower.startsWith(prefix))
+					return true;
+
+			return regex != null && regex.matcher(filename).matches();
+		}
+	}
+}
@@ -17,7 +17,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -25,10 +28,9 @@ import java.security.MessageDigest;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Locale;
-import java.util.StringTokenizer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -52,6 +54,10 @@ public class FileUtil {
 
 	protected static Logger log = LoggerFactory.getLogger(FileUtil.class);
 
+	private static final int MAX_MATCHERS = 200;
+
+	private static final Map<String, FileNameMatcher> matchers = new ConcurrentHashMap<String, FileNameMatcher>();
+
 	public static void writeFile(InputStream in, String filepath) throws Exception {
 		OutputStream os = null;
 		try {
@@ -422,24 +428,29 @@ public class FileUtil {
 	 *         excludes
 	 */
 	public static boolean matches(String filename, String includes, String excludes) {
-		List<String> inc = new ArrayList<String>();
-		List<String> exc = new ArrayList<String>();
-
-		StringTokenizer st;
-
-		if (StringUtils.isNotEmpty(excludes)) {
-			st = new StringTokenizer(excludes, ",", false);
-			while (st.hasMoreTokens())
-				exc.add(st.nextToken().trim());
-		}
+		return getMatcher(includes, excludes).matches(filename);
+	}
 
-		if (StringUtils.isNotEmpty(includes)) {
-			st = new StringTokenizer(includes, ",", false);
-			while (st.hasMoreTokens())
-				inc.add(st.nextToken().trim());
+	/**
+	 * Gets the compiled matcher of the given expressions, the matchers are
+	 * cached so each configuration is compiled just once
+	 * 
+	 * @param includes comma-separated list of includes expressions (eg.
+	 *        *.doc,*dummy*)
+	 * @param excludes comma-separated list of excludeses expressions (eg.
+	 *        *.doc,*dummy*)
+	 */
+	public static FileNameMatcher getMatcher(String includes, String excludes) {
+		String key = StringUtils.defaultString(includes) + "\u0000" + StringUtils.defaultString(excludes);
+		FileNameMatcher matcher = matchers.get(key);
+		if (matcher == null) {
+			// Protect from an unbounded growth in case of dynamic expressions
+			if (matchers.size() >= MAX_MATCHERS)
+				matchers.clear();
+			matcher = new FileNameMatcher(includes, excludes);
+			matchers.put(key, matcher);
 		}
-
-		return matches(filename, inc.toArray(new String[0]), exc.toArray(new String[0]));
+		return matcher;
 	}
 
 	public static void writeUTF8(String content, File file, boolean append) {
@@ -548,27 +559,75 @@ public class FileUtil {
 	 * @throws IOException If something fails at I/O level.
 	 */
 	public static void copy(RandomAccessFile input, OutputStream output, long start, long length) throws IOException {
-		byte[] buffer = new byte[BUFF_SIZE];
-		int read;
+		transfer(input.getChannel(), output, start, length);
+	}
 
-		if (input.length() == length) {
-			// Write full range.
-			while ((read = input.read(buffer)) > 0) {
-				output.write(buffer, 0, read);
+	/**
+	 * Transfers the given byte range of a file into the given output using
+	 * <code>FileChannel.transferTo</code>, so the bytes are moved by the
+	 * operating system without passing through heap buffers.
+	 *
+	 * @param file The file to read from
+	 * @param output The output to write the given range to
+	 * @param start Start of the byte range
+	 * @param length Length of the byte range, use a negative value to transfer
+	 *        up to the end of the file
+	 * @throws IOException If something fails at I/O level.
+	 */
+	public static void transfer(File file, OutputStream output, long start, long length) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		try {
+			transfer(input.getChannel(), output, start, length);
+		} finally {
+			try {
+				input.close();
+			} catch (Throwable e) {
 			}
-		} else {
-			// Write partial range.
-			input.seek(start);
-			long toRead = length;
-
-			while ((read = input.read(buffer)) > 0) {
-				if ((toRead -= read) > 0) {
-					output.write(buffer, 0, read);
-				} else {
-					output.write(buffer, 0, (int) toRead + read);
-					break;
-				}
+		}
+	}
+
+	/**
+	 * Transfers the given byte range of a channel into the given output using
+	 * <code>FileChannel.transferTo</code>. When the channel stops
+	 * transferring, the rest of the range is copied through a buffer.
+	 *
+	 * @param channel The channel to read from
+	 * @param output The output to write the given range to
+	 * @param start Start of the byte range
+	 * @param length Length of the byte range, use a negative value to transfer
+	 *        up to the end of the channel
+	 * @throws IOException If something fails at I/O level or the channel
+	 *         ends before the range.
+	 */
+	public static void transfer(FileChannel channel, OutputStream output, long start, long length) throws IOException {
+		long end = length < 0 ? channel.size() : Math.min(channel.size(), start + length);
+		WritableByteChannel target = Channels.newChannel(output);
+		long position = start;
+		while (position < end) {
+			long transferred = channel.transferTo(position, end - position, target);
+			if (transferred <= 0) {
+				copy(channel, output, position, end);
+				break;
 			}
+			position += transferred;
+		}
+		output.flush();
+	}
+
+	/**
+	 * Copies a byte range of a channel into the given output through a buffer
+	 */
+	private static void copy(FileChannel channel, OutputStream output, long start, long end) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate((int) Math.min(BUFF_SIZE, end - start));
+		long position = start;
+		while (position < end) {
+			buf.clear();
+			buf.limit((int) Math.min(buf.capacity(), end - position));
+			int read = channel.read(buf, position);
+			if (read < 0)
+				throw new IOException("Unexpected end of file at " + position + ", expected " + end + " bytes");
+			output.write(buf.array(), 0, read);
+			position += read;
 		}
 	}
 
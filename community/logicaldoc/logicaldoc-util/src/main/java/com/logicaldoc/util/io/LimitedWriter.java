@@ -0,0 +1,224 @@
+package com.logicaldoc.util.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.apache.commons.io.output.StringBuilderWriter;
+
+/**
+ * A writer that accepts up to a maximum number of characters, the exceeding
+ * text is silently discarded. Producers can check {@link #isFull()} to stop
+ * generating text as soon as the limit is reached. Once stopped the writer
+ * discards everything, so a producer still running in another thread cannot
+ * alter what has already been collected.<br>
+ * The append methods do not throw checked exceptions so this class can be
+ * used as a plain text buffer.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class LimitedWriter extends Writer {
+
+	private final Writer out;
+
+	private final long limit;
+
+	private long written = 0;
+
+	private boolean truncated = false;
+
+	private boolean stopped = false;
+
+	private boolean closed = false;
+
+	/**
+	 * Constructor that collects the text in memory
+	 *
+	 * @param limit Maximum number of characters(&lt;=0 means no limit)
+	 */
+	public LimitedWriter(long limit) {
+		this(new StringBuilderWriter(), limit);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param out The decorated writer
+	 * @param limit Maximum number of characters(&lt;=0 means no limit)
+	 */
+	public LimitedWriter(Writer out, long limit) {
+		this.out = out;
+		this.limit = limit > 0 ? limit : Long.MAX_VALUE;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) {
+		synchronized (lock) {
+			if (stopped || len <= 0)
+				return;
+			int count = (int) Math.min(len, limit - written);
+			if (count < len)
+				truncated = true;
+			if (count <= 0)
+				return;
+			try {
+				out.write(cbuf, off, count);
+			} catch (IOException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+			written += count;
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) {
+		synchronized (lock) {
+			if (stopped || len <= 0)
+				return;
+			int count = (int) Math.min(len, limit - written);
+			if (count < len)
+				truncated = true;
+			if (count <= 0)
+				return;
+			try {
+				out.write(str, off, count);
+			} catch (IOException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+			written += count;
+		}
+	}
+
+	@Override
+	public void write(String str) {
+		write(str, 0, str.length());
+	}
+
+	@Override
+	public void write(int c) {
+		write(new char[] { (char) c }, 0, 1);
+	}
+
+	@Override
+	public LimitedWriter append(CharSequence csq) {
+		String str = String.valueOf(csq);
+		write(str, 0, str.length());
+		return this;
+	}
+
+	@Override
+	public LimitedWriter append(CharSequence csq, int start, int end) {
+		return append(csq == null ? "null" : csq.subSequence(start, end));
+	}
+
+	@Override
+	public LimitedWriter append(char c) {
+		write(c);
+		return this;
+	}
+
+	public LimitedWriter append(char[] str, int off, int len) {
+		write(str, off, len);
+		return this;
+	}
+
+	/**
+	 * Copies the content of a reader until its end or until the limit is
+	 * reached. The reader is not closed.
+	 *
+	 * @param reader The source of text
+	 *
+	 * @return Number of characters read from the reader
+	 *
+	 * @throws IOException If the reader cannot be read
+	 */
+	public long copy(Reader reader) throws IOException {
+		char[] buffer = new char[8192];
+		long count = 0;
+		int n;
+		while (!isFull() && (n = reader.read(buffer)) != -1) {
+			write(buffer, 0, n);
+			count += n;
+		}
+		return count;
+	}
+
+	/**
+	 * Tells if no more text will be accepted because the limit has been
+	 * reached or the writer has been stopped
+	 */
+	public boolean isFull() {
+		synchronized (lock) {
+			return stopped || written >= limit;
+		}
+	}
+
+	/**
+	 * Tells if some text has been discarded due to the limit
+	 */
+	public boolean isTruncated() {
+		synchronized (lock) {
+			return truncated;
+		}
+	}
+
+	/**
+	 * Number of characters accepted so far
+	 */
+	public long getWritten() {
+		synchronized (lock) {
+			return written;
+		}
+	}
+
+	/**
+	 * Number of characters that can still be accepted
+	 */
+	public long getRemaining() {
+		synchronized (lock) {
+			return stopped ? 0 : limit - written;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		synchronized (lock) {
+			if (!closed)
+				out.flush();
+		}
+	}
+
+	/**
+	 * Stops accepting text without closing the decorated writer
+	 */
+	public void stop() {
+		synchronized (lock) {
+			stopped = true;
+		}
+	}
+
+	/**
+	 * Closes the writer, the decorated writer gets closed too
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (lock) {
+			if (closed)
+				return;
+			stopped = true;
+			closed = true;
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the collected text if the decorated writer is an in-memory one
+	 */
+	@Override
+	public String toString() {
+		synchronized (lock) {
+			return out.toString();
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.logicaldoc.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count of events
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class Counter {
+
+	private final LongAdder count = new LongAdder();
+
+	public void inc() {
+		count.increment();
+	}
+
+	public void inc(long n) {
+		count.add(n);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	void reset() {
+		count.reset();
+	}
+}
@@ -0,0 +1,131 @@
+package com.logicaldoc.util.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of values over a fixed set of buckets. The buckets are
+ * defined by their inclusive upper bounds, a last implicit bucket collects
+ * the values greater than the highest bound. Recording a value does not
+ * allocate nor lock so histograms can be updated in the hot paths.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class Histogram {
+
+	/**
+	 * Default bounds, suitable for sizes and counts
+	 */
+	public static final long[] DEFAULT_BOUNDS = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+			100000000L, 1000000000L };
+
+	private final long[] bounds;
+
+	private final LongAdder[] buckets;
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final AtomicLong max = new AtomicLong(0);
+
+	public Histogram() {
+		this(DEFAULT_BOUNDS);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param bounds Upper bounds of the buckets in ascending order
+	 */
+	public Histogram(long[] bounds) {
+		this.bounds = Arrays.copyOf(bounds, bounds.length);
+		Arrays.sort(this.bounds);
+		this.buckets = new LongAdder[bounds.length + 1];
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] = new LongAdder();
+	}
+
+	public void update(long value) {
+		int index = Arrays.binarySearch(bounds, value);
+		if (index < 0)
+			index = -index - 1;
+		buckets[index].increment();
+		count.increment();
+		sum.add(value);
+
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value))
+			current = max.get();
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = count.sum();
+		return n > 0 ? (double) sum.sum() / n : 0;
+	}
+
+	/**
+	 * Upper bounds of the buckets, the last bucket is unbounded
+	 */
+	public long[] getBounds() {
+		return Arrays.copyOf(bounds, bounds.length);
+	}
+
+	/**
+	 * Cumulative counts of the buckets, the element <i>i</i> is the number of
+	 * values lower or equal to the bound <i>i</i>, the last element is the
+	 * total.
+	 */
+	public long[] getCumulativeCounts() {
+		long[] counts = new long[buckets.length];
+		long total = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			total += buckets[i].sum();
+			counts[i] = total;
+		}
+		return counts;
+	}
+
+	/**
+	 * Estimates a percentile as the upper bound of the bucket that contains
+	 * it, the values falling in the last bucket are estimated with the
+	 * maximum.
+	 *
+	 * @param percentile The percentile in the range 0..1
+	 *
+	 * @return The estimated value
+	 */
+	public long getPercentile(double percentile) {
+		long[] counts = getCumulativeCounts();
+		long total = counts[counts.length - 1];
+		if (total == 0)
+			return 0;
+		long rank = (long) Math.ceil(percentile * total);
+		for (int i = 0; i < bounds.length; i++)
+			if (counts[i] >= rank)
+				return Math.min(bounds[i], getMax());
+		return getMax();
+	}
+
+	void reset() {
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+}
@@ -0,0 +1,174 @@
+package com.logicaldoc.util.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process registry of the metrics collected by the application: counters,
+ * histograms and timers identified by a dotted name like
+ * <code>storer.store</code>. The metrics are created at the first use and
+ * live until the JVM is stopped.<br>
+ * The whole registry can be exported in the Prometheus text format, where
+ * the names are prefixed by <code>logicaldoc_</code>, the dots are replaced
+ * by underscores and the timers are written as histograms in seconds.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class Metrics {
+
+	public static final String PREFIX = "logicaldoc_";
+
+	private static final Metrics instance = new Metrics();
+
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+
+	private Metrics() {
+	}
+
+	public static Metrics get() {
+		return instance;
+	}
+
+	/**
+	 * Gets or creates a counter
+	 */
+	public Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			counter = new Counter();
+			Counter existing = counters.putIfAbsent(name, counter);
+			if (existing != null)
+				counter = existing;
+		}
+		return counter;
+	}
+
+	/**
+	 * Gets or creates a histogram with the default buckets
+	 */
+	public Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			histogram = new Histogram();
+			Histogram existing = histograms.putIfAbsent(name, histogram);
+			if (existing != null)
+				histogram = existing;
+		}
+		return histogram;
+	}
+
+	/**
+	 * Gets or creates a timer
+	 */
+	public Timer timer(String name) {
+		Timer timer = timers.get(name);
+		if (timer == null) {
+			timer = new Timer();
+			Timer existing = timers.putIfAbsent(name, timer);
+			if (existing != null)
+				timer = existing;
+		}
+		return timer;
+	}
+
+	/**
+	 * The counters sorted by name
+	 */
+	public SortedMap<String, Counter> getCounters() {
+		return new TreeMap<String, Counter>(counters);
+	}
+
+	/**
+	 * The histograms sorted by name
+	 */
+	public SortedMap<String, Histogram> getHistograms() {
+		return new TreeMap<String, Histogram>(histograms);
+	}
+
+	/**
+	 * The timers sorted by name
+	 */
+	public SortedMap<String, Timer> getTimers() {
+		return new TreeMap<String, Timer>(timers);
+	}
+
+	/**
+	 * Clears all the collected values, the metrics remain registered
+	 */
+	public void reset() {
+		for (Counter counter : counters.values())
+			counter.reset();
+		for (Histogram histogram : histograms.values())
+			histogram.reset();
+		for (Timer timer : timers.values())
+			timer.reset();
+	}
+
+	/**
+	 * Writes all the metrics in the Prometheus text exposition format
+	 *
+	 * @param out The output
+	 *
+	 * @throws IOException If the output cannot be written
+	 */
+	public void write(Writer out) throws IOException {
+		for (Map.Entry<String, Counter> entry : getCounters().entrySet()) {
+			String name = toExternalName(entry.getKey()) + "_total";
+			out.write("# TYPE " + name + " counter\n");
+			out.write(name + " " + entry.getValue().getCount() + "\n");
+		}
+
+		for (Map.Entry<String, Histogram> entry : getHistograms().entrySet())
+			writeHistogram(out, toExternalName(entry.getKey()), entry.getValue(), 1D);
+
+		for (Map.Entry<String, Timer> entry : getTimers().entrySet()) {
+			String name = toExternalName(entry.getKey());
+			writeHistogram(out, name + "_seconds", entry.getValue().getHistogram(), 1000000D);
+
+			String errors = name + "_errors_total";
+			out.write("# TYPE " + errors + " counter\n");
+			out.write(errors + " " + entry.getValue().getErrors().getCount() + "\n");
+		}
+		out.flush();
+	}
+
+	private static void writeHistogram(Writer out, String name, Histogram histogram, double scale)
+			throws IOException {
+		long[] bounds = histogram.getBounds();
+		long[] counts = histogram.getCumulativeCounts();
+
+		out.write("# TYPE " + name + " histogram\n");
+		for (int i = 0; i < bounds.length; i++)
+			out.write(name + "_bucket{le=\"" + format(bounds[i] / scale) + "\"} " + counts[i] + "\n");
+		out.write(name + "_bucket{le=\"+Inf\"} " + counts[counts.length - 1] + "\n");
+		out.write(name + "_sum " + format(histogram.getSum() / scale) + "\n");
+		out.write(name + "_count " + counts[counts.length - 1] + "\n");
+	}
+
+	private static String format(double value) {
+		if (value == Math.rint(value))
+			return Long.toString((long) value);
+		return String.format(Locale.ENGLISH, "%.6f", value).replaceAll("0+$", "");
+	}
+
+	/**
+	 * Converts an internal name into a name valid for the external systems
+	 */
+	public static String toExternalName(String name) {
+		StringBuilder sb = new StringBuilder(PREFIX);
+		for (char c : name.toCharArray())
+			sb.append(Character.isLetterOrDigit(c) && c < 128 ? Character.toLowerCase(c) : '_');
+		return sb.toString();
+	}
+}
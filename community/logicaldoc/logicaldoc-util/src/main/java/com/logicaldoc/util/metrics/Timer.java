@@ -0,0 +1,103 @@
+package com.logicaldoc.util.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the duration of an operation, the durations are recorded in
+ * microseconds into a {@link Histogram} whose buckets range from 100
+ * microseconds to one minute. Typical usage:
+ *
+ * <pre>
+ * Timer.Context timer = Metrics.get().timer(&quot;storer.store&quot;).start();
+ * try {
+ * 	...
+ * } finally {
+ * 	timer.stop();
+ * }
+ * </pre>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class Timer {
+
+	static final long[] BOUNDS = { 100L, 500L, 1000L, 2500L, 5000L, 10000L, 25000L, 50000L, 100000L, 250000L,
+			500000L, 1000000L, 2500000L, 5000000L, 10000000L, 30000000L, 60000000L };
+
+	private final Histogram histogram = new Histogram(BOUNDS);
+
+	private final Counter errors = new Counter();
+
+	/**
+	 * Starts measuring an operation
+	 */
+	public Context start() {
+		return new Context(this);
+	}
+
+	/**
+	 * Records the duration of an operation
+	 */
+	public void update(long duration, TimeUnit unit) {
+		histogram.update(unit.toMicros(duration));
+	}
+
+	/**
+	 * The distribution of the durations in microseconds
+	 */
+	public Histogram getHistogram() {
+		return histogram;
+	}
+
+	/**
+	 * Number of operations that ended with an error
+	 */
+	public Counter getErrors() {
+		return errors;
+	}
+
+	public long getCount() {
+		return histogram.getCount();
+	}
+
+	void reset() {
+		histogram.reset();
+		errors.reset();
+	}
+
+	/**
+	 * A running measurement
+	 */
+	public static class Context {
+		private final Timer timer;
+
+		private final long start = System.nanoTime();
+
+		private boolean failed = false;
+
+		private Context(Timer timer) {
+			this.timer = timer;
+		}
+
+		/**
+		 * Marks the operation as failed, the error is counted when the
+		 * measurement is stopped
+		 */
+		public void error() {
+			failed = true;
+		}
+
+		/**
+		 * Stops the measurement and records it
+		 *
+		 * @return The elapsed time in nanoseconds
+		 */
+		public long stop() {
+			long elapsed = System.nanoTime() - start;
+			timer.update(elapsed, TimeUnit.NANOSECONDS);
+			if (failed)
+				timer.errors.inc();
+			return elapsed;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.logicaldoc.util.charset;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Test case for <code>FastCharsetDetector</code>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class FastCharsetDetectorTest {
+
+	private static final String ITALIAN = "Perché la città è più bella d'estate? Così è, se vi pare: l'università ha già aperto le iscrizioni. ";
+
+	private static final String RUSSIAN = "Съешь же ещё этих мягких французских булок, да выпей чаю. ";
+
+	@Test
+	public void testDetectFast() throws IOException {
+		byte[] input = "plain ascii text\r\n".getBytes("US-ASCII");
+		Assert.assertEquals(FastCharsetDetector.ASCII, FastCharsetDetector.detectFast(input, input.length));
+
+		input = ITALIAN.getBytes("UTF-8");
+		Assert.assertEquals("UTF-8", FastCharsetDetector.detectFast(input, input.length));
+
+		// A multi-byte sequence truncated by the end of the prefix
+		Assert.assertEquals("UTF-8", FastCharsetDetector.detectFast(input, ITALIAN.indexOf("ni. ") + 12));
+
+		input = concat(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }, "ascii".getBytes("UTF-8"));
+		Assert.assertEquals("UTF-8", FastCharsetDetector.detectFast(input, input.length));
+
+		input = concat(new byte[] { (byte) 0xFF, (byte) 0xFE }, ITALIAN.getBytes("UTF-16LE"));
+		Assert.assertEquals("UTF-16LE", FastCharsetDetector.detectFast(input, input.length));
+
+		input = concat(new byte[] { (byte) 0xFE, (byte) 0xFF }, ITALIAN.getBytes("UTF-16BE"));
+		Assert.assertEquals("UTF-16BE", FastCharsetDetector.detectFast(input, input.length));
+
+		// Ambiguous input
+		input = ITALIAN.getBytes("ISO-8859-1");
+		Assert.assertNull(FastCharsetDetector.detectFast(input, input.length));
+		input = RUSSIAN.getBytes("windows-1251");
+		Assert.assertNull(FastCharsetDetector.detectFast(input, input.length));
+		input = "città".getBytes("UTF-8");
+		Assert.assertNull(FastCharsetDetector.detectFast(input, input.length));
+		input = "plain ascii text".getBytes("UTF-16LE");
+		Assert.assertNull(FastCharsetDetector.detectFast(input, input.length));
+		Assert.assertNull(FastCharsetDetector.detectFast(new byte[0], 0));
+	}
+
+	@Test
+	public void testDetect() throws IOException {
+		// The texts in UTF-8 take the fast path, the others are analyzed
+		String[] charsets = new String[] { "UTF-8", "ISO-8859-1", "windows-1251", "KOI8-R", "Shift_JIS" };
+		String[] texts = new String[] { ITALIAN, ITALIAN, RUSSIAN, RUSSIAN, "これは日本語のテキストです。サーバーのインストールについて説明します。" };
+		for (int i = 0; i < charsets.length; i++) {
+			StringBuilder sb = new StringBuilder();
+			while (sb.length() < 10000)
+				sb.append(texts[i]);
+			byte[] content = sb.toString().getBytes(charsets[i]);
+
+			// Same result of the statistical analysis
+			CharsetMatch match = new CharsetDetector().setText(new BufferedInputStream(new ByteArrayInputStream(
+					content))).detect();
+			InputStream is = new BufferedInputStream(new ByteArrayInputStream(content));
+			Assert.assertEquals(match.getName(), FastCharsetDetector.detect(is));
+
+			// The stream is positioned back at the beginning
+			Assert.assertEquals(content[0], (byte) is.read());
+		}
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] c = new byte[a.length + b.length];
+		System.arraycopy(a, 0, c, 0, a.length);
+		System.arraycopy(b, 0, c, a.length, b.length);
+		return c;
+	}
+}
@@ -0,0 +1,185 @@
+package com.logicaldoc.util.crypt;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Test case for <code>StreamingAead</code>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class StreamingAeadTest {
+
+	private StreamingAead aead = new StreamingAead(StreamingAead.generateKey(16), 1000);
+
+	private File file = new File("target/aead.encrypted");
+
+	private byte[] write(int size) throws IOException {
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		OutputStream out = aead.encrypt(new FileOutputStream(file));
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+		return data;
+	}
+
+	private byte[] read(long start, long length) throws IOException {
+		InputStream is = aead.decrypt(file, start, length);
+		try {
+			return IOUtils.toByteArray(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	@Test
+	public void testRanges() throws IOException {
+		for (int size : new int[] { 0, 999, 1000, 3500 }) {
+			byte[] data = write(size);
+			Assert.assertTrue(StreamingAead.isEncrypted(file));
+			Assert.assertEquals(size, StreamingAead.getPlainLength(file));
+			Assert.assertTrue(Arrays.equals(data, read(0, -1)));
+
+			if (size > 2000) {
+				Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(data, 990, 2010), read(990, 1020)));
+				Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(data, 3000, size), read(3000, 10000)));
+			}
+		}
+	}
+
+	@Test
+	public void testTampering() throws IOException {
+		write(3500);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(1500);
+			int b = raf.read();
+			raf.seek(1500);
+			raf.write(b ^ 1);
+		} finally {
+			raf.close();
+		}
+
+		// The first chunk is still readable
+		Assert.assertEquals(500, read(0, 500).length);
+		try {
+			read(0, -1);
+			Assert.fail("Tampered chunk not detected");
+		} catch (IOException e) {
+			// All ok
+		}
+
+		// Truncate the file at the end of the second chunk
+		write(3500);
+		raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(StreamingAead.HEADER_LENGTH + 2 * (1000 + StreamingAead.TAG_LENGTH));
+		} finally {
+			raf.close();
+		}
+		try {
+			read(0, -1);
+			Assert.fail("Truncation not detected");
+		} catch (IOException e) {
+			// All ok
+		}
+
+		// Truncate the file inside the tag of the last chunk
+		truncate(3500, StreamingAead.HEADER_LENGTH + 3 * (1000 + StreamingAead.TAG_LENGTH) + 10);
+		try {
+			read(0, 100);
+			Assert.fail("Truncation not detected");
+		} catch (IOException e) {
+			// All ok
+		}
+	}
+
+	@Test
+	public void testHeaderOnly() throws IOException {
+		// A header without chunks looks like an empty content
+		truncate(3500, StreamingAead.HEADER_LENGTH);
+		Assert.assertTrue(StreamingAead.isEncrypted(file));
+		try {
+			StreamingAead.getPlainLength(file);
+			Assert.fail("Truncation not detected");
+		} catch (IOException e) {
+			// All ok
+		}
+		try {
+			read(0, -1);
+			Assert.fail("Truncation not detected");
+		} catch (IOException e) {
+			// All ok
+		}
+
+		// The empty content is authenticated too
+		write(0);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(file.length() - 1);
+			int b = raf.read();
+			raf.seek(file.length() - 1);
+			raf.write(b ^ 1);
+		} finally {
+			raf.close();
+		}
+		try {
+			read(0, -1);
+			Assert.fail("Tampered tag not detected");
+		} catch (IOException e) {
+			// All ok
+		}
+	}
+
+	@Test
+	public void testChunkSize() throws IOException {
+		// A tampered chunk size in the header is rejected before any read
+		for (int chunkSize : new int[] { 0, -1, Integer.MAX_VALUE, StreamingAead.MAX_CHUNK_SIZE + 1 }) {
+			write(3500);
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.seek(8);
+				raf.writeInt(chunkSize);
+			} finally {
+				raf.close();
+			}
+			try {
+				read(0, -1);
+				Assert.fail("Invalid chunk size " + chunkSize + " accepted");
+			} catch (IOException e) {
+				// All ok
+			}
+			try {
+				StreamingAead.getPlainLength(file);
+				Assert.fail("Invalid chunk size " + chunkSize + " accepted");
+			} catch (IOException e) {
+				// All ok
+			}
+		}
+	}
+
+	private void truncate(int size, long length) throws IOException {
+		write(size);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.logicaldoc.util.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcessPoolTest {
+
+	private ProcessPool pool;
+
+	@Before
+	public void setUp() throws Exception {
+		Assume.assumeTrue(!Exec.isWindows());
+		pool = new ProcessPool("test", 2);
+		pool.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (pool != null)
+			pool.stop();
+	}
+
+	@Test
+	public void testExecute() throws IOException {
+		StringWriter out = new StringWriter();
+		Assert.assertEquals(0, pool.execute(Arrays.asList("echo", "hello world"), 10, out));
+		Assert.assertEquals("hello world", out.toString().trim());
+
+		// Arguments are not interpreted by the shell
+		out = new StringWriter();
+		Assert.assertEquals(0, pool.execute(Arrays.asList("echo", "it's $HOME"), 10, out));
+		Assert.assertEquals("it's $HOME", out.toString().trim());
+
+		out = new StringWriter();
+		Assert.assertEquals(0, pool.execute(Arrays.asList("echo", "100% \"quoted\" `ls` ; |"), 10, out));
+		Assert.assertEquals("100% \"quoted\" `ls` ; |", out.toString().trim());
+
+		Assert.assertEquals(3, pool.execute(Arrays.asList("sh", "-c", "exit 3"), 10));
+		Assert.assertEquals(4, pool.getJobs());
+	}
+
+	@Test
+	public void testTimeout() throws IOException {
+		try {
+			pool.execute(Arrays.asList("sleep", "10"), 1);
+			Assert.fail("the command should time out");
+		} catch (IOException e) {
+			// All right
+		}
+		Assert.assertEquals(1, pool.getRestarts());
+
+		// The pool still works
+		Assert.assertEquals(0, pool.execute(Arrays.asList("true"), 10));
+		Assert.assertEquals(0, pool.execute(Arrays.asList("true"), 10));
+	}
+
+	@Test
+	public void testTimeoutKillsChildren() throws IOException, InterruptedException {
+		Assume.assumeTrue(new File("/proc").isDirectory());
+		File pidFile = File.createTempFile("pool", ".pid");
+		try {
+			try {
+				// The command spawns a child that outlives the timeout
+				pool.execute(Arrays.asList("sh", "-c", "sleep 30 & echo $! > " + pidFile.getPath() + "; wait"), 1);
+				Assert.fail("the command should time out");
+			} catch (IOException e) {
+				// All right
+			}
+
+			String pid = FileUtils.readFileToString(pidFile).trim();
+			Assert.assertFalse(pid.isEmpty());
+			Thread.sleep(200);
+			Assert.assertFalse("The child is still running", isRunning(pid));
+		} finally {
+			FileUtils.deleteQuietly(pidFile);
+		}
+	}
+
+	/**
+	 * Checks if a process is running, a killed process may remain a zombie
+	 * for a while
+	 */
+	private static boolean isRunning(String pid) throws IOException {
+		File stat = new File("/proc/" + pid + "/stat");
+		if (!stat.exists())
+			return false;
+		String content = FileUtils.readFileToString(stat);
+		return content.charAt(content.lastIndexOf(')') + 2) != 'Z';
+	}
+
+	@Test
+	public void testCrash() throws IOException {
+		try {
+			// Kill the interpreter
+			pool.execute(Arrays.asList("sh", "-c", "kill -9 $PPID"), 10);
+			Assert.fail("the worker should die");
+		} catch (IOException e) {
+			// All right
+		}
+		Assert.assertEquals(1, pool.getFailures());
+
+		Assert.assertEquals(0, pool.execute(Arrays.asList("true"), 10));
+		Assert.assertEquals(0, pool.execute(Arrays.asList("true"), 10));
+	}
+}
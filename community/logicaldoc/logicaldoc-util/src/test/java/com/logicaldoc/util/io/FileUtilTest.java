@@ -1,6 +1,15 @@
 package com.logicaldoc.util.io;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -22,5 +31,179 @@ public class FileUtilTest {
 	@Test
 	public void testMatch() throws IOException {
 		Assert.assertTrue(FileUtil.matches("ReleaseNotes.txt", "*.doc,*.txt", ""));
+		Assert.assertTrue(FileUtil.matches("ReleaseNotes.TXT", "*.doc,*.txt", ""));
+		Assert.assertFalse(FileUtil.matches("ReleaseNotes.txt", "*.doc,*.txt", "release*"));
+		Assert.assertTrue(FileUtil.matches("archive.tar.gz", "", "*.exe,*.bin"));
+		Assert.assertFalse(FileUtil.matches("setup.exe", null, "*.exe,*.bin"));
+		Assert.assertFalse(FileUtil.matches("ReleaseNotes.txt", "*.pdf", null));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testMatcher() throws IOException {
+		String[] expressions = { "*.pdf", "*.tar.gz", "*.", "*", "FA*", "????????", "*dummy*", "a?c.d*x",
+				"readme", "*[1].txt" };
+		String[] names = { "doc.pdf", "DOC.PDF", "pdf", ".pdf", "doc.pdf.bak", "a.tar.gz", "b.gz", "abc.",
+				"FA234156215", "fa234", "FT412574", "my_Dummy_file.doc", "abc.dxx", "ABC.Dx", "abc.d",
+				"README", "file[1].txt", "file1.txt", "", "a.b.c" };
+
+		// The compiled matcher must behave like the plain expressions
+		for (String expression : expressions) {
+			FileNameMatcher includes = new FileNameMatcher(expression, null);
+			FileNameMatcher excludes = new FileNameMatcher(null, expression);
+			for (String name : names) {
+				boolean expected = FileUtil.matches(name, new String[] { expression }, null);
+				Assert.assertEquals(expression + " on " + name, expected, includes.matches(name));
+				Assert.assertEquals(expression + " on " + name, !expected, excludes.matches(name));
+			}
+		}
+
+		FileNameMatcher matcher = FileUtil.getMatcher("*.pdf, *.doc,FA*", "*dummy*");
+		Assert.assertSame(matcher, FileUtil.getMatcher("*.pdf, *.doc,FA*", "*dummy*"));
+		Assert.assertTrue(matcher.matches("test.doc"));
+		Assert.assertTrue(matcher.matches("Fa.txt"));
+		Assert.assertFalse(matcher.matches("dummy.pdf"));
+		Assert.assertFalse(matcher.matches("test.txt"));
+	}
+
+	@Test
+	public void testTransfer() throws IOException {
+		File file = File.createTempFile("transfer", ".txt");
+		try {
+			FileUtil.writeFile("0123456789", file.getPath());
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			FileUtil.transfer(file, out, 0, -1);
+			Assert.assertEquals("0123456789", out.toString("UTF-8"));
+
+			out = new ByteArrayOutputStream();
+			FileUtil.transfer(file, out, 3, 4);
+			Assert.assertEquals("3456", out.toString("UTF-8"));
+
+			out = new ByteArrayOutputStream();
+			FileUtil.transfer(file, out, 8, 100);
+			Assert.assertEquals("89", out.toString("UTF-8"));
+		} finally {
+			FileUtil.strongDelete(file);
+		}
+	}
+
+	@Test
+	public void testTransferFallback() throws IOException {
+		File file = File.createTempFile("transfer", ".txt");
+		RandomAccessFile raf = null;
+		try {
+			FileUtil.writeFile("0123456789", file.getPath());
+			raf = new RandomAccessFile(file, "r");
+
+			// The channel transfers just the first bytes, the rest is copied
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			FileUtil.transfer(new StoppingChannel(raf.getChannel(), 3), out, 1, 8);
+			Assert.assertEquals("12345678", out.toString("UTF-8"));
+		} finally {
+			if (raf != null)
+				raf.close();
+			FileUtil.strongDelete(file);
+		}
+	}
+
+	/**
+	 * A channel that stops transferring after some bytes
+	 */
+	private static class StoppingChannel extends FileChannel {
+		private final FileChannel channel;
+
+		private long available;
+
+		StoppingChannel(FileChannel channel, long available) {
+			this.channel = channel;
+			this.available = available;
+		}
+
+		@Override
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+			long transferred = channel.transferTo(position, Math.min(count, available), target);
+			available -= transferred;
+			return transferred;
+		}
+
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			return channel.read(dst, position);
+		}
+
+		@Override
+		public long size() throws IOException {
+			return channel.size();
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long position() throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void force(boolean metaData) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public FileLock lock(long position, long size, boolean shared) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected void implCloseChannel() throws IOException {
+			// The wrapped channel is closed by the caller
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.logicaldoc.util.io;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Test case for {@link LimitedWriter}
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class LimitedWriterTest {
+
+	@Test
+	public void testLimit() {
+		LimitedWriter writer = new LimitedWriter(10);
+		writer.append("abcdef");
+		Assert.assertFalse(writer.isFull());
+		Assert.assertFalse(writer.isTruncated());
+		Assert.assertEquals(4, writer.getRemaining());
+
+		writer.append("ghijklmn").append('o');
+		Assert.assertEquals("abcdefghij", writer.toString());
+		Assert.assertEquals(10, writer.getWritten());
+		Assert.assertEquals(0, writer.getRemaining());
+		Assert.assertTrue(writer.isFull());
+		Assert.assertTrue(writer.isTruncated());
+	}
+
+	@Test
+	public void testUnlimited() {
+		LimitedWriter writer = new LimitedWriter(0);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10000; i++)
+			sb.append("text ");
+		writer.append(sb);
+		Assert.assertEquals(sb.length(), writer.getWritten());
+		Assert.assertFalse(writer.isFull());
+		Assert.assertFalse(writer.isTruncated());
+	}
+
+	@Test
+	public void testStop() {
+		LimitedWriter writer = new LimitedWriter(100);
+		writer.append("abc");
+		writer.stop();
+		Assert.assertTrue(writer.isFull());
+		Assert.assertEquals(0, writer.getRemaining());
+
+		// A producer still running cannot alter the text
+		writer.append("def");
+		Assert.assertEquals("abc", writer.toString());
+		Assert.assertFalse(writer.isTruncated());
+	}
+
+	@Test
+	public void testCopy() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 5000; i++)
+			sb.append("0123456789");
+
+		LimitedWriter writer = new LimitedWriter(20000);
+		long read = writer.copy(new StringReader(sb.toString()));
+		Assert.assertEquals(20000, writer.getWritten());
+		Assert.assertTrue(writer.isTruncated());
+
+		// The copy stops as soon as the limit is reached
+		Assert.assertTrue(read < sb.length());
+		Assert.assertEquals(sb.substring(0, 20000), writer.toString());
+
+		writer = new LimitedWriter(0);
+		Assert.assertEquals(sb.length(), writer.copy(new StringReader(sb.toString())));
+		Assert.assertEquals(sb.toString(), writer.toString());
+	}
+
+	@Test
+	public void testDecorated() throws IOException {
+		StringWriter out = new StringWriter();
+		LimitedWriter writer = new LimitedWriter(out, 5);
+		writer.write("abc".toCharArray(), 0, 3);
+		writer.write("defgh", 0, 5);
+		writer.close();
+		Assert.assertEquals("abcde", out.toString());
+
+		// Closed writers discard the text
+		writer.write("xyz");
+		Assert.assertEquals("abcde", out.toString());
+	}
+}
@@ -0,0 +1,76 @@
+package com.logicaldoc.util.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test case for <code>Metrics</code>
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class MetricsTest {
+
+	@Test
+	public void testHistogram() {
+		Histogram histogram = new Histogram(new long[] { 10, 100, 1000 });
+		for (int i = 1; i <= 100; i++)
+			histogram.update(i);
+		histogram.update(5000);
+
+		assertEquals(101, histogram.getCount());
+		assertEquals(5050 + 5000, histogram.getSum());
+		assertEquals(5000, histogram.getMax());
+		assertEquals(100, histogram.getPercentile(0.5));
+		assertEquals(10, histogram.getPercentile(0.05));
+		assertEquals(5000, histogram.getPercentile(1));
+
+		long[] counts = histogram.getCumulativeCounts();
+		assertEquals(4, counts.length);
+		assertEquals(10, counts[0]);
+		assertEquals(100, counts[1]);
+		assertEquals(100, counts[2]);
+		assertEquals(101, counts[3]);
+	}
+
+	@Test
+	public void testTimer() {
+		Timer timer = Metrics.get().timer("test.timer");
+		assertSame(timer, Metrics.get().timer("test.timer"));
+
+		timer.update(3, TimeUnit.MILLISECONDS);
+		Timer.Context context = timer.start();
+		context.error();
+		context.stop();
+
+		assertEquals(2, timer.getCount());
+		assertEquals(1, timer.getErrors().getCount());
+		assertTrue(timer.getHistogram().getMax() >= 3000);
+	}
+
+	@Test
+	public void testWrite() throws IOException {
+		Metrics.get().counter("test.counter").inc(3);
+		Metrics.get().timer("test.write").update(1500, TimeUnit.MICROSECONDS);
+
+		StringWriter out = new StringWriter();
+		Metrics.get().write(out);
+		String text = out.toString();
+
+		assertTrue(text.contains("# TYPE logicaldoc_test_counter_total counter\nlogicaldoc_test_counter_total 3\n"));
+		assertTrue(text.contains("# TYPE logicaldoc_test_write_seconds histogram\n"));
+		assertTrue(text.contains("logicaldoc_test_write_seconds_bucket{le=\"0.001\"} 0\n"));
+		assertTrue(text.contains("logicaldoc_test_write_seconds_bucket{le=\"0.0025\"} 1\n"));
+		assertTrue(text.contains("logicaldoc_test_write_seconds_bucket{le=\"+Inf\"} 1\n"));
+		assertTrue(text.contains("logicaldoc_test_write_seconds_sum 0.0015\n"));
+		assertTrue(text.contains("logicaldoc_test_write_seconds_count 1\n"));
+
+		Metrics.get().reset();
+		assertEquals(0, Metrics.get().counter("test.counter").getCount());
+	}
+}
@@ -89,24 +89,29 @@ public class DownloadAttachmentServlet extends HttpServlet {
 			is = storer.getStream(docId, resource);
 
 			EMail email = null;
-
-			if (doc.getFileName().toLowerCase().endsWith(".eml"))
-				email = MailUtil.messageToMail(is, true);
-			else
-				email = MailUtil.msgToMail(is, true);
-
-			EMailAttachment attachment = null;
-			if (email.getAttachments().size() > 0)
-				for (EMailAttachment att : email.getAttachments().values()) {
-					if (filename.equals(att.getFileName())) {
-						attachment = att;
-						break;
+			try {
+				if (doc.getFileName().toLowerCase().endsWith(".eml"))
+					email = MailUtil.messageToMail(is, true);
+				else
+					email = MailUtil.msgToMail(is, true);
+
+				EMailAttachment attachment = null;
+				if (email.getAttachments().size() > 0)
+					for (EMailAttachment att : email.getAttachments().values()) {
+						if (filename.equals(att.getFileName())) {
+							attachment = att;
+							break;
+						}
 					}
-				}
-			if (attachment == null || attachment.getData() == null)
-				throw new IOException("Attachment not found");
-
-			FileUtils.writeByteArrayToFile(tmp, attachment.getData());
+				InputStream content = attachment != null ? attachment.getInputStream() : null;
+				if (content == null)
+					throw new IOException("Attachment not found");
+
+				FileUtils.copyInputStreamToFile(content, tmp);
+			} finally {
+				if (email != null)
+					email.dispose();
+			}
 			ServletUtil.downloadFile(request, response, tmp, filename);
 		} catch (Throwable t) {
 			log.error(t.getMessage(), t);
@@ -0,0 +1,57 @@
+package com.logicaldoc.web;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.util.Context;
+import com.logicaldoc.util.metrics.Metrics;
+
+/**
+ * Exposes the metrics collected by the application in the Prometheus text
+ * format, to be scraped by a monitoring system. Only the addresses listed in
+ * the <b>metrics.allowed</b> config. property(by default the local host) are
+ * allowed to read the metrics.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class MetricsServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String DEFAULT_ALLOWED = "127.0.0.1,0:0:0:0:0:0:0:1,::1";
+
+	private static Logger log = LoggerFactory.getLogger(MetricsServlet.class);
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+			IOException {
+		String allowed = DEFAULT_ALLOWED;
+		try {
+			allowed = Context.get().getProperties().getProperty("metrics.allowed", DEFAULT_ALLOWED);
+		} catch (Throwable t) {
+			log.warn(t.getMessage());
+		}
+
+		List<String> addresses = Arrays.asList(allowed.replace(" ", "").split(","));
+		if (!addresses.contains(request.getRemoteAddr())) {
+			log.warn("Refused access to the metrics from {}", request.getRemoteAddr());
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+
+		response.setContentType("text/plain; version=0.0.4");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		Metrics.get().write(response.getWriter());
+	}
+}
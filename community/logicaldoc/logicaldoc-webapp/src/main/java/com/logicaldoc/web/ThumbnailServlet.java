@@ -1,7 +1,15 @@
 package com.logicaldoc.web;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -17,9 +25,11 @@ import com.logicaldoc.core.document.Version;
 import com.logicaldoc.core.document.dao.DocumentDAO;
 import com.logicaldoc.core.document.dao.VersionDAO;
 import com.logicaldoc.core.document.thumbnail.ThumbnailManager;
+import com.logicaldoc.core.document.thumbnail.ThumbnailRenderer;
 import com.logicaldoc.core.security.Session;
 import com.logicaldoc.core.security.User;
 import com.logicaldoc.core.store.Storer;
+import com.logicaldoc.core.util.DocUtil;
 import com.logicaldoc.util.Context;
 import com.logicaldoc.web.util.ServiceUtil;
 import com.logicaldoc.web.util.ServletUtil;
@@ -47,6 +57,11 @@ public class ThumbnailServlet extends HttpServlet {
 
 	protected static Logger log = LoggerFactory.getLogger(ThumbnailServlet.class);
 
+	/**
+	 * Placeholder images, the key is the size
+	 */
+	private static Map<Integer, byte[]> placeholders = new ConcurrentHashMap<Integer, byte[]>();
+
 	/**
 	 * Constructor of the object.
 	 */
@@ -102,8 +117,12 @@ public class ThumbnailServlet extends HttpServlet {
 
 			String resource = storer.getResourceName(docId, fileVersion, suffix);
 
-			// 2) prepare the thumbnail
-			createImageResource(session.getSid(), doc, fileVersion, resource);
+			// 2) if the image is not ready, schedule its rendering and answer
+			// with a placeholder
+			if (!createImageResource(session.getSid(), doc, fileVersion, resource)) {
+				sendPlaceholder(response, doc, suffix);
+				return;
+			}
 
 			// 3) return the the thumbnail resource
 			ServletUtil.downloadDocument(request, response, session.getSid(), docId, fileVersion,
@@ -115,40 +134,54 @@ public class ThumbnailServlet extends HttpServlet {
 	}
 
 	/**
-	 * Creates the image resource according to the specified format storing it
-	 * in the repository for future access.
+	 * Makes sure the image resource will be available in the repository. The
+	 * rendering is not executed in the current request but by the
+	 * {@link ThumbnailRenderer} that produces thumbnail and tile in background.
+	 * 
+	 * @return true if the resource is already available
 	 */
-	protected void createImageResource(String sid, Document doc, String fileVersion, String resource) {
+	protected boolean createImageResource(String sid, Document doc, String fileVersion, String resource) {
+		if (!resource.endsWith(ThumbnailManager.SUFFIX_THUMB) && !resource.endsWith(ThumbnailManager.SUFFIX_TILE))
+			return true;
+
 		Storer storer = (Storer) Context.get().getBean(Storer.class);
-		ThumbnailManager thumbManager = (ThumbnailManager) Context.get().getBean(ThumbnailManager.class);
-
-		// In any case try to produce the thumbnail
-		String thumbResource = storer.getResourceName(doc, fileVersion, "thumb.jpg");
-		if (storer.size(doc.getId(), thumbResource) <= 0) {
-			try {
-				thumbManager.createTumbnail(doc, fileVersion, sid);
-				log.debug("Created thumbnail " + resource);
-			} catch (Throwable t) {
-				log.error(t.getMessage(), t);
-			}
-		}
+		if (storer.size(doc.getId(), resource) > 0L)
+			return true;
 
-		if (resource.endsWith("thumb.jpg"))
-			return;
-
-		if (resource.endsWith("tile.jpg")) {
-			String tileResource = storer.getResourceName(doc, fileVersion, "tile.jpg");
-			if (storer.size(doc.getId(), tileResource) <= 0L) {
-				try {
-					thumbManager.createTile(doc, fileVersion, sid);
-					log.debug("Created tile " + resource);
-				} catch (Throwable t) {
-					log.error(t.getMessage(), t);
-				}
-			}
+		ThumbnailRenderer renderer = (ThumbnailRenderer) Context.get().getBean(ThumbnailRenderer.class);
+		if (renderer.request(doc, fileVersion, sid))
+			log.debug("Scheduled rendering of " + resource);
+		return false;
+	}
+
+	/**
+	 * Sends a blank image of the same size of the requested one, the browser
+	 * is told to not cache it so the real image is taken at the next access.
+	 */
+	protected void sendPlaceholder(HttpServletResponse response, Document doc, String suffix) throws IOException {
+		String type = suffix.endsWith(ThumbnailManager.SUFFIX_TILE) ? "tile" : "thumbnail";
+		int size = Context.get().getProperties()
+				.getInt(DocUtil.getTenantName(doc) + ".gui." + type + ".size", 150);
+
+		byte[] image = placeholders.get(size);
+		if (image == null) {
+			BufferedImage buf = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = buf.createGraphics();
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, size, size);
+			g.dispose();
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ImageIO.write(buf, "jpg", baos);
+			image = baos.toByteArray();
+			placeholders.put(size, image);
 		}
 
-		if (resource.endsWith("tile.jpg"))
-			return;
+		response.setContentType("image/jpeg");
+		response.setContentLength(image.length);
+		response.setHeader("Cache-Control", "no-cache,no-store,must-revalidate");
+		response.setHeader("Pragma", "no-cache");
+		response.setHeader("Retry-After", "2");
+		response.getOutputStream().write(image);
 	}
-}
\ No newline at end of file
+}
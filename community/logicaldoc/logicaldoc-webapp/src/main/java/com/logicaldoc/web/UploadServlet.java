@@ -29,12 +29,30 @@ import org.slf4j.LoggerFactory;
 import com.logicaldoc.core.security.Session;
 import com.logicaldoc.core.security.SessionManager;
 import com.logicaldoc.core.security.Tenant;
+import com.logicaldoc.core.transfer.ChunkedUpload;
+import com.logicaldoc.core.transfer.ChunkedUploadManager;
 import com.logicaldoc.util.Context;
+import com.logicaldoc.util.MimeType;
 import com.logicaldoc.util.config.ContextProperties;
 import com.logicaldoc.web.util.ServiceUtil;
 
 /**
- * This servlet is responsible for document uploads operations.
+ * This servlet is responsible for document uploads operations.<br>
+ * Big files can be sent with a resumable upload in chunks (see
+ * {@link ChunkedUploadManager}), the chunked requests are recognized by the
+ * <b>uploadId</b> parameter:
+ * <ul>
+ * <li>POST ?chunked=start&amp;filename=<i>name</i>&amp;size=<i>size</i>&amp;
+ * chunkSize=<i>size</i> starts the upload and returns its ID</li>
+ * <li>PUT ?uploadId=<i>id</i>&amp;chunk=<i>number</i>&amp;digest=<i>sha1</i>
+ * with the chunk in the body, returns the offset up to which all the chunks
+ * have been received</li>
+ * <li>GET ?uploadId=<i>id</i> returns the offset to resume the upload
+ * from</li>
+ * <li>POST ?uploadId=<i>id</i>&amp;chunked=commit adds the assembled file to
+ * the received files using the upload ID as field name</li>
+ * <li>DELETE ?uploadId=<i>id</i> cancels the upload</li>
+ * </ul>
  * 
  * @author Marco Meschieri - LogicalDOC
  * @since 6.0
@@ -49,6 +67,10 @@ public class UploadServlet extends UploadAction {
 
 	public static String RECEIVEDFILENAMES = "receivedFileNames";
 
+	private static final String UPLOADID = "uploadId";
+
+	private static final String CHUNKED = "chunked";
+
 	protected static Logger log = LoggerFactory.getLogger(UploadServlet.class);
 
 	/**
@@ -165,7 +187,114 @@ public class UploadServlet extends UploadAction {
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException,
 			ServletException {
 		setUploadMax();
-		super.doPost(request, response);
+		if (request.getParameter(CHUNKED) != null)
+			handleChunked(request, response);
+		else
+			super.doPost(request, response);
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException,
+			ServletException {
+		if (request.getParameter(UPLOADID) != null)
+			handleChunked(request, response);
+		else
+			super.doGet(request, response);
+	}
+
+	@Override
+	protected void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException,
+			ServletException {
+		handleChunked(request, response);
+	}
+
+	@Override
+	protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws IOException,
+			ServletException {
+		handleChunked(request, response);
+	}
+
+	/**
+	 * Serves the requests of a resumable upload
+	 */
+	private void handleChunked(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		Session sess = null;
+		try {
+			sess = ServiceUtil.validateSession(request);
+		} catch (Throwable t) {
+			response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+			return;
+		}
+
+		ChunkedUploadManager manager = ChunkedUploadManager.get();
+		String uploadId = request.getParameter(UPLOADID);
+		String result = null;
+
+		try {
+			if ("start".equals(request.getParameter(CHUNKED))) {
+				String filename = request.getParameter("filename");
+				long size = Long.parseLong(request.getParameter("size"));
+
+				// The manager checks the size and the file name
+				result = manager.start(sess.getTenantId(), sess.getUserId(), filename, size,
+						Integer.parseInt(request.getParameter("chunkSize"))).getId();
+			} else if ("commit".equals(request.getParameter(CHUNKED))) {
+				ChunkedUpload upload = manager.complete(uploadId, sess.getUserId());
+				register(request, uploadId, upload.getFile(), upload.getFileName());
+
+				// From now on the file belongs to the session
+				manager.detach(upload);
+				result = uploadId;
+			} else if ("PUT".equals(request.getMethod())) {
+				result = Long.toString(manager.writeChunk(uploadId, sess.getUserId(),
+						Integer.parseInt(request.getParameter("chunk")), request.getInputStream(),
+						request.getParameter("digest")));
+			} else if ("DELETE".equals(request.getMethod())) {
+				manager.cancel(uploadId, sess.getUserId());
+				result = uploadId;
+			} else {
+				result = Long.toString(manager.getUpload(uploadId, sess.getUserId()).getOffset());
+			}
+		} catch (Throwable t) {
+			log.warn(t.getMessage());
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, t.getMessage());
+			return;
+		}
+
+		response.setContentType("text/plain");
+		response.setCharacterEncoding("UTF-8");
+		response.getWriter().write(result);
+	}
+
+	/**
+	 * Adds a file to the ones received in the current session
+	 */
+	@SuppressWarnings("unchecked")
+	private static void register(HttpServletRequest request, String fieldName, File file, String fileName) {
+		HttpSession session = SessionManager.get().getServletSession(SessionManager.get().getSessionId(request));
+		if (session == null)
+			session = request.getSession();
+
+		Map<String, File> receivedFiles = (Map<String, File>) session.getAttribute(RECEIVEDFILES);
+		if (receivedFiles == null) {
+			receivedFiles = new Hashtable<String, File>();
+			session.setAttribute(RECEIVEDFILES, receivedFiles);
+		}
+		receivedFiles.put(fieldName, file);
+
+		Map<String, String> receivedContentTypes = (Map<String, String>) session.getAttribute(RECEIVEDCONTENTTYPES);
+		if (receivedContentTypes == null) {
+			receivedContentTypes = new Hashtable<String, String>();
+			session.setAttribute(RECEIVEDCONTENTTYPES, receivedContentTypes);
+		}
+		receivedContentTypes.put(fieldName, MimeType.getByFilename(fileName));
+
+		Map<String, String> receivedFileNames = (Map<String, String>) session.getAttribute(RECEIVEDFILENAMES);
+		if (receivedFileNames == null) {
+			receivedFileNames = new Hashtable<String, String>();
+			session.setAttribute(RECEIVEDFILENAMES, receivedFileNames);
+		}
+		receivedFileNames.put(fieldName, fileName);
 	}
 
 	@Override
@@ -287,25 +416,7 @@ public class UploadServlet extends UploadAction {
 	 * configured in 'upload.disallow'.
 	 */
 	public static boolean isAllowedForUpload(String filename, String tenant) {
-		ContextProperties config = Context.get().getProperties();
-		String disallow = config.getProperty(tenant + ".upload.disallow");
-
-		if (disallow == null || disallow.trim().isEmpty())
-			return true;
-
-		// Extract and normalize the extensions
-		String[] disallowedExtensions = disallow.split(",");
-		for (int i = 0; i < disallowedExtensions.length; i++) {
-			disallowedExtensions[i] = disallowedExtensions[i].toLowerCase().trim();
-			if (!disallowedExtensions[i].startsWith("."))
-				disallowedExtensions[i] = "." + disallowedExtensions[i];
-		}
-
-		for (int i = 0; i < disallowedExtensions.length; i++)
-			if (filename.toLowerCase().endsWith(disallowedExtensions[i]))
-				return false;
-
-		return true;
+		return ChunkedUploadManager.isAllowedForUpload(filename, tenant);
 	}
 
 	public static void cleanReceivedFiles(String sid) {
@@ -313,10 +424,17 @@ public class UploadServlet extends UploadAction {
 		cleanReceivedFiles(session);
 	}
 
+	@SuppressWarnings("unchecked")
 	public static void cleanReceivedFiles(HttpSession session) {
 		if (session == null)
 			return;
 		try {
+			// The files of the chunked uploads are not in the upload folder
+			Map<String, File> receivedFiles = (Map<String, File>) session.getAttribute(RECEIVEDFILES);
+			if (receivedFiles != null)
+				for (File file : receivedFiles.values())
+					FileUtils.deleteQuietly(file);
+
 			session.setAttribute(RECEIVEDFILES, new Hashtable<String, File>());
 			session.setAttribute(RECEIVEDCONTENTTYPES, new Hashtable<String, String>());
 			session.setAttribute(RECEIVEDFILENAMES, new HashMap<String, String>());
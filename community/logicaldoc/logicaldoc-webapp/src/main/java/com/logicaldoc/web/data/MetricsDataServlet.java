@@ -0,0 +1,112 @@
+package com.logicaldoc.web.data;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.logicaldoc.core.security.Menu;
+import com.logicaldoc.core.security.Session;
+import com.logicaldoc.core.security.dao.MenuDAO;
+import com.logicaldoc.util.Context;
+import com.logicaldoc.util.metrics.Counter;
+import com.logicaldoc.util.metrics.Histogram;
+import com.logicaldoc.util.metrics.Metrics;
+import com.logicaldoc.util.metrics.Timer;
+import com.logicaldoc.web.util.ServiceUtil;
+
+/**
+ * This servlet is responsible for the metrics collected by the application,
+ * the durations are expressed in milliseconds. It is read-only, the metrics
+ * are reset through the system service.
+ *
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class MetricsDataServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	private static Logger log = LoggerFactory.getLogger(MetricsDataServlet.class);
+
+	@Override
+	protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+			IOException {
+		try {
+			Session session = ServiceUtil.validateSession(request);
+
+			MenuDAO mDao = (MenuDAO) Context.get().getBean(MenuDAO.class);
+			if (!mDao.isReadEnable(Menu.ADMINISTRATION, session.getUserId()))
+				throw new Exception("User " + session.getUsername() + " doesn't have permission to access the metrics");
+
+			response.setContentType("text/xml");
+			response.setCharacterEncoding("UTF-8");
+
+			// Headers required by Internet Explorer
+			response.setHeader("Pragma", "public");
+			response.setHeader("Cache-Control", "must-revalidate, post-check=0,pre-check=0");
+			response.setHeader("Expires", "0");
+
+			PrintWriter writer = response.getWriter();
+			writer.write("<list>");
+
+			for (Map.Entry<String, Timer> entry : Metrics.get().getTimers().entrySet()) {
+				Histogram histogram = entry.getValue().getHistogram();
+				writer.print("<metric>");
+				writer.print("<name><![CDATA[" + entry.getKey() + "]]></name>");
+				writer.print("<type>timer</type>");
+				writer.print("<count>" + histogram.getCount() + "</count>");
+				writer.print("<errors>" + entry.getValue().getErrors().getCount() + "</errors>");
+				writer.print("<mean>" + toMillis(Math.round(histogram.getMean())) + "</mean>");
+				writer.print("<p50>" + toMillis(histogram.getPercentile(0.5)) + "</p50>");
+				writer.print("<p95>" + toMillis(histogram.getPercentile(0.95)) + "</p95>");
+				writer.print("<p99>" + toMillis(histogram.getPercentile(0.99)) + "</p99>");
+				writer.print("<max>" + toMillis(histogram.getMax()) + "</max>");
+				writer.print("</metric>");
+			}
+
+			for (Map.Entry<String, Histogram> entry : Metrics.get().getHistograms().entrySet()) {
+				Histogram histogram = entry.getValue();
+				writer.print("<metric>");
+				writer.print("<name><![CDATA[" + entry.getKey() + "]]></name>");
+				writer.print("<type>histogram</type>");
+				writer.print("<count>" + histogram.getCount() + "</count>");
+				writer.print("<mean>" + Math.round(histogram.getMean()) + "</mean>");
+				writer.print("<p50>" + histogram.getPercentile(0.5) + "</p50>");
+				writer.print("<p95>" + histogram.getPercentile(0.95) + "</p95>");
+				writer.print("<p99>" + histogram.getPercentile(0.99) + "</p99>");
+				writer.print("<max>" + histogram.getMax() + "</max>");
+				writer.print("</metric>");
+			}
+
+			for (Map.Entry<String, Counter> entry : Metrics.get().getCounters().entrySet()) {
+				writer.print("<metric>");
+				writer.print("<name><![CDATA[" + entry.getKey() + "]]></name>");
+				writer.print("<type>counter</type>");
+				writer.print("<count>" + entry.getValue().getCount() + "</count>");
+				writer.print("</metric>");
+			}
+
+			writer.write("</list>");
+		} catch (Throwable e) {
+			log.error(e.getMessage(), e);
+			if (e instanceof ServletException)
+				throw (ServletException) e;
+			else if (e instanceof IOException)
+				throw (IOException) e;
+			else
+				throw new ServletException(e.getMessage(), e);
+		}
+	}
+
+	private static double toMillis(long micros) {
+		return Math.round(micros / 10D) / 100D;
+	}
+}
@@ -315,7 +315,7 @@ public class DocumentServiceImpl extends RemoteServiceServlet implements Documen
 							log.info("Notify the creation of new documents {} to {}", docs.toString(), mail
 									.getRecipients().toString());
 							EMailSender sender = new EMailSender(session.getTenantName());
-							sender.send(mail);
+							sender.sendBatched(mail);
 						}
 					} catch (Throwable e) {
 						log.warn(e.getMessage(), e);
@@ -2121,19 +2121,24 @@ public class DocumentServiceImpl extends RemoteServiceServlet implements Documen
 			String resource = storer.getResourceName(docId, fileVersion, null);
 			is = storer.getStream(docId, resource);
 
-			EMail email = MailUtil.messageToMail(is, false);
+			EMail email = MailUtil.messageToMail(is, true);
 			EMailAttachment attachment = null;
-			if (email.getAttachments().size() > 0)
-				for (EMailAttachment att : email.getAttachments().values()) {
-					if (attachmentFileName.equals(att.getFileName())) {
-						attachment = att;
-						break;
+			try {
+				if (email.getAttachments().size() > 0)
+					for (EMailAttachment att : email.getAttachments().values()) {
+						if (attachmentFileName.equals(att.getFileName())) {
+							attachment = att;
+							break;
+						}
 					}
-				}
-			if (attachment == null)
-				throw new IOException("Attachment not found");
+				InputStream content = attachment != null ? attachment.getInputStream() : null;
+				if (content == null)
+					throw new IOException("Attachment not found");
 
-			FileUtils.writeByteArrayToFile(tmp, attachment.getData());
+				FileUtils.copyInputStreamToFile(content, tmp);
+			} finally {
+				email.dispose();
+			}
 			DocumentManager manager = (DocumentManager) Context.get().getBean(DocumentManager.class);
 			FolderDAO fDao = (FolderDAO) Context.get().getBean(FolderDAO.class);
 
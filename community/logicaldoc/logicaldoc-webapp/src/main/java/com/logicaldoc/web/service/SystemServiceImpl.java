@@ -29,11 +29,14 @@ import com.logicaldoc.core.generic.Generic;
 import com.logicaldoc.core.generic.GenericDAO;
 import com.logicaldoc.core.rss.FeedMessage;
 import com.logicaldoc.core.rss.dao.FeedMessageDAO;
+import com.logicaldoc.core.security.Menu;
 import com.logicaldoc.core.security.Session;
 import com.logicaldoc.core.security.Tenant;
 import com.logicaldoc.core.security.User;
+import com.logicaldoc.core.security.dao.MenuDAO;
 import com.logicaldoc.core.security.dao.UserDAO;
 import com.logicaldoc.core.stats.StatsCollector;
+import com.logicaldoc.core.stats.StatsCounters;
 import com.logicaldoc.core.task.Task;
 import com.logicaldoc.core.task.TaskManager;
 import com.logicaldoc.core.task.TaskScheduling;
@@ -49,6 +52,7 @@ import com.logicaldoc.gui.frontend.client.services.SystemService;
 import com.logicaldoc.i18n.I18N;
 import com.logicaldoc.util.Context;
 import com.logicaldoc.util.config.ContextProperties;
+import com.logicaldoc.util.metrics.Metrics;
 import com.logicaldoc.util.plugin.PluginRegistry;
 import com.logicaldoc.util.sql.SqlUtil;
 import com.logicaldoc.web.util.ServiceUtil;
@@ -132,16 +136,12 @@ public class SystemServiceImpl extends RemoteServiceServlet implements SystemSer
 			/*
 			 * Repository statistics
 			 */
-			Generic gen = genDao.findByAlternateKey(StatsCollector.STAT, "docdir", null, session.getTenantId());
 			GUIParameter docDirSize = new GUIParameter();
 			docDirSize.setName("documents");
-			if (gen != null)
-				docDirSize.setValue(Long.toString(gen.getInteger1()));
-			else
-				docDirSize.setValue("0");
+			docDirSize.setValue(getCountedStatistic(genDao, "docdir", session.getTenantId()));
 			parameters[0][0] = docDirSize;
 
-			gen = genDao.findByAlternateKey(StatsCollector.STAT, "userdir", null, Tenant.SYSTEM_ID);
+			Generic gen = genDao.findByAlternateKey(StatsCollector.STAT, "userdir", null, Tenant.SYSTEM_ID);
 			GUIParameter userDirSize = new GUIParameter();
 			userDirSize.setName("users");
 			if (gen != null)
@@ -210,30 +210,26 @@ public class SystemServiceImpl extends RemoteServiceServlet implements SystemSer
 			/*
 			 * Documents statistics
 			 */
-			gen = genDao.findByAlternateKey(StatsCollector.STAT, "notindexeddocs", null, session.getTenantId());
 			GUIParameter notIndexed = new GUIParameter();
 			notIndexed.setName("notindexed");
-			notIndexed.setValue(gen != null ? Long.toString(gen.getInteger1()) : "0");
+			notIndexed.setValue(getCountedStatistic(genDao, "notindexeddocs", session.getTenantId()));
 			parameters[1][0] = notIndexed;
 
-			gen = genDao.findByAlternateKey(StatsCollector.STAT, "indexeddocs", null, session.getTenantId());
 			GUIParameter indexed = new GUIParameter();
 			indexed.setName("indexed");
-			indexed.setValue(gen != null ? Long.toString(gen.getInteger1()) : "0");
+			indexed.setValue(getCountedStatistic(genDao, "indexeddocs", session.getTenantId()));
 			parameters[1][1] = indexed;
 
-			gen = genDao.findByAlternateKey(StatsCollector.STAT, "deleteddocs", null, session.getTenantId());
 			GUIParameter deletedDocs = new GUIParameter();
 			deletedDocs.setName("docstrash");
 			deletedDocs.setLabel("trash");
-			deletedDocs.setValue(gen != null ? Long.toString(gen.getInteger1()) : "0");
+			deletedDocs.setValue(getCountedStatistic(genDao, "deleteddocs", session.getTenantId()));
 			parameters[1][2] = deletedDocs;
 
-			gen = genDao.findByAlternateKey(StatsCollector.STAT, "archiveddocs", null, session.getTenantId());
 			GUIParameter archivedDocs = new GUIParameter();
 			archivedDocs.setName("archiveddocs");
 			archivedDocs.setLabel("archiveds");
-			archivedDocs.setValue(gen != null ? Long.toString(gen.getInteger1()) : "0");
+			archivedDocs.setValue(getCountedStatistic(genDao, "archiveddocs", session.getTenantId()));
 			parameters[1][3] = archivedDocs;
 
 			/*
@@ -272,6 +268,12 @@ public class SystemServiceImpl extends RemoteServiceServlet implements SystemSer
 				lastrun.setValue("");
 			}
 			parameters[3][0] = lastrun;
+
+			gen = genDao.findByAlternateKey(StatsCollector.STAT, "compressionratio", null, session.getTenantId());
+			GUIParameter compressionRatio = new GUIParameter();
+			compressionRatio.setName("compressionratio");
+			compressionRatio.setValue(gen != null ? Long.toString(gen.getInteger1()) : "");
+			parameters[3][1] = compressionRatio;
 		} catch (Throwable e) {
 			log.error(e.getMessage(), e);
 		}
@@ -279,6 +281,16 @@ public class SystemServiceImpl extends RemoteServiceServlet implements SystemSer
 		return parameters;
 	}
 
+	/**
+	 * Gets the saved value of a statistic maintained by the DAOs plus the
+	 * variations not yet saved
+	 */
+	private static String getCountedStatistic(GenericDAO genDao, String name, long tenantId) {
+		Generic gen = genDao.findByAlternateKey(StatsCollector.STAT, name, null, tenantId);
+		long value = gen != null && gen.getInteger1() != null ? gen.getInteger1() : 0L;
+		return Long.toString(Math.max(0L, value + StatsCounters.get().getPending(tenantId, name)));
+	}
+
 	@Override
 	public GUITask getTaskByName(String taskName, String locale) throws ServerException {
 		ServiceUtil.validateSession(getThreadLocalRequest());
@@ -797,4 +809,19 @@ public class SystemServiceImpl extends RemoteServiceServlet implements SystemSer
 			log.error(t.getMessage(), t);
 		}
 	}
+
+	@Override
+	public void resetMetrics() throws ServerException {
+		Session session = ServiceUtil.validateSession(getThreadLocalRequest());
+		try {
+			MenuDAO mDao = (MenuDAO) Context.get().getBean(MenuDAO.class);
+			if (!mDao.isWriteEnable(Menu.ADMINISTRATION, session.getUserId()))
+				throw new Exception("User " + session.getUsername() + " doesn't have permission to reset the metrics");
+
+			Metrics.get().reset();
+			log.info("Metrics reset by {}", session.getUsername());
+		} catch (Throwable t) {
+			ServiceUtil.throwServerException(session, log, t);
+		}
+	}
 }
\ No newline at end of file
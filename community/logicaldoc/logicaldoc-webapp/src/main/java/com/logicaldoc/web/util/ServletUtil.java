@@ -1,6 +1,5 @@
 package com.logicaldoc.web.util;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -45,12 +44,14 @@ import com.logicaldoc.core.security.SessionManager;
 import com.logicaldoc.core.security.User;
 import com.logicaldoc.core.security.dao.MenuDAO;
 import com.logicaldoc.core.security.dao.UserDAO;
+import com.logicaldoc.core.store.FSStorer;
 import com.logicaldoc.core.store.Storer;
 import com.logicaldoc.gui.common.client.InvalidSessionException;
 import com.logicaldoc.gui.common.client.ServerException;
 import com.logicaldoc.util.Context;
 import com.logicaldoc.util.MimeType;
 import com.logicaldoc.util.config.ContextProperties;
+import com.logicaldoc.util.io.FileUtil;
 import com.logicaldoc.util.plugin.PluginRegistry;
 
 /**
@@ -64,6 +65,9 @@ public class ServletUtil {
 
 	private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
 
+	// Smaller files are cheaper to be copied than to be sent by the container
+	private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
 	private static Set<String> localAddresses = null;
 
 	public static Session validateSession(HttpServletRequest request) throws ServletException {
@@ -337,10 +341,17 @@ public class ServletUtil {
 		OutputStream output = null;
 
 		try {
+			// A single range not to be compressed can be sent by the container
+			boolean sent = ranges.size() == 1 && !(acceptsGzip && ranges.get(0).length == length)
+					&& sendFile(request, response, storer, docId, resource, ranges.get(0), length);
+
 			// Open streams.
-			output = response.getOutputStream();
+			if (!sent)
+				output = response.getOutputStream();
 
-			if (ranges.isEmpty() || ranges.get(0) == full || ranges.get(0).length == length) {
+			if (sent) {
+				// The container transfers the file by itself
+			} else if (ranges.isEmpty() || ranges.get(0) == full || ranges.get(0).length == length) {
 				// Return full file.
 				Range r = full;
 				response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total);
@@ -358,15 +369,7 @@ public class ServletUtil {
 				}
 
 				// Copy full range
-				InputStream is = storer.getStream(docId, resource);
-				try {
-					if (is != null && output != null) {
-						IOUtils.copy(is, output, DEFAULT_BUFFER_SIZE);
-					}
-				} finally {
-					if (is != null)
-						IOUtils.closeQuietly(is);
-				}
+				storer.writeToStream(docId, resource, output);
 			} else if (ranges.size() == 1) {
 				// Return single part of file.
 				Range r = ranges.get(0);
@@ -503,21 +506,49 @@ public class ServletUtil {
 		// Add this header for compatibility with internal .NET browsers
 		response.setHeader("Content-Length", Long.toString(file.length()));
 
-		InputStream is = null;
 		OutputStream os = null;
 
 		try {
-			is = new BufferedInputStream(new FileInputStream(file), DEFAULT_BUFFER_SIZE);
 			os = response.getOutputStream();
-
-			IOUtils.copy(is, os);
+			FileUtil.transfer(file, os, 0, -1);
 		} finally {
 			// Gently close streams.
-			IOUtils.closeQuietly(is);
 			IOUtils.closeQuietly(os);
 		}
 	}
 
+	/**
+	 * Delegates the transfer of a range of a resource to the servlet
+	 * container, that is possible only if the container supports the sendfile
+	 * (as Tomcat with the NIO and APR connectors) and the storer keeps the
+	 * plain content in a file that cannot be moved meanwhile(see
+	 * {@link FSStorer#getFile(long, String)}). The container moves the bytes from the disk to
+	 * the socket without copying them in the heap.
+	 * 
+	 * @return true if the transfer has been delegated to the container, in
+	 *         this case nothing must be written in the response
+	 */
+	private static boolean sendFile(HttpServletRequest request, HttpServletResponse response, Storer storer,
+			long docId, String resource, Range range, long length) throws IOException {
+		if (range.length < SENDFILE_MIN_SIZE || !(storer instanceof FSStorer)
+				|| !Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))
+				|| !"true".equals(Context.get().getProperties().getProperty("download.sendfile", "true")))
+			return false;
+
+		File file = ((FSStorer) storer).getFile(docId, resource);
+		if (file == null || file.length() != length)
+			return false;
+
+		if (range.length != length)
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT); // 206.
+		response.setHeader("Content-Range", "bytes " + range.start + "-" + range.end + "/" + range.total);
+		response.setHeader("Content-Length", String.valueOf(range.length));
+		request.setAttribute("org.apache.tomcat.sendfile.filename", file.getCanonicalPath());
+		request.setAttribute("org.apache.tomcat.sendfile.start", Long.valueOf(range.start));
+		request.setAttribute("org.apache.tomcat.sendfile.end", Long.valueOf(range.end + 1));
+		return true;
+	}
+
 	/**
 	 * Sets the correct Content-Disposition header into the response
 	 */
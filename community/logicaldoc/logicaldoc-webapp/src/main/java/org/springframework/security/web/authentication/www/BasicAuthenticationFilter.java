@@ -39,6 +39,12 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.util.Assert;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.logicaldoc.core.security.CredentialCache;
+import com.logicaldoc.core.security.Session;
+import com.logicaldoc.core.security.SessionManager;
+import com.logicaldoc.core.security.spring.LDAuthenticationProvider;
+import com.logicaldoc.core.security.spring.LDAuthenticationToken;
+
 /**
  * Processes a HTTP request's BASIC authorization headers, putting the result
  * into the <code>SecurityContextHolder</code>.
@@ -179,7 +185,25 @@ public class BasicAuthenticationFilter extends OncePerRequestFilter {
 				UsernamePasswordAuthenticationToken authRequest = new UsernamePasswordAuthenticationToken(username,
 						tokens[1]);
 				authRequest.setDetails(this.authenticationDetailsSource.buildDetails(request));
-				Authentication authResult = this.authenticationManager.authenticate(authRequest);
+
+				/*
+				 * Reuse the session opened by a recent verification of the
+				 * same credentials, if any, otherwise run the authentication
+				 * and remember the result.
+				 */
+				CredentialCache cache = CredentialCache.get();
+				Authentication authResult = null;
+				String sid = cache.getSid(username, tokens[1], request.getRemoteAddr());
+				Session session = sid != null ? SessionManager.get().get(sid) : null;
+				if (session != null && SessionManager.get().isOpen(sid)) {
+					SessionManager.get().renew(sid);
+					authResult = LDAuthenticationProvider.buildAuthentication(session);
+				} else {
+					authResult = this.authenticationManager.authenticate(authRequest);
+					if (authResult instanceof LDAuthenticationToken)
+						cache.put(username, tokens[1], request.getRemoteAddr(),
+								SessionManager.get().get(((LDAuthenticationToken) authResult).getSid()));
+				}
 
 				if (debug) {
 					this.logger.debug("Authentication success: " + authResult);
@@ -1,7 +1,6 @@
 package com.logicaldoc.webdav.context;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -16,6 +15,7 @@ import org.apache.jackrabbit.webdav.io.OutputContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.logicaldoc.util.io.FileUtil;
 import com.logicaldoc.webdav.resource.model.Resource;
 
 /**
@@ -129,7 +129,8 @@ public class ExportContextImpl extends AbstractExportContext {
 					if (name != null && value != null) {
 						outputCtx.setProperty(name.toString(), value.toString());
 						// check for content-length
-						hasContentLength = DavConstants.HEADER_CONTENT_LENGTH.equals(name.toString());
+						hasContentLength = hasContentLength
+								|| DavConstants.HEADER_CONTENT_LENGTH.equals(name.toString());
 					}
 				}
 
@@ -140,8 +141,7 @@ public class ExportContextImpl extends AbstractExportContext {
 						if (!hasContentLength) {
 							outputCtx.setContentLength(outFile.length());
 						}
-						FileInputStream in = new FileInputStream(outFile);
-						IOUtil.spool(in, out);
+						FileUtil.transfer(outFile, out, 0, -1);
 					} catch (IOException e) {
 						log.error(e.toString());
 					}
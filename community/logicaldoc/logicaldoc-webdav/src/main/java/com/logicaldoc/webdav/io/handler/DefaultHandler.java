@@ -1,11 +1,9 @@
 package com.logicaldoc.webdav.io.handler;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 
 import org.apache.jackrabbit.JcrConstants;
-import org.apache.jackrabbit.server.io.IOUtil;
 import org.apache.jackrabbit.server.io.PropertyExportContext;
 import org.apache.jackrabbit.server.io.PropertyImportContext;
 import org.apache.jackrabbit.webdav.DavException;
@@ -13,6 +11,7 @@ import org.apache.jackrabbit.webdav.DavResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.logicaldoc.util.MimeType;
 import com.logicaldoc.webdav.context.ExportContext;
 import com.logicaldoc.webdav.context.ImportContext;
 import com.logicaldoc.webdav.exception.WebDavStorageException;
@@ -143,6 +142,8 @@ public class DefaultHandler implements IOHandler {
 			throw new IOException(getName() + ": Cannot export ");
 		}
 		try {
+			if (!isCollection)
+				exportProperties(context, context.getResource());
 			if (context.hasStream())
 				exportData(context, isCollection, context.getResource());
 
@@ -161,15 +162,26 @@ public class DefaultHandler implements IOHandler {
 		return exportContent(context, resource.isCollection());
 	}
 
+	/**
+	 * Puts in the context the HTTP headers that describe a document's file
+	 */
+	protected void exportProperties(ExportContext context, Resource resource) {
+		context.setContentType(MimeType.getByFilename(resource.getName()), null);
+		if (resource.getContentLength() != null)
+			context.setContentLength(resource.getContentLength());
+		if (resource.getLastModified() != null)
+			context.setModificationTime(resource.getLastModified().getTime());
+		if (resource.getETag() != null)
+			context.setETag(resource.getETag());
+	}
+
 	protected void exportData(ExportContext context, boolean isCollection, Resource resource) throws IOException,
 			WebDavStorageException {
-		try {
-			InputStream is = resourceService.streamOut(resource);
-			if (is != null)
-				IOUtil.spool(is, context.getOutputStream());
-		} catch (FileNotFoundException e) {
-			throw new IOException("Can't find file " + resource.getName() + "(" + resource.getID() + ")");
-		}
+		if (isCollection)
+			return;
+		OutputStream out = context.getOutputStream();
+		if (out != null)
+			resourceService.streamOut(resource, out, 0, -1);
 	}
 
 	protected synchronized boolean setContentData(ImportContext context, boolean isCollection)
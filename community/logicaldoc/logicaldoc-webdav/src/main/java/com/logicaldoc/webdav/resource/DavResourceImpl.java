@@ -1,6 +1,7 @@
 package com.logicaldoc.webdav.resource;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -216,9 +217,36 @@ public class DavResourceImpl implements DavResource, Serializable {
 		log.debug("getModificationTime()");
 
 		initProperties();
+		if (resource != null && resource.getLastModified() != null)
+			return resource.getLastModified().getTime();
 		return this.modificationTime;
 	}
 
+	/**
+	 * Gets the entity tag of the file represented by this resource
+	 * 
+	 * @return the ETag or null if the resource is a collection
+	 */
+	public String getETag() {
+		return exists() && !isCollection() ? resource.getETag() : null;
+	}
+
+	/**
+	 * Writes a byte range of the file represented by this resource directly
+	 * into the given output stream, without passing through the
+	 * {@link ExportContext}.
+	 * 
+	 * @param out the output stream
+	 * @param start index of the first byte
+	 * @param length number of bytes to write, a negative value means up to
+	 *        the end of the file
+	 * @throws IOException if the export fails
+	 */
+	public void spool(OutputStream out, long start, long length) throws IOException {
+		if (exists() && !isCollection())
+			resourceService.streamOut(resource, out, start, length);
+	}
+
 	/**
 	 * If this resource exists and the specified context is not
 	 * <code>null</code> this implementation build a new {@link ExportContext}
@@ -318,6 +346,9 @@ public class DavResourceImpl implements DavResource, Serializable {
 		String creationDate = IOUtil.getCreated(creationTime);
 		properties.add(new DefaultDavProperty(DavPropertyName.CREATIONDATE, creationDate));
 
+		if (!isCollection() && this.resource.getETag() != null)
+			properties.add(new DefaultDavProperty(DavPropertyName.GETETAG, this.resource.getETag()));
+
 		propsInitialized = true;
 	}
 
@@ -120,4 +120,8 @@ public interface Resource {
 	public String getLockUser();
 
 	public void setLockUser(String lockUser);
+
+	public String getETag();
+
+	public void setETag(String eTag);
 }
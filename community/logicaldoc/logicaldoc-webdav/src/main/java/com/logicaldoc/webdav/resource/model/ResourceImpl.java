@@ -72,6 +72,8 @@ public class ResourceImpl implements Resource {
 	
 	private Boolean moveEnabled;
 
+	private String eTag;
+
 	DavSession session;
 
 	public Long getContentLength() {
@@ -342,4 +344,12 @@ public class ResourceImpl implements Resource {
 	public void setLockUser(String lockUser) {
 		this.lockUser = lockUser;
 	}
-}
\ No newline at end of file
+
+	public String getETag() {
+		return eTag;
+	}
+
+	public void setETag(String eTag) {
+		this.eTag = eTag;
+	}
+}
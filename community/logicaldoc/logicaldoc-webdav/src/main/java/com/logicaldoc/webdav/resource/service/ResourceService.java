@@ -1,6 +1,8 @@
 package com.logicaldoc.webdav.resource.service;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.List;
 
@@ -151,6 +153,19 @@ public interface ResourceService extends Serializable{
 	 */
 	public InputStream streamOut(Resource resource);
 
+	/**
+	 * Writes a byte range of the resource's content in the given output
+	 * stream.
+	 * 
+	 * @param resource the resource to download
+	 * @param os the output stream
+	 * @param start index of the first byte
+	 * @param length number of bytes to write, a negative value means up to
+	 *        the end of the content
+	 * @throws IOException
+	 */
+	public void streamOut(Resource resource, OutputStream os, long start, long length) throws IOException;
+
 	/**
 	 * Deletion of a resource within logicalDOC.
 	 * 
@@ -1,7 +1,9 @@
 package com.logicaldoc.webdav.resource.service;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
@@ -10,6 +12,7 @@ import java.util.List;
 
 import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.DavServletResponse;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -113,6 +116,7 @@ public class ResourceServiceImpl implements ResourceService {
 		resource.setLocked(document.getStatus() == Document.DOC_LOCKED
 				|| document.getStatus() == Document.DOC_CHECKED_OUT);
 		resource.setLockUser(document.getLockUser());
+		resource.setETag(computeETag(document.getId(), document.getDigest(), document.getFileVersion()));
 
 		if (session != null && (Long) session.getObject("id") != null) {
 			resource.setRequestedPerson((Long) session.getObject("id"));
@@ -121,6 +125,17 @@ public class ResourceServiceImpl implements ResourceService {
 		return resource;
 	}
 
+	/**
+	 * Computes a strong entity tag for a document's file: the digest when
+	 * available, otherwise the document identifier and the file version.
+	 */
+	private static String computeETag(long docId, String digest, String fileVersion) {
+		if (StringUtils.isNotEmpty(digest))
+			return "\"" + digest + "\"";
+		else
+			return "\"" + docId + "-" + fileVersion + "\"";
+	}
+
 	public List<Resource> getChildResources(Resource parentResource) {
 		List<Resource> resourceList = new LinkedList<Resource>();
 		final Long folderID = Long.parseLong(parentResource.getID());
@@ -646,29 +661,47 @@ public class ResourceServiceImpl implements ResourceService {
 
 	@Override
 	public InputStream streamOut(Resource resource) {
-		if (!resource.isDownloadEnabled())
-			throw new DavResourceIOException("The user doesn't have the download permission");
-
-		String version = resource.getVersionLabel();
-		Document document = documentDAO.findById(Long.parseLong(resource.getID()));
+		Document document = getDownloadableDocument(resource);
 		if (document == null) {
 			// Document not found
 			return new ByteArrayInputStream(new String("not found").getBytes());
 		}
 
+		return storer.getStream(document.getId(), getStorerResource(document, resource));
+	}
+
+	@Override
+	public void streamOut(Resource resource, OutputStream os, long start, long length) throws IOException {
+		Document document = getDownloadableDocument(resource);
+		if (document == null)
+			throw new DavResourceIOException("Document " + resource.getID() + " not found");
+
+		storer.writeToStream(document.getId(), getStorerResource(document, resource), os, start, length);
+	}
+
+	/**
+	 * Loads the document represented by the given resource checking the
+	 * download permission
+	 */
+	private Document getDownloadableDocument(Resource resource) {
+		if (!resource.isDownloadEnabled())
+			throw new DavResourceIOException("The user doesn't have the download permission");
+		return documentDAO.findById(Long.parseLong(resource.getID()));
+	}
+
+	/**
+	 * Computes the name of the file inside the storer for the version
+	 * represented by the resource
+	 */
+	private String getStorerResource(Document document, Resource resource) {
+		String version = resource.getVersionLabel();
 		if (document.getVersion() != null && document.getVersion().equals(resource.getVersionLabel()))
 			version = null;
 
-		InputStream is = null;
-
-		if (version == null || version.equals("")) {
-			String res = storer.getResourceName(document, null, null);
-			is = storer.getStream(document.getId(), res);
-		} else {
-			String res = storer.getResourceName(document, resource.getVersionLabel(), null);
-			is = storer.getStream(document.getId(), res);
-		}
-		return is;
+		if (version == null || version.equals(""))
+			return storer.getResourceName(document, null, null);
+		else
+			return storer.getResourceName(document, resource.getVersionLabel(), null);
 	}
 
 	@Override
@@ -733,6 +766,7 @@ public class ResourceServiceImpl implements ResourceService {
 			res.setVersionDate(version.getDate());
 			res.setAuthor(version.getUsername());
 			res.setCheckedOut(true);
+			res.setETag(computeETag(document.getId(), version.getDigest(), version.getFileVersion()));
 			resourceHistory.add(res);
 		}
 
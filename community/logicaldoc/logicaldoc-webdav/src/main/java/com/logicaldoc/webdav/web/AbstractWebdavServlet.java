@@ -3,6 +3,7 @@ package com.logicaldoc.webdav.web;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.servlet.ServletException;
@@ -27,6 +28,7 @@ import org.apache.jackrabbit.webdav.io.InputContext;
 import org.apache.jackrabbit.webdav.io.InputContextImpl;
 import org.apache.jackrabbit.webdav.io.OutputContext;
 import org.apache.jackrabbit.webdav.io.OutputContextImpl;
+import org.apache.jackrabbit.webdav.property.DavProperty;
 import org.apache.jackrabbit.webdav.property.DavPropertyName;
 import org.apache.jackrabbit.webdav.property.DavPropertyNameIterator;
 import org.apache.jackrabbit.webdav.property.DavPropertyNameSet;
@@ -48,7 +50,9 @@ import com.logicaldoc.core.security.SessionManager;
 import com.logicaldoc.core.security.User;
 import com.logicaldoc.core.security.dao.UserDAO;
 import com.logicaldoc.util.Context;
+import com.logicaldoc.util.MimeType;
 import com.logicaldoc.webdav.resource.DavResourceFactory;
+import com.logicaldoc.webdav.resource.DavResourceImpl;
 import com.logicaldoc.webdav.session.DavSession;
 import com.logicaldoc.webdav.session.DavSessionImpl;
 
@@ -62,6 +66,8 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
 
 	private static final long serialVersionUID = -8726695805361483901L;
 
+	private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
+
 	/**
 	 * Checks if the precondition for this request and resource is valid.
 	 * 
@@ -295,6 +301,9 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
 	}
 
 	/**
+	 * Spools the resource honoring the conditional headers (If-None-Match,
+	 * If-Modified-Since) and, for documents, the Range and If-Range headers.
+	 * 
 	 * @param request
 	 * @param response
 	 * @param resource
@@ -309,19 +318,19 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
 			return;
 		}
 
-		long modSince = request.getDateHeader("If-Modified-Since");
-		if (modSince > UNDEFINED_TIME) {
-			long modTime = resource.getModificationTime();
-			// test if resource has been modified. note that formatted
-			// modification
-			// time lost the milli-second precision
-			if (modTime != UNDEFINED_TIME && (modTime / 1000 * 1000) <= modSince) {
-				// resource has not been modified since the time indicated in
-				// the
-				// 'If-Modified-Since' header.
-				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-				return;
-			}
+		long modTime = resource.getModificationTime();
+		String eTag = (resource instanceof DavResourceImpl) ? ((DavResourceImpl) resource).getETag() : null;
+
+		if (isNotModified(request, eTag, modTime)) {
+			if (eTag != null)
+				response.setHeader(HEADER_ETAG, eTag);
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		if (sendContent && !resource.isCollection() && resource instanceof DavResourceImpl) {
+			spoolDocument(request, response, (DavResourceImpl) resource, eTag, modTime);
+			return;
 		}
 
 		// spool resource properties and ev. resource content.
@@ -329,6 +338,205 @@ abstract public class AbstractWebdavServlet extends HttpServlet implements DavCo
 		resource.spool(getOutputContext(response, out));
 	}
 
+	/**
+	 * Sends the file of a document, entirely or just the requested byte
+	 * ranges, streaming it directly from the storer.
+	 */
+	private void spoolDocument(WebdavRequest request, WebdavResponse response, DavResourceImpl resource,
+			String eTag, long modTime) throws IOException {
+		DavProperty<?> lengthProperty = resource.getProperty(DavPropertyName.GETCONTENTLENGTH);
+		long length = lengthProperty != null && lengthProperty.getValue() != null ? Long.parseLong(lengthProperty
+				.getValue().toString()) : -1L;
+		String contentType = MimeType.getByFilename(resource.getDisplayName());
+
+		List<Range> ranges = null;
+		String rangeHeader = request.getHeader("Range");
+		if (rangeHeader != null && length > 0 && isIfRangeValid(request, eTag, modTime)) {
+			ranges = Range.parse(rangeHeader, length);
+			if (ranges == null) {
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+		}
+
+		response.setHeader("Accept-Ranges", "bytes");
+		if (eTag != null)
+			response.setHeader(HEADER_ETAG, eTag);
+		if (modTime != UNDEFINED_TIME)
+			response.setDateHeader(HEADER_LAST_MODIFIED, modTime);
+
+		OutputStream out = response.getOutputStream();
+		if (ranges == null || ranges.isEmpty()) {
+			// Full content
+			response.setContentType(contentType);
+			if (length >= 0)
+				response.setHeader(HEADER_CONTENT_LENGTH, Long.toString(length));
+			resource.spool(out, 0, -1);
+		} else if (ranges.size() == 1) {
+			Range r = ranges.get(0);
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setContentType(contentType);
+			response.setHeader("Content-Range", r.toContentRange());
+			response.setHeader(HEADER_CONTENT_LENGTH, Long.toString(r.length));
+			resource.spool(out, r.start, r.length);
+		} else {
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setContentType("multipart/byteranges; boundary=" + MULTIPART_BOUNDARY);
+			for (Range r : ranges) {
+				StringBuilder header = new StringBuilder("\r\n--").append(MULTIPART_BOUNDARY).append("\r\n");
+				header.append("Content-Type: ").append(contentType).append("\r\n");
+				header.append("Content-Range: ").append(r.toContentRange()).append("\r\n\r\n");
+				out.write(header.toString().getBytes("ISO-8859-1"));
+				resource.spool(out, r.start, r.length);
+			}
+			out.write(("\r\n--" + MULTIPART_BOUNDARY + "--\r\n").getBytes("ISO-8859-1"));
+		}
+	}
+
+	/**
+	 * Checks the If-None-Match and If-Modified-Since headers
+	 * 
+	 * @return true if the copy of the client is still valid
+	 */
+	static boolean isNotModified(HttpServletRequest request, String eTag, long modTime) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null && eTag != null) {
+			// the If-None-Match header takes precedence over
+			// If-Modified-Since
+			return matchesETag(ifNoneMatch, eTag);
+		}
+
+		long modSince = request.getDateHeader("If-Modified-Since");
+		// note that formatted modification time lost the milli-second
+		// precision
+		return modSince > UNDEFINED_TIME && modTime != UNDEFINED_TIME && (modTime / 1000 * 1000) <= modSince;
+	}
+
+	/**
+	 * Checks the If-Range header: a range request must be honored only if the
+	 * header is missing or matches the current version of the file.
+	 */
+	static boolean isIfRangeValid(HttpServletRequest request, String eTag, long modTime) {
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null)
+			return true;
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+			return eTag != null && ifRange.equals(eTag);
+		try {
+			long ifRangeTime = request.getDateHeader("If-Range");
+			return ifRangeTime != -1 && modTime != UNDEFINED_TIME && (modTime / 1000 * 1000) <= ifRangeTime;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks if a If-None-Match header value matches the given entity tag
+	 */
+	static boolean matchesETag(String headerValue, String eTag) {
+		for (String tag : headerValue.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/"))
+				tag = tag.substring(2);
+			if ("*".equals(tag) || tag.equals(eTag))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A byte range requested through the Range header.
+	 */
+	protected static class Range {
+		long start;
+
+		long end;
+
+		long length;
+
+		long total;
+
+		public Range(long start, long end, long total) {
+			this.start = start;
+			this.end = end;
+			this.length = end - start + 1;
+			this.total = total;
+		}
+
+		String toContentRange() {
+			return "bytes " + start + "-" + end + "/" + total;
+		}
+
+		/**
+		 * Parses a Range header in the format "bytes=n-n, n-n, -n". As
+		 * prescribed by RFC 7233 a header with a syntax error is ignored,
+		 * while the ranges beyond the end of the file are discarded.
+		 * 
+		 * @param header the Range header
+		 * @param total total length of the file
+		 * 
+		 * @return the list of ranges, an empty list if the header must be
+		 *         ignored and the whole file sent or null if none of the
+		 *         ranges is satisfiable
+		 */
+		static List<Range> parse(String header, long total) {
+			List<Range> ranges = new ArrayList<Range>();
+			String value = header.trim();
+			if (!value.regionMatches(true, 0, "bytes=", 0, 6))
+				return ranges;
+
+			int specs = 0;
+			for (String part : value.substring(6).split(",", -1)) {
+				part = part.trim();
+				// the list may contain empty elements
+				if (part.isEmpty())
+					continue;
+				if (!part.matches("\\d+-\\d*|-\\d+"))
+					return new ArrayList<Range>();
+				specs++;
+
+				int dash = part.indexOf("-");
+				String startStr = part.substring(0, dash);
+				String endStr = part.substring(dash + 1);
+				long start;
+				long end;
+				try {
+					start = startStr.isEmpty() ? -1 : Long.parseLong(startStr);
+					end = endStr.isEmpty() ? -1 : Long.parseLong(endStr);
+				} catch (NumberFormatException e) {
+					return new ArrayList<Range>();
+				}
+
+				if (start == -1) {
+					// suffix range: the last 'end' bytes
+					if (end == 0)
+						continue;
+					start = Math.max(0, total - end);
+					end = total - 1;
+				} else {
+					if (end != -1 && end < start)
+						return new ArrayList<Range>();
+					if (start > total - 1)
+						continue;
+					if (end == -1 || end > total - 1)
+						end = total - 1;
+				}
+				ranges.add(new Range(start, end, total));
+			}
+
+			if (specs == 0)
+				return ranges;
+			if (ranges.isEmpty())
+				return null;
+
+			// A single range covering the whole file is just a full download
+			if (ranges.size() == 1 && ranges.get(0).length == total)
+				ranges.clear();
+			return ranges;
+		}
+	}
+
 	/**
 	 * The PROPFIND method
 	 * 
@@ -0,0 +1,135 @@
+package com.logicaldoc.webdav.web;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import junit.framework.TestCase;
+
+import com.logicaldoc.webdav.web.AbstractWebdavServlet.Range;
+
+/**
+ * Test case for the handling of the Range and conditional headers in
+ * {@link AbstractWebdavServlet}
+ * 
+ * @author Marco Meschieri - LogicalDOC
+ * @since 8.0
+ */
+public class AbstractWebdavServletTest extends TestCase {
+
+	private static final String ETAG = "\"1-1.0\"";
+
+	/**
+	 * Simulates a request with the given headers, the date headers are
+	 * expressed in milliseconds
+	 */
+	private static HttpServletRequest request(String... headers) {
+		final Map<String, String> map = new HashMap<String, String>();
+		for (int i = 0; i < headers.length; i += 2)
+			map.put(headers[i], headers[i + 1]);
+
+		return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+				new Class[] { HttpServletRequest.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String value = map.get(args[0]);
+						if (method.getName().equals("getHeader"))
+							return value;
+						else if (method.getName().equals("getDateHeader"))
+							return value != null ? Long.parseLong(value) : -1L;
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private static void assertRange(Range range, long start, long end) {
+		assertEquals(start, range.start);
+		assertEquals(end, range.end);
+		assertEquals(end - start + 1, range.length);
+	}
+
+	public void testParseRange() {
+		List<Range> ranges = Range.parse("bytes=0-99", 1000);
+		assertEquals(1, ranges.size());
+		assertRange(ranges.get(0), 0, 99);
+		assertEquals("bytes 0-99/1000", ranges.get(0).toContentRange());
+
+		// Open and suffix ranges
+		ranges = Range.parse("bytes=900-", 1000);
+		assertRange(ranges.get(0), 900, 999);
+		ranges = Range.parse("bytes=-100", 1000);
+		assertRange(ranges.get(0), 900, 999);
+		ranges = Range.parse("bytes=-5000", 1000);
+		assertTrue(ranges.isEmpty());
+
+		// The end is truncated to the length of the file
+		ranges = Range.parse("bytes=500-5000", 1000);
+		assertRange(ranges.get(0), 500, 999);
+
+		// Multiple ranges with optional whitespace
+		ranges = Range.parse("bytes=0-1, 5-9 ,-1", 1000);
+		assertEquals(3, ranges.size());
+		assertRange(ranges.get(0), 0, 1);
+		assertRange(ranges.get(1), 5, 9);
+		assertRange(ranges.get(2), 999, 999);
+		assertEquals(2, Range.parse("BYTES=0-1,,5-9", 1000).size());
+
+		// A single range covering the whole file means the full content
+		assertTrue(Range.parse("bytes=0-", 1000).isEmpty());
+	}
+
+	public void testInvalidRange() {
+		// Syntax errors: the header is ignored and the whole file is sent
+		String[] headers = new String[] { "bytes=abc", "bytes=5", "bytes=-", "bytes=9-5", "bytes=0-1,9-5",
+				"items=0-1", "bytes=", "bytes=0-1;5-9", "bytes=99999999999999999999-" };
+		for (String header : headers) {
+			List<Range> ranges = Range.parse(header, 1000);
+			assertNotNull(header, ranges);
+			assertTrue(header, ranges.isEmpty());
+		}
+	}
+
+	public void testUnsatisfiableRange() {
+		assertNull(Range.parse("bytes=1000-", 1000));
+		assertNull(Range.parse("bytes=2000-3000", 1000));
+		assertNull(Range.parse("bytes=-0", 1000));
+
+		// The unsatisfiable ranges are discarded if others can be satisfied
+		List<Range> ranges = Range.parse("bytes=2000-3000, 10-19", 1000);
+		assertEquals(1, ranges.size());
+		assertRange(ranges.get(0), 10, 19);
+	}
+
+	public void testNotModified() {
+		long modTime = 1000000L;
+		assertFalse(AbstractWebdavServlet.isNotModified(request(), ETAG, modTime));
+
+		assertTrue(AbstractWebdavServlet.isNotModified(request("If-None-Match", ETAG), ETAG, modTime));
+		assertTrue(AbstractWebdavServlet.isNotModified(request("If-None-Match", "\"x\", W/" + ETAG), ETAG, modTime));
+		assertTrue(AbstractWebdavServlet.isNotModified(request("If-None-Match", "*"), ETAG, modTime));
+		assertFalse(AbstractWebdavServlet.isNotModified(request("If-None-Match", "\"x\""), ETAG, modTime));
+
+		// The If-None-Match takes precedence over the If-Modified-Since
+		assertFalse(AbstractWebdavServlet.isNotModified(
+				request("If-None-Match", "\"x\"", "If-Modified-Since", "2000000"), ETAG, modTime));
+
+		// The milliseconds are not compared
+		assertTrue(AbstractWebdavServlet.isNotModified(request("If-Modified-Since", "1000000"), ETAG, modTime + 500));
+		assertFalse(AbstractWebdavServlet.isNotModified(request("If-Modified-Since", "999000"), ETAG, modTime));
+	}
+
+	public void testIfRange() {
+		long modTime = 1000000L;
+		assertTrue(AbstractWebdavServlet.isIfRangeValid(request(), ETAG, modTime));
+		assertTrue(AbstractWebdavServlet.isIfRangeValid(request("If-Range", ETAG), ETAG, modTime));
+		assertFalse(AbstractWebdavServlet.isIfRangeValid(request("If-Range", "\"x\""), ETAG, modTime));
+		assertFalse(AbstractWebdavServlet.isIfRangeValid(request("If-Range", ETAG), null, modTime));
+		assertTrue(AbstractWebdavServlet.isIfRangeValid(request("If-Range", "1000000"), ETAG, modTime));
+		assertFalse(AbstractWebdavServlet.isIfRangeValid(request("If-Range", "999000"), ETAG, modTime));
+	}
+}
@@ -19,6 +19,7 @@ import com.logicaldoc.core.document.Document;
 import com.logicaldoc.core.folder.FolderDAO;
 import com.logicaldoc.core.security.Group;
 import com.logicaldoc.core.security.Permission;
+import com.logicaldoc.core.security.PrincipalCache;
 import com.logicaldoc.core.security.Session;
 import com.logicaldoc.core.security.SessionManager;
 import com.logicaldoc.core.security.User;
@@ -76,16 +77,26 @@ public class AbstractService {
 			throw new Exception("WebServices are disabled");
 
 		if (sid == null || !SessionManager.get().isOpen(sid)) {
+			PrincipalCache.get().invalidate(sid);
 			throw new Exception("Invalid session " + sid);
 		} else {
 			SessionManager.get().renew(sid);
 		}
+
+		// Repeated calls with the same session reuse the user already loaded
+		PrincipalCache cache = PrincipalCache.get();
+		User user = cache.getUser(sid);
+		if (user != null)
+			return user;
+
+		long generation = cache.getGeneration();
 		String username = SessionManager.get().get(sid).getUsername();
-		User user = userDao.findByUsername(username);
+
+		// The user's groups are initialized by findByUsername
+		user = userDao.findByUsername(username);
 		if (user == null)
 			throw new Exception("User " + username + "not found");
-		else
-			userDao.initialize(user);
+		cache.put(sid, user, generation);
 		return user;
 	}
 
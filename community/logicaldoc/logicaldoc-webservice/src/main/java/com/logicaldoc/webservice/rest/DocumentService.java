@@ -1,5 +1,6 @@
 package com.logicaldoc.webservice.rest;
 
+import java.io.InputStream;
 import java.util.List;
 
 import javax.activation.DataHandler;
@@ -170,4 +171,69 @@ public interface DocumentService {
 	public void createPdf(
 			@QueryParam("docId") long docId,
 			@QueryParam("fileVersion") String fileVersion)	throws Exception;
+
+	/**
+	 * Starts a resumable upload, the content will be sent in chunks
+	 * 
+	 * @param filename Name of the file
+	 * @param size Size of the whole file
+	 * @param chunkSize Size of each chunk
+	 * @return The identifier of the upload
+	 * @throws Exception
+	 */
+	@POST
+	@Path("/startUpload")
+	@Consumes({ MediaType.APPLICATION_FORM_URLENCODED })
+	@Produces({ MediaType.TEXT_PLAIN })
+	public String startUpload(@FormParam("filename") String filename, @FormParam("size") long size,
+			@FormParam("chunkSize") int chunkSize) throws Exception;
+
+	/**
+	 * Sends a chunk of a resumable upload
+	 * 
+	 * @param uploadId Identifier of the upload
+	 * @param chunk Number of the chunk, starting from 0
+	 * @param digest SHA-1 of the chunk's content, hex encoded
+	 * @param content The content of the chunk
+	 * @return The offset up to which all the chunks have been received
+	 * @throws Exception
+	 */
+	@PUT
+	@Path("/uploadChunk")
+	@Consumes({ MediaType.APPLICATION_OCTET_STREAM })
+	@Produces({ MediaType.TEXT_PLAIN })
+	public long uploadChunk(@QueryParam("uploadId") String uploadId, @QueryParam("chunk") int chunk,
+			@QueryParam("digest") String digest, InputStream content) throws Exception;
+
+	/**
+	 * Gets the offset up to which all the chunks of a resumable upload have
+	 * been received, the upload must be resumed from here
+	 */
+	@GET
+	@Path("/getUploadOffset")
+	@Produces({ MediaType.TEXT_PLAIN })
+	public long getUploadOffset(@QueryParam("uploadId") String uploadId) throws Exception;
+
+	/**
+	 * Completes a resumable upload creating or updating a document, if used in
+	 * update mode docId must be provided, when used in create mode folderId is
+	 * required.
+	 * 
+	 * @return The identifier of the created/updated document
+	 * @throws Exception
+	 */
+	@POST
+	@Path("/commitUpload")
+	@Consumes({ MediaType.APPLICATION_FORM_URLENCODED })
+	@Produces({ MediaType.TEXT_PLAIN })
+	public long commitUpload(@FormParam("uploadId") String uploadId, @FormParam("docId") Long docId,
+			@FormParam("folderId") Long folderId, @FormParam("release") boolean release,
+			@FormParam("language") String language) throws Exception;
+
+	/**
+	 * Cancels a resumable upload discarding the chunks received so far
+	 */
+	@DELETE
+	@Path("/cancelUpload")
+	public void cancelUpload(@QueryParam("uploadId") String uploadId) throws Exception;
 }
\ No newline at end of file
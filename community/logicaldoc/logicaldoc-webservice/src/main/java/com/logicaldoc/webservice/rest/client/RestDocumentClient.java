@@ -1,7 +1,9 @@
 package com.logicaldoc.webservice.rest.client;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -24,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import com.logicaldoc.util.io.FileUtil;
 import com.logicaldoc.webservice.model.WSDocument;
 import com.logicaldoc.webservice.model.WSNote;
 import com.logicaldoc.webservice.model.WSRating;
@@ -268,4 +271,58 @@ public class RestDocumentClient extends AbstractRestClient {
 		WebClient.client(proxy).accept(MediaType.APPLICATION_JSON);
 		proxy.createThumbnail(docId, fileVersion);
 	}
+
+	/**
+	 * Uploads a file in chunks, a failed chunk is sent again resuming the
+	 * upload from the offset confirmed by the server. If used in update mode
+	 * docId must be provided, when used in create mode folderId is required.
+	 * 
+	 * @param docId The document to update
+	 * @param folderId The folder to create the document in
+	 * @param release If a new major release must be created
+	 * @param file The file to upload
+	 * @param language Language of the document
+	 * @param chunkSize Size of each chunk
+	 * 
+	 * @return The identifier of the created/updated document
+	 */
+	public long upload(Long docId, Long folderId, boolean release, File file, String language, int chunkSize)
+			throws Exception {
+		WebClient.client(proxy).type(MediaType.APPLICATION_FORM_URLENCODED);
+		WebClient.client(proxy).accept(MediaType.TEXT_PLAIN);
+		String uploadId = proxy.startUpload(file.getName(), file.length(), chunkSize);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			long offset = 0;
+			int failures = 0;
+			while (offset < file.length()) {
+				int chunk = (int) (offset / chunkSize);
+				byte[] content = new byte[(int) Math.min(chunkSize, file.length() - offset)];
+				raf.seek(offset);
+				raf.readFully(content);
+
+				try {
+					WebClient.client(proxy).type(MediaType.APPLICATION_OCTET_STREAM);
+					WebClient.client(proxy).accept(MediaType.TEXT_PLAIN);
+					offset = proxy.uploadChunk(uploadId, chunk,
+							FileUtil.computeDigest(new ByteArrayInputStream(content)), new ByteArrayInputStream(
+									content));
+					failures = 0;
+				} catch (Exception e) {
+					if (++failures > 3)
+						throw e;
+					log.warn("Chunk {} of upload {} failed, resuming", chunk, uploadId);
+					WebClient.client(proxy).accept(MediaType.TEXT_PLAIN);
+					offset = proxy.getUploadOffset(uploadId);
+				}
+			}
+		} finally {
+			raf.close();
+		}
+
+		WebClient.client(proxy).type(MediaType.APPLICATION_FORM_URLENCODED);
+		WebClient.client(proxy).accept(MediaType.TEXT_PLAIN);
+		return proxy.commitUpload(uploadId, docId, folderId, release, language);
+	}
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Example;
 import io.swagger.annotations.ExampleProperty;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +31,9 @@ import org.apache.cxf.jaxrs.ext.multipart.Attachment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.logicaldoc.core.security.User;
+import com.logicaldoc.core.transfer.ChunkedUpload;
+import com.logicaldoc.core.transfer.ChunkedUploadManager;
 import com.logicaldoc.webservice.model.WSDocument;
 import com.logicaldoc.webservice.model.WSNote;
 import com.logicaldoc.webservice.model.WSRating;
@@ -354,4 +358,85 @@ public class RestDocumentService extends SoapDocumentService implements Document
 		String sid = validateSession();
 		super.createPdf(sid, docId, fileVersion);
 	}
+
+	@Override
+	@POST
+	@Path("/startUpload")
+	@Consumes({ MediaType.APPLICATION_FORM_URLENCODED })
+	@Produces({ MediaType.TEXT_PLAIN })
+	@ApiOperation(value = "Starts a resumable upload", notes = "Starts an upload whose content will be sent in chunks using uploadChunk, returns the ID of the upload")
+	public String startUpload(@FormParam("filename") @ApiParam(value = "File name", required = true) String filename,
+			@FormParam("size") @ApiParam(value = "Size of the whole file", required = true) long size,
+			@FormParam("chunkSize") @ApiParam(value = "Size of each chunk, just the last one can be shorter", required = true) int chunkSize)
+			throws Exception {
+		String sid = validateSession();
+		User user = validateSession(sid);
+		return ChunkedUploadManager.get().start(user.getTenantId(), user.getId(), filename, size, chunkSize).getId();
+	}
+
+	@Override
+	@PUT
+	@Path("/uploadChunk")
+	@Consumes({ MediaType.APPLICATION_OCTET_STREAM })
+	@Produces({ MediaType.TEXT_PLAIN })
+	@ApiOperation(value = "Sends a chunk of a resumable upload", notes = "The chunk is rejected if its content does not match the digest. Returns the offset up to which all the chunks have been received")
+	public long uploadChunk(@QueryParam("uploadId") @ApiParam(value = "Upload ID", required = true) String uploadId,
+			@QueryParam("chunk") @ApiParam(value = "Number of the chunk, starting from 0", required = true) int chunk,
+			@QueryParam("digest") @ApiParam(value = "SHA-1 of the chunk's content, hex encoded", required = true) String digest,
+			@ApiParam(hidden = true) InputStream content) throws Exception {
+		String sid = validateSession();
+		User user = validateSession(sid);
+		return ChunkedUploadManager.get().writeChunk(uploadId, user.getId(), chunk, content, digest);
+	}
+
+	@Override
+	@GET
+	@Path("/getUploadOffset")
+	@Produces({ MediaType.TEXT_PLAIN })
+	@ApiOperation(value = "Gets the offset of a resumable upload", notes = "Returns the offset up to which all the chunks have been received, the upload must be resumed from here")
+	public long getUploadOffset(@QueryParam("uploadId") @ApiParam(value = "Upload ID", required = true) String uploadId)
+			throws Exception {
+		String sid = validateSession();
+		User user = validateSession(sid);
+		return ChunkedUploadManager.get().getUpload(uploadId, user.getId()).getOffset();
+	}
+
+	@Override
+	@POST
+	@Path("/commitUpload")
+	@Consumes({ MediaType.APPLICATION_FORM_URLENCODED })
+	@Produces({ MediaType.TEXT_PLAIN })
+	@ApiOperation(value = "Completes a resumable upload", notes = "Creates or updates a document with the uploaded content, if used in update mode docId must be provided, when used in create mode folderId is required. Returns the ID of the created/updated document")
+	public long commitUpload(@FormParam("uploadId") @ApiParam(value = "Upload ID", required = true) String uploadId,
+			@FormParam("docId") @ApiParam(value = "The ID of an existing document to update") Long docId,
+			@FormParam("folderId") @ApiParam(value = "Folder ID where to place the document") Long folderId,
+			@FormParam("release") @ApiParam(value = "Indicates whether to create or not a new major release of an updated document") boolean release,
+			@FormParam("language") @ApiParam(value = "Language of the document (ISO 639-2)") String language)
+			throws Exception {
+		String sid = validateSession();
+		User user = validateSession(sid);
+		ChunkedUploadManager manager = ChunkedUploadManager.get();
+		ChunkedUpload upload = manager.complete(uploadId, user.getId());
+		long id;
+		try {
+			id = super.upload(sid, docId, folderId, release, upload.getFileName(), language, null, upload.getFile());
+		} catch (Exception e) {
+			// Keep the content so the commit can be retried
+			manager.resume(upload);
+			throw e;
+		}
+		manager.release(upload);
+		return id;
+	}
+
+	@Override
+	@DELETE
+	@Path("/cancelUpload")
+	@ApiOperation(value = "Cancels a resumable upload")
+	public void cancelUpload(@QueryParam("uploadId") @ApiParam(value = "Upload ID", required = true) String uploadId)
+			throws Exception {
+		String sid = validateSession();
+		User user = validateSession(sid);
+		ChunkedUploadManager.get().cancel(uploadId, user.getId());
+	}
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.logicaldoc.webservice.soap.endpoint;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -72,6 +73,14 @@ public class SoapDocumentService extends AbstractService implements DocumentServ
 
 	@Override
 	public WSDocument create(String sid, WSDocument document, DataHandler content) throws Exception {
+		return create(sid, document, content, null);
+	}
+
+	/**
+	 * Creates a document taking the content from a data handler or directly
+	 * from a file, that is stored as is.
+	 */
+	protected WSDocument create(String sid, WSDocument document, DataHandler content, File file) throws Exception {
 		User user = validateSession(sid);
 		checkWriteEnable(user, document.getFolderId());
 
@@ -99,17 +108,29 @@ public class SoapDocumentService extends AbstractService implements DocumentServ
 		transaction.setComment(document.getComment());
 		transaction.setUser(user);
 
-		// Get file to upload inputStream
-		InputStream stream = content.getInputStream();
-
 		DocumentManager documentManager = (DocumentManager) Context.get().getBean(DocumentManager.class);
-		doc = documentManager.create(stream, doc, transaction);
+		if (file != null) {
+			doc = documentManager.create(file, doc, transaction);
+		} else {
+			// Get file to upload inputStream
+			InputStream stream = content.getInputStream();
+			doc = documentManager.create(stream, doc, transaction);
+		}
 		return WSUtil.toWSDocument(doc);
 	}
 
 	@Override
 	public void checkin(String sid, long docId, String comment, String filename, boolean release, DataHandler content)
 			throws Exception {
+		checkin(sid, docId, comment, filename, release, content, null);
+	}
+
+	/**
+	 * Checks-in a document taking the content from a data handler or directly
+	 * from a file, that is stored as is.
+	 */
+	protected void checkin(String sid, long docId, String comment, String filename, boolean release,
+			DataHandler content, File file) throws Exception {
 		User user = validateSession(sid);
 		DocumentDAO ddao = (DocumentDAO) Context.get().getBean(DocumentDAO.class);
 		Document document = ddao.findById(docId);
@@ -122,9 +143,6 @@ public class SoapDocumentService extends AbstractService implements DocumentServ
 		if (document.getStatus() == Document.DOC_CHECKED_OUT
 				&& (user.getId() == document.getLockUserId() || user.isMemberOf("admin"))) {
 			try {
-				// Get file to upload inputStream
-				InputStream stream = content.getInputStream();
-
 				// Create the document history event
 				History transaction = new History();
 				transaction.setSessionId(sid);
@@ -135,7 +153,11 @@ public class SoapDocumentService extends AbstractService implements DocumentServ
 				// checkin the document; throws an exception if
 				// something goes wrong
 				DocumentManager documentManager = (DocumentManager) Context.get().getBean(DocumentManager.class);
-				documentManager.checkin(document.getId(), stream, filename, release, null, transaction);
+				if (file != null)
+					documentManager.checkin(document.getId(), file, filename, release, null, transaction);
+				else
+					documentManager.checkin(document.getId(), content.getInputStream(), filename, release, null,
+							transaction);
 
 				/* create positive log message */
 				log.info("Document " + docId + " checked in");
@@ -813,11 +835,20 @@ public class SoapDocumentService extends AbstractService implements DocumentServ
 	@Override
 	public long upload(String sid, Long docId, Long folderId, boolean release, String filename, String language,
 			DataHandler content) throws Exception {
+		return upload(sid, docId, folderId, release, filename, language, content, null);
+	}
+
+	/**
+	 * Creates or updates a document taking the content from a data handler or
+	 * directly from a file, that is stored as is.
+	 */
+	protected long upload(String sid, Long docId, Long folderId, boolean release, String filename, String language,
+			DataHandler content, File file) throws Exception {
 		validateSession(sid);
 
 		if (docId != null) {
 			checkout(sid, docId);
-			checkin(sid, docId, "", filename, release, content);
+			checkin(sid, docId, "", filename, release, content, file);
 			return docId;
 		} else {
 			WSDocument doc = new WSDocument();
@@ -828,7 +859,7 @@ public class SoapDocumentService extends AbstractService implements DocumentServ
 			else
 				doc.setLanguage(language);
 
-			return create(sid, doc, content).getId();
+			return create(sid, doc, content, file).getId();
 		}
 
 	}